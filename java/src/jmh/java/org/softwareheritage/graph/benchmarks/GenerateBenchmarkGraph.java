@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.benchmarks;
+
+import com.martiansoftware.jsap.*;
+import it.unimi.dsi.big.webgraph.BVGraph;
+import it.unimi.dsi.big.webgraph.ImmutableGraph;
+import it.unimi.dsi.big.webgraph.ImmutableSequentialGraph;
+import it.unimi.dsi.big.webgraph.LazyLongIterator;
+import it.unimi.dsi.big.webgraph.LazyLongIterators;
+import it.unimi.dsi.big.webgraph.NodeIterator;
+import it.unimi.dsi.big.webgraph.Transform;
+import it.unimi.dsi.big.webgraph.labelling.ArcLabelledImmutableGraph;
+import it.unimi.dsi.big.webgraph.labelling.BitStreamArcLabelledImmutableGraph;
+import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.fastutil.BigArrays;
+import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongBigArrays;
+import it.unimi.dsi.fastutil.longs.LongBigList;
+import it.unimi.dsi.io.OutputBitStream;
+import it.unimi.dsi.logging.ProgressLogger;
+import it.unimi.dsi.sux4j.mph.GOVMinimalPerfectHashFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.softwareheritage.graph.SWHID;
+import org.softwareheritage.graph.SwhType;
+import org.softwareheritage.graph.labels.DirEntry;
+import org.softwareheritage.graph.labels.SwhLabel;
+import org.softwareheritage.graph.maps.NodeIdMap;
+import org.softwareheritage.graph.maps.NodeTypesMap;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a synthetic compressed graph with the shape of the Software Heritage graph, to run the
+ * benchmarks on graphs larger than the test dataset.
+ * <p>
+ * The nodes are numbered by type (origins, snapshots, releases, revisions, directories then
+ * contents), and the arcs follow the edge types of the archive: origins point to snapshots,
+ * snapshots to revisions and releases, releases to revisions, revisions to their root directory and
+ * to their parents (mostly forming long chains of history), and directories to subdirectories and
+ * to contents. The graph is acyclic and deterministic for a given seed.
+ * <p>
+ * The generated files are those loaded by {@link GraphState}: the graph and its transpose, their
+ * arc labels (without the label names), the node maps, and the properties of the nodes (content
+ * lengths, persons, timestamps and messages).
+ */
+public class GenerateBenchmarkGraph {
+    private final static Logger logger = LoggerFactory.getLogger(GenerateBenchmarkGraph.class);
+
+    /** Node types in the order of their node id ranges */
+    private static final SwhType[] TYPE_ORDER = {SwhType.ORI, SwhType.SNP, SwhType.REL, SwhType.REV, SwhType.DIR,
+            SwhType.CNT};
+    /** Percentage of the nodes of each type of {@link #TYPE_ORDER}, except the contents */
+    private static final int[] TYPE_PERCENTS = {2, 2, 1, 15, 30};
+
+    private final long numNodes;
+    private final long seed;
+    private final long numFilenames;
+    /** Start of the node id range of each type of {@link #TYPE_ORDER}, followed by the number of nodes */
+    private final long[] typeStart;
+
+    public GenerateBenchmarkGraph(long numNodes, long seed, long numFilenames) {
+        if (numNodes < 100) {
+            throw new IllegalArgumentException("The graph must have at least 100 nodes");
+        }
+        this.numNodes = numNodes;
+        this.seed = seed;
+        this.numFilenames = numFilenames;
+        this.typeStart = new long[TYPE_ORDER.length + 1];
+        for (int i = 0; i < TYPE_PERCENTS.length; i++) {
+            typeStart[i + 1] = typeStart[i] + Math.max(1, numNodes * TYPE_PERCENTS[i] / 100);
+        }
+        typeStart[TYPE_ORDER.length] = numNodes;
+    }
+
+    private int typeIndex(long node) {
+        int i = 0;
+        while (node >= typeStart[i + 1]) {
+            i++;
+        }
+        return i;
+    }
+
+    SwhType getNodeType(long node) {
+        return TYPE_ORDER[typeIndex(node)];
+    }
+
+    /** Random number generator of a node, independent of the order in which the nodes are generated */
+    private SplittableRandom random(long node, long stream) {
+        return new SplittableRandom(seed ^ (node * 0x9E3779B97F4A7C15L) ^ (stream * 0xC2B2AE3D27D4EB4FL));
+    }
+
+    /** Returns a random node of the given type whose id is greater than {@code after}, or -1 if none */
+    private long randomNode(SplittableRandom r, SwhType type, long after) {
+        int i = Arrays.asList(TYPE_ORDER).indexOf(type);
+        long start = Math.max(typeStart[i], after + 1);
+        return start < typeStart[i + 1] ? r.nextLong(start, typeStart[i + 1]) : -1;
+    }
+
+    /** Returns the sorted successors of a node */
+    long[] generateSuccessors(long node) {
+        SplittableRandom r = random(node, 0);
+        long[] succ;
+        int n = 0;
+        switch (getNodeType(node)) {
+            case ORI:
+                succ = new long[1 + r.nextInt(2)];
+                while (n < succ.length) {
+                    succ[n++] = randomNode(r, SwhType.SNP, -1);
+                }
+                break;
+            case SNP:
+                succ = new long[1 + r.nextInt(8)];
+                while (n < succ.length) {
+                    succ[n++] = randomNode(r, r.nextInt(10) == 0 ? SwhType.REL : SwhType.REV, -1);
+                }
+                break;
+            case REL:
+                succ = new long[]{randomNode(r, SwhType.REV, -1)};
+                n = 1;
+                break;
+            case REV:
+                succ = new long[3];
+                succ[n++] = randomNode(r, SwhType.DIR, -1);
+                // Most revisions have the next revision as parent, and a few are merges
+                if (node + 1 < typeStart[typeIndex(node) + 1] && r.nextInt(100) < 95) {
+                    succ[n++] = node + 1;
+                }
+                long mergedParent = r.nextInt(20) == 0 ? randomNode(r, SwhType.REV, node) : -1;
+                if (mergedParent != -1) {
+                    succ[n++] = mergedParent;
+                }
+                break;
+            case DIR:
+                succ = new long[1 + r.nextInt(20)];
+                while (n < succ.length) {
+                    long subdir = r.nextInt(5) == 0 ? randomNode(r, SwhType.DIR, node) : -1;
+                    succ[n++] = subdir != -1 ? subdir : randomNode(r, SwhType.CNT, -1);
+                }
+                break;
+            default:
+                return LongArrays.EMPTY_ARRAY;
+        }
+        LongArrays.quickSort(succ, 0, n);
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            if (length == 0 || succ[i] != succ[length - 1]) {
+                succ[length++] = succ[i];
+            }
+        }
+        return LongArrays.trim(succ, length);
+    }
+
+    /** Returns the label of an arc: a directory entry for the arcs from directories and snapshots */
+    SwhLabel label(long src, long dst, int width) {
+        SwhType srcType = getNodeType(src);
+        if (srcType != SwhType.DIR && srcType != SwhType.SNP) {
+            return new SwhLabel("edgelabel", width);
+        }
+        long filenameId = random(src, dst).nextLong(numFilenames);
+        int permission;
+        if (srcType == SwhType.SNP) {
+            permission = 0;
+        } else if (getNodeType(dst) == SwhType.DIR) {
+            permission = 0040000;
+        } else {
+            permission = filenameId % 10 == 0 ? 0100755 : 0100644;
+        }
+        return new SwhLabel("edgelabel", width, new DirEntry[]{new DirEntry(filenameId, permission)});
+    }
+
+    /** Returns the binary SWHID of a node, made unique by its last 8 bytes holding the node id */
+    byte[] getSWHIDBytes(long node) {
+        byte[] swhid = new byte[NodeIdMap.SWHID_BIN_SIZE];
+        swhid[0] = 1;
+        swhid[1] = (byte) SwhType.toInt(getNodeType(node));
+        SplittableRandom r = random(node, 1);
+        for (int i = 2; i < 14; i++) {
+            swhid[i] = (byte) r.nextInt(256);
+        }
+        for (int i = 0; i < 8; i++) {
+            swhid[14 + i] = (byte) (node >>> (56 - 8 * i));
+        }
+        return swhid;
+    }
+
+    byte[] getSWHIDAscii(long node) {
+        byte[] ascii = new byte[SWHID.STRING_LENGTH];
+        SWHID.bytesToAscii(getSWHIDBytes(node), 0, ascii, 0);
+        return ascii;
+    }
+
+    /** The generated graph, as a sequential graph whose successors are computed on the fly */
+    private class SyntheticGraph extends ImmutableSequentialGraph {
+        @Override
+        public long numNodes() {
+            return numNodes;
+        }
+
+        @Override
+        public NodeIterator nodeIterator() {
+            return new NodeIterator() {
+                private long node = -1;
+                private long[] succ;
+
+                @Override
+                public boolean hasNext() {
+                    return node + 1 < numNodes;
+                }
+
+                @Override
+                public long nextLong() {
+                    succ = generateSuccessors(++node);
+                    return node;
+                }
+
+                @Override
+                public long outdegree() {
+                    return succ.length;
+                }
+
+                @Override
+                public LazyLongIterator successors() {
+                    return LazyLongIterators.wrap(succ);
+                }
+
+                @Override
+                public long[][] successorBigArray() {
+                    return BigArrays.wrap(succ);
+                }
+            };
+        }
+    }
+
+    /** Writes the graph and its transpose in the BVGraph format */
+    void writeGraphs(String basename) throws IOException {
+        ProgressLogger pl = new ProgressLogger(logger);
+        pl.expectedUpdates = numNodes;
+        BVGraph.store(new SyntheticGraph(), basename, pl);
+        ImmutableGraph transposed = Transform.transposeOffline(ImmutableGraph.loadOffline(basename), 10_000_000,
+                null, pl);
+        BVGraph.store(transposed, basename + "-transposed", pl);
+    }
+
+    /** Writes the labels of a graph, computed from the arcs of the forward graph */
+    void writeLabels(String graphBasename, boolean transposed) throws IOException {
+        int width = DirEntry.labelWidth(numFilenames);
+        String labelledBasename = graphBasename + "-labelled";
+        OutputBitStream labels = new OutputBitStream(
+                new File(labelledBasename + BitStreamArcLabelledImmutableGraph.LABELS_EXTENSION));
+        OutputBitStream offsets = new OutputBitStream(
+                new File(labelledBasename + BitStreamArcLabelledImmutableGraph.LABEL_OFFSETS_EXTENSION));
+        offsets.writeGamma(0);
+        NodeIterator it = ImmutableGraph.loadOffline(graphBasename).nodeIterator();
+        while (it.hasNext()) {
+            long node = it.nextLong();
+            long bits = 0;
+            LazyLongIterator s = it.successors();
+            for (long succ; (succ = s.nextLong()) != -1;) {
+                SwhLabel l = transposed ? label(succ, node, width) : label(node, succ, width);
+                bits += l.toBitStream(labels, -1);
+            }
+            offsets.writeLongGamma(bits);
+        }
+        labels.close();
+        offsets.close();
+
+        try (PrintWriter pw = new PrintWriter(new FileWriter(labelledBasename + ".properties"))) {
+            pw.println(ImmutableGraph.GRAPHCLASS_PROPERTY_KEY + " = "
+                    + BitStreamArcLabelledImmutableGraph.class.getName());
+            pw.println(BitStreamArcLabelledImmutableGraph.LABELSPEC_PROPERTY_KEY + " = " + SwhLabel.class.getName()
+                    + "(DirEntry," + width + ")");
+            pw.println(ArcLabelledImmutableGraph.UNDERLYINGGRAPH_PROPERTY_KEY + " = "
+                    + Paths.get(graphBasename).getFileName());
+        }
+    }
+
+    /** Writes the node -> SWHID and node -> type maps, the MPH of the SWHIDs and its permutation */
+    void writeNodeMaps(String basename) throws IOException {
+        final int nbBitsPerNodeType = (int) Math.ceil(Math.log(SwhType.values().length) / Math.log(2));
+        LongBigList nodeTypesMap = LongArrayBitVector.ofLength(nbBitsPerNodeType * numNodes)
+                .asLongBigList(nbBitsPerNodeType);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(basename + NodeIdMap.NODE_TO_SWHID))) {
+            for (long node = 0; node < numNodes; node++) {
+                out.write(getSWHIDBytes(node));
+                nodeTypesMap.set(node, SwhType.toInt(getNodeType(node)));
+            }
+        }
+        BinIO.storeObject(nodeTypesMap, basename + NodeTypesMap.NODE_TO_TYPE);
+
+        Iterable<byte[]> keys = () -> new Iterator<>() {
+            private long node = 0;
+
+            @Override
+            public boolean hasNext() {
+                return node < numNodes;
+            }
+
+            @Override
+            public byte[] next() {
+                return getSWHIDAscii(node++);
+            }
+        };
+        GOVMinimalPerfectHashFunction<byte[]> mph = new GOVMinimalPerfectHashFunction.Builder<byte[]>().keys(keys)
+                .transform(TransformationStrategies.rawByteArray()).build();
+        BinIO.storeObject(mph, basename + ".mph");
+        long[][] order = LongBigArrays.newBigArray(numNodes);
+        for (long node = 0; node < numNodes; node++) {
+            BigArrays.set(order, mph.getLong(getSWHIDAscii(node)), node);
+        }
+        BinIO.storeLongs(order, basename + ".order");
+    }
+
+    /** Writes the properties of the nodes, with the same sentinel values as the compression pipeline */
+    void writeProperties(String basename) throws IOException {
+        String prefix = basename + ".property.";
+        LongArrayBitVector isSkipped = LongArrayBitVector.ofLength(numNodes);
+        long messageOffset = 0;
+        try (DataOutputStream length = open(prefix + "content.length.bin");
+                DataOutputStream authorId = open(prefix + "author_id.bin");
+                DataOutputStream committerId = open(prefix + "committer_id.bin");
+                DataOutputStream authorTimestamp = open(prefix + "author_timestamp.bin");
+                DataOutputStream authorOffset = open(prefix + "author_timestamp_offset.bin");
+                DataOutputStream committerTimestamp = open(prefix + "committer_timestamp.bin");
+                DataOutputStream committerOffset = open(prefix + "committer_timestamp_offset.bin");
+                DataOutputStream messages = open(prefix + "message.bin");
+                DataOutputStream messageOffsets = open(prefix + "message.offset.bin")) {
+            for (long node = 0; node < numNodes; node++) {
+                SplittableRandom r = random(node, 2);
+                SwhType type = getNodeType(node);
+                boolean isRevision = type == SwhType.REV;
+                boolean hasAuthor = isRevision || type == SwhType.REL;
+
+                length.writeLong(type == SwhType.CNT ? (long) Math.exp(r.nextDouble(16)) : -1);
+                isSkipped.set(node, type == SwhType.CNT && r.nextInt(1000) == 0);
+                authorId.writeInt(hasAuthor ? r.nextInt(Math.max(1, (int) (numNodes / 20))) : -1);
+                committerId.writeInt(isRevision ? r.nextInt(Math.max(1, (int) (numNodes / 20))) : -1);
+                long timestamp = 1_000_000_000L + r.nextLong(700_000_000L);
+                authorTimestamp.writeLong(hasAuthor ? timestamp : Long.MIN_VALUE);
+                authorOffset.writeShort(hasAuthor ? 60 * (r.nextInt(25) - 12) : Short.MIN_VALUE);
+                committerTimestamp.writeLong(isRevision ? timestamp + r.nextInt(86400) : Long.MIN_VALUE);
+                committerOffset.writeShort(isRevision ? 60 * (r.nextInt(25) - 12) : Short.MIN_VALUE);
+
+                String message = null;
+                if (hasAuthor) {
+                    message = "Synthetic " + type.name().toLowerCase() + " " + node + "\n\n"
+                            + "x".repeat(r.nextInt(200));
+                } else if (type == SwhType.ORI) {
+                    message = "https://example.org/repo/" + node;
+                }
+                if (message != null) {
+                    byte[] line = Base64.getEncoder().encode(message.getBytes(StandardCharsets.UTF_8));
+                    messages.write(line);
+                    messages.write('\n');
+                    messageOffsets.writeLong(messageOffset);
+                    messageOffset += line.length + 1;
+                } else {
+                    messageOffsets.writeLong(-1);
+                }
+            }
+        }
+        BinIO.storeObject(isSkipped, prefix + "content.is_skipped.bin");
+    }
+
+    private static DataOutputStream open(String path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+    }
+
+    public static void main(String[] args) throws IOException, JSAPException {
+        SimpleJSAP jsap = new SimpleJSAP(GenerateBenchmarkGraph.class.getName(),
+                "Generate a synthetic compressed graph with the shape of the Software Heritage graph",
+                new Parameter[]{
+                        new FlaggedOption("seed", JSAP.LONG_PARSER, "42", JSAP.NOT_REQUIRED, 's', "seed",
+                                "Seed of the random generator."),
+                        new FlaggedOption("numFilenames", JSAP.LONG_PARSER, "100000", JSAP.NOT_REQUIRED, 'f',
+                                "num-filenames", "Number of distinct directory entry names."),
+                        new UnflaggedOption("numNodes", JSAP.LONG_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED,
+                                JSAP.NOT_GREEDY, "Number of nodes of the graph."),
+                        new UnflaggedOption("basename", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED,
+                                JSAP.NOT_GREEDY, "Basename of the generated graph."),});
+        JSAPResult config = jsap.parse(args);
+        if (jsap.messagePrinted()) {
+            System.exit(1);
+        }
+
+        String basename = config.getString("basename");
+        Files.createDirectories(Paths.get(basename).toAbsolutePath().getParent());
+        GenerateBenchmarkGraph generator = new GenerateBenchmarkGraph(config.getLong("numNodes"),
+                config.getLong("seed"), config.getLong("numFilenames"));
+        logger.info("Writing the graphs");
+        generator.writeGraphs(basename);
+        logger.info("Writing the labels");
+        generator.writeLabels(basename, false);
+        generator.writeLabels(basename + "-transposed", true);
+        logger.info("Writing the node maps");
+        generator.writeNodeMaps(basename);
+        logger.info("Writing the node properties");
+        generator.writeProperties(basename);
+        logger.info("Graph written to {}", basename);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.softwareheritage.graph.SWHID;
+import org.softwareheritage.graph.SwhBidirectionalGraph;
+import org.softwareheritage.graph.SwhType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * Compressed graph shared by the benchmarks of a trial, with a random sample of its nodes.
+ * <p>
+ * The basename of the graph is given with {@code -p graph=<basename>}, and defaults to the test
+ * dataset (relative to the java/ directory). Larger graphs can be created with
+ * {@link GenerateBenchmarkGraph}. The labels and the node properties are loaded if their files
+ * exist.
+ */
+@State(Scope.Benchmark)
+public class GraphState {
+    /** Basename of the test dataset, relative to the java/ directory */
+    public static final String TEST_GRAPH = "../swh/graph/tests/dataset/compressed/example";
+    /** Number of nodes of the samples, a power of two */
+    public static final int SAMPLE_SIZE = 1 << 16;
+    /** Maximum number of random draws per node when sampling the nodes of a given type */
+    private static final int MAX_DRAWS = 1000;
+
+    @Param({TEST_GRAPH})
+    public String graph;
+
+    public SwhBidirectionalGraph g;
+    /** Whether the arc labels of the graph are loaded */
+    public boolean labelled;
+    /** Node ids drawn uniformly at random, with repetitions */
+    public long[] nodeIds;
+    /** SWHIDs of the nodes of {@link #nodeIds} */
+    public SWHID[] swhids;
+    /** SWHIDs of the nodes of {@link #nodeIds}, in the ASCII form hashed by the MPH */
+    public byte[][] swhidAscii;
+
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        labelled = new File(graph + "-labelled.properties").exists()
+                && new File(graph + "-transposed-labelled.properties").exists();
+        g = labelled ? SwhBidirectionalGraph.loadLabelledMapped(graph) : SwhBidirectionalGraph.loadMapped(graph);
+        if (hasFile(".property.content.length.bin")) {
+            g.loadContentLength();
+        }
+        if (hasFile(".property.content.is_skipped.bin")) {
+            g.loadContentIsSkipped();
+        }
+        if (hasFile(".property.author_id.bin")) {
+            g.loadPersonIds();
+        }
+        if (hasFile(".property.author_timestamp.bin")) {
+            g.loadAuthorTimestamps();
+        }
+        if (hasFile(".property.committer_timestamp.bin")) {
+            g.loadCommitterTimestamps();
+        }
+        if (hasFile(".property.message.bin")) {
+            g.loadMessages();
+        }
+
+        random = new SplittableRandom(42);
+        nodeIds = new long[SAMPLE_SIZE];
+        swhids = new SWHID[SAMPLE_SIZE];
+        swhidAscii = new byte[SAMPLE_SIZE][];
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            nodeIds[i] = random.nextLong(g.numNodes());
+            swhids[i] = g.getSWHID(nodeIds[i]);
+            swhidAscii[i] = new byte[SWHID.STRING_LENGTH];
+            g.getSWHIDAscii(nodeIds[i], swhidAscii[i], 0);
+        }
+    }
+
+    private boolean hasFile(String suffix) {
+        return new File(graph + suffix).exists();
+    }
+
+    /** Returns the i-th node of the sample, wrapping around its end */
+    public long node(int i) {
+        return nodeIds[i & (SAMPLE_SIZE - 1)];
+    }
+
+    /**
+     * Draws a sample of nodes of a given type. If the type is too rare to be found by random draws,
+     * nodes of any type are returned instead.
+     */
+    public synchronized long[] sample(SwhType type) {
+        long[] sample = new long[SAMPLE_SIZE];
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            long node = random.nextLong(g.numNodes());
+            for (int draws = 1; draws < MAX_DRAWS && g.getNodeType(node) != type; draws++) {
+                node = random.nextLong(g.numNodes());
+            }
+            sample[i] = node;
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.benchmarks;
+
+import com.google.protobuf.FieldMask;
+import org.openjdk.jmh.annotations.*;
+import org.softwareheritage.graph.SwhUnidirectionalGraph;
+import org.softwareheritage.graph.rpc.Node;
+import org.softwareheritage.graph.rpc.NodeEncoder;
+import org.softwareheritage.graph.rpc.NodePropertyBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the building of the protobuf Node messages returned by the gRPC API, on random
+ * nodes. With the "all" mask, all the node properties must be available in the benchmarked graph.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeBuildingBenchmark {
+    /** Number of nodes built by each call of the bulk benchmark */
+    static final int BATCH_SIZE = 1024;
+
+    /** Fields of the built nodes: only the SWHID, or all the node properties */
+    @Param({"swhid", "all"})
+    public String mask;
+
+    private SwhUnidirectionalGraph forward;
+    private NodePropertyBuilder.NodeDataMask nodeDataMask;
+    private NodeEncoder encoder;
+    private long[] batch;
+    private int i = 0;
+
+    @Setup(Level.Trial)
+    public void setup(GraphState s) {
+        forward = s.g.getForwardGraph();
+        nodeDataMask = new NodePropertyBuilder.NodeDataMask(
+                mask.equals("all") ? null : FieldMask.newBuilder().addPaths(mask).build());
+        encoder = new NodeEncoder(forward, nodeDataMask);
+        batch = new long[BATCH_SIZE];
+        for (int j = 0; j < BATCH_SIZE; j++) {
+            batch[j] = s.node(j);
+        }
+    }
+
+    @Benchmark
+    public Node buildNode(GraphState s) {
+        Node.Builder builder = Node.newBuilder();
+        NodePropertyBuilder.buildNodeProperties(forward, nodeDataMask, builder, s.node(i++));
+        return builder.build();
+    }
+
+    /** Node building followed by its serialization, as done for each node streamed by a traversal */
+    @Benchmark
+    public byte[] buildAndSerializeNode(GraphState s) {
+        Node.Builder builder = Node.newBuilder();
+        NodePropertyBuilder.buildNodeProperties(forward, nodeDataMask, builder, s.node(i++));
+        return builder.build().toByteArray();
+    }
+
+    /** Direct encoding of the node, as done for each node streamed by Traverse */
+    @Benchmark
+    public NodeEncoder.EncodedNode encodeNode(GraphState s) {
+        encoder.startNode(s.node(i++));
+        return encoder.finishNode(null);
+    }
+
+    /** Parallel building of the nodes of a batch, as done by GetNodes, per node */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Node[] buildNodes() {
+        return NodePropertyBuilder.buildNodes(forward, nodeDataMask, batch);
+    }
+}
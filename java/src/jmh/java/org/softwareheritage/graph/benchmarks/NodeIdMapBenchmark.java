@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.softwareheritage.graph.SWHID;
+import org.softwareheritage.graph.maps.NodeIdMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/** Benchmarks of the conversions between SWHIDs and node ids. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeIdMapBenchmark {
+    /** Number of SWHIDs converted by each call of the batch benchmark */
+    static final int BATCH_SIZE = 1024;
+
+    private NodeIdMap nodeIdMap;
+    private ByteBuffer batch;
+    private long[] batchNodeIds;
+    private final byte[] ascii = new byte[SWHID.STRING_LENGTH];
+    private int i = 0;
+
+    @Setup(Level.Trial)
+    public void setup(GraphState s) throws IOException {
+        nodeIdMap = new NodeIdMap(s.graph);
+        batch = ByteBuffer.allocate(BATCH_SIZE * NodeIdMap.SWHID_BIN_SIZE);
+        for (int j = 0; j < BATCH_SIZE; j++) {
+            s.g.getSWHIDBytes(s.node(j), batch.array(), j * NodeIdMap.SWHID_BIN_SIZE);
+        }
+        batchNodeIds = new long[BATCH_SIZE];
+    }
+
+    /** Lookup in the MPH and the .order permutation, without checking that the SWHID exists */
+    @Benchmark
+    public long mphLookup(GraphState s) {
+        return nodeIdMap.getNodeId(s.swhidAscii[i++ & (GraphState.SAMPLE_SIZE - 1)]);
+    }
+
+    /** Checked SWHID to node id conversion, as done for the sources of a request */
+    @Benchmark
+    public long getNodeId(GraphState s) {
+        return s.g.getNodeId(s.swhids[i++ & (GraphState.SAMPLE_SIZE - 1)]);
+    }
+
+    /** Batch conversion of binary SWHIDs, per SWHID */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long getNodeIds() {
+        nodeIdMap.getNodeIds(batch, batchNodeIds);
+        return batchNodeIds[BATCH_SIZE - 1];
+    }
+
+    @Benchmark
+    public SWHID getSWHID(GraphState s) {
+        return s.g.getSWHID(s.node(i++));
+    }
+
+    /** Node id to ASCII SWHID conversion, as done to build the swhid field of the returned nodes */
+    @Benchmark
+    public void getSWHIDAscii(GraphState s, Blackhole bh) {
+        s.g.getSWHIDAscii(s.node(i++), ascii, 0);
+        bh.consume(ascii);
+    }
+}
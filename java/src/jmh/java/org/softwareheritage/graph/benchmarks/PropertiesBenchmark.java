@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.softwareheritage.graph.SwhType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the node property getters, on random nodes of the type that has the property. A
+ * getter fails if its property is not available in the benchmarked graph.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PropertiesBenchmark {
+    private long[] contents;
+    private long[] revisions;
+    private int i = 0;
+
+    @Setup(Level.Trial)
+    public void setup(GraphState s) {
+        contents = s.sample(SwhType.CNT);
+        revisions = s.sample(SwhType.REV);
+    }
+
+    private long next(long[] sample) {
+        return sample[i++ & (GraphState.SAMPLE_SIZE - 1)];
+    }
+
+    @Benchmark
+    public SwhType getNodeType(GraphState s) {
+        return s.g.getNodeType(s.node(i++));
+    }
+
+    @Benchmark
+    public Long getContentLength(GraphState s) {
+        return s.g.getContentLength(next(contents));
+    }
+
+    @Benchmark
+    public Long getAuthorId(GraphState s) {
+        return s.g.getAuthorId(next(revisions));
+    }
+
+    @Benchmark
+    public Long getAuthorTimestamp(GraphState s) {
+        return s.g.getAuthorTimestamp(next(revisions));
+    }
+
+    @Benchmark
+    public Long getCommitterTimestamp(GraphState s) {
+        return s.g.getCommitterTimestamp(next(revisions));
+    }
+
+    @Benchmark
+    public byte[] getMessage(GraphState s) {
+        return s.g.getMessage(next(revisions));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.benchmarks;
+
+import it.unimi.dsi.big.webgraph.LazyLongIterator;
+import it.unimi.dsi.big.webgraph.labelling.ArcLabelledNodeIterator;
+import org.openjdk.jmh.annotations.*;
+import org.softwareheritage.graph.AllowedEdges;
+import org.softwareheritage.graph.SwhType;
+import org.softwareheritage.graph.SwhUnidirectionalGraph;
+import org.softwareheritage.graph.labels.DirEntry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the iteration on the successors of random nodes, per node. The labelled iteration
+ * fails if the benchmarked graph has no labels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SuccessorsBenchmark {
+    /** Number of nodes whose successors are iterated by each call */
+    static final int BATCH_SIZE = 1024;
+
+    /** Edge restrictions of the filtered iteration, in the format of the edges parameter of requests */
+    @Param({"*", "dir:dir,dir:cnt", "rev:rev"})
+    public String edges;
+
+    private SwhUnidirectionalGraph forward;
+    private AllowedEdges allowedEdges;
+    private int i = 0;
+
+    @Setup(Level.Trial)
+    public void setup(GraphState s) {
+        forward = s.g.getForwardGraph();
+        allowedEdges = new AllowedEdges(edges);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long successors(GraphState s) {
+        long sum = 0;
+        for (int j = 0; j < BATCH_SIZE; j++) {
+            LazyLongIterator it = forward.successors(s.node(i++));
+            for (long succ; (succ = it.nextLong()) != -1;) {
+                sum += succ;
+            }
+        }
+        return sum;
+    }
+
+    /** Iteration on the successors and their labels, decoding the directory entries */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long labelledSuccessors(GraphState s) {
+        if (!s.labelled) {
+            throw new IllegalStateException("The graph has no labels: " + s.graph);
+        }
+        long sum = 0;
+        for (int j = 0; j < BATCH_SIZE; j++) {
+            ArcLabelledNodeIterator.LabelledArcIterator it = forward.labelledSuccessors(s.node(i++));
+            for (long succ; (succ = it.nextLong()) != -1;) {
+                for (DirEntry entry : (DirEntry[]) it.label().get()) {
+                    sum += entry.filenameId;
+                }
+                sum += succ;
+            }
+        }
+        return sum;
+    }
+
+    /** Iteration on the successors allowed by the edge restrictions, as done by the traversals */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long allowedSuccessors(GraphState s) {
+        long sum = 0;
+        for (int j = 0; j < BATCH_SIZE; j++) {
+            long node = s.node(i++);
+            SwhType nodeType = forward.getNodeType(node);
+            LazyLongIterator it = forward.successors(node);
+            for (long succ; (succ = it.nextLong()) != -1;) {
+                if (allowedEdges.restrictedTo == null || allowedEdges.isAllowed(nodeType, forward.getNodeType(succ))) {
+                    sum += succ;
+                }
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.google.protobuf.FieldMask;
+import org.openjdk.jmh.annotations.*;
+import org.softwareheritage.graph.SwhType;
+import org.softwareheritage.graph.benchmarks.GraphState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks of the BFS traversals of the gRPC API, from sets of random sources of increasing size.
+ * The traversals only count the nodes they reach, like CountNodes, so that the cost of building the
+ * returned nodes is excluded (see {@link org.softwareheritage.graph.benchmarks.NodeBuildingBenchmark}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TraversalBenchmark {
+    @Param({"1", "100", "10000"})
+    public int sources;
+
+    /** Direction of the traversals: forward from revisions, or backward from contents */
+    @Param({"FORWARD", "BACKWARD"})
+    public GraphDirection direction;
+
+    @Param({"*"})
+    public String edges;
+
+    /** Maximum number of edges accessed by each traversal, or -1 for no limit */
+    @Param({"-1"})
+    public long maxEdges;
+
+    private TraversalRequest request;
+
+    @Setup(Level.Trial)
+    public void setup(GraphState s) {
+        long[] sample = s.sample(direction == GraphDirection.FORWARD ? SwhType.REV : SwhType.CNT);
+        List<String> srcs = new ArrayList<>();
+        for (int i = 0; i < sources; i++) {
+            srcs.add(s.g.getSWHID(sample[i % sample.length]).toString());
+        }
+        TraversalRequest.Builder builder = TraversalRequest.newBuilder().addAllSrc(srcs).setDirection(direction)
+                .setEdges(edges).setMask(FieldMask.getDefaultInstance());
+        if (maxEdges >= 0) {
+            builder.setMaxEdges(maxEdges);
+        }
+        request = builder.build();
+    }
+
+    @Benchmark
+    public long traverse(GraphState s) {
+        AtomicLong count = new AtomicLong();
+        try (Traversal.SimpleTraversal t = new Traversal.SimpleTraversal(s.g, request, n -> count.incrementAndGet())) {
+            t.visit();
+        }
+        return count.get();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A SWHID stored in its compact binary form: the namespace version and the node type, followed by
+ * the 20-byte hash packed in two longs and an int.
+ * <p>
+ * Unlike {@link SWHID}, which keeps the string representation of the SWHID, building and comparing
+ * instances of this class does not involve any string processing. The binary format is the one of
+ * {@link SWHID#toBytes()}.
+ */
+public final class BinarySWHID {
+    /** Size of the binary form of a SWHID, in bytes */
+    public static final int SIZE = 22;
+
+    private final byte version;
+    private final byte type;
+    private final long hash0;
+    private final long hash1;
+    private final int hash2;
+
+    private BinarySWHID(byte version, byte type, long hash0, long hash1, int hash2) {
+        this.version = version;
+        this.type = type;
+        this.hash0 = hash0;
+        this.hash1 = hash1;
+        this.hash2 = hash2;
+    }
+
+    /**
+     * Reads a SWHID in binary form.
+     *
+     * @param src array containing the binary SWHID
+     * @param offset offset of the binary SWHID in {@code src}
+     */
+    public static BinarySWHID fromBytes(byte[] src, int offset) {
+        if (src[offset] != 1) {
+            throw new IllegalArgumentException("malformed binary SWHID");
+        }
+        if (src[offset + 1] < 0 || src[offset + 1] >= SwhType.values().length) {
+            throw new IllegalArgumentException("Unknown node type: " + src[offset + 1]);
+        }
+        return new BinarySWHID(src[offset], src[offset + 1], readBigEndian(src, offset + 2, 8),
+                readBigEndian(src, offset + 10, 8), (int) readBigEndian(src, offset + 18, 4));
+    }
+
+    /** Converts a {@link SWHID} to its binary form. */
+    public static BinarySWHID fromSWHID(SWHID swhid) {
+        return fromBytes(swhid.toBytes(), 0);
+    }
+
+    /** Returns the node type of the SWHID. */
+    public SwhType getType() {
+        return SwhType.fromInt(type);
+    }
+
+    /**
+     * Writes the binary form of the SWHID.
+     *
+     * @param dst array to which the {@link #SIZE} bytes are written
+     * @param offset offset in {@code dst} at which the SWHID is written
+     */
+    public void toBytes(byte[] dst, int offset) {
+        dst[offset] = version;
+        dst[offset + 1] = type;
+        writeBigEndian(hash0, dst, offset + 2, 8);
+        writeBigEndian(hash1, dst, offset + 10, 8);
+        writeBigEndian(hash2, dst, offset + 18, 4);
+    }
+
+    /** Returns the binary form of the SWHID. */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[SIZE];
+        toBytes(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Writes the string representation of the SWHID as ASCII bytes.
+     *
+     * @param dst array to which the {@link SWHID#STRING_LENGTH} bytes are written
+     * @param offset offset in {@code dst} at which the string is written
+     */
+    public void toAscii(byte[] dst, int offset) {
+        SWHID.writeAsciiHeader(version, type, dst, offset);
+        writeHex(hash0, dst, offset + 10, 8);
+        writeHex(hash1, dst, offset + 26, 8);
+        writeHex(hash2, dst, offset + 42, 4);
+    }
+
+    /** Converts the SWHID to a {@link SWHID}. */
+    public SWHID toSWHID() {
+        return new SWHID(toString(), getType());
+    }
+
+    @Override
+    public boolean equals(Object otherObj) {
+        if (otherObj == this)
+            return true;
+        if (!(otherObj instanceof BinarySWHID))
+            return false;
+
+        BinarySWHID other = (BinarySWHID) otherObj;
+        return version == other.version && type == other.type && hash0 == other.hash0 && hash1 == other.hash1
+                && hash2 == other.hash2;
+    }
+
+    @Override
+    public int hashCode() {
+        // The hash is already uniformly distributed
+        return (int) hash0;
+    }
+
+    @Override
+    public String toString() {
+        byte[] ascii = new byte[SWHID.STRING_LENGTH];
+        toAscii(ascii, 0);
+        return new String(ascii, StandardCharsets.US_ASCII);
+    }
+
+    private static long readBigEndian(byte[] src, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (src[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void writeBigEndian(long value, byte[] dst, int offset, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            dst[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static void writeHex(long value, byte[] dst, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            SWHID.writeAsciiHex((byte) (value >>> (8 * (length - 1 - i))), dst, offset + 2 * i);
+        }
+    }
+}
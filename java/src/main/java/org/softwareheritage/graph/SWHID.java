@@ -11,6 +11,8 @@ import com.fasterxml.jackson.annotation.JsonValue;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * A Software Heritage persistent identifier (SWHID), see <a href=
  * "https://docs.softwareheritage.org/devel/swh-model/persistent-identifiers.html#persistent-identifiers">persistent
@@ -22,6 +24,23 @@ import org.apache.commons.codec.binary.Hex;
 public class SWHID {
     /** Fixed hash length of the SWHID */
     public static final int HASH_LENGTH = 40;
+    /** Length of the string representation of a SWHID ('swh:1:type:hash') */
+    public static final int STRING_LENGTH = 10 + HASH_LENGTH;
+
+    /** The two lowercase hexadecimal digits of each byte value, in ASCII */
+    private static final byte[] HEX_PAIRS = new byte[512];
+    /** Lowercase name of each node type, indexed by {@link SwhType#toInt(SwhType)} */
+    private static final byte[][] TYPE_NAMES = new byte[SwhType.values().length][];
+    static {
+        byte[] digits = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        for (int b = 0; b < 256; b++) {
+            HEX_PAIRS[2 * b] = digits[b >>> 4];
+            HEX_PAIRS[2 * b + 1] = digits[b & 0xf];
+        }
+        for (SwhType type : SwhType.values()) {
+            TYPE_NAMES[SwhType.toInt(type)] = type.toString().toLowerCase().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
 
     /** Full SWHID as a string */
     String swhid;
@@ -37,28 +56,83 @@ public class SWHID {
         this.swhid = swhid;
 
         // SWHID format: 'swh:1:type:hash'
-        String[] parts = swhid.split(":");
-        if (parts.length != 4 || !parts[0].equals("swh") || !parts[1].equals("1")) {
+        if (swhid.length() != STRING_LENGTH || !swhid.startsWith("swh:1:") || swhid.charAt(9) != ':') {
             throw new IllegalArgumentException("malformed SWHID: " + swhid);
         }
-        this.type = SwhType.fromStr(parts[2]);
-        if (!parts[3].matches("[0-9a-f]{" + HASH_LENGTH + "}")) {
-            throw new IllegalArgumentException("malformed SWHID: " + swhid);
+        this.type = SwhType.fromStr(swhid.substring(6, 9));
+        for (int i = STRING_LENGTH - HASH_LENGTH; i < STRING_LENGTH; i++) {
+            char c = swhid.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                throw new IllegalArgumentException("malformed SWHID: " + swhid);
+            }
         }
     }
 
+    /** Constructor for SWHIDs that are known to be well-formed, which skips the validation. */
+    SWHID(String swhid, SwhType type) {
+        this.swhid = swhid;
+        this.type = type;
+    }
+
     /**
      * Creates a SWHID from a compact binary representation.
      * <p>
      * The binary format is specified in the Python module swh.graph.swhid:str_to_bytes .
      */
     public static SWHID fromBytes(byte[] input) {
-        byte[] digest = new byte[20];
-        System.arraycopy(input, 2, digest, 0, digest.length);
+        if (input.length != 22 || input[0] != 1) {
+            throw new IllegalArgumentException("malformed binary SWHID");
+        }
+        byte[] ascii = new byte[STRING_LENGTH];
+        bytesToAscii(input, 0, ascii, 0);
+        return new SWHID(new String(ascii, StandardCharsets.US_ASCII), SwhType.fromInt(input[1]));
+    }
+
+    /**
+     * Writes the string representation of a SWHID in compact binary representation (see
+     * {@link #toBytes()}) as ASCII bytes, without creating any intermediate object. The binary SWHID
+     * is not validated, except for its node type.
+     *
+     * @param src array containing the binary SWHID
+     * @param srcOffset offset of the binary SWHID in {@code src}
+     * @param dst array to which the {@link #STRING_LENGTH} ASCII bytes are written
+     * @param dstOffset offset in {@code dst} at which the string is written
+     */
+    public static void bytesToAscii(byte[] src, int srcOffset, byte[] dst, int dstOffset) {
+        writeAsciiHeader(src[srcOffset], src[srcOffset + 1], dst, dstOffset);
+        for (int i = 0; i < 20; i++) {
+            writeAsciiHex(src[srcOffset + 2 + i], dst, dstOffset + 10 + 2 * i);
+        }
+    }
+
+    /**
+     * Writes the 'swh:version:type:' prefix of the string representation of a SWHID as
+     * ASCII bytes.
+     *
+     * @param version namespace version of the SWHID
+     * @param type node type of the SWHID, as given by {@link SwhType#toInt(SwhType)}
+     * @param dst array to which the 10 ASCII bytes are written
+     * @param dstOffset offset in {@code dst} at which the prefix is written
+     */
+    public static void writeAsciiHeader(byte version, byte type, byte[] dst, int dstOffset) {
+        if (type < 0 || type >= TYPE_NAMES.length) {
+            throw new IllegalArgumentException("Unknown node type: " + type);
+        }
+        dst[dstOffset] = 's';
+        dst[dstOffset + 1] = 'w';
+        dst[dstOffset + 2] = 'h';
+        dst[dstOffset + 3] = ':';
+        dst[dstOffset + 4] = (byte) ('0' + version);
+        dst[dstOffset + 5] = ':';
+        System.arraycopy(TYPE_NAMES[type], 0, dst, dstOffset + 6, 3);
+        dst[dstOffset + 9] = ':';
+    }
 
-        String swhidStr = String.format("swh:%d:%s:%s", input[0], SwhType.fromInt(input[1]).toString().toLowerCase(),
-                Hex.encodeHexString(digest));
-        return new SWHID(swhidStr);
+    /** Writes the two lowercase hexadecimal digits of a byte of a SWHID hash as ASCII bytes. */
+    public static void writeAsciiHex(byte b, byte[] dst, int dstOffset) {
+        int i = 2 * (b & 0xff);
+        dst[dstOffset] = HEX_PAIRS[i];
+        dst[dstOffset + 1] = HEX_PAIRS[i + 1];
     }
 
     @Override
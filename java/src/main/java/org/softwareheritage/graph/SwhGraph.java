@@ -7,7 +7,10 @@
 
 package org.softwareheritage.graph;
 
+import org.softwareheritage.graph.maps.ReachSketches;
+
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Common interface for SWH graph classes.
@@ -39,11 +42,31 @@ public interface SwhGraph {
         return getProperties().getNodeId(swhid);
     }
 
+    /** @see SwhGraphProperties#getNodeIds(ByteBuffer, long[]) */
+    default long getNodeIds(ByteBuffer swhids, long[] nodeIds) {
+        return getProperties().getNodeIds(swhids, nodeIds);
+    }
+
     /** @see SwhGraphProperties#getSWHID(long) */
     default SWHID getSWHID(long nodeId) {
         return getProperties().getSWHID(nodeId);
     }
 
+    /** @see SwhGraphProperties#getBinarySWHID(long) */
+    default BinarySWHID getBinarySWHID(long nodeId) {
+        return getProperties().getBinarySWHID(nodeId);
+    }
+
+    /** @see SwhGraphProperties#getSWHIDBytes(long, byte[], int) */
+    default void getSWHIDBytes(long nodeId, byte[] dst, int offset) {
+        getProperties().getSWHIDBytes(nodeId, dst, offset);
+    }
+
+    /** @see SwhGraphProperties#getSWHIDAscii(long, byte[], int) */
+    default void getSWHIDAscii(long nodeId, byte[] dst, int offset) {
+        getProperties().getSWHIDAscii(nodeId, dst, offset);
+    }
+
     /** @see SwhGraphProperties#getNodeType(long) */
     default SwhType getNodeType(long nodeId) {
         return getProperties().getNodeType(nodeId);
@@ -148,4 +171,24 @@ public interface SwhGraph {
     default byte[] getLabelName(long labelId) {
         return getProperties().getLabelName(labelId);
     }
+
+    /** @see SwhGraphProperties#loadLabelNameIds() */
+    default void loadLabelNameIds() throws IOException {
+        getProperties().loadLabelNameIds();
+    }
+
+    /** @see SwhGraphProperties#getLabelNameId(byte[]) */
+    default long getLabelNameId(byte[] name) {
+        return getProperties().getLabelNameId(name);
+    }
+
+    /** @see SwhGraphProperties#loadReachSketches() */
+    default void loadReachSketches() throws IOException {
+        getProperties().loadReachSketches();
+    }
+
+    /** @see SwhGraphProperties#getReachSketches() */
+    default ReachSketches getReachSketches() {
+        return getProperties().getReachSketches();
+    }
 }
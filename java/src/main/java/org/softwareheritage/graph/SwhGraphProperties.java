@@ -10,6 +10,7 @@ package org.softwareheritage.graph;
 
 import it.unimi.dsi.big.util.MappedFrontCodedStringBigList;
 import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.fastutil.objects.Object2LongFunction;
 import it.unimi.dsi.fastutil.bytes.ByteBigList;
 import it.unimi.dsi.fastutil.bytes.ByteMappedBigList;
 import it.unimi.dsi.fastutil.ints.IntBigList;
@@ -23,11 +24,14 @@ import it.unimi.dsi.sux4j.util.EliasFanoLongBigList;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 import org.softwareheritage.graph.maps.NodeIdMap;
 import org.softwareheritage.graph.maps.NodeTypesMap;
+import org.softwareheritage.graph.maps.ReachSketches;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This objects contains SWH graph properties such as node labels.
@@ -42,10 +46,29 @@ import java.util.Base64;
  * Since graph traversal can be restricted depending on the node type (see {@link AllowedEdges}), a
  * long id &rarr; node type map is stored as well to avoid a full SWHID lookup.
  *
+ * All the property getters are thread-safe: memory-mapped columns are only read with absolute
+ * (position-independent) accesses, and the only stateful structure (the front-coded list of label
+ * names) is duplicated lazily for each reading thread. A single instance can thus be shared by all
+ * the threads of a server without calling {@link #copy()}.
+ *
+ * The number of accesses to each property column is counted (see {@link #getAccessCount(Column)}),
+ * with striped counters that do not slow down concurrent readers.
+ *
  * @see NodeIdMap
  * @see NodeTypesMap
  */
 public class SwhGraphProperties {
+    /** Property columns whose accesses are counted */
+    public enum Column {
+        NODE_ID, SWHID, CONTENT_LENGTH, CONTENT_IS_SKIPPED, AUTHOR_ID, COMMITTER_ID, AUTHOR_TIMESTAMP,
+        COMMITTER_TIMESTAMP, MESSAGE, TAG_NAME, LABEL_NAME;
+
+        /** Return the name of the column, in lower case */
+        public String getName() {
+            return name().toLowerCase();
+        }
+    }
+
     private final String path;
 
     private final NodeIdMap nodeIdMap;
@@ -63,11 +86,21 @@ public class SwhGraphProperties {
     private ByteMappedBigList tagNameBuffer;
     private LongMappedBigList tagNameOffsets;
     private MappedFrontCodedStringBigList edgeLabelNames;
+    /** Per-thread duplicates of {@link #edgeLabelNames}, which cannot be read concurrently */
+    private ThreadLocal<MappedFrontCodedStringBigList> threadEdgeLabelNames;
+    private Object2LongFunction<byte[]> edgeLabelNameMph;
+    private ReachSketches reachSketches;
+    /** Number of accesses to each {@link Column}, shared with the copies */
+    private LongAdder[] accessCounts;
 
     protected SwhGraphProperties(String path, NodeIdMap nodeIdMap, NodeTypesMap nodeTypesMap) {
         this.path = path;
         this.nodeIdMap = nodeIdMap;
         this.nodeTypesMap = nodeTypesMap;
+        this.accessCounts = new LongAdder[Column.values().length];
+        for (int i = 0; i < accessCounts.length; i++) {
+            accessCounts[i] = new LongAdder();
+        }
     }
 
     public static SwhGraphProperties load(String path) throws IOException {
@@ -81,6 +114,15 @@ public class SwhGraphProperties {
         edgeLabelNames.close();
     }
 
+    /** Return the number of accesses to a property column since the properties were loaded. */
+    public long getAccessCount(Column column) {
+        return accessCounts[column.ordinal()].sum();
+    }
+
+    private void countAccess(Column column) {
+        accessCounts[column.ordinal()].increment();
+    }
+
     /** Return the basename of the compressed graph */
     public String getPath() {
         return path;
@@ -94,9 +136,23 @@ public class SwhGraphProperties {
      * @see SWHID
      */
     public long getNodeId(SWHID swhid) {
+        countAccess(Column.NODE_ID);
         return nodeIdMap.getNodeId(swhid);
     }
 
+    /**
+     * Converts many SWHIDs in compact binary form to long node ids at once.
+     *
+     * @param swhids buffer of binary SWHIDs (see {@link SWHID#toBytes()}), starting at index 0
+     * @param nodeIds array filled with the internal node ids, or -1 for the SWHIDs not in the graph
+     * @return the number of SWHIDs not in the graph
+     * @see NodeIdMap#getNodeIds(ByteBuffer, long[])
+     */
+    public long getNodeIds(ByteBuffer swhids, long[] nodeIds) {
+        accessCounts[Column.NODE_ID.ordinal()].add(nodeIds.length);
+        return nodeIdMap.getNodeIds(swhids, nodeIds);
+    }
+
     /**
      * Converts long id node to {@link SWHID}.
      *
@@ -105,9 +161,42 @@ public class SwhGraphProperties {
      * @see SWHID
      */
     public SWHID getSWHID(long nodeId) {
+        countAccess(Column.SWHID);
         return nodeIdMap.getSWHID(nodeId);
     }
 
+    /**
+     * Converts long id node to {@link BinarySWHID}.
+     *
+     * @param nodeId node specified as a long id
+     * @return external SWHID, in compact binary form
+     */
+    public BinarySWHID getBinarySWHID(long nodeId) {
+        countAccess(Column.SWHID);
+        return nodeIdMap.getBinarySWHID(nodeId);
+    }
+
+    /**
+     * Copies the SWHID of a node in compact binary form to an array, without allocating anything.
+     *
+     * @see NodeIdMap#getSWHIDBytes(long, byte[], int)
+     */
+    public void getSWHIDBytes(long nodeId, byte[] dst, int offset) {
+        countAccess(Column.SWHID);
+        nodeIdMap.getSWHIDBytes(nodeId, dst, offset);
+    }
+
+    /**
+     * Writes the string representation of the SWHID of a node to an array as ASCII bytes, without
+     * allocating anything.
+     *
+     * @see NodeIdMap#getSWHIDAscii(long, byte[], int)
+     */
+    public void getSWHIDAscii(long nodeId, byte[] dst, int offset) {
+        countAccess(Column.SWHID);
+        nodeIdMap.getSWHIDAscii(nodeId, dst, offset);
+    }
+
     /**
      * Returns node type.
      *
@@ -158,7 +247,11 @@ public class SwhGraphProperties {
         }
         int length = (int) (end - start);
         byte[] buffer = new byte[length];
-        byteArray.getElements(start, buffer, 0, length);
+        // Read byte by byte: unlike getElements(), getByte() does not move the position of the
+        // underlying mapped buffers, so it is safe to call from concurrent threads.
+        for (int i = 0; i < length; i++) {
+            buffer[i] = byteArray.getByte(start + i);
+        }
         return buffer;
     }
 
@@ -172,6 +265,7 @@ public class SwhGraphProperties {
         if (contentLength == null) {
             throw new IllegalStateException("Content lengths not loaded");
         }
+        countAccess(Column.CONTENT_LENGTH);
         long res = contentLength.getLong(nodeId);
         return (res >= 0) ? res : null;
     }
@@ -187,6 +281,7 @@ public class SwhGraphProperties {
         if (authorId == null) {
             throw new IllegalStateException("Author IDs not loaded");
         }
+        countAccess(Column.AUTHOR_ID);
         long res = authorId.getInt(nodeId);
         return (res >= 0) ? res : null;
     }
@@ -196,6 +291,7 @@ public class SwhGraphProperties {
         if (committerId == null) {
             throw new IllegalStateException("Committer IDs not loaded");
         }
+        countAccess(Column.COMMITTER_ID);
         long res = committerId.getInt(nodeId);
         return (res >= 0) ? res : null;
     }
@@ -217,6 +313,7 @@ public class SwhGraphProperties {
         if (contentIsSkipped == null) {
             throw new IllegalStateException("Skipped content array not loaded");
         }
+        countAccess(Column.CONTENT_IS_SKIPPED);
         return contentIsSkipped.getBoolean(nodeId);
     }
 
@@ -231,6 +328,7 @@ public class SwhGraphProperties {
         if (authorTimestamp == null) {
             throw new IllegalStateException("Author timestamps not loaded");
         }
+        countAccess(Column.AUTHOR_TIMESTAMP);
         long res = authorTimestamp.getLong(nodeId);
         return (res > Long.MIN_VALUE) ? res : null;
     }
@@ -240,6 +338,7 @@ public class SwhGraphProperties {
         if (authorTimestampOffset == null) {
             throw new IllegalStateException("Author timestamp offsets not loaded");
         }
+        countAccess(Column.AUTHOR_TIMESTAMP);
         short res = authorTimestampOffset.getShort(nodeId);
         return (res > Short.MIN_VALUE) ? res : null;
     }
@@ -255,6 +354,7 @@ public class SwhGraphProperties {
         if (committerTimestamp == null) {
             throw new IllegalStateException("Committer timestamps not loaded");
         }
+        countAccess(Column.COMMITTER_TIMESTAMP);
         long res = committerTimestamp.getLong(nodeId);
         return (res > Long.MIN_VALUE) ? res : null;
     }
@@ -264,6 +364,7 @@ public class SwhGraphProperties {
         if (committerTimestampOffset == null) {
             throw new IllegalStateException("Committer timestamp offsets not loaded");
         }
+        countAccess(Column.COMMITTER_TIMESTAMP);
         short res = committerTimestampOffset.getShort(nodeId);
         return (res > Short.MIN_VALUE) ? res : null;
     }
@@ -279,6 +380,7 @@ public class SwhGraphProperties {
         if (messageBuffer == null || messageOffsets == null) {
             throw new IllegalStateException("Messages not loaded");
         }
+        countAccess(Column.MESSAGE);
         long startOffset = messageOffsets.getLong(nodeId);
         if (startOffset == -1) {
             return null;
@@ -303,6 +405,7 @@ public class SwhGraphProperties {
         if (tagNameBuffer == null || tagNameOffsets == null) {
             throw new IllegalStateException("Tag names not loaded");
         }
+        countAccess(Column.TAG_NAME);
         long startOffset = tagNameOffsets.getLong(nodeId);
         if (startOffset == -1) {
             return null;
@@ -317,6 +420,8 @@ public class SwhGraphProperties {
         } catch (ConfigurationException e) {
             throw new IOException(e);
         }
+        MappedFrontCodedStringBigList labelNames = edgeLabelNames;
+        threadEdgeLabelNames = ThreadLocal.withInitial(labelNames::copy);
     }
 
     /**
@@ -327,54 +432,75 @@ public class SwhGraphProperties {
         if (edgeLabelNames == null) {
             throw new IllegalStateException("Label names not loaded");
         }
-        return Base64.getDecoder().decode(edgeLabelNames.getArray(labelId));
+        countAccess(Column.LABEL_NAME);
+        return Base64.getDecoder().decode(threadEdgeLabelNames.get().getArray(labelId));
+    }
+
+    /** Load the function mapping arc label names to their label IDs */
+    public void loadLabelNameIds() throws IOException {
+        edgeLabelNameMph = NodeIdMap.loadMph(path + ".labels.mph");
+    }
+
+    /**
+     * Get the label ID associated with the given arc label name, or -1 if no arc of the graph has this
+     * label name. The label names must be loaded as well, to check the result of the (minimal perfect
+     * hash) function.
+     */
+    public long getLabelNameId(byte[] name) {
+        if (edgeLabelNameMph == null) {
+            throw new IllegalStateException("Label name IDs not loaded");
+        }
+        if (edgeLabelNames == null) {
+            throw new IllegalStateException("Label names not loaded");
+        }
+        long labelId = edgeLabelNameMph.getLong(Base64.getEncoder().encode(name));
+        if (labelId < 0 || labelId >= edgeLabelNames.size64() || !Arrays.equals(getLabelName(labelId), name)) {
+            return -1;
+        }
+        return labelId;
+    }
+
+    /** Load the precomputed sketches of the sets of nodes reachable from each node */
+    public void loadReachSketches() throws IOException {
+        reachSketches = new ReachSketches(path + ReachSketches.REACH_SKETCH);
+    }
+
+    /** Get the reachability sketches of the graph */
+    public ReachSketches getReachSketches() {
+        if (reachSketches == null) {
+            throw new IllegalStateException("Reachability sketches not loaded");
+        }
+        return reachSketches;
     }
 
     /**
      * Returns a lightweight duplicate that can be read independently by another thread.
+     * <p>
+     * As all the getters are thread-safe, the duplicate simply shares all the underlying mappings with
+     * this object. It is only kept for compatibility with code written for {@link #copy()}-based
+     * concurrency.
      *
      * @return a lightweight duplicate that can be read independently by another thread.
      */
     public SwhGraphProperties copy() {
         SwhGraphProperties copy = new SwhGraphProperties(this.path, this.nodeIdMap, this.nodeTypesMap);
         copy.contentIsSkipped = this.contentIsSkipped;
-
-        if (this.authorTimestamp != null)
-            copy.authorTimestamp = this.authorTimestamp.copy();
-
-        if (this.authorTimestampOffset != null)
-            copy.authorTimestampOffset = this.authorTimestampOffset.copy();
-
-        if (this.committerTimestamp != null)
-            copy.committerTimestamp = this.committerTimestamp.copy();
-
-        if (this.committerTimestampOffset != null)
-            copy.committerTimestampOffset = this.committerTimestampOffset.copy();
-
-        if (this.contentLength != null)
-            copy.contentLength = this.contentLength.copy();
-
-        if (this.authorId != null)
-            copy.authorId = this.authorId.copy();
-
-        if (this.committerId != null)
-            copy.committerId = this.committerId.copy();
-
-        if (this.messageBuffer != null)
-            copy.messageBuffer = this.messageBuffer.copy();
-
-        if (this.messageOffsets != null)
-            copy.messageOffsets = this.messageOffsets.copy();
-
-        if (this.tagNameBuffer != null)
-            copy.tagNameBuffer = this.tagNameBuffer.copy();
-
-        if (this.tagNameOffsets != null)
-            copy.tagNameOffsets = this.tagNameOffsets.copy();
-
-        if (this.edgeLabelNames != null)
-            copy.edgeLabelNames = this.edgeLabelNames.copy();
+        copy.authorTimestamp = this.authorTimestamp;
+        copy.authorTimestampOffset = this.authorTimestampOffset;
+        copy.committerTimestamp = this.committerTimestamp;
+        copy.committerTimestampOffset = this.committerTimestampOffset;
+        copy.contentLength = this.contentLength;
+        copy.authorId = this.authorId;
+        copy.committerId = this.committerId;
+        copy.messageBuffer = this.messageBuffer;
+        copy.messageOffsets = this.messageOffsets;
+        copy.tagNameBuffer = this.tagNameBuffer;
+        copy.tagNameOffsets = this.tagNameOffsets;
+        copy.edgeLabelNames = this.edgeLabelNames;
+        copy.threadEdgeLabelNames = this.threadEdgeLabelNames;
+        copy.edgeLabelNameMph = this.edgeLabelNameMph;
+        copy.reachSketches = this.reachSketches;
+        copy.accessCounts = this.accessCounts;
         return copy;
-
     }
 }
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph;
+
+import it.unimi.dsi.big.webgraph.ImmutableGraph;
+import it.unimi.dsi.big.webgraph.LazyLongIterator;
+import it.unimi.dsi.big.webgraph.NodeIterator;
+import it.unimi.dsi.big.webgraph.labelling.ArcLabelledImmutableGraph;
+import it.unimi.dsi.big.webgraph.labelling.ArcLabelledNodeIterator;
+import it.unimi.dsi.big.webgraph.labelling.Label;
+
+/**
+ * Symmetrized view of the Software Heritage graph, in which the successors of a node are both its
+ * successors and its predecessors in the original graph.
+ * <p>
+ * Unlike {@link SwhBidirectionalGraph#symmetrize()}, which builds the union of the two graphs with
+ * a generic (and much slower) WebGraph transformation, this view is computed on the fly: the
+ * successors of a node are the successors of the node in the forward graph, followed by its
+ * successors in the backward graph. Since the Software Heritage graph is acyclic, no node is
+ * returned twice. Arc labels are available if they are loaded in both graphs.
+ * <p>
+ * The underlying graphs of the view (see {@link #underlyingGraph()} and
+ * {@link #underlyingLabelledGraph()}) are unions of the underlying graphs of the two directions, so
+ * the view can also be scanned sequentially and passed to generic WebGraph code.
+ *
+ * @see SwhBidirectionalGraph
+ */
+public class SwhSymmetrizedGraph extends SwhUnidirectionalGraph {
+    private final SwhUnidirectionalGraph forwardGraph;
+    private final SwhUnidirectionalGraph backwardGraph;
+
+    /**
+     * @param forwardGraph the graph
+     * @param backwardGraph the transposed graph
+     */
+    public SwhSymmetrizedGraph(SwhUnidirectionalGraph forwardGraph, SwhUnidirectionalGraph backwardGraph) {
+        super(new UnionGraph(forwardGraph.underlyingGraph(), backwardGraph.underlyingGraph()),
+                UnionLabelledGraph.of(forwardGraph.underlyingLabelledGraph(),
+                        backwardGraph.underlyingLabelledGraph()),
+                forwardGraph.getProperties());
+        this.forwardGraph = forwardGraph;
+        this.backwardGraph = backwardGraph;
+    }
+
+    /** Symmetrized view of a bidirectional graph. */
+    public SwhSymmetrizedGraph(SwhBidirectionalGraph graph) {
+        this(graph.getForwardGraph(), graph.getBackwardGraph());
+    }
+
+    /** Returns the graph whose arcs are the arcs of this view in their original direction. */
+    public SwhUnidirectionalGraph getForwardGraph() {
+        return forwardGraph;
+    }
+
+    /** Returns the graph whose arcs are the arcs of this view in the reverse direction. */
+    public SwhUnidirectionalGraph getBackwardGraph() {
+        return backwardGraph;
+    }
+
+    @Override
+    public SwhSymmetrizedGraph copy() {
+        return new SwhSymmetrizedGraph(forwardGraph.copy(), backwardGraph.copy());
+    }
+
+    /** Union of a graph and of its transpose. */
+    private static class UnionGraph extends ImmutableGraph {
+        private final ImmutableGraph forward;
+        private final ImmutableGraph backward;
+
+        UnionGraph(ImmutableGraph forward, ImmutableGraph backward) {
+            this.forward = forward;
+            this.backward = backward;
+        }
+
+        @Override
+        public long numNodes() {
+            return forward.numNodes();
+        }
+
+        @Override
+        public long numArcs() {
+            return forward.numArcs() + backward.numArcs();
+        }
+
+        @Override
+        public boolean randomAccess() {
+            return forward.randomAccess() && backward.randomAccess();
+        }
+
+        @Override
+        public long outdegree(long nodeId) {
+            return forward.outdegree(nodeId) + backward.outdegree(nodeId);
+        }
+
+        @Override
+        public LazyLongIterator successors(long nodeId) {
+            return new UnionIterator(forward.successors(nodeId), backward.successors(nodeId));
+        }
+
+        @Override
+        public NodeIterator nodeIterator(long from) {
+            return new UnionNodeIterator(forward.nodeIterator(from), backward.nodeIterator(from));
+        }
+
+        @Override
+        public UnionGraph copy() {
+            return new UnionGraph(forward.copy(), backward.copy());
+        }
+    }
+
+    /** Union of a labelled graph and of its transpose. */
+    private static class UnionLabelledGraph extends ArcLabelledImmutableGraph {
+        private final ArcLabelledImmutableGraph forward;
+        private final ArcLabelledImmutableGraph backward;
+
+        UnionLabelledGraph(ArcLabelledImmutableGraph forward, ArcLabelledImmutableGraph backward) {
+            this.forward = forward;
+            this.backward = backward;
+        }
+
+        /** Return the union of two labelled graphs, or null if the labels of either are not loaded. */
+        static UnionLabelledGraph of(ArcLabelledImmutableGraph forward, ArcLabelledImmutableGraph backward) {
+            return forward != null && backward != null ? new UnionLabelledGraph(forward, backward) : null;
+        }
+
+        @Override
+        public long numNodes() {
+            return forward.numNodes();
+        }
+
+        @Override
+        public long numArcs() {
+            return forward.numArcs() + backward.numArcs();
+        }
+
+        @Override
+        public boolean randomAccess() {
+            return forward.randomAccess() && backward.randomAccess();
+        }
+
+        @Override
+        public long outdegree(long nodeId) {
+            return forward.outdegree(nodeId) + backward.outdegree(nodeId);
+        }
+
+        @Override
+        public ArcLabelledNodeIterator.LabelledArcIterator successors(long nodeId) {
+            return new UnionArcIterator(forward.successors(nodeId), backward.successors(nodeId));
+        }
+
+        @Override
+        public ArcLabelledNodeIterator nodeIterator(long from) {
+            return new UnionLabelledNodeIterator(forward.nodeIterator(from), backward.nodeIterator(from));
+        }
+
+        @Override
+        public Label prototype() {
+            return forward.prototype();
+        }
+
+        @Override
+        public UnionLabelledGraph copy() {
+            return new UnionLabelledGraph(forward.copy(), backward.copy());
+        }
+    }
+
+    /** Sequential scan of a graph and of its transpose in parallel. */
+    private static class UnionNodeIterator extends NodeIterator {
+        private final NodeIterator forward;
+        private final NodeIterator backward;
+
+        UnionNodeIterator(NodeIterator forward, NodeIterator backward) {
+            this.forward = forward;
+            this.backward = backward;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return forward.hasNext();
+        }
+
+        @Override
+        public long nextLong() {
+            backward.nextLong();
+            return forward.nextLong();
+        }
+
+        @Override
+        public long outdegree() {
+            return forward.outdegree() + backward.outdegree();
+        }
+
+        @Override
+        public LazyLongIterator successors() {
+            return new UnionIterator(forward.successors(), backward.successors());
+        }
+    }
+
+    /** Sequential scan of a labelled graph and of its transpose in parallel. */
+    private static class UnionLabelledNodeIterator extends ArcLabelledNodeIterator {
+        private final ArcLabelledNodeIterator forward;
+        private final ArcLabelledNodeIterator backward;
+
+        UnionLabelledNodeIterator(ArcLabelledNodeIterator forward, ArcLabelledNodeIterator backward) {
+            this.forward = forward;
+            this.backward = backward;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return forward.hasNext();
+        }
+
+        @Override
+        public long nextLong() {
+            backward.nextLong();
+            return forward.nextLong();
+        }
+
+        @Override
+        public long outdegree() {
+            return forward.outdegree() + backward.outdegree();
+        }
+
+        @Override
+        public LabelledArcIterator successors() {
+            return new UnionArcIterator(forward.successors(), backward.successors());
+        }
+    }
+
+    /** Lazy concatenation of two successor iterators. */
+    public static class UnionIterator implements LazyLongIterator {
+        protected LazyLongIterator current;
+        private LazyLongIterator second;
+
+        public UnionIterator(LazyLongIterator first, LazyLongIterator second) {
+            this.current = first;
+            this.second = second;
+        }
+
+        @Override
+        public long nextLong() {
+            long next = current.nextLong();
+            if (next == -1 && second != null) {
+                current = second;
+                second = null;
+                next = current.nextLong();
+            }
+            return next;
+        }
+
+        @Override
+        public long skip(final long n) {
+            long i = 0;
+            while (i < n && nextLong() != -1)
+                i++;
+            return i;
+        }
+    }
+
+    /** Lazy concatenation of two labelled arc iterators, preserving the labels of their arcs. */
+    public static class UnionArcIterator extends UnionIterator implements ArcLabelledNodeIterator.LabelledArcIterator {
+        public UnionArcIterator(ArcLabelledNodeIterator.LabelledArcIterator first,
+                ArcLabelledNodeIterator.LabelledArcIterator second) {
+            super(first, second);
+        }
+
+        @Override
+        public Label label() {
+            // Both iterators are labelled
+            return ((ArcLabelledNodeIterator.LabelledArcIterator) current).label();
+        }
+    }
+}
@@ -147,10 +147,14 @@ public class SwhUnidirectionalGraph extends ImmutableGraph implements SwhGraph {
         return loadLabelled(LoadMethod.OFFLINE, path, null, null);
     }
 
+    /**
+     * Returns a lightweight duplicate of the graph that can be traversed independently by another
+     * thread. The (thread-safe) {@link SwhGraphProperties} are shared with the duplicate.
+     */
     @Override
     public SwhUnidirectionalGraph copy() {
         return new SwhUnidirectionalGraph(this.graph.copy(),
-                this.labelledGraph != null ? this.labelledGraph.copy() : null, this.properties.copy());
+                this.labelledGraph != null ? this.labelledGraph.copy() : null, this.properties);
     }
 
     @Override
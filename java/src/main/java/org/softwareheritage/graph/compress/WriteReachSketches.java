@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.compress;
+
+import com.martiansoftware.jsap.*;
+import it.unimi.dsi.big.webgraph.LazyLongIterator;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.logging.ProgressLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.softwareheritage.graph.AllowedNodes;
+import org.softwareheritage.graph.SwhBidirectionalGraph;
+import org.softwareheritage.graph.SwhType;
+import org.softwareheritage.graph.maps.ReachSketches;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+/**
+ * Compute the {@link ReachSketches reachability sketches} of all the nodes of the graph.
+ * <p>
+ * As the forward graph is a DAG, the sketch of a node is simply the union (register-wise maximum)
+ * of the sketches of its successors, plus the node itself. The sketches are thus computed in
+ * reverse topological order, using Kahn's algorithm on the transposed graph: a node is ready as soon
+ * as all its successors have been processed, which is tracked by a counter of unprocessed
+ * successors per node. The ready nodes are processed by fork-join tasks, each thread using its own
+ * copy of the graph and writing the sketches directly to the memory-mapped output file. A task
+ * keeps processing the nodes that its own nodes make ready, and only forks them as new tasks (which
+ * idle threads steal) when they are numerous or when threads are idle: there is no synchronization
+ * between the levels of the topological order, whose number is that of the longest path of the
+ * graph.
+ * <p>
+ * The output file holds 2<sup>precision</sup> bytes per node and sketched type, so the precision and
+ * the sketched types should be chosen according to the size of the graph.
+ */
+public class WriteReachSketches {
+    final static Logger logger = LoggerFactory.getLogger(WriteReachSketches.class);
+
+    /** Default precision of the sketches */
+    public static final int DEFAULT_PRECISION = 6;
+    /** Default node types whose reachable nodes are sketched */
+    public static final String DEFAULT_TYPES = "cnt,dir,rev";
+    /** Maximum number of nodes processed by a single task */
+    private static final int CHUNK_SIZE = 1 << 16;
+    /** Maximum size of a mapped segment of the output file */
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+    /** Number of counters per segment of {@link #remaining} */
+    private static final int COUNTER_SEGMENT_SIZE = 1 << 30;
+
+    private final SwhBidirectionalGraph graph;
+    private final int precision;
+    private final int numRegisters;
+    private final int typeMask;
+    /** For each node type, the index of its sketch among the sketches of a node, or -1 */
+    private final int[] typeSlots = new int[SwhType.values().length];
+    /** Size of all the sketches of a node, in bytes */
+    private final int blockSize;
+    private final ThreadLocal<SwhBidirectionalGraph> threadGraph;
+    private final ThreadLocal<byte[]> threadBlock;
+
+    private MappedByteBuffer[] segments;
+    private long segmentSize;
+    /** Number of unprocessed successors of each node */
+    private AtomicIntegerArray[] remaining;
+    private ProgressLogger pl;
+    private AtomicLong processed;
+
+    /**
+     * @param graph the graph whose sketches are computed
+     * @param precision the precision of the sketches, i.e., the base-2 logarithm of their number of
+     *            registers
+     * @param types the types of the reachable nodes to sketch, as a node type restriction string
+     */
+    public WriteReachSketches(SwhBidirectionalGraph graph, int precision, String types) {
+        if (precision < ReachSketches.MIN_PRECISION || precision > ReachSketches.MAX_PRECISION) {
+            throw new IllegalArgumentException("Sketch precision must be between " + ReachSketches.MIN_PRECISION
+                    + " and " + ReachSketches.MAX_PRECISION);
+        }
+        this.graph = graph;
+        this.precision = precision;
+        this.numRegisters = 1 << precision;
+        AllowedNodes allowedTypes = new AllowedNodes(types);
+        int mask = 0;
+        int slot = 0;
+        for (SwhType type : SwhType.values()) {
+            int typeInt = SwhType.toInt(type);
+            if (allowedTypes.isAllowed(type)) {
+                mask |= 1 << typeInt;
+                typeSlots[typeInt] = slot++;
+            } else {
+                typeSlots[typeInt] = -1;
+            }
+        }
+        if (slot == 0) {
+            throw new IllegalArgumentException("No node type to sketch");
+        }
+        this.typeMask = mask;
+        this.blockSize = slot * numRegisters;
+        this.threadGraph = ThreadLocal.withInitial(graph::copy);
+        this.threadBlock = ThreadLocal.withInitial(() -> new byte[blockSize]);
+    }
+
+    private static JSAPResult parseArgs(String[] args) {
+        JSAPResult config = null;
+        try {
+            SimpleJSAP jsap = new SimpleJSAP(WriteReachSketches.class.getName(), "", new Parameter[]{
+                    new UnflaggedOption("graphBasename", JSAP.STRING_PARSER, JSAP.REQUIRED,
+                            "Basename of the compressed graph"),
+                    new FlaggedOption("precision", JSAP.INTEGER_PARSER, String.valueOf(DEFAULT_PRECISION),
+                            JSAP.NOT_REQUIRED, 'p', "precision",
+                            "Base-2 logarithm of the number of registers of each sketch"),
+                    new FlaggedOption("types", JSAP.STRING_PARSER, DEFAULT_TYPES, JSAP.NOT_REQUIRED, 't', "types",
+                            "Types of the reachable nodes to sketch, comma separated"),
+                    new FlaggedOption("output", JSAP.STRING_PARSER, null, JSAP.NOT_REQUIRED, 'o', "output",
+                            "Output file (default: <graphBasename>" + ReachSketches.REACH_SKETCH + ")"),});
+            config = jsap.parse(args);
+            if (jsap.messagePrinted()) {
+                System.exit(1);
+            }
+        } catch (JSAPException e) {
+            System.err.println("Usage error: " + e.getMessage());
+            System.exit(1);
+        }
+        return config;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        JSAPResult parsedArgs = parseArgs(args);
+        String graphBasename = parsedArgs.getString("graphBasename");
+        String output = parsedArgs.getString("output", graphBasename + ReachSketches.REACH_SKETCH);
+
+        logger.info("Loading graph");
+        SwhBidirectionalGraph graph = SwhBidirectionalGraph.loadMapped(graphBasename);
+        new WriteReachSketches(graph, parsedArgs.getInt("precision"), parsedArgs.getString("types")).write(output);
+    }
+
+    /** Compute the sketches of all the nodes and write them to the given file. */
+    public void write(String outputPath) throws IOException, InterruptedException {
+        long numNodes = graph.numNodes();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try (RandomAccessFile raf = new RandomAccessFile(outputPath, "rw")) {
+            raf.setLength(0);
+            raf.setLength(ReachSketches.HEADER_SIZE + numNodes * blockSize);
+            raf.write(new byte[]{ReachSketches.VERSION, (byte) precision, (byte) typeMask});
+            mapSegments(raf.getChannel(), numNodes);
+
+            List<LongArrayList> leaves = initCounters(pool, numNodes);
+
+            pl = new ProgressLogger(logger, 10, TimeUnit.SECONDS);
+            pl.itemsName = "nodes";
+            pl.expectedUpdates = numNodes;
+            pl.start("Computing reachability sketches");
+            processed = new AtomicLong(0);
+            pool.invoke(new CountedCompleter<Void>() {
+                @Override
+                public void compute() {
+                    for (LongArrayList chunk : leaves) {
+                        addToPendingCount(1);
+                        new ChunkTask(this, chunk).fork();
+                    }
+                    tryComplete();
+                }
+            });
+            pl.done();
+
+            if (processed.get() < numNodes) {
+                logger.warn("{} nodes are part of a cycle and have an empty sketch", numNodes - processed.get());
+            }
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        } finally {
+            pool.shutdown();
+            segments = null;
+            remaining = null;
+            pl = null;
+        }
+    }
+
+    private void mapSegments(FileChannel channel, long numNodes) throws IOException {
+        // Segments hold a whole number of blocks, so that the sketches of a node are never split.
+        segmentSize = MAX_SEGMENT_SIZE / blockSize * blockSize;
+        long totalSize = numNodes * blockSize;
+        int numSegments = (int) ((totalSize + segmentSize - 1) / segmentSize);
+        segments = new MappedByteBuffer[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            long start = i * segmentSize;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, ReachSketches.HEADER_SIZE + start,
+                    Math.min(segmentSize, totalSize - start));
+        }
+    }
+
+    /**
+     * Initialize the counters of unprocessed successors, and return the nodes without successors,
+     * which are ready to be processed.
+     */
+    private List<LongArrayList> initCounters(ForkJoinPool pool, long numNodes) throws InterruptedException {
+        int numCounterSegments = (int) ((numNodes + COUNTER_SEGMENT_SIZE - 1) / COUNTER_SEGMENT_SIZE);
+        remaining = new AtomicIntegerArray[numCounterSegments];
+        for (int i = 0; i < numCounterSegments; i++) {
+            remaining[i] = new AtomicIntegerArray(
+                    (int) Math.min(COUNTER_SEGMENT_SIZE, numNodes - (long) i * COUNTER_SEGMENT_SIZE));
+        }
+        List<LongArrayList> leaves = Collections.synchronizedList(new ArrayList<>());
+        long numChunks = (numNodes + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        try {
+            pool.submit(() -> LongStream.range(0, numChunks).parallel().forEach(chunk -> {
+                SwhBidirectionalGraph g = threadGraph.get();
+                LongArrayList chunkLeaves = new LongArrayList();
+                long end = Math.min((chunk + 1) * CHUNK_SIZE, numNodes);
+                for (long node = chunk * CHUNK_SIZE; node < end; node++) {
+                    long outdegree = g.outdegree(node);
+                    if (outdegree == 0) {
+                        chunkLeaves.add(node);
+                    } else {
+                        remaining[(int) (node / COUNTER_SEGMENT_SIZE)].set((int) (node % COUNTER_SEGMENT_SIZE),
+                                (int) Math.min(outdegree, Integer.MAX_VALUE));
+                    }
+                }
+                if (!chunkLeaves.isEmpty()) {
+                    leaves.add(chunkLeaves);
+                }
+            })).get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+        return leaves;
+    }
+
+    /**
+     * Task computing the sketches of a chunk of ready nodes, then of the predecessors that they make
+     * ready, until there are none left.
+     */
+    private class ChunkTask extends CountedCompleter<Void> {
+        private LongArrayList chunk;
+
+        ChunkTask(CountedCompleter<?> parent, LongArrayList chunk) {
+            super(parent);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public void compute() {
+            SwhBidirectionalGraph g = threadGraph.get();
+            byte[] block = threadBlock.get();
+            long done = 0;
+            while (!chunk.isEmpty()) {
+                LongArrayList ready = new LongArrayList();
+                for (int i = 0; i < chunk.size(); i++) {
+                    long node = chunk.getLong(i);
+                    computeSketches(g, node, block);
+                    writeBlock(node, block);
+
+                    LazyLongIterator predecessors = g.getBackwardGraph().successors(node);
+                    for (long pred; (pred = predecessors.nextLong()) != -1;) {
+                        if (remaining[(int) (pred / COUNTER_SEGMENT_SIZE)]
+                                .decrementAndGet((int) (pred % COUNTER_SEGMENT_SIZE)) == 0) {
+                            ready.add(pred);
+                            if (ready.size() >= CHUNK_SIZE) {
+                                forkChunk(ready);
+                                ready = new LongArrayList();
+                            }
+                        }
+                    }
+                }
+                done += chunk.size();
+                if (done >= CHUNK_SIZE) {
+                    updateProgress(done);
+                    done = 0;
+                }
+                if (ready.size() > 1 && getSurplusQueuedTaskCount() <= 0) {
+                    // Other threads are likely idle: give them half of the ready nodes
+                    int half = ready.size() / 2;
+                    forkChunk(new LongArrayList(ready.subList(half, ready.size())));
+                    ready.size(half);
+                }
+                chunk = ready;
+            }
+            updateProgress(done);
+            tryComplete();
+        }
+
+        private void forkChunk(LongArrayList nodes) {
+            addToPendingCount(1);
+            new ChunkTask(this, nodes).fork();
+        }
+    }
+
+    private void updateProgress(long done) {
+        processed.addAndGet(done);
+        synchronized (pl) {
+            pl.update(done);
+        }
+    }
+
+    /** Compute the sketches of a node from the (already written) sketches of its successors. */
+    private void computeSketches(SwhBidirectionalGraph g, long node, byte[] block) {
+        Arrays.fill(block, (byte) 0);
+        int slot = typeSlots[SwhType.toInt(g.getNodeType(node))];
+        if (slot >= 0) {
+            long hash = ReachSketches.hash(node);
+            block[slot * numRegisters + ReachSketches.registerIndex(hash, precision)] = ReachSketches
+                    .registerValue(hash, precision);
+        }
+        LazyLongIterator successors = g.getForwardGraph().successors(node);
+        for (long succ; (succ = successors.nextLong()) != -1;) {
+            MappedByteBuffer segment = segments[(int) (succ * blockSize / segmentSize)];
+            int offset = (int) (succ * blockSize % segmentSize);
+            for (int i = 0; i < blockSize; i++) {
+                byte register = segment.get(offset + i);
+                if (register > block[i]) {
+                    block[i] = register;
+                }
+            }
+        }
+    }
+
+    private void writeBlock(long node, byte[] block) {
+        MappedByteBuffer segment = segments[(int) (node * blockSize / segmentSize)];
+        int offset = (int) (node * blockSize % segmentSize);
+        for (int i = 0; i < blockSize; i++) {
+            segment.put(offset + i, block[i]);
+        }
+    }
+}
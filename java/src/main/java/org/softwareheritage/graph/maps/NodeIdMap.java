@@ -10,17 +10,22 @@ package org.softwareheritage.graph.maps;
 import it.unimi.dsi.fastutil.Size64;
 import it.unimi.dsi.fastutil.bytes.ByteBigList;
 import it.unimi.dsi.fastutil.bytes.ByteMappedBigList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import it.unimi.dsi.fastutil.io.BinIO;
 import it.unimi.dsi.fastutil.longs.LongBigList;
 import it.unimi.dsi.fastutil.longs.LongMappedBigList;
 import it.unimi.dsi.fastutil.objects.Object2LongFunction;
+import org.softwareheritage.graph.BinarySWHID;
 import org.softwareheritage.graph.SWHID;
+import org.softwareheritage.graph.SwhType;
 import org.softwareheritage.graph.compress.NodeMapBuilder;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.stream.IntStream;
 
 /**
  * Mapping between internal long node id and external SWHID.
@@ -39,6 +44,9 @@ public class NodeIdMap implements Size64 {
     /** Fixed length of binary SWHID buffer */
     public static final int SWHID_BIN_SIZE = 22;
 
+    /** Number of SWHIDs handled by each parallel task of {@link #getNodeIds(ByteBuffer, long[])} */
+    static final int BATCH_CHUNK_SIZE = 4096;
+
     /** File extension for the long node id to SWHID map */
     public static final String NODE_TO_SWHID = ".node2swhid.bin";
 
@@ -166,6 +174,121 @@ public class NodeIdMap implements Size64 {
         return getNodeId(swhid, true);
     }
 
+    /**
+     * Converts many binary SWHIDs to the corresponding long node ids at once.
+     * <p>
+     * This is much faster than calling {@link #getNodeId(SWHID)} on each SWHID of a large batch: the
+     * SWHIDs are hashed in parallel, then the .order file is read in increasing position order and
+     * the node -> SWHID map in increasing node id order, which keeps the accesses to the mmap()-ed
+     * files mostly sequential. The existence of each SWHID is checked by comparing its binary form
+     * directly with the node -> SWHID map, without creating any object.
+     *
+     * @param swhids buffer containing the SWHIDs in compact binary form (see {@link SWHID#toBytes()}),
+     *            {@link #SWHID_BIN_SIZE} bytes each, starting at index 0. It is only read with absolute
+     *            accesses, and must not be modified during the call.
+     * @param nodeIds array filled with the node id of each SWHID, or -1 if the SWHID is not in the
+     *            graph. Its length is the number of SWHIDs to convert.
+     * @return the number of SWHIDs that are not in the graph
+     */
+    public long getNodeIds(ByteBuffer swhids, long[] nodeIds) {
+        int n = nodeIds.length;
+        if ((long) n * SWHID_BIN_SIZE > swhids.limit()) {
+            throw new IllegalArgumentException(
+                    "Buffer of " + swhids.limit() + " bytes is too small for " + n + " binary SWHIDs");
+        }
+        int numChunks = (n + BATCH_CHUNK_SIZE - 1) / BATCH_CHUNK_SIZE;
+        long numOrigNodes = orderMap.size64();
+
+        // 1. Hash the SWHIDs with the MPH to get their original ids
+        IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+            byte[] bin = new byte[SWHID_BIN_SIZE];
+            byte[] text = new byte[SWHID.STRING_LENGTH];
+            for (int i = chunk * BATCH_CHUNK_SIZE; i < Math.min(n, (chunk + 1) * BATCH_CHUNK_SIZE); i++) {
+                for (int j = 0; j < SWHID_BIN_SIZE; j++) {
+                    bin[j] = swhids.get(i * SWHID_BIN_SIZE + j);
+                }
+                if (bin[1] < 0 || bin[1] >= SwhType.values().length) {
+                    nodeIds[i] = -1;
+                    continue;
+                }
+                SWHID.bytesToAscii(bin, 0, text, 0);
+                long origNodeId = mph.getLong(text);
+                nodeIds[i] = (origNodeId >= 0 && origNodeId < numOrigNodes) ? origNodeId : -1;
+            }
+        });
+
+        // 2. Use the order permutation to get the positions in the permuted graph, in original id order
+        int[] byOrigNodeId = sortedPermutation(nodeIds);
+        IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+            for (int k = chunk * BATCH_CHUNK_SIZE; k < Math.min(n, (chunk + 1) * BATCH_CHUNK_SIZE); k++) {
+                int i = byOrigNodeId[k];
+                if (nodeIds[i] >= 0) {
+                    nodeIds[i] = orderMap.getLong(nodeIds[i]);
+                }
+            }
+        });
+
+        // 3. Check that the positions correspond to the input SWHIDs using the reverse map, in node id
+        // order. This is necessary because the MPH makes no guarantees on SWHIDs that are not in the graph.
+        int[] byNodeId = sortedPermutation(nodeIds);
+        return IntStream.range(0, numChunks).parallel().mapToLong(chunk -> {
+            long missing = 0;
+            for (int k = chunk * BATCH_CHUNK_SIZE; k < Math.min(n, (chunk + 1) * BATCH_CHUNK_SIZE); k++) {
+                int i = byNodeId[k];
+                if (nodeIds[i] < 0 || !swhidEquals(nodeIds[i], swhids, i * SWHID_BIN_SIZE)) {
+                    nodeIds[i] = -1;
+                    missing++;
+                }
+            }
+            return missing;
+        }).sum();
+    }
+
+    /**
+     * Converts many binary SWHIDs to the corresponding long node ids at once.
+     *
+     * @param swhids SWHIDs in compact binary form (see {@link SWHID#toBytes()})
+     * @param nodeIds array of the same length as {@code swhids}, filled with the node id of each SWHID,
+     *            or -1 if the SWHID is not in the graph
+     * @return the number of SWHIDs that are not in the graph
+     * @see #getNodeIds(ByteBuffer, long[])
+     */
+    public long getNodeIds(byte[][] swhids, long[] nodeIds) {
+        if (swhids.length != nodeIds.length) {
+            throw new IllegalArgumentException("Got " + swhids.length + " SWHIDs but " + nodeIds.length
+                    + " node ids");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(swhids.length * SWHID_BIN_SIZE);
+        for (byte[] swhid : swhids) {
+            if (swhid.length != SWHID_BIN_SIZE) {
+                throw new IllegalArgumentException("Binary SWHIDs should be " + SWHID_BIN_SIZE + " bytes long");
+            }
+            buffer.put(swhid);
+        }
+        return getNodeIds(buffer, nodeIds);
+    }
+
+    /** Returns the indices of {@code values}, sorted by increasing value. */
+    private static int[] sortedPermutation(long[] values) {
+        int[] perm = new int[values.length];
+        for (int i = 0; i < perm.length; i++) {
+            perm[i] = i;
+        }
+        IntArrays.parallelQuickSort(perm, (a, b) -> Long.compare(values[a], values[b]));
+        return perm;
+    }
+
+    /** Returns whether the SWHID of a node is the binary SWHID at a given index of a buffer. */
+    private boolean swhidEquals(long nodeId, ByteBuffer swhids, int index) {
+        long offset = nodeId * SWHID_BIN_SIZE;
+        for (int j = 0; j < SWHID_BIN_SIZE; j++) {
+            if (nodeToSwhMap.getByte(offset + j) != swhids.get(index + j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Converts a node long id to corresponding SWHID.
      *
@@ -174,18 +297,66 @@ public class NodeIdMap implements Size64 {
      * @see SWHID
      */
     public SWHID getSWHID(long nodeId) {
+        byte[] swhid = new byte[SWHID_BIN_SIZE];
+        getSWHIDBytes(nodeId, swhid, 0);
+        return SWHID.fromBytes(swhid);
+    }
+
+    /**
+     * Converts a node long id to corresponding SWHID, in compact binary form.
+     *
+     * @param nodeId node as a long id
+     * @return corresponding node as a {@link BinarySWHID}
+     */
+    public BinarySWHID getBinarySWHID(long nodeId) {
+        byte[] swhid = new byte[SWHID_BIN_SIZE];
+        getSWHIDBytes(nodeId, swhid, 0);
+        return BinarySWHID.fromBytes(swhid, 0);
+    }
+
+    /**
+     * Copies the SWHID of a node, in compact binary form (see {@link SWHID#toBytes()}), to an array.
+     *
+     * @param nodeId node as a long id
+     * @param dst array to which the {@link #SWHID_BIN_SIZE} bytes of the SWHID are written
+     * @param offset offset in {@code dst} at which the SWHID is written
+     */
+    public void getSWHIDBytes(long nodeId, byte[] dst, int offset) {
         /*
          * Each line in NODE_TO_SWHID is formatted as: swhid The file is ordered by nodeId, meaning node0's
          * swhid is at line 0, hence we can read the nodeId-th line to get corresponding swhid
          */
-        if (nodeId < 0 || nodeId >= nodeToSwhMap.size64()) {
-            throw new IllegalArgumentException(
-                    "Node id " + nodeId + " should be between 0 and " + nodeToSwhMap.size64());
+        long position = getSWHIDPosition(nodeId);
+        // Absolute reads only (getElements() moves the position of the shared mapped buffers), so that
+        // the map can be used concurrently by all the threads of a server.
+        for (int i = 0; i < SWHID_BIN_SIZE; i++) {
+            dst[offset + i] = nodeToSwhMap.getByte(position + i);
         }
+    }
 
-        byte[] swhid = new byte[SWHID_BIN_SIZE];
-        nodeToSwhMap.getElements(nodeId * SWHID_BIN_SIZE, swhid, 0, SWHID_BIN_SIZE);
-        return SWHID.fromBytes(swhid);
+    /**
+     * Writes the string representation of the SWHID of a node as ASCII bytes, directly from the
+     * node -> SWHID map.
+     *
+     * @param nodeId node as a long id
+     * @param dst array to which the {@link SWHID#STRING_LENGTH} bytes of the SWHID are written
+     * @param offset offset in {@code dst} at which the SWHID is written
+     */
+    public void getSWHIDAscii(long nodeId, byte[] dst, int offset) {
+        long position = getSWHIDPosition(nodeId);
+        SWHID.writeAsciiHeader(nodeToSwhMap.getByte(position), nodeToSwhMap.getByte(position + 1), dst, offset);
+        for (int i = 0; i < SWHID_BIN_SIZE - 2; i++) {
+            SWHID.writeAsciiHex(nodeToSwhMap.getByte(position + 2 + i), dst, offset + 10 + 2 * i);
+        }
+    }
+
+    /** Returns the position of the SWHID of a node in the node -> SWHID map. */
+    private long getSWHIDPosition(long nodeId) {
+        long numNodes = nodeToSwhMap.size64() / SWHID_BIN_SIZE;
+        if (nodeId < 0 || nodeId >= numNodes) {
+            throw new IllegalArgumentException("Node id " + nodeId + " should be between 0 and " + numNodes);
+        }
+        return nodeId * SWHID_BIN_SIZE;
     }
 
     /** Return the number of nodes in the map. */
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.maps;
+
+import it.unimi.dsi.fastutil.bytes.ByteMappedBigList;
+import org.softwareheritage.graph.AllowedNodes;
+import org.softwareheritage.graph.SwhType;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Precomputed HyperLogLog sketches of the set of nodes reachable from each node of the graph.
+ * <p>
+ * The sketches are computed by {@link org.softwareheritage.graph.compress.WriteReachSketches} and
+ * stored in a memory-mapped file. The file starts with a header of {@link #HEADER_SIZE} bytes: the
+ * format version, the precision <i>p</i> of the sketches, and a bitmask of the node types that are
+ * sketched (bit {@link SwhType#toInt(SwhType)} of the mask is set for each of them). It is followed
+ * by the sketches of each node, in node id order. A node has one sketch per sketched type, in
+ * ascending type order, counting the reachable nodes of that type (including the node itself).
+ * Each sketch has 2<sup>p</sup> one-byte registers.
+ * <p>
+ * The relative standard error of the estimates is about 1.04 / sqrt(2<sup>p</sup>).
+ */
+public class ReachSketches {
+    /** File extension of the reachability sketches */
+    public static final String REACH_SKETCH = ".property.reach_sketch.bin";
+    /** Version of the file format */
+    public static final byte VERSION = 1;
+    /** Size of the file header, in bytes */
+    public static final int HEADER_SIZE = 8;
+    /** Minimum precision of the sketches */
+    public static final int MIN_PRECISION = 4;
+    /** Maximum precision of the sketches */
+    public static final int MAX_PRECISION = 16;
+
+    private final ByteMappedBigList registers;
+    private final int precision;
+    private final int numRegisters;
+    /** For each node type, the index of its sketch among the sketches of a node, or -1 */
+    private final int[] typeSlots = new int[SwhType.values().length];
+    private final int sketchesPerNode;
+
+    /**
+     * Constructor.
+     *
+     * @param path path of the sketch file
+     */
+    public ReachSketches(String path) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(path, "r")) {
+            registers = ByteMappedBigList.map(raf.getChannel());
+        }
+        if (registers.size64() < HEADER_SIZE || registers.getByte(0) != VERSION) {
+            throw new IOException("Unsupported reachability sketch file: " + path);
+        }
+        precision = registers.getByte(1);
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IOException("Invalid sketch precision: " + precision);
+        }
+        numRegisters = 1 << precision;
+        int typeMask = registers.getByte(2);
+        int slot = 0;
+        for (int type = 0; type < typeSlots.length; type++) {
+            typeSlots[type] = ((typeMask >>> type) & 1) != 0 ? slot++ : -1;
+        }
+        sketchesPerNode = slot;
+    }
+
+    /** Return the precision of the sketches, i.e., the base-2 logarithm of their number of registers. */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /** Return the relative standard error of the estimates. */
+    public double getRelativeError() {
+        return 1.04 / Math.sqrt(numRegisters);
+    }
+
+    /** Return whether the reachable nodes of a given type are sketched. */
+    public boolean isSketched(SwhType type) {
+        return typeSlots[SwhType.toInt(type)] >= 0;
+    }
+
+    /**
+     * Estimate the number of nodes reachable from a given node (including itself) whose type is
+     * allowed.
+     *
+     * @param nodeId the node from which reachable nodes are counted
+     * @param types the types of the nodes to count. If null or unrestricted, all the sketched types are
+     *            counted.
+     * @return the estimated number of reachable nodes
+     * @throws IllegalArgumentException if one of the allowed types is not sketched
+     */
+    public double estimate(long nodeId, AllowedNodes types) {
+        boolean allTypes = types == null || types.restrictedTo == null;
+        double total = 0;
+        for (SwhType type : SwhType.values()) {
+            int slot = typeSlots[SwhType.toInt(type)];
+            if (!allTypes && !types.isAllowed(type)) {
+                continue;
+            }
+            if (slot < 0) {
+                if (allTypes) {
+                    continue;
+                }
+                throw new IllegalArgumentException("Reachable nodes of type " + type + " are not sketched");
+            }
+            total += estimate(nodeId, slot);
+        }
+        return total;
+    }
+
+    private double estimate(long nodeId, int slot) {
+        long offset = sketchOffset(nodeId, slot, numRegisters, sketchesPerNode);
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < numRegisters; i++) {
+            byte register = registers.getByte(offset + i);
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        return estimate(sum, zeros, numRegisters);
+    }
+
+    /**
+     * Return the HyperLogLog estimate of a sketch (Flajolet et al., "HyperLogLog: the analysis of a
+     * near-optimal cardinality estimation algorithm", 2007), with the linear counting correction for
+     * small cardinalities. The hashes are 64-bit wide, so no correction is needed for large ones.
+     *
+     * @param sum the sum of 2<sup>-r</sup> over all the registers r of the sketch
+     * @param zeros the number of registers equal to zero
+     * @param numRegisters the number of registers of the sketch
+     */
+    static double estimate(double sum, int zeros, int numRegisters) {
+        double alpha;
+        switch (numRegisters) {
+            case 16:
+                alpha = 0.673;
+                break;
+            case 32:
+                alpha = 0.697;
+                break;
+            case 64:
+                alpha = 0.709;
+                break;
+            default:
+                alpha = 0.7213 / (1 + 1.079 / numRegisters);
+        }
+        double estimate = alpha * numRegisters * numRegisters / sum;
+        if (estimate <= 2.5 * numRegisters && zeros > 0) {
+            estimate = numRegisters * Math.log((double) numRegisters / zeros);
+        }
+        return estimate;
+    }
+
+    /** Return the offset of a sketch in the sketch file. */
+    public static long sketchOffset(long nodeId, int slot, int numRegisters, int sketchesPerNode) {
+        return HEADER_SIZE + (nodeId * sketchesPerNode + slot) * numRegisters;
+    }
+
+    /** Return the 64-bit hash of a node, which determines the register it updates in a sketch. */
+    public static long hash(long nodeId) {
+        // Finalization step of MurmurHash3, offset so that node 0 does not hash to 0
+        long h = nodeId + 0x9e3779b97f4a7c15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53ec873L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** Return the index of the register updated by a hash in a sketch of the given precision. */
+    public static int registerIndex(long hash, int precision) {
+        return (int) (hash >>> (64 - precision));
+    }
+
+    /**
+     * Return the value a hash stores in its register, i.e., the position of the leftmost 1 bit in the
+     * bits of the hash that are not used by the register index.
+     */
+    public static byte registerValue(long hash, int precision) {
+        return (byte) Math.min(Long.numberOfLeadingZeros(hash << precision) + 1, 64 - precision + 1);
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.*;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server interceptor shedding the traversal load of the server, based on the number of edges
+ * accessed by the traversals.
+ * <p>
+ * The cost of a traversal is the number of edges it accesses, which is not known in advance: the
+ * interceptor stores a {@link CallBudget} in the gRPC context of each traversal call, which the
+ * traversal (see {@link Traversal.BFSVisitor}) charges with its accessed edges while it runs.
+ * Charges are drawn from a global token bucket refilled at a given rate of edges per second, and
+ * from a similar bucket per client. Buckets can go into debt: while the global bucket or the bucket
+ * of the client is in debt, new traversal calls are rejected with {@code RESOURCE_EXHAUSTED}, and
+ * the {@code grpc-retry-pushback-ms} trailer tells when the debt will be repaid. The cheap calls
+ * (GetNode, Stats, etc.) are always admitted.
+ * <p>
+ * Clients are identified by their remote address. As any caller can set request headers, the
+ * {@code swh-graph-client} request header overrides the remote address only in the calls of trusted
+ * proxies (e.g., a proxy forwarding the requests of several users), whose addresses are given to the
+ * constructor. The buckets of the least recently seen clients are dropped once there are more than
+ * {@value #MAX_CLIENT_BUCKETS} of them.
+ * <p>
+ * The interceptor also imposes a server-side ceiling on the number of edges accessed by each
+ * traversal, applied to the requests without max_edges or with a larger one.
+ */
+public class AdmissionControl implements ServerInterceptor {
+    private static final Context.Key<CallBudget> BUDGET = Context.key("swh-graph-budget");
+
+    /** Request header identifying the client, overriding its remote address in the calls of trusted proxies */
+    public static final Metadata.Key<String> CLIENT = Metadata.Key.of("swh-graph-client",
+            Metadata.ASCII_STRING_MARSHALLER);
+    /** Number of milliseconds after which a rejected call can be retried */
+    public static final Metadata.Key<String> RETRY_PUSHBACK_MS = Metadata.Key.of("grpc-retry-pushback-ms",
+            Metadata.ASCII_STRING_MARSHALLER);
+
+    /** Full names of the methods that traverse the graph, and are subject to admission control */
+    private static final Set<String> TRAVERSAL_METHODS = Set.of(
+            TraversalServiceGrpc.getTraverseMethod().getFullMethodName(),
+            TraversalServiceGrpc.getTraverseBatchedMethod().getFullMethodName(),
+            TraversalServiceGrpc.getFindPathToMethod().getFullMethodName(),
+            TraversalServiceGrpc.getFindPathBetweenMethod().getFullMethodName(),
+            TraversalServiceGrpc.getCountNodesMethod().getFullMethodName(),
+            TraversalServiceGrpc.getCountEdgesMethod().getFullMethodName());
+    /** Maximum number of client buckets, the least recently used ones being dropped first */
+    static final int MAX_CLIENT_BUCKETS = 1024;
+    /** Address of trusted proxy matching all the remote addresses */
+    public static final String ALL_PROXIES = "*";
+
+    private final EdgeBucket globalBucket;
+    private final double clientEdgeRate;
+    private final long maxEdges;
+    private final Set<String> trustedProxies;
+    /** Buckets of the clients, in access order */
+    private final LinkedHashMap<String, EdgeBucket> clientBuckets = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, EdgeBucket> eldest) {
+            return size() > MAX_CLIENT_BUCKETS;
+        }
+    };
+    private final AtomicLong edgesInFlight = new AtomicLong();
+    private final AtomicLong activeCalls = new AtomicLong();
+    private final AtomicLong rejectedCalls = new AtomicLong();
+
+    /**
+     * @param globalEdgeRate the number of edges per second that all the traversals can access, or 0
+     *            for no global limit
+     * @param clientEdgeRate the number of edges per second that the traversals of a single client can
+     *            access, or 0 for no per-client limit
+     * @param maxEdges the maximum number of edges accessed by a single traversal, or -1 for no ceiling
+     */
+    public AdmissionControl(double globalEdgeRate, double clientEdgeRate, long maxEdges) {
+        this(globalEdgeRate, clientEdgeRate, maxEdges, Set.of());
+    }
+
+    /**
+     * @param globalEdgeRate the number of edges per second that all the traversals can access, or 0
+     *            for no global limit
+     * @param clientEdgeRate the number of edges per second that the traversals of a single client can
+     *            access, or 0 for no per-client limit
+     * @param maxEdges the maximum number of edges accessed by a single traversal, or -1 for no ceiling
+     * @param trustedProxies the remote addresses whose {@link #CLIENT} header is trusted, or
+     *            {@link #ALL_PROXIES} to trust it from any address
+     */
+    public AdmissionControl(double globalEdgeRate, double clientEdgeRate, long maxEdges, Set<String> trustedProxies) {
+        if (globalEdgeRate < 0 || clientEdgeRate < 0) {
+            throw new IllegalArgumentException("Edge rates must be positive (or 0 for no limit)");
+        }
+        this.globalBucket = globalEdgeRate > 0 ? new EdgeBucket(globalEdgeRate) : null;
+        this.clientEdgeRate = clientEdgeRate;
+        this.maxEdges = maxEdges;
+        this.trustedProxies = Set.copyOf(trustedProxies);
+    }
+
+    /** Return an admission control that admits all the calls and imposes no ceiling. */
+    public static AdmissionControl unlimited() {
+        return new AdmissionControl(0, 0, -1);
+    }
+
+    /** Return the budget of the current call, or null if it is not subject to admission control. */
+    static CallBudget currentBudget() {
+        return BUDGET.get();
+    }
+
+    /** Return the number of edges accessed so far by the traversals in progress. */
+    public long getEdgesInFlight() {
+        return edgesInFlight.get();
+    }
+
+    /** Return the number of traversal calls in progress. */
+    public long getActiveCalls() {
+        return activeCalls.get();
+    }
+
+    /** Return the number of traversal calls rejected since the server started. */
+    public long getRejectedCalls() {
+        return rejectedCalls.get();
+    }
+
+    /** Return the identifier of the client of a call. */
+    private String getClient(ServerCall<?, ?> call, Metadata headers) {
+        SocketAddress address = call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+        String remote = address instanceof InetSocketAddress
+                ? ((InetSocketAddress) address).getAddress().getHostAddress()
+                : String.valueOf(address);
+        String client = headers.get(CLIENT);
+        if (client != null && (trustedProxies.contains(remote) || trustedProxies.contains(ALL_PROXIES))) {
+            return client;
+        }
+        return remote;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+            ServerCallHandler<ReqT, RespT> next) {
+        if (!TRAVERSAL_METHODS.contains(call.getMethodDescriptor().getFullMethodName())) {
+            return next.startCall(call, headers);
+        }
+
+        EdgeBucket clientBucket = null;
+        if (clientEdgeRate > 0) {
+            String client = getClient(call, headers);
+            synchronized (clientBuckets) {
+                clientBucket = clientBuckets.computeIfAbsent(client, c -> new EdgeBucket(clientEdgeRate));
+            }
+        }
+        long retryAfterMs = Math.max(globalBucket != null ? globalBucket.getRetryAfterMs() : 0,
+                clientBucket != null ? clientBucket.getRetryAfterMs() : 0);
+        if (retryAfterMs > 0) {
+            rejectedCalls.incrementAndGet();
+            Metadata trailers = new Metadata();
+            trailers.put(RETRY_PUSHBACK_MS, Long.toString(retryAfterMs));
+            call.close(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Traversal budget exhausted, retry in " + retryAfterMs + " ms"), trailers);
+            return new ServerCall.Listener<>() {
+            };
+        }
+
+        CallBudget budget = new CallBudget(clientBucket);
+        activeCalls.incrementAndGet();
+        ServerCall.Listener<ReqT> listener = Contexts.interceptCall(Context.current().withValue(BUDGET, budget), call,
+                headers, next);
+        // Exactly one of onComplete() and onCancel() is eventually called, even if the call is cancelled while
+        // the traversal is running
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onComplete() {
+                budget.release();
+                super.onComplete();
+            }
+
+            @Override
+            public void onCancel() {
+                budget.release();
+                super.onCancel();
+            }
+        };
+    }
+
+    /**
+     * Token bucket of edges, refilled at a constant rate up to one second worth of edges. Charges are
+     * always accepted, and can put the bucket into debt.
+     */
+    static class EdgeBucket {
+        private final double rate;
+        private double available;
+        private long lastRefillNanos = System.nanoTime();
+
+        /** @param rate the number of edges per second added to the bucket */
+        EdgeBucket(double rate) {
+            this.rate = rate;
+            this.available = rate;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            available = Math.min(rate, available + (now - lastRefillNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = now;
+        }
+
+        /** Remove edges from the bucket. */
+        synchronized void charge(long edges) {
+            refill();
+            available -= edges;
+        }
+
+        /** Return the number of milliseconds until the bucket is out of debt, or 0 if it is not in debt. */
+        synchronized long getRetryAfterMs() {
+            refill();
+            return available >= 0 ? 0 : (long) Math.ceil(-available * 1000 / rate);
+        }
+
+        /** Return whether the bucket is full, i.e., whether it was not charged for at least a second. */
+        synchronized boolean isFull() {
+            refill();
+            return available >= rate;
+        }
+    }
+
+    /** Budget of a single traversal call, charged with the edges it accesses. */
+    class CallBudget {
+        private final EdgeBucket clientBucket;
+        private long charged = 0;
+        private boolean released = false;
+
+        private CallBudget(EdgeBucket clientBucket) {
+            this.clientBucket = clientBucket;
+        }
+
+        /** Return the maximum number of edges the traversal can access, or -1 if there is no ceiling. */
+        long getMaxEdges() {
+            return maxEdges;
+        }
+
+        /** Charge the call with a number of accessed edges. */
+        synchronized void charge(long edges) {
+            if (edges <= 0) {
+                return;
+            }
+            if (globalBucket != null) {
+                globalBucket.charge(edges);
+            }
+            if (clientBucket != null) {
+                clientBucket.charge(edges);
+            }
+            if (!released) {
+                charged += edges;
+                edgesInFlight.addAndGet(edges);
+            }
+        }
+
+        /** Remove the edges of the call from the edges in flight, once the call is over. */
+        private synchronized void release() {
+            if (!released) {
+                released = true;
+                edgesInFlight.addAndGet(-charged);
+                activeCalls.decrementAndGet();
+            }
+        }
+    }
+}
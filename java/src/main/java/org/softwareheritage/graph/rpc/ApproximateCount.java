@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.google.protobuf.FieldMask;
+import it.unimi.dsi.big.webgraph.LazyLongIterator;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+import org.softwareheritage.graph.AllowedEdges;
+import org.softwareheritage.graph.SwhBidirectionalGraph;
+import org.softwareheritage.graph.SwhType;
+import org.softwareheritage.graph.SwhUnidirectionalGraph;
+
+/**
+ * Approximate count of the nodes (or edges) returned by a traversal, used by CountNodes and
+ * CountEdges when {@code approximate} is set.
+ * <p>
+ * The traversal is first performed exactly, until it has accessed a given number of edges: small
+ * traversals are thus always counted exactly. If the traversal is larger than that, the count is
+ * estimated by sampling. Nodes are drawn uniformly from the whole graph, and each of them is
+ * checked for reachability with a backward traversal of the transposed graph, which stops as soon
+ * as it meets a node already visited by the (partial) forward traversal. The fraction of the
+ * samples that are reachable and returned, multiplied by the number of nodes of the graph, is an
+ * unbiased estimate of the count. Samples whose backward traversal is too large to be completed are
+ * counted as "maybe reachable", which widens the confidence interval instead of biasing the
+ * estimate.
+ * <p>
+ * The half-width of the 95% confidence interval is the largest of its normal approximation and of
+ * the one of a Wilson score interval on the fraction of counted samples, which stays meaningful when
+ * few (or none) of the samples are counted. Sampling stops as soon as at least one sample is counted
+ * and the half-width is below the requested relative error, when the traversal is interrupted, after
+ * {@link #MAX_SAMPLES} samples, or once the backward traversals of the samples have accessed
+ * {@link #DEFAULT_SAMPLING_EDGES} edges, so that an estimate whose samples are mostly undecided
+ * does not end up costing more than the exact count.
+ */
+class ApproximateCount implements AutoCloseable {
+    /** Default number of edges accessed by the exact traversal before switching to sampling. */
+    static final long DEFAULT_EXACT_EDGES = 1L << 24;
+    /** Default target relative error of the estimate. */
+    static final double DEFAULT_RELATIVE_ERROR = 0.05;
+    /** Default number of edges accessed by the backward traversals of all the samples. */
+    static final long DEFAULT_SAMPLING_EDGES = 4 * DEFAULT_EXACT_EDGES;
+    /** Maximum number of edges accessed by the backward traversal of a single sample. */
+    static final long SAMPLE_EDGES = 100_000;
+    /** Number of samples drawn before the confidence interval is first checked. */
+    static final int MIN_SAMPLES = 100;
+    /** Maximum number of samples. */
+    static final int MAX_SAMPLES = 1_000_000;
+    /** Quantile of the normal distribution giving a 95% confidence interval. */
+    private static final double Z_95 = 1.96;
+
+    private final TraversalRequest request;
+    private final boolean countEdges;
+    private final SwhUnidirectionalGraph g;
+    private final SwhUnidirectionalGraph transposed;
+    private final AllowedEdges allowedEdges;
+    private final Traversal.NodeFilterChecker returnChecker;
+    private final Traversal.SimpleTraversal traversal;
+    private final VisitedNodes sampleVisited;
+    private final LongArrayFIFOQueue sampleQueue = new LongArrayFIFOQueue();
+
+    private long exactCount = 0;
+    private long exactEdges = DEFAULT_EXACT_EDGES;
+    private long samplingEdges = DEFAULT_SAMPLING_EDGES;
+    private long sampledEdges = 0;
+    private long seed = System.nanoTime();
+
+    /**
+     * @param graph the graph to traverse
+     * @param request the traversal request, which must be {@linkplain #isSupported(TraversalRequest)
+     *            supported}
+     * @param countEdges whether to count the edges of the returned nodes instead of the nodes
+     */
+    ApproximateCount(SwhBidirectionalGraph graph, TraversalRequest request, boolean countEdges) {
+        this.request = request;
+        this.countEdges = countEdges;
+        this.g = Traversal.getDirectedGraph(graph, request.getDirection());
+        this.transposed = Traversal.getDirectedGraph(graph, Traversal.reverseDirection(request.getDirection()));
+        this.allowedEdges = new AllowedEdges(request.hasEdges() ? request.getEdges() : "*");
+        this.returnChecker = new Traversal.NodeFilterChecker(g, request.getReturnNodes());
+        FieldMask mask = countEdges
+                ? FieldMask.newBuilder().addPaths("num_successors").build()
+                : FieldMask.getDefaultInstance();
+        this.traversal = new Traversal.SimpleTraversal(graph, request.toBuilder().setMask(mask).build(),
+                countEdges ? n -> exactCount += n.getNumSuccessors() : n -> exactCount++);
+        this.sampleVisited = VisitedNodes.acquire(g.numNodes(), false);
+    }
+
+    /**
+     * Return whether the count of a traversal can be approximated. Traversals that depend on the
+     * depth of the nodes, on the number of accessed edges or on the number of successors of the
+     * returned nodes must be counted exactly, as well as pruned traversals, traversals filtered on edge
+     * labels and the traversals of symmetrized graphs with edge restrictions, whose edges cannot be
+     * checked in the transposed graph.
+     */
+    static boolean isSupported(TraversalRequest request) {
+        NodeFilter filter = request.getReturnNodes();
+        return !request.hasMinDepth() && !request.hasMaxDepth() && !request.hasMaxEdges()
+                && !filter.hasMinTraversalSuccessors() && !filter.hasMaxTraversalSuccessors() && !request.hasPrune()
+                && !request.hasEdgeLabelFilter()
+                && !(request.getDirection() == GraphDirection.BOTH && request.hasEdges());
+    }
+
+    /** Set the number of edges accessed by the exact traversal before switching to sampling. */
+    void setExactEdges(long edges) {
+        this.exactEdges = edges;
+    }
+
+    /** Set the number of edges accessed by the backward traversals of the samples before giving up. */
+    void setSamplingEdges(long edges) {
+        this.samplingEdges = edges;
+    }
+
+    /** Return the number of edges accessed by the backward traversals of the samples. */
+    long getSampledEdges() {
+        return sampledEdges;
+    }
+
+    /** Set the seed of the random generator used to draw the samples. */
+    void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /** Return the underlying exact traversal. */
+    Traversal.SimpleTraversal getTraversal() {
+        return traversal;
+    }
+
+    @Override
+    public void close() {
+        traversal.close();
+        sampleVisited.release();
+    }
+
+    /** Perform the count. */
+    CountResponse count() {
+        traversal.startClock();
+        try {
+            traversal.visitSetup();
+            while (!traversal.isFinished() && traversal.getEdgesAccessed() <= exactEdges) {
+                traversal.visitStep();
+            }
+            if (traversal.isFinished()) {
+                return CountResponse.newBuilder().setCount(exactCount)
+                        .setExact(traversal.getInterruption() == null).build();
+            }
+            return estimate();
+        } finally {
+            traversal.stopClock();
+        }
+    }
+
+    private CountResponse estimate() {
+        double relativeError = request.hasApproximateError()
+                ? request.getApproximateError()
+                : DEFAULT_RELATIVE_ERROR;
+        long numNodes = g.numNodes();
+        XoRoShiRo128PlusRandom random = new XoRoShiRo128PlusRandom(seed);
+        Samples samples = new Samples();
+        try {
+            while (samples.n < MAX_SAMPLES && sampledEdges <= samplingEdges) {
+                if (samples.n % Traversal.BFSVisitor.INTERRUPTION_CHECK_INTERVAL == 0) {
+                    traversal.checkInterrupted();
+                }
+                long node = random.nextLong(numNodes);
+                if (returnChecker.allowed(node)) {
+                    Boolean reachable = isReachable(node);
+                    double value = countEdges ? allowedOutdegree(node) : 1;
+                    samples.add(Boolean.TRUE.equals(reachable) ? value : 0,
+                            Boolean.FALSE.equals(reachable) ? 0 : value);
+                } else {
+                    samples.add(0, 0);
+                }
+                if (samples.n % MIN_SAMPLES == 0 && samples.hitsLow > 0
+                        && samples.getErrorBound() <= relativeError * samples.getMean()) {
+                    break;
+                }
+            }
+        } catch (Traversal.StopTraversalException e) {
+            // Interrupted: return the estimate computed from the samples drawn so far, if any.
+        }
+        CountResponse.Builder response = CountResponse.newBuilder().setExact(false);
+        if (samples.n == 0) {
+            return response.setCount(exactCount).build();
+        }
+        // Nodes returned by the exact part of the traversal are a hard lower bound of the count.
+        return response.setCount(Math.max(exactCount, Math.round(numNodes * samples.getMean())))
+                .setErrorBound(Math.round(Math.ceil(numNodes * samples.getErrorBound()))).build();
+    }
+
+    /**
+     * Values of the samples drawn by an estimate. Each sample contributes a value in the interval
+     * [low, high] (low == high unless the backward traversal of the sample was not completed), and the
+     * estimate uses the midpoints of the intervals.
+     */
+    static class Samples {
+        long n = 0;
+        /** Number of samples whose value is certainly (resp. possibly) positive. */
+        long hitsLow = 0, hitsHigh = 0;
+        /** Largest value of a sample, at least 1. */
+        double maxValue = 1;
+        double sumLow = 0, sumHigh = 0, sumMid = 0, sumMidSquares = 0;
+
+        void add(double low, double high) {
+            double mid = (low + high) / 2;
+            sumLow += low;
+            sumHigh += high;
+            sumMid += mid;
+            sumMidSquares += mid * mid;
+            hitsLow += low > 0 ? 1 : 0;
+            hitsHigh += high > 0 ? 1 : 0;
+            maxValue = Math.max(maxValue, high);
+            n++;
+        }
+
+        /** Return the mean value of the samples. */
+        double getMean() {
+            return sumMid / n;
+        }
+
+        /** Return the half-width of the 95% confidence interval of the mean value of the samples. */
+        double getErrorBound() {
+            double mean = getMean();
+            double variance = n > 1 ? Math.max(0, sumMidSquares / n - mean * mean) / (n - 1) : 0;
+            double normal = (sumHigh - sumLow) / n / 2 + Z_95 * Math.sqrt(variance);
+            // The normal approximation collapses to 0 when no sample is counted: also bound the mean by the
+            // Wilson upper bound of the fraction of possibly counted samples, times their mean value (or the
+            // largest value of a sample if none is counted).
+            double hitValue = hitsHigh > 0 ? sumHigh / hitsHigh : maxValue;
+            return Math.max(normal, hitValue * wilsonUpperBound(hitsHigh, n) - mean);
+        }
+
+        /** Return the upper bound of the 95% Wilson score interval of a proportion. */
+        static double wilsonUpperBound(long successes, long n) {
+            double p = (double) successes / n;
+            double z2 = Z_95 * Z_95;
+            return (p + z2 / (2 * n) + Z_95 * Math.sqrt(p * (1 - p) / n + z2 / (4.0 * n * n))) / (1 + z2 / n);
+        }
+    }
+
+    /**
+     * Return whether a node is reachable from the sources of the traversal, or null if that could not
+     * be decided within {@link #SAMPLE_EDGES} accessed edges.
+     */
+    private Boolean isReachable(long node) {
+        if (traversal.isVisited(node)) {
+            return true;
+        }
+        sampleVisited.reset();
+        sampleQueue.clear();
+        sampleVisited.add(node, -1L);
+        sampleQueue.enqueue(node);
+        long edges = 0;
+        try {
+            while (!sampleQueue.isEmpty()) {
+                long curr = sampleQueue.dequeueLong();
+                SwhType currType = g.getNodeType(curr);
+                LazyLongIterator predecessors = transposed.successors(curr);
+                for (long pred; (pred = predecessors.nextLong()) != -1;) {
+                    if (++edges > SAMPLE_EDGES) {
+                        return null;
+                    }
+                    if (!allowedEdges.isAllowed(g.getNodeType(pred), currType)) {
+                        continue;
+                    }
+                    if (traversal.isVisited(pred)) {
+                        return true;
+                    }
+                    if (sampleVisited.add(pred, -1L)) {
+                        sampleQueue.enqueue(pred);
+                    }
+                }
+            }
+            return false;
+        } finally {
+            sampledEdges += edges;
+        }
+    }
+
+    /** Return the number of successors of a node that can be traversed. */
+    private long allowedOutdegree(long node) {
+        SwhType nodeType = g.getNodeType(node);
+        long outdegree = 0;
+        LazyLongIterator successors = g.successors(node);
+        for (long succ; (succ = successors.nextLong()) != -1;) {
+            if (allowedEdges.isAllowed(nodeType, g.getNodeType(succ))) {
+                outdegree++;
+            }
+        }
+        return outdegree;
+    }
+}
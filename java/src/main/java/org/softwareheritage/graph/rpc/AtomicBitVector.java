@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-length bit vector that can be set concurrently by multiple threads.
+ * <p>
+ * The bits are stored in 64-bit words, like a {@code LongArrayBitVector}, but the words are updated
+ * with compare-and-set operations so that {@link #testAndSet(long)} is atomic. It is used as the
+ * visited set of the parallel traversals, where several threads try to claim the same nodes.
+ */
+public class AtomicBitVector {
+    private final long length;
+    private final AtomicLongArray words;
+
+    /** @param length the number of bits of the vector, all initially unset */
+    public AtomicBitVector(long length) {
+        long numWords = (length + 63) >>> 6;
+        if (numWords > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bit vector too large: " + length);
+        }
+        this.length = length;
+        this.words = new AtomicLongArray((int) numWords);
+    }
+
+    /** Return the number of bits of the vector. */
+    public long length() {
+        return length;
+    }
+
+    /** Return the memory used by the bits of the vector, in bytes. */
+    public long memoryUsage() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    /** Return whether a bit is set. */
+    public boolean get(long index) {
+        return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    /** Unset all the bits. Must not be called concurrently with other methods. */
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0);
+        }
+    }
+
+    /**
+     * Atomically set a bit.
+     *
+     * @return true if the bit was not set before this call (i.e., if this call set it), false otherwise
+     */
+    public boolean testAndSet(long index) {
+        int word = (int) (index >>> 6);
+        long bit = 1L << index;
+        long current = words.get(word);
+        while ((current & bit) == 0) {
+            long witness = words.compareAndExchange(word, current, current | bit);
+            if (witness == current) {
+                return true;
+            }
+            current = witness;
+        }
+        return false;
+    }
+}
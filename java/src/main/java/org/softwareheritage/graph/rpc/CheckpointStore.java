@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Local store of the {@link TraversalCheckpoint}s from which traversals can be resumed, identified by
+ * random continuation tokens.
+ * <p>
+ * The checkpoints are written to the files of a local directory (by default, a new temporary
+ * directory), and deleted once they are older than a given time-to-live. The store is thread-safe.
+ */
+public class CheckpointStore {
+    /** Default time-to-live of the checkpoints */
+    public static final long DEFAULT_TTL_MS = TimeUnit.HOURS.toMillis(1);
+    private static final Pattern TOKEN_PATTERN = Pattern.compile("[0-9a-f]{32}");
+    private static final String SUFFIX = ".checkpoint";
+
+    private final Path configuredDirectory;
+    private final long ttlMs;
+    private final SecureRandom random = new SecureRandom();
+    /** The directory of the checkpoints, created on first use */
+    private Path directory;
+    /** Time of the last eviction of the expired checkpoints */
+    private long lastEvictionMs = 0;
+
+    /**
+     * @param directory the directory in which the checkpoints are stored, or null to use a new temporary
+     *            directory
+     * @param ttlMs the time-to-live of the checkpoints, in milliseconds
+     */
+    public CheckpointStore(Path directory, long ttlMs) {
+        this.configuredDirectory = directory;
+        this.ttlMs = ttlMs;
+    }
+
+    private synchronized Path getDirectory() throws IOException {
+        if (directory == null) {
+            directory = configuredDirectory != null
+                    ? Files.createDirectories(configuredDirectory)
+                    : Files.createTempDirectory("swh-graph-checkpoints");
+        }
+        return directory;
+    }
+
+    /** Store a checkpoint, and return the token identifying it. */
+    public String save(TraversalCheckpoint checkpoint) throws IOException {
+        evictExpired();
+        String token = String.format("%016x%016x", random.nextLong(), random.nextLong());
+        Path dir = getDirectory();
+        Path tmpFile = Files.createTempFile(dir, "checkpoint", ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmpFile))) {
+            checkpoint.write(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpFile);
+            throw e;
+        }
+        Files.move(tmpFile, dir.resolve(token + SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        return token;
+    }
+
+    /**
+     * Load the checkpoint identified by a token.
+     *
+     * @throws IllegalArgumentException if the token is malformed, unknown or expired, or if its
+     *             checkpoint was written in another version of the format
+     */
+    public TraversalCheckpoint load(String token) throws IOException {
+        if (!TOKEN_PATTERN.matcher(token).matches()) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token);
+        }
+        Path file = getDirectory().resolve(token + SUFFIX);
+        try {
+            if (isExpired(file)) {
+                Files.deleteIfExists(file);
+                throw new IllegalArgumentException("Expired continuation token: " + token);
+            }
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                return TraversalCheckpoint.read(in);
+            }
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("Unknown or expired continuation token: " + token);
+        }
+    }
+
+    private boolean isExpired(Path file) throws IOException {
+        return Files.getLastModifiedTime(file).toMillis() + ttlMs <= System.currentTimeMillis();
+    }
+
+    /**
+     * Delete the expired checkpoints. To keep the cost of the scans low, the directory is scanned at
+     * most once every tenth of the time-to-live.
+     */
+    public synchronized void evictExpired() throws IOException {
+        long now = System.currentTimeMillis();
+        if (directory == null || now - lastEvictionMs < ttlMs / 10) {
+            return;
+        }
+        lastEvictionMs = now;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                try {
+                    if (isExpired(file)) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (NoSuchFileException e) {
+                    // Concurrently deleted
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Separate executors ("lanes") for the cheap calls of the server and for its traversals.
+ * <p>
+ * With a single thread pool, point lookups (GetNode, Stats, etc.) queue behind long traversals
+ * once all the threads are busy. The lanes are two separately sized thread pools: the lookup lane
+ * runs the cheap calls and the FindPath* calls with small limits, while the traversal lane runs the
+ * streaming traversals and the counts. FindPath* calls without small limits start on the lookup
+ * lane, as their limits are only known once their request is read, and are then handed off to the
+ * traversal lane (see {@link #isSmallPathQuery}).
+ * <p>
+ * Streaming traversals are also time-sliced (see {@link FlowControlledTraversal#setTimeSlice}), so
+ * that the traversals queued on the traversal lane are started even when all its threads are busy.
+ */
+public class ExecutionLanes implements ServerCallExecutorSupplier {
+    /** Execution lane of a call */
+    public enum Lane {
+        LOOKUP("lookup"), TRAVERSAL("traversal");
+
+        /** Name of the lane, used to name its threads */
+        public final String name;
+
+        Lane(String name) {
+            this.name = name;
+        }
+    }
+
+    /** Maximum max_edges of the FindPath* calls that run on the lookup lane */
+    static final long SMALL_MAX_EDGES = 100_000;
+    /** Maximum max_duration_ms of the FindPath* calls that run on the lookup lane */
+    static final long SMALL_MAX_DURATION_MS = 100;
+    /** Duration after which a streaming traversal yields its thread to the other queued calls */
+    static final long TIME_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /** Full names of the methods that run on the traversal lane */
+    private static final Set<String> TRAVERSAL_METHODS = Set.of(
+            TraversalServiceGrpc.getTraverseMethod().getFullMethodName(),
+            TraversalServiceGrpc.getTraverseBatchedMethod().getFullMethodName(),
+            TraversalServiceGrpc.getCountNodesMethod().getFullMethodName(),
+            TraversalServiceGrpc.getCountEdgesMethod().getFullMethodName());
+
+    private final ThreadPoolExecutor lookupExecutor;
+    private final ThreadPoolExecutor traversalExecutor;
+
+    /**
+     * @param lookupThreads the number of threads of the lookup lane
+     * @param traversalThreads the number of threads of the traversal lane
+     */
+    public ExecutionLanes(int lookupThreads, int traversalThreads) {
+        this.lookupExecutor = newExecutor(Lane.LOOKUP, lookupThreads);
+        this.traversalExecutor = newExecutor(Lane.TRAVERSAL, traversalThreads);
+    }
+
+    private static ThreadPoolExecutor newExecutor(Lane lane, int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                r -> new Thread(r, "swh-graph-" + lane.name + "-" + threadCount.incrementAndGet()));
+    }
+
+    /** Return the lane on which the calls of a method start. */
+    static Lane getLane(String fullMethodName) {
+        return TRAVERSAL_METHODS.contains(fullMethodName) ? Lane.TRAVERSAL : Lane.LOOKUP;
+    }
+
+    /**
+     * Return whether the limits of a FindPath* query are small enough for it to run on the lookup
+     * lane.
+     */
+    static boolean isSmallPathQuery(boolean hasMaxEdges, long maxEdges, boolean hasMaxDurationMs,
+            long maxDurationMs) {
+        return (hasMaxEdges && maxEdges <= SMALL_MAX_EDGES)
+                || (hasMaxDurationMs && maxDurationMs <= SMALL_MAX_DURATION_MS);
+    }
+
+    @Override
+    public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+        return getExecutor(getLane(call.getMethodDescriptor().getFullMethodName()));
+    }
+
+    /** Return the executor of a lane. */
+    public Executor getExecutor(Lane lane) {
+        return lane == Lane.TRAVERSAL ? traversalExecutor : lookupExecutor;
+    }
+
+    /** Return the number of tasks waiting for a thread of a lane. */
+    public int getQueueDepth(Lane lane) {
+        return ((ThreadPoolExecutor) getExecutor(lane)).getQueue().size();
+    }
+
+    /** Return the number of threads of a lane that are running a task. */
+    public int getActiveThreads(Lane lane) {
+        return ((ThreadPoolExecutor) getExecutor(lane)).getActiveCount();
+    }
+
+    /** Stop the threads of the lanes, once the tasks already submitted are done. */
+    public void shutdown() {
+        lookupExecutor.shutdown();
+        traversalExecutor.shutdown();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Drives a streaming traversal step by step, following the flow control of the gRPC transport.
+ * <p>
+ * Instead of running the whole visit at once and letting gRPC buffer all the streamed messages in
+ * memory when the client is slower than the server, the visit is performed with
+ * {@link Traversal.BFSVisitor#visitStep()} as long as the transport is ready to accept more messages
+ * ({@link ServerCallStreamObserver#isReady()}). When it is not, the visit is paused and the
+ * traversal is resumed from the on-ready handler of the call. Server memory usage is thus bounded by
+ * the flow control window instead of the size of the traversal.
+ * <p>
+ * The visitor must send its results to the same observer, optionally through a {@link NodeBatcher}.
+ * Once the visit is over (or the call is cancelled), the given cleanup action is run, then the
+ * stream is completed. If the visit fails, the cleanup action is also run, then the stream is closed
+ * with the error: the traversal can run on threads where no gRPC listener would do it (on-ready
+ * handlers, time slices), so it never lets its exceptions escape.
+ * <p>
+ * The traversal can also be time-sliced (see {@link #setTimeSlice}): after running for a given
+ * duration, it yields its thread by re-submitting itself to the executor, behind the tasks already
+ * queued there.
+ */
+class FlowControlledTraversal implements Runnable {
+    private final Traversal.BFSVisitor visitor;
+    private final ServerCallStreamObserver<?> responseObserver;
+    private final NodeBatcher batcher;
+    private final Runnable cleanup;
+    private boolean done = false;
+    /** Whether the stream was completed or closed with an error */
+    private boolean closed = false;
+    /** Executor to which the traversal yields at the end of each time slice, or null */
+    private Executor sliceExecutor = null;
+    private long timeSliceNanos;
+    /** Whether the traversal has yielded and is waiting in the queue of {@link #sliceExecutor} */
+    private boolean yieldPending = false;
+    /** The gRPC context of the call, restored when the traversal resumes after yielding */
+    private Context context;
+
+    /**
+     * @param visitor the visitor performing the traversal
+     * @param responseObserver the observer to which the visitor streams its results
+     * @param cleanup action to run once the traversal is over, e.g. to release the graph view
+     */
+    FlowControlledTraversal(Traversal.BFSVisitor visitor, ServerCallStreamObserver<?> responseObserver,
+            Runnable cleanup) {
+        this(visitor, responseObserver, null, cleanup);
+    }
+
+    /**
+     * @param visitor the visitor performing the traversal
+     * @param responseObserver the observer to which the visitor streams its results
+     * @param batcher the batcher through which the visitor sends its results, or null if it sends them
+     *            directly to the observer. Its expired batches are sent between visit steps, and its
+     *            last batch is sent before the stream is completed.
+     * @param cleanup action to run once the traversal is over, e.g. to release the graph view
+     */
+    FlowControlledTraversal(Traversal.BFSVisitor visitor, ServerCallStreamObserver<?> responseObserver,
+            NodeBatcher batcher, Runnable cleanup) {
+        this.visitor = visitor;
+        this.responseObserver = responseObserver;
+        this.batcher = batcher;
+        this.cleanup = cleanup;
+    }
+
+    /**
+     * Time-slice the traversal. Must be called before {@link #start()}.
+     *
+     * @param timeSliceNanos the duration after which the traversal yields its thread (at least one
+     *            visit step is performed in each slice)
+     * @param executor the executor to which the traversal re-submits itself when it yields
+     */
+    public void setTimeSlice(long timeSliceNanos, Executor executor) {
+        this.timeSliceNanos = timeSliceNanos;
+        this.sliceExecutor = executor;
+    }
+
+    /**
+     * Start the traversal. Must be called from the RPC handler, as the handlers of the call can only be
+     * set before it returns.
+     */
+    public void start() {
+        context = Context.current();
+        visitor.visitSetup();
+        responseObserver.setOnCancelHandler(this::finish);
+        responseObserver.setOnReadyHandler(this);
+        run();
+    }
+
+    /** Perform visit steps until the transport stops being ready or the visit is over. */
+    @Override
+    public synchronized void run() {
+        if (done) {
+            return;
+        }
+        long sliceEndNanos = sliceExecutor != null ? System.nanoTime() + timeSliceNanos : 0;
+        try {
+            visitor.startClock();
+            try {
+                while (responseObserver.isReady() && !visitor.isFinished()) {
+                    visitor.visitStep();
+                    if (batcher != null) {
+                        batcher.flushIfExpired();
+                    }
+                    if (sliceExecutor != null && System.nanoTime() >= sliceEndNanos && !visitor.isFinished()) {
+                        yieldThread();
+                        return;
+                    }
+                }
+            } finally {
+                visitor.stopClock();
+            }
+            if (visitor.isFinished()) {
+                if (batcher != null) {
+                    batcher.flush();
+                }
+                finish();
+                closed = true;
+                responseObserver.onCompleted();
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Re-submit the traversal to the executor of the time slices, unless it is already waiting there
+     * (e.g., when the time slice of an on-ready callback expires).
+     */
+    private void yieldThread() {
+        if (!yieldPending) {
+            yieldPending = true;
+            sliceExecutor.execute(context.wrap(this::resumeSlice));
+        }
+    }
+
+    private synchronized void resumeSlice() {
+        yieldPending = false;
+        run();
+    }
+
+    /** Return whether the traversal is over (either completed or cancelled). */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Run the cleanup action if it was not run yet, then close the stream with the error of the visit,
+     * unless it is already closed or cancelled.
+     */
+    private synchronized void fail(RuntimeException e) {
+        try {
+            finish();
+        } catch (RuntimeException cleanupError) {
+            e.addSuppressed(cleanupError);
+        }
+        if (!closed && !responseObserver.isCancelled()) {
+            closed = true;
+            responseObserver.onError(Status.fromThrowable(e).asException());
+        }
+    }
+
+    private synchronized void finish() {
+        if (!done) {
+            done = true;
+            cleanup.run();
+        }
+    }
+}
@@ -9,25 +9,49 @@ package org.softwareheritage.graph.rpc;
 
 import com.google.protobuf.FieldMask;
 import com.martiansoftware.jsap.*;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.Context;
+import io.grpc.MethodDescriptor;
 import io.grpc.Server;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
 import io.grpc.Status;
 import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 import io.grpc.netty.shaded.io.netty.channel.ChannelOption;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
 import io.grpc.stub.StreamObserver;
 import io.grpc.protobuf.services.ProtoReflectionService;
 import it.unimi.dsi.logging.ProgressLogger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.softwareheritage.graph.AllowedNodes;
 import org.softwareheritage.graph.SWHID;
 import org.softwareheritage.graph.SwhBidirectionalGraph;
 import org.softwareheritage.graph.compress.LabelMapBuilder;
+import org.softwareheritage.graph.maps.NodeIdMap;
+import org.softwareheritage.graph.maps.ReachSketches;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
-import java.util.concurrent.Executors;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * Server that manages startup/shutdown of a {@code Greeter} server.
@@ -38,17 +62,63 @@ public class GraphServer {
     private final SwhBidirectionalGraph graph;
     private final int port;
     private final int threads;
+    private final int lookupThreads;
+    private final CheckpointStore checkpoints;
+    private final AdmissionControl admissionControl;
+    private final InetSocketAddress metricsAddress;
+    private final QueryLog queryLog;
+    private final int parallelTraversals;
+    private ExecutionLanes lanes;
+    private ParallelTraversalPool parallelPool;
     private Server server;
+    private HttpServer metricsServer;
 
     /**
      * @param graphBasename the basename of the SWH graph to load
      * @param port the port on which the GRPC server will listen
-     * @param threads the number of threads to use in the server threadpool
+     * @param threads the number of threads of each execution lane (see {@link ExecutionLanes})
      */
     public GraphServer(String graphBasename, int port, int threads) throws IOException {
+        this(graphBasename, port, threads, new CheckpointStore(null, CheckpointStore.DEFAULT_TTL_MS));
+    }
+
+    /**
+     * @param graphBasename the basename of the SWH graph to load
+     * @param port the port on which the GRPC server will listen
+     * @param threads the number of threads of each execution lane (see {@link ExecutionLanes})
+     * @param checkpoints the store of the checkpoints of resumable traversals
+     */
+    public GraphServer(String graphBasename, int port, int threads, CheckpointStore checkpoints) throws IOException {
+        this(graphBasename, port, threads, threads, checkpoints, AdmissionControl.unlimited(), null, null,
+                ParallelTraversalPool.DEFAULT_MAX_TRAVERSALS);
+    }
+
+    /**
+     * @param graphBasename the basename of the SWH graph to load
+     * @param port the port on which the GRPC server will listen
+     * @param threads the number of threads of the traversal lane (see {@link ExecutionLanes})
+     * @param lookupThreads the number of threads of the lookup lane
+     * @param checkpoints the store of the checkpoints of resumable traversals
+     * @param admissionControl the admission control of the traversal calls
+     * @param metricsAddress the address on which the metrics are served over HTTP (see
+     *            {@link ServerMetrics}), or null to not serve them
+     * @param queryLog the log to which the calls are recorded, or null to not record them
+     * @param parallelTraversals the maximum number of traversals whose frontier is expanded in parallel
+     *            at the same time (see {@link ParallelTraversalPool})
+     */
+    public GraphServer(String graphBasename, int port, int threads, int lookupThreads, CheckpointStore checkpoints,
+            AdmissionControl admissionControl, InetSocketAddress metricsAddress, QueryLog queryLog,
+            int parallelTraversals)
+            throws IOException {
         this.graph = loadGraph(graphBasename);
         this.port = port;
         this.threads = threads;
+        this.lookupThreads = lookupThreads;
+        this.checkpoints = checkpoints;
+        this.admissionControl = admissionControl;
+        this.metricsAddress = metricsAddress;
+        this.queryLog = queryLog;
+        this.parallelTraversals = parallelTraversals;
     }
 
     /** Load a graph and all its properties. */
@@ -62,15 +132,37 @@ public class GraphServer {
         g.loadMessages();
         g.loadTagNames();
         g.loadLabelNames();
+        g.loadLabelNameIds();
+        if (new File(basename + ReachSketches.REACH_SKETCH).exists()) {
+            // Reachability sketches are optional, as they are expensive to compute and store
+            g.loadReachSketches();
+        }
         return g;
     }
 
     /** Start the RPC server. */
     private void start() throws IOException {
+        lanes = new ExecutionLanes(lookupThreads, threads);
+        parallelPool = new ParallelTraversalPool(threads, parallelTraversals);
+        ServerMetrics metrics = newMetrics();
+        List<ServerInterceptor> interceptors = new ArrayList<>(
+                List.of(new ResponseTrailers(), admissionControl, metrics));
+        if (queryLog != null) {
+            // Outermost interceptor, to also record the calls rejected by admission control
+            interceptors.add(queryLog);
+        }
         server = NettyServerBuilder.forPort(port).withChildOption(ChannelOption.SO_REUSEADDR, true)
-                .executor(Executors.newFixedThreadPool(threads)).addService(new TraversalService(graph))
+                .executor(lanes.getExecutor(ExecutionLanes.Lane.LOOKUP)).callExecutor(lanes)
+                .addService(ServerInterceptors.intercept(
+                        new TraversalService(graph, threads, checkpoints, lanes, parallelPool)
+                                .bindServiceWithEncodedNodes(),
+                        interceptors))
                 .addService(ProtoReflectionService.newInstance()).build().start();
         logger.info("Server started, listening on " + port);
+        if (metricsAddress != null) {
+            metricsServer = metrics.startHttpServer(metricsAddress);
+            logger.info("Serving metrics on " + metricsServer.getAddress());
+        }
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             try {
                 GraphServer.this.stop();
@@ -80,10 +172,45 @@ public class GraphServer {
         }));
     }
 
+    /** Create the metrics of the server, including the state of its admission control and lanes. */
+    private ServerMetrics newMetrics() {
+        ServerMetrics metrics = new ServerMetrics(graph.getProperties());
+        metrics.addGauge("edges_in_flight", "", "Number of edges accessed by the traversals in progress.",
+                admissionControl::getEdgesInFlight);
+        metrics.addGauge("active_traversals", "", "Number of traversal calls in progress.",
+                admissionControl::getActiveCalls);
+        metrics.addCounter("rejected_calls_total", "", "Number of traversal calls rejected by admission control.",
+                admissionControl::getRejectedCalls);
+        for (ExecutionLanes.Lane lane : ExecutionLanes.Lane.values()) {
+            String labels = "lane=\"" + lane.name + "\"";
+            metrics.addGauge("lane_queue_depth", labels, "Number of tasks waiting for a thread of the lane.",
+                    () -> lanes.getQueueDepth(lane));
+            metrics.addGauge("lane_active_threads", labels, "Number of threads of the lane running a task.",
+                    () -> lanes.getActiveThreads(lane));
+        }
+        return metrics;
+    }
+
     private void stop() throws InterruptedException {
+        if (metricsServer != null) {
+            metricsServer.stop(0);
+        }
         if (server != null) {
             server.shutdown().awaitTermination(30, TimeUnit.SECONDS);
         }
+        if (lanes != null) {
+            lanes.shutdown();
+        }
+        if (parallelPool != null) {
+            parallelPool.close();
+        }
+        if (queryLog != null) {
+            try {
+                queryLog.close();
+            } catch (IOException e) {
+                logger.error("Cannot close the query log", e);
+            }
+        }
     }
 
     /**
@@ -103,7 +230,49 @@ public class GraphServer {
                             new FlaggedOption("port", JSAP.INTEGER_PARSER, "50091", JSAP.NOT_REQUIRED, 'p', "port",
                                     "The port on which the server should listen."),
                             new FlaggedOption("threads", JSAP.INTEGER_PARSER, "0", JSAP.NOT_REQUIRED, 't', "threads",
-                                    "The number of concurrent threads. 0 = number of cores."),
+                                    "The number of concurrent traversal threads. 0 = number of cores."),
+                            new FlaggedOption("lookupThreads", JSAP.INTEGER_PARSER, "0", JSAP.NOT_REQUIRED,
+                                    JSAP.NO_SHORTFLAG, "lookup-threads",
+                                    "The number of threads for the point lookups (GetNode, Stats, small FindPath* "
+                                            + "queries). 0 = number of cores."),
+                            new FlaggedOption("checkpointDir", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED,
+                                    JSAP.NO_SHORTFLAG, "checkpoint-dir",
+                                    "Directory of the checkpoints of resumable traversals (default: temporary)."),
+                            new FlaggedOption("checkpointTtl", JSAP.LONG_PARSER,
+                                    String.valueOf(TimeUnit.MILLISECONDS.toSeconds(CheckpointStore.DEFAULT_TTL_MS)),
+                                    JSAP.NOT_REQUIRED, JSAP.NO_SHORTFLAG, "checkpoint-ttl",
+                                    "Time-to-live of the checkpoints of resumable traversals, in seconds."),
+                            new FlaggedOption("edgeRate", JSAP.DOUBLE_PARSER, "0", JSAP.NOT_REQUIRED,
+                                    JSAP.NO_SHORTFLAG, "edge-rate",
+                                    "Number of edges per second accessed by all the traversals before new ones are "
+                                            + "rejected. 0 = no limit."),
+                            new FlaggedOption("clientEdgeRate", JSAP.DOUBLE_PARSER, "0", JSAP.NOT_REQUIRED,
+                                    JSAP.NO_SHORTFLAG, "client-edge-rate",
+                                    "Number of edges per second accessed by the traversals of a single client "
+                                            + "before its new ones are rejected. 0 = no limit."),
+                            new FlaggedOption("maxEdges", JSAP.LONG_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED,
+                                    JSAP.NO_SHORTFLAG, "max-edges",
+                                    "Maximum number of edges accessed by a single traversal (default: no limit)."),
+                            new FlaggedOption("trustedProxies", JSAP.STRING_PARSER, "", JSAP.NOT_REQUIRED,
+                                    JSAP.NO_SHORTFLAG, "trusted-proxies",
+                                    "Addresses of the proxies allowed to identify their clients with the "
+                                            + "swh-graph-client header, comma separated ('*' for any address)."),
+                            new FlaggedOption("metricsPort", JSAP.INTEGER_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED,
+                                    JSAP.NO_SHORTFLAG, "metrics-port",
+                                    "Port on which the Prometheus metrics are served over HTTP, on /metrics "
+                                            + "(default: not served)."),
+                            new FlaggedOption("metricsHost", JSAP.STRING_PARSER, "localhost", JSAP.NOT_REQUIRED,
+                                    JSAP.NO_SHORTFLAG, "metrics-host",
+                                    "Address on which the Prometheus metrics are served, if --metrics-port is set."),
+                            new FlaggedOption("queryLog", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED,
+                                    JSAP.NO_SHORTFLAG, "query-log",
+                                    "File to which the calls are recorded, to be replayed with ReplayQueryLog "
+                                            + "(default: not recorded)."),
+                            new FlaggedOption("parallelTraversals", JSAP.INTEGER_PARSER,
+                                    String.valueOf(ParallelTraversalPool.DEFAULT_MAX_TRAVERSALS), JSAP.NOT_REQUIRED,
+                                    JSAP.NO_SHORTFLAG, "parallel-traversals",
+                                    "Maximum number of traversals whose frontier is expanded in parallel at the "
+                                            + "same time, on a pool of --threads threads."),
                             new UnflaggedOption("graphBasename", JSAP.STRING_PARSER, JSAP.REQUIRED,
                                     "Basename of the output graph")});
 
@@ -126,18 +295,200 @@ public class GraphServer {
         if (threads == 0) {
             threads = Runtime.getRuntime().availableProcessors();
         }
+        int lookupThreads = config.getInt("lookupThreads");
+        if (lookupThreads == 0) {
+            lookupThreads = Runtime.getRuntime().availableProcessors();
+        }
 
-        final GraphServer server = new GraphServer(graphBasename, port, threads);
+        String checkpointDir = config.getString("checkpointDir");
+        CheckpointStore checkpoints = new CheckpointStore(checkpointDir != null ? Paths.get(checkpointDir) : null,
+                TimeUnit.SECONDS.toMillis(config.getLong("checkpointTtl")));
+
+        Set<String> trustedProxies = Arrays.stream(config.getString("trustedProxies").split(","))
+                .map(String::strip).filter(proxy -> !proxy.isEmpty()).collect(Collectors.toSet());
+        AdmissionControl admissionControl = new AdmissionControl(config.getDouble("edgeRate"),
+                config.getDouble("clientEdgeRate"), config.contains("maxEdges") ? config.getLong("maxEdges") : -1,
+                trustedProxies);
+
+        InetSocketAddress metricsAddress = config.contains("metricsPort")
+                ? new InetSocketAddress(config.getString("metricsHost"), config.getInt("metricsPort"))
+                : null;
+        QueryLog queryLog = config.contains("queryLog") ? QueryLog.create(Paths.get(config.getString("queryLog")))
+                : null;
+
+        final GraphServer server = new GraphServer(graphBasename, port, threads, lookupThreads, checkpoints,
+                admissionControl, metricsAddress, queryLog, config.getInt("parallelTraversals"));
         server.start();
         server.blockUntilShutdown();
     }
 
     /** Implementation of the Traversal service, which contains all the graph querying endpoints. */
     static class TraversalService extends TraversalServiceGrpc.TraversalServiceImplBase {
+        /** Number of nodes whose SWHIDs are part of the fingerprint of the graph */
+        static final int FINGERPRINT_SAMPLES = 1024;
+
         SwhBidirectionalGraph graph;
+        /** Pool of graph views used by the traversal endpoints */
+        GraphViewPool views;
+        /** Store of the checkpoints from which traversals can be resumed */
+        CheckpointStore checkpoints;
+        /** Execution lanes of the server, or null if all the calls run on the same executor */
+        ExecutionLanes lanes;
+        /** Pool of the parallel expansions of the traversal frontiers */
+        ParallelTraversalPool parallelPool;
+        /** Fingerprint of the graph, computed by the first Stats call */
+        private volatile String graphFingerprint = null;
 
         public TraversalService(SwhBidirectionalGraph graph) {
+            this(graph, Runtime.getRuntime().availableProcessors());
+        }
+
+        /**
+         * @param graph the graph to query
+         * @param threads the number of worker threads, i.e., the number of pre-built graph views
+         */
+        public TraversalService(SwhBidirectionalGraph graph, int threads) {
+            this(graph, threads, new CheckpointStore(null, CheckpointStore.DEFAULT_TTL_MS));
+        }
+
+        /**
+         * @param graph the graph to query
+         * @param threads the number of worker threads, i.e., the number of pre-built graph views
+         * @param checkpoints the store of the checkpoints from which traversals can be resumed
+         */
+        public TraversalService(SwhBidirectionalGraph graph, int threads, CheckpointStore checkpoints) {
+            this(graph, threads, checkpoints, null);
+        }
+
+        /**
+         * @param graph the graph to query
+         * @param threads the number of worker threads, i.e., the number of pre-built graph views
+         * @param checkpoints the store of the checkpoints from which traversals can be resumed
+         * @param lanes the execution lanes of the server, or null if all the calls run on the same
+         *            executor
+         */
+        public TraversalService(SwhBidirectionalGraph graph, int threads, CheckpointStore checkpoints,
+                ExecutionLanes lanes) {
+            this(graph, threads, checkpoints, lanes, ParallelTraversalPool.getDefault());
+        }
+
+        /**
+         * @param graph the graph to query
+         * @param threads the number of worker threads, i.e., the number of pre-built graph views
+         * @param checkpoints the store of the checkpoints from which traversals can be resumed
+         * @param lanes the execution lanes of the server, or null if all the calls run on the same
+         *            executor
+         * @param parallelPool the pool of the parallel expansions of the traversal frontiers
+         */
+        public TraversalService(SwhBidirectionalGraph graph, int threads, CheckpointStore checkpoints,
+                ExecutionLanes lanes, ParallelTraversalPool parallelPool) {
             this.graph = graph;
+            this.views = new GraphViewPool(graph, threads);
+            this.checkpoints = checkpoints;
+            this.lanes = lanes;
+            this.parallelPool = parallelPool;
+        }
+
+        /**
+         * Same as {@link #bindService()}, but the responses of Traverse are written directly in their
+         * protobuf encoding by a {@link NodeEncoder} instead of being built as Node messages. The other
+         * methods are serialized as usual. The encoding is a property of the binding, so the same service
+         * can also be bound with {@link #bindService()}.
+         */
+        @SuppressWarnings("unchecked")
+        public ServerServiceDefinition bindServiceWithEncodedNodes() {
+            ServerServiceDefinition definition = bindService();
+            ServiceDescriptor descriptor = definition.getServiceDescriptor();
+            ServiceDescriptor.Builder descriptorBuilder = ServiceDescriptor.newBuilder(descriptor.getName())
+                    .setSchemaDescriptor(descriptor.getSchemaDescriptor());
+            List<ServerMethodDefinition<?, ?>> methods = new ArrayList<>();
+            for (ServerMethodDefinition<?, ?> method : definition.getMethods()) {
+                if (method.getMethodDescriptor() == TraversalServiceGrpc.getTraverseMethod()) {
+                    // Node messages and encoded nodes are both sent through the observers of Traverse
+                    MethodDescriptor.Marshaller<Node> marshaller =
+                            (MethodDescriptor.Marshaller<Node>) (Object) NodeEncoder.MARSHALLER;
+                    MethodDescriptor<TraversalRequest, Node> traverseMethod = TraversalServiceGrpc.getTraverseMethod()
+                            .toBuilder().setResponseMarshaller(marshaller).build();
+                    method = ServerMethodDefinition.create(traverseMethod, ServerCalls.asyncServerStreamingCall(
+                            (request, responseObserver) -> traverse(request, responseObserver, true)));
+                }
+                descriptorBuilder.addMethod(method.getMethodDescriptor());
+                methods.add(method);
+            }
+            ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(descriptorBuilder.build());
+            methods.forEach(builder::addMethod);
+            return builder.build();
+        }
+
+        /**
+         * Start a streaming traversal, time-sliced on the traversal lane if the service has execution
+         * lanes.
+         */
+        private void startTraversal(FlowControlledTraversal traversal) {
+            if (lanes != null) {
+                traversal.setTimeSlice(ExecutionLanes.TIME_SLICE_NANOS,
+                        lanes.getExecutor(ExecutionLanes.Lane.TRAVERSAL));
+            }
+            traversal.start();
+        }
+
+        /**
+         * Run a FindPath* query on the current (lookup) lane if its limits are small, or hand it off to the
+         * traversal lane otherwise. As no gRPC listener catches the exceptions of the queries handed off,
+         * these queries close their call with an error themselves when they fail.
+         */
+        private void runPathQuery(boolean small, StreamObserver<Path> responseObserver, Runnable query) {
+            if (lanes == null || small) {
+                query.run();
+            } else {
+                lanes.getExecutor(ExecutionLanes.Lane.TRAVERSAL).execute(Context.current().wrap(() -> {
+                    try {
+                        query.run();
+                    } catch (RuntimeException e) {
+                        logger.error("Path query failed", e);
+                        responseObserver.onError(Status.fromThrowable(e).asException());
+                    }
+                }));
+            }
+        }
+
+        /**
+         * Create the traversal of a Traverse request. If the request has a continuation token, the traversal
+         * resumes from the checkpoint identified by the token, with the request of the checkpoint.
+         */
+        private Traversal.SimpleTraversal createTraversal(SwhBidirectionalGraph g, TraversalRequest request,
+                Traversal.NodeObserver observer) {
+            TraversalCheckpoint checkpoint = null;
+            if (request.hasContinuationToken()) {
+                try {
+                    checkpoint = checkpoints.load(request.getContinuationToken());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                if (checkpoint.numNodes != g.numNodes()) {
+                    throw new IllegalArgumentException("The continuation token was issued for another graph");
+                }
+                request = checkpoint.request;
+            }
+            Traversal.SimpleTraversal t = new Traversal.SimpleTraversal(g, request, observer);
+            t.setParallelPool(parallelPool);
+            t.setCheckpointStore(checkpoints);
+            if (checkpoint != null) {
+                t.resumeFrom(checkpoint);
+            }
+            return t;
+        }
+
+        /**
+         * Report in the trailers of the current call the statistics of a traversal (see
+         * {@link ResponseTrailers#STATS}), and whether it was interrupted before its end (see
+         * {@link ResponseTrailers#INTERRUPTED}). Must be called before the traversal is closed.
+         */
+        private static void reportTraversal(Traversal.BFSVisitor t) {
+            ResponseTrailers.put(ResponseTrailers.STATS, t.getStats().toByteArray());
+            if (t.getInterruption() != null) {
+                ResponseTrailers.put(ResponseTrailers.INTERRUPTED, t.getInterruption().name);
+            }
         }
 
         /** Return various statistics on the overall graph. */
@@ -164,137 +515,355 @@ public class GraphServer {
             response.setOutdegreeMin(Long.parseLong(properties.getProperty("minoutdegree")));
             response.setOutdegreeMax(Long.parseLong(properties.getProperty("maxoutdegree")));
             response.setOutdegreeAvg(Double.parseDouble(properties.getProperty("avgoutdegree")));
+            try {
+                response.setGraphFingerprint(getGraphFingerprint());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
             responseObserver.onNext(response.build());
             responseObserver.onCompleted();
         }
 
-        /** Return a single node and its properties. */
+        /**
+         * Return the fingerprint of the graph: the first 128 bits of a SHA-256 hash of its number of nodes
+         * and edges, of its compression properties, and of the SWHIDs of {@value #FINGERPRINT_SAMPLES}
+         * nodes spread over the node ids. It only reads a few pages of the node -> SWHID map (hashing all
+         * of it would read hundreds of gigabytes), so it detects recompressions and id reassignments that
+         * move any of the sampled nodes, but not the ones that leave all of them in place.
+         */
+        private String getGraphFingerprint() throws IOException {
+            if (graphFingerprint == null) {
+                MessageDigest digest;
+                try {
+                    digest = MessageDigest.getInstance("SHA-256");
+                } catch (NoSuchAlgorithmException e) {
+                    throw new RuntimeException(e);
+                }
+                long numNodes = graph.numNodes();
+                digest.update(ByteBuffer.allocate(2 * Long.BYTES).putLong(numNodes).putLong(graph.numArcs()).array());
+                digest.update(Files.readAllBytes(Paths.get(graph.getPath() + ".properties")));
+                byte[] swhid = new byte[SWHID.STRING_LENGTH];
+                long samples = Math.min(FINGERPRINT_SAMPLES, numNodes);
+                for (long i = 0; i < samples; i++) {
+                    graph.getSWHIDAscii(i * numNodes / samples, swhid, 0);
+                    digest.update(swhid);
+                }
+                StringBuilder fingerprint = new StringBuilder();
+                byte[] hash = digest.digest();
+                for (int i = 0; i < 16; i++) {
+                    fingerprint.append(String.format("%02x", hash[i]));
+                }
+                graphFingerprint = fingerprint.toString();
+            }
+            return graphFingerprint;
+        }
+
+        /**
+         * Return a single node and its properties. This only reads the (thread-safe) graph properties, so
+         * no graph view is needed.
+         */
         @Override
         public void getNode(GetNodeRequest request, StreamObserver<Node> responseObserver) {
-            SwhBidirectionalGraph g = graph.copy();
             long nodeId;
             try {
-                nodeId = g.getNodeId(new SWHID(request.getSwhid()));
+                nodeId = graph.getNodeId(new SWHID(request.getSwhid()));
             } catch (IllegalArgumentException e) {
                 responseObserver
                         .onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asException());
                 return;
             }
             Node.Builder builder = Node.newBuilder();
-            NodePropertyBuilder.buildNodeProperties(g.getForwardGraph(), request.hasMask() ? request.getMask() : null,
-                    builder, nodeId);
+            NodePropertyBuilder.buildNodeProperties(graph.getForwardGraph(),
+                    request.hasMask() ? request.getMask() : null, builder, nodeId);
             responseObserver.onNext(builder.build());
             responseObserver.onCompleted();
         }
 
-        /** Perform a BFS traversal from a set of source nodes and stream the nodes encountered. */
+        /**
+         * Return multiple nodes and their properties, in request order. Like {@link #getNode}, this only
+         * reads the (thread-safe) graph properties, so no graph view is needed.
+         */
         @Override
-        public void traverse(TraversalRequest request, StreamObserver<Node> responseObserver) {
-            SwhBidirectionalGraph g = graph.copy();
-            Traversal.SimpleTraversal t;
+        public void getNodes(GetNodesRequest request, StreamObserver<Node> responseObserver) {
+            long[] nodeIds = new long[request.getSwhidsCount()];
             try {
-                t = new Traversal.SimpleTraversal(g, request, responseObserver::onNext);
+                ByteBuffer swhids = ByteBuffer.allocate(nodeIds.length * NodeIdMap.SWHID_BIN_SIZE);
+                for (int i = 0; i < nodeIds.length; i++) {
+                    swhids.put(new SWHID(request.getSwhids(i)).toBytes());
+                }
+                if (graph.getNodeIds(swhids, nodeIds) > 0) {
+                    for (int i = 0; i < nodeIds.length; i++) {
+                        if (nodeIds[i] < 0) {
+                            throw new IllegalArgumentException("Unknown SWHID: " + request.getSwhids(i));
+                        }
+                    }
+                }
             } catch (IllegalArgumentException e) {
                 responseObserver
                         .onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asException());
                 return;
             }
-            t.visit();
+            NodePropertyBuilder.NodeDataMask mask = new NodePropertyBuilder.NodeDataMask(
+                    request.hasMask() ? request.getMask() : null);
+            for (Node node : NodePropertyBuilder.buildNodes(graph.getForwardGraph(), mask, nodeIds)) {
+                responseObserver.onNext(node);
+            }
             responseObserver.onCompleted();
         }
 
         /**
-         * Find the shortest path between a set of source nodes and a node that matches a given criteria
-         * using a BFS.
+         * Estimate the number of nodes reachable from a node using the precomputed reachability sketches.
+         * This only reads the (thread-safe) graph properties, so no graph view is needed.
          */
         @Override
-        public void findPathTo(FindPathToRequest request, StreamObserver<Path> responseObserver) {
-            SwhBidirectionalGraph g = graph.copy();
-            Traversal.FindPathTo t;
+        public void estimateReachable(EstimateReachableRequest request,
+                StreamObserver<EstimateReachableResponse> responseObserver) {
+            ReachSketches sketches;
             try {
-                t = new Traversal.FindPathTo(g, request);
+                sketches = graph.getReachSketches();
+            } catch (IllegalStateException e) {
+                responseObserver.onError(
+                        Status.FAILED_PRECONDITION.withDescription(e.getMessage()).withCause(e).asException());
+                return;
+            }
+            double estimate;
+            try {
+                long nodeId = graph.getNodeId(new SWHID(request.getSwhid()));
+                estimate = sketches.estimate(nodeId, request.hasTypes() ? new AllowedNodes(request.getTypes()) : null);
             } catch (IllegalArgumentException e) {
                 responseObserver
                         .onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asException());
                 return;
             }
-            t.visit();
-            Path path = t.getPath();
-            if (path == null) {
-                responseObserver.onError(Status.NOT_FOUND.asException());
-            } else {
-                responseObserver.onNext(path);
-                responseObserver.onCompleted();
-            }
+            responseObserver.onNext(EstimateReachableResponse.newBuilder().setCount(Math.round(estimate))
+                    .setRelativeError(sketches.getRelativeError()).build());
+            responseObserver.onCompleted();
         }
 
         /**
-         * Find the shortest path between a set of source nodes and a set of destination nodes using a
-         * bidirectional BFS.
+         * Perform a BFS traversal from a set of source nodes and stream the nodes encountered. The
+         * traversal is paused whenever the client cannot keep up with the stream, see
+         * {@link FlowControlledTraversal}.
          */
         @Override
-        public void findPathBetween(FindPathBetweenRequest request, StreamObserver<Path> responseObserver) {
-            SwhBidirectionalGraph g = graph.copy();
-            Traversal.FindPathBetween t;
+        public void traverse(TraversalRequest request, StreamObserver<Node> responseObserver) {
+            traverse(request, responseObserver, false);
+        }
+
+        /**
+         * Same as {@link #traverse(TraversalRequest, StreamObserver)}, but send the nodes in their protobuf
+         * encoding (see {@link #bindServiceWithEncodedNodes()}) if {@code encodeNodes} is set.
+         */
+        private void traverse(TraversalRequest request, StreamObserver<Node> responseObserver, boolean encodeNodes) {
+            ServerCallStreamObserver<Node> serverObserver = (ServerCallStreamObserver<Node>) responseObserver;
+            GraphViewPool.View view = views.checkout();
+            Traversal.SimpleTraversal t;
             try {
-                t = new Traversal.FindPathBetween(g, request);
+                t = createTraversal(view.graph(), request, serverObserver::onNext);
             } catch (IllegalArgumentException e) {
+                view.close();
                 responseObserver
                         .onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asException());
                 return;
             }
-            t.visit();
-            Path path = t.getPath();
-            if (path == null) {
-                responseObserver.onError(Status.NOT_FOUND.asException());
-            } else {
-                responseObserver.onNext(path);
-                responseObserver.onCompleted();
+            if (encodeNodes) {
+                // The marshaller of the responses (see bindServiceWithEncodedNodes) sends the encoded nodes as-is
+                @SuppressWarnings("unchecked")
+                StreamObserver<Object> rawObserver = (StreamObserver<Object>) (StreamObserver<?>) serverObserver;
+                t.encodeNodes(rawObserver::onNext);
             }
+            startTraversal(new FlowControlledTraversal(t, serverObserver, () -> {
+                reportTraversal(t);
+                t.close();
+                view.close();
+            }));
         }
 
-        /** Return the number of nodes traversed by a BFS traversal. */
+        /**
+         * Same as {@link #traverse}, but stream the nodes encountered in batches (see {@link NodeBatcher}).
+         */
         @Override
-        public void countNodes(TraversalRequest request, StreamObserver<CountResponse> responseObserver) {
-            AtomicLong count = new AtomicLong(0);
-            SwhBidirectionalGraph g = graph.copy();
-            TraversalRequest fixedReq = TraversalRequest.newBuilder(request)
-                    // Ignore return fields, just count nodes
-                    .setMask(FieldMask.getDefaultInstance()).build();
+        public void traverseBatched(TraversalRequest request, StreamObserver<NodeBatch> responseObserver) {
+            ServerCallStreamObserver<NodeBatch> serverObserver = (ServerCallStreamObserver<NodeBatch>) responseObserver;
+            NodeBatcher batcher = new NodeBatcher(serverObserver);
+            GraphViewPool.View view = views.checkout();
             Traversal.SimpleTraversal t;
             try {
-                t = new Traversal.SimpleTraversal(g, fixedReq, n -> count.incrementAndGet());
+                t = createTraversal(view.graph(), request, batcher);
             } catch (IllegalArgumentException e) {
+                view.close();
                 responseObserver
                         .onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asException());
                 return;
             }
-            t.visit();
-            CountResponse response = CountResponse.newBuilder().setCount(count.get()).build();
-            responseObserver.onNext(response);
-            responseObserver.onCompleted();
+            startTraversal(new FlowControlledTraversal(t, serverObserver, batcher, () -> {
+                reportTraversal(t);
+                t.close();
+                view.close();
+            }));
+        }
+
+        /**
+         * Find the shortest path between a set of source nodes and a node that matches a given criteria
+         * using a BFS.
+         */
+        @Override
+        public void findPathTo(FindPathToRequest request, StreamObserver<Path> responseObserver) {
+            runPathQuery(ExecutionLanes.isSmallPathQuery(request.hasMaxEdges(), request.getMaxEdges(),
+                    request.hasMaxDurationMs(), request.getMaxDurationMs()), responseObserver,
+                    () -> findPathToNow(request, responseObserver));
+        }
+
+        private void findPathToNow(FindPathToRequest request, StreamObserver<Path> responseObserver) {
+            try (GraphViewPool.View view = views.checkout()) {
+                SwhBidirectionalGraph g = view.graph();
+                Traversal.FindPathTo t;
+                try {
+                    t = new Traversal.FindPathTo(g, request);
+                } catch (IllegalArgumentException e) {
+                    responseObserver.onError(
+                            Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asException());
+                    return;
+                }
+                Path path;
+                try (t) {
+                    t.visit();
+                    path = t.getPath();
+                    reportTraversal(t);
+                }
+                if (path == null) {
+                    responseObserver.onError(Status.NOT_FOUND.asException());
+                } else {
+                    responseObserver.onNext(path);
+                    responseObserver.onCompleted();
+                }
+            }
+        }
+
+        /**
+         * Find the shortest path between a set of source nodes and a set of destination nodes using a
+         * bidirectional BFS.
+         */
+        @Override
+        public void findPathBetween(FindPathBetweenRequest request, StreamObserver<Path> responseObserver) {
+            runPathQuery(ExecutionLanes.isSmallPathQuery(request.hasMaxEdges(), request.getMaxEdges(),
+                    request.hasMaxDurationMs(), request.getMaxDurationMs()), responseObserver,
+                    () -> findPathBetweenNow(request, responseObserver));
+        }
+
+        private void findPathBetweenNow(FindPathBetweenRequest request, StreamObserver<Path> responseObserver) {
+            try (GraphViewPool.View view = views.checkout()) {
+                SwhBidirectionalGraph g = view.graph();
+                Traversal.FindPathBetween t;
+                try {
+                    t = new Traversal.FindPathBetween(g, request);
+                } catch (IllegalArgumentException e) {
+                    responseObserver.onError(
+                            Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asException());
+                    return;
+                }
+                Path path;
+                try (t) {
+                    t.visit();
+                    path = t.getPath();
+                    reportTraversal(t);
+                }
+                if (path == null) {
+                    responseObserver.onError(Status.NOT_FOUND.asException());
+                } else {
+                    responseObserver.onNext(path);
+                    responseObserver.onCompleted();
+                }
+            }
+        }
+
+        /** Count the nodes or edges traversed by a BFS traversal, approximately if it is too large. */
+        private void countApproximately(TraversalRequest request, StreamObserver<CountResponse> responseObserver,
+                boolean countEdges) {
+            try (GraphViewPool.View view = views.checkout()) {
+                ApproximateCount c;
+                try {
+                    c = new ApproximateCount(view.graph(), request, countEdges);
+                    c.getTraversal().setParallelPool(parallelPool);
+                } catch (IllegalArgumentException e) {
+                    responseObserver.onError(
+                            Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asException());
+                    return;
+                }
+                CountResponse response;
+                try (c) {
+                    response = c.count();
+                    reportTraversal(c.getTraversal());
+                }
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }
+        }
+
+        /** Return the number of nodes traversed by a BFS traversal. */
+        @Override
+        public void countNodes(TraversalRequest request, StreamObserver<CountResponse> responseObserver) {
+            if (request.getApproximate() && ApproximateCount.isSupported(request)) {
+                countApproximately(request, responseObserver, false);
+                return;
+            }
+            AtomicLong count = new AtomicLong(0);
+            try (GraphViewPool.View view = views.checkout()) {
+                SwhBidirectionalGraph g = view.graph();
+                TraversalRequest fixedReq = TraversalRequest.newBuilder(request)
+                        // Ignore return fields, just count nodes
+                        .setMask(FieldMask.getDefaultInstance()).build();
+                Traversal.SimpleTraversal t;
+                try {
+                    t = new Traversal.SimpleTraversal(g, fixedReq, n -> count.incrementAndGet());
+                } catch (IllegalArgumentException e) {
+                    responseObserver.onError(
+                            Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asException());
+                    return;
+                }
+                t.setParallelPool(parallelPool);
+                try (t) {
+                    t.visit();
+                    reportTraversal(t);
+                }
+                CountResponse response = CountResponse.newBuilder().setCount(count.get())
+                        .setExact(t.getInterruption() == null).build();
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }
         }
 
         /** Return the number of edges traversed by a BFS traversal. */
         @Override
         public void countEdges(TraversalRequest request, StreamObserver<CountResponse> responseObserver) {
-            AtomicLong count = new AtomicLong(0);
-            SwhBidirectionalGraph g = graph.copy();
-            TraversalRequest fixedReq = TraversalRequest.newBuilder(request)
-                    // Force return empty successors to count the edges
-                    .setMask(FieldMask.newBuilder().addPaths("num_successors").build()).build();
-            Traversal.SimpleTraversal t;
-            try {
-                t = new Traversal.SimpleTraversal(g, fixedReq, n -> count.addAndGet(n.getNumSuccessors()));
-            } catch (IllegalArgumentException e) {
-                responseObserver
-                        .onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asException());
+            if (request.getApproximate() && ApproximateCount.isSupported(request)) {
+                countApproximately(request, responseObserver, true);
                 return;
             }
-            t.visit();
-            CountResponse response = CountResponse.newBuilder().setCount(count.get()).build();
-            responseObserver.onNext(response);
-            responseObserver.onCompleted();
+            AtomicLong count = new AtomicLong(0);
+            try (GraphViewPool.View view = views.checkout()) {
+                SwhBidirectionalGraph g = view.graph();
+                TraversalRequest fixedReq = TraversalRequest.newBuilder(request)
+                        // Force return empty successors to count the edges
+                        .setMask(FieldMask.newBuilder().addPaths("num_successors").build()).build();
+                Traversal.SimpleTraversal t;
+                try {
+                    t = new Traversal.SimpleTraversal(g, fixedReq, n -> count.addAndGet(n.getNumSuccessors()));
+                } catch (IllegalArgumentException e) {
+                    responseObserver.onError(
+                            Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asException());
+                    return;
+                }
+                t.setParallelPool(parallelPool);
+                try (t) {
+                    t.visit();
+                    reportTraversal(t);
+                }
+                CountResponse response = CountResponse.newBuilder().setCount(count.get())
+                        .setExact(t.getInterruption() == null).build();
+                responseObserver.onNext(response);
+                responseObserver.onCompleted();
+            }
         }
     }
 }
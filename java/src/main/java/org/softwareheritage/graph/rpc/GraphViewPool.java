@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import org.softwareheritage.graph.SwhBidirectionalGraph;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded pool of pre-built graph views.
+ * <p>
+ * The compressed graphs are not thread-safe: every concurrent traversal needs its own lightweight
+ * copy (see {@link SwhBidirectionalGraph#copy()}). Instead of allocating a copy for each request,
+ * request handlers check out a {@link View} from this pool and give it back when they are done
+ * (views are {@link AutoCloseable} so they can be used in a try-with-resources statement).
+ * <p>
+ * The pool is filled with one view per worker thread when it is created. If all the views are
+ * checked out, a new one is built on the fly; it is kept when given back only if the pool is not
+ * full, so the number of idle views never exceeds the size of the pool.
+ */
+public class GraphViewPool {
+    private final SwhBidirectionalGraph graph;
+    private final ArrayBlockingQueue<View> idleViews;
+
+    /** A graph view checked out from the pool. */
+    public class View implements AutoCloseable {
+        private final SwhBidirectionalGraph graph;
+
+        private View(SwhBidirectionalGraph graph) {
+            this.graph = graph;
+        }
+
+        /** Return the graph of this view. It must not be used after the view is closed. */
+        public SwhBidirectionalGraph graph() {
+            return graph;
+        }
+
+        /** Give the view back to the pool. */
+        @Override
+        public void close() {
+            idleViews.offer(this);
+        }
+    }
+
+    /**
+     * @param graph the graph to build the views from
+     * @param size the maximum number of idle views (typically, the number of worker threads)
+     */
+    public GraphViewPool(SwhBidirectionalGraph graph, int size) {
+        this.graph = graph;
+        this.idleViews = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            idleViews.add(new View(graph.copy()));
+        }
+    }
+
+    /** Check out a view from the pool, or build a new one if the pool is empty. */
+    public View checkout() {
+        View view = idleViews.poll();
+        return (view != null) ? view : new View(graph.copy());
+    }
+
+    /** Return the number of idle views currently in the pool. */
+    public int idleCount() {
+        return idleViews.size();
+    }
+}
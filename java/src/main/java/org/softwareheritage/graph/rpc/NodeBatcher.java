@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.google.protobuf.CodedOutputStream;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node observer grouping the nodes returned by a traversal in {@link NodeBatch} messages.
+ * <p>
+ * A batch is sent to the underlying stream as soon as it holds {@code maxNodes} nodes, as soon as
+ * its serialized size reaches {@code maxBytes}, or when its oldest node has been waiting for more
+ * than {@code maxDelayMs} milliseconds. The delay is checked when nodes are added and when
+ * {@link #flushIfExpired()} is called, so callers visiting a lot of nodes without returning them
+ * should call it periodically.
+ */
+public class NodeBatcher implements Traversal.NodeObserver {
+    /** Default maximum number of nodes in a batch */
+    public static final int DEFAULT_MAX_NODES = 1000;
+    /** Default maximum size of a batch, well below the default 4 MiB message size limit of gRPC */
+    public static final int DEFAULT_MAX_BYTES = 1 << 20;
+    /** Default maximum time a node can wait in a batch before it is sent */
+    public static final long DEFAULT_MAX_DELAY_MS = 100;
+
+    private final StreamObserver<NodeBatch> responseObserver;
+    private final int maxNodes;
+    private final int maxBytes;
+    private final long maxDelayNanos;
+
+    private NodeBatch.Builder batch = NodeBatch.newBuilder();
+    private int batchBytes = 0;
+    private long batchStartNanos;
+
+    public NodeBatcher(StreamObserver<NodeBatch> responseObserver) {
+        this(responseObserver, DEFAULT_MAX_NODES, DEFAULT_MAX_BYTES, DEFAULT_MAX_DELAY_MS);
+    }
+
+    /**
+     * @param responseObserver the stream to which the batches are sent
+     * @param maxNodes the maximum number of nodes in a batch
+     * @param maxBytes the size (in bytes) above which a batch is sent
+     * @param maxDelayMs the maximum time (in milliseconds) a node can wait in a batch before it is sent
+     */
+    public NodeBatcher(StreamObserver<NodeBatch> responseObserver, int maxNodes, int maxBytes, long maxDelayMs) {
+        if (maxNodes <= 0) {
+            throw new IllegalArgumentException("Batches must contain at least one node");
+        }
+        this.responseObserver = responseObserver;
+        this.maxNodes = maxNodes;
+        this.maxBytes = maxBytes;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+    }
+
+    @Override
+    public void onNext(Node node) {
+        if (batch.getNodesCount() == 0) {
+            batchStartNanos = System.nanoTime();
+        }
+        batch.addNodes(node);
+        batchBytes += CodedOutputStream.computeMessageSize(1, node);
+        if (batch.getNodesCount() >= maxNodes || batchBytes >= maxBytes) {
+            flush();
+        } else {
+            flushIfExpired();
+        }
+    }
+
+    /** Send the current batch if its oldest node has been waiting for too long. */
+    public void flushIfExpired() {
+        if (batch.getNodesCount() > 0 && System.nanoTime() - batchStartNanos >= maxDelayNanos) {
+            flush();
+        }
+    }
+
+    /** Send the current batch, if it is not empty. */
+    public void flush() {
+        if (batch.getNodesCount() == 0) {
+            return;
+        }
+        responseObserver.onNext(batch.build());
+        batch = NodeBatch.newBuilder();
+        batchBytes = 0;
+    }
+}
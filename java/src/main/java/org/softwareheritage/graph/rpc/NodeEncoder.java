@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.protobuf.ProtoUtils;
+import it.unimi.dsi.big.webgraph.labelling.Label;
+import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
+import org.softwareheritage.graph.SWHID;
+import org.softwareheritage.graph.SwhUnidirectionalGraph;
+import org.softwareheritage.graph.labels.DirEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * NodeEncoder writes the protobuf encoding of the {@link Node} messages streamed by a traversal
+ * directly from the node ids and the property columns, without building the messages with
+ * {@link NodePropertyBuilder}: no builder is created per node and successor, and the label names
+ * and messages are not copied to {@link com.google.protobuf.ByteString}s. The size of each nested
+ * message is computed before it is written, and the nodes are encoded in a buffer reused from one
+ * node to the next.
+ * <p>
+ * The encoded nodes are the same as the ones built by {@link NodePropertyBuilder} for the same
+ * mask, except that null property values (e.g., a revision without an author) are left unset
+ * instead of failing. They are sent as-is to the client by {@link #MARSHALLER}.
+ * <p>
+ * A node is encoded by calling {@link #startNode}, then {@link #addSuccessor} for each of its
+ * successors, then {@link #finishNode}. An encoder must only be used by one thread.
+ */
+public class NodeEncoder {
+    /** Size of the buffer of the encoder, which is reused for all the nodes */
+    private static final int BUFFER_SIZE = 4096;
+    /** Encoded size of a SWHID field */
+    private static final int SWHID_FIELD_SIZE = CodedOutputStream.computeTagSize(1)
+            + CodedOutputStream.computeUInt32SizeNoTag(SWHID.STRING_LENGTH) + SWHID.STRING_LENGTH;
+
+    /**
+     * Marshaller of the responses of Traverse, which sends the nodes encoded by a NodeEncoder as-is,
+     * and serializes the Node messages as usual.
+     */
+    static final MethodDescriptor.Marshaller<Object> MARSHALLER = new MethodDescriptor.Marshaller<>() {
+        private final MethodDescriptor.Marshaller<Node> nodeMarshaller = ProtoUtils
+                .marshaller(Node.getDefaultInstance());
+
+        @Override
+        public InputStream stream(Object value) {
+            if (value instanceof EncodedNode) {
+                return new EncodedNodeStream(((EncodedNode) value).bytes);
+            }
+            return nodeMarshaller.stream((Node) value);
+        }
+
+        @Override
+        public Object parse(InputStream stream) {
+            return nodeMarshaller.parse(stream);
+        }
+    };
+
+    /** The protobuf encoding of a Node message, written by a {@link NodeEncoder}. */
+    public static final class EncodedNode {
+        final byte[] bytes;
+
+        EncodedNode(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        public int getSerializedSize() {
+            return bytes.length;
+        }
+    }
+
+    /** Stream of an encoded node, whose length is known and which can be drained to the transport. */
+    private static final class EncodedNodeStream extends ByteArrayInputStream implements KnownLength, Drainable {
+        EncodedNodeStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            int length = count - pos;
+            target.write(buf, pos, length);
+            pos = count;
+            return length;
+        }
+    }
+
+    private final SwhUnidirectionalGraph graph;
+    private final NodePropertyBuilder.NodeDataMask mask;
+    private final FastByteArrayOutputStream buffer = new FastByteArrayOutputStream(BUFFER_SIZE);
+    private final CodedOutputStream out = CodedOutputStream.newInstance(buffer, BUFFER_SIZE);
+    private final byte[] swhid = new byte[SWHID.STRING_LENGTH];
+
+    /** Names of the labels of the successor being written */
+    private byte[][] labelNames = new byte[16][];
+    /** Encoded sizes of the labels of the successor being written */
+    private int[] labelSizes = new int[16];
+
+    /** Node being encoded, or -1 */
+    private long node = -1;
+    private long numSuccessors;
+
+    public NodeEncoder(SwhUnidirectionalGraph graph, NodePropertyBuilder.NodeDataMask mask) {
+        this.graph = graph;
+        this.mask = mask;
+    }
+
+    /** Start the encoding of a node, discarding the node being encoded, if any. */
+    public void startNode(long node) {
+        reset();
+        this.node = node;
+        this.numSuccessors = 0;
+        if (mask.swhid) {
+            graph.getSWHIDAscii(node, swhid, 0);
+            try {
+                out.writeByteArray(1, swhid);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /** Return whether a node is being encoded. */
+    public boolean isEncoding() {
+        return node != -1;
+    }
+
+    /** Discard the node being encoded, if any. */
+    public void reset() {
+        node = -1;
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        buffer.reset();
+    }
+
+    /**
+     * Add a successor to the node being encoded, with the edge properties requested in the mask. Does
+     * nothing if no node is being encoded.
+     */
+    public void addSuccessor(long dst, Label label) {
+        if (node == -1) {
+            return;
+        }
+        numSuccessors++;
+        int size = mask.successorSwhid ? SWHID_FIELD_SIZE : 0;
+        DirEntry[] entries = null;
+        if (mask.successorLabel) {
+            entries = (DirEntry[]) label.get();
+            if (labelNames.length < entries.length) {
+                labelNames = new byte[entries.length][];
+                labelSizes = new int[entries.length];
+            }
+            for (int i = 0; i < entries.length; i++) {
+                byte[] name = graph.getLabelName(entries[i].filenameId);
+                int permission = entries[i].permission;
+                labelNames[i] = name;
+                labelSizes[i] = (name.length > 0 ? CodedOutputStream.computeByteArraySize(1, name) : 0)
+                        + (permission != 0 ? CodedOutputStream.computeInt32Size(2, permission) : 0);
+                size += CodedOutputStream.computeTagSize(2) + CodedOutputStream.computeUInt32SizeNoTag(labelSizes[i])
+                        + labelSizes[i];
+            }
+        }
+        if (mask.successorNodeId) {
+            size += CodedOutputStream.computeInt64Size(3, dst);
+        }
+        // Like NodePropertyBuilder, empty successors are not returned
+        if (mask.successorSwhid || mask.successorNodeId || (entries != null && entries.length > 0)) {
+            writeSuccessor(dst, size, entries);
+        }
+    }
+
+    private void writeSuccessor(long dst, int size, DirEntry[] entries) {
+        try {
+            out.writeTag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(size);
+            if (mask.successorSwhid) {
+                graph.getSWHIDAscii(dst, swhid, 0);
+                out.writeByteArray(1, swhid);
+            }
+            for (int i = 0; entries != null && i < entries.length; i++) {
+                out.writeTag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                out.writeUInt32NoTag(labelSizes[i]);
+                if (labelNames[i].length > 0) {
+                    out.writeByteArray(1, labelNames[i]);
+                }
+                if (entries[i].permission != 0) {
+                    out.writeInt32(2, entries[i].permission);
+                }
+                labelNames[i] = null;
+            }
+            if (mask.successorNodeId) {
+                out.writeInt64(3, dst);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Finish the encoding of the current node, with the node properties requested in the mask.
+     *
+     * @param continuationToken the continuation token of the node, or null
+     * @return the encoded node
+     */
+    public EncodedNode finishNode(String continuationToken) {
+        if (node == -1) {
+            throw new IllegalStateException("No node is being encoded");
+        }
+        try {
+            writeNodeProperties();
+            if (mask.numSuccessors && numSuccessors > 0) {
+                out.writeInt64(9, numSuccessors);
+            }
+            if (continuationToken != null) {
+                out.writeString(10, continuationToken);
+            }
+            if (mask.nodeId) {
+                out.writeInt64(11, node);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        EncodedNode encoded = new EncodedNode(Arrays.copyOf(buffer.array, buffer.length));
+        node = -1;
+        buffer.reset();
+        return encoded;
+    }
+
+    /** Write the data field (cnt, rev, rel or ori) of the current node. */
+    private void writeNodeProperties() throws IOException {
+        switch (graph.getNodeType(node)) {
+            case CNT: {
+                Long length = mask.cntLength ? graph.getContentLength(node) : null;
+                boolean isSkipped = mask.cntIsSkipped && graph.isContentSkipped(node);
+                int size = (length != null ? CodedOutputStream.computeInt64Size(1, length) : 0)
+                        + (mask.cntIsSkipped ? CodedOutputStream.computeBoolSize(2, isSkipped) : 0);
+                writeMessageHeader(3, size);
+                if (length != null) {
+                    out.writeInt64(1, length);
+                }
+                if (mask.cntIsSkipped) {
+                    out.writeBool(2, isSkipped);
+                }
+                break;
+            }
+            case REV: {
+                Long author = mask.revAuthor ? graph.getAuthorId(node) : null;
+                Long authorDate = mask.revAuthorDate ? graph.getAuthorTimestamp(node) : null;
+                Short authorDateOffset = mask.revAuthorDateOffset ? graph.getAuthorTimestampOffset(node) : null;
+                Long committer = mask.revCommitter ? graph.getCommitterId(node) : null;
+                Long committerDate = mask.revCommitterDate ? graph.getCommitterTimestamp(node) : null;
+                Short committerDateOffset = mask.revCommitterDateOffset
+                        ? graph.getCommitterTimestampOffset(node)
+                        : null;
+                byte[] message = mask.revMessage ? graph.getMessage(node) : null;
+                int size = int64Size(1, author) + int64Size(2, authorDate) + int32Size(3, authorDateOffset)
+                        + int64Size(4, committer) + int64Size(5, committerDate) + int32Size(6, committerDateOffset)
+                        + bytesSize(7, message);
+                writeMessageHeader(5, size);
+                writeInt64(1, author);
+                writeInt64(2, authorDate);
+                writeInt32(3, authorDateOffset);
+                writeInt64(4, committer);
+                writeInt64(5, committerDate);
+                writeInt32(6, committerDateOffset);
+                writeBytes(7, message);
+                break;
+            }
+            case REL: {
+                Long author = mask.relAuthor ? graph.getAuthorId(node) : null;
+                Long authorDate = mask.relAuthorDate ? graph.getAuthorTimestamp(node) : null;
+                Short authorDateOffset = mask.relAuthorDateOffset ? graph.getAuthorTimestampOffset(node) : null;
+                // Same as NodePropertyBuilder, which returns the message for both the name and the message
+                byte[] message = (mask.relName || mask.relMessage) ? graph.getMessage(node) : null;
+                int size = int64Size(1, author) + int64Size(2, authorDate) + int32Size(3, authorDateOffset)
+                        + bytesSize(5, message);
+                writeMessageHeader(6, size);
+                writeInt64(1, author);
+                writeInt64(2, authorDate);
+                writeInt32(3, authorDateOffset);
+                writeBytes(5, message);
+                break;
+            }
+            case ORI: {
+                String url = mask.oriUrl ? graph.getUrl(node) : null;
+                int size = url != null ? CodedOutputStream.computeStringSize(1, url) : 0;
+                writeMessageHeader(8, size);
+                if (url != null) {
+                    out.writeString(1, url);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private void writeMessageHeader(int field, int size) throws IOException {
+        out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(size);
+    }
+
+    private static int int64Size(int field, Long value) {
+        return value != null ? CodedOutputStream.computeInt64Size(field, value) : 0;
+    }
+
+    private static int int32Size(int field, Short value) {
+        return value != null ? CodedOutputStream.computeInt32Size(field, value) : 0;
+    }
+
+    private static int bytesSize(int field, byte[] value) {
+        return value != null ? CodedOutputStream.computeByteArraySize(field, value) : 0;
+    }
+
+    private void writeInt64(int field, Long value) throws IOException {
+        if (value != null) {
+            out.writeInt64(field, value);
+        }
+    }
+
+    private void writeInt32(int field, Short value) throws IOException {
+        if (value != null) {
+            out.writeInt32(field, value);
+        }
+    }
+
+    private void writeBytes(int field, byte[] value) throws IOException {
+        if (value != null) {
+            out.writeByteArray(field, value);
+        }
+    }
+}
@@ -9,12 +9,16 @@ package org.softwareheritage.graph.rpc;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.FieldMask;
+import com.google.protobuf.UnsafeByteOperations;
 import com.google.protobuf.util.FieldMaskUtil;
 import it.unimi.dsi.big.webgraph.labelling.Label;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import org.softwareheritage.graph.SWHID;
 import org.softwareheritage.graph.SwhUnidirectionalGraph;
 import org.softwareheritage.graph.labels.DirEntry;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * NodePropertyBuilder is a helper class to enrich {@link Node} messages with node and edge
@@ -22,17 +26,25 @@ import java.util.*;
  * streams. Because property access is disk-based and slow, particular care is taken to avoid
  * loading unnecessary properties. We use a FieldMask object to check which properties are requested
  * by the client, and only load these.
+ * <p>
+ * The internal node ids ({@code node_id} and {@code successor.node_id}) are only returned when the
+ * mask explicitly requests them, not when all fields are requested.
  */
 public class NodePropertyBuilder {
+    /** Number of nodes processed by a single task of {@link #buildNodes} */
+    static final int BULK_CHUNK_SIZE = 1024;
+
     /**
      * NodeDataMask caches a FieldMask into a more efficient representation (booleans). This avoids the
      * need of parsing the FieldMask for each node in the stream.
      */
     public static class NodeDataMask {
         public boolean swhid;
+        public boolean nodeId;
         public boolean successor;
         public boolean successorSwhid;
         public boolean successorLabel;
+        public boolean successorNodeId;
         public boolean numSuccessors;
         public boolean cntLength;
         public boolean cntIsSkipped;
@@ -61,7 +73,9 @@ public class NodePropertyBuilder {
                     || allowedFields.contains("successor.swhid");
             this.successorLabel = allowedFields == null || allowedFields.contains("successor")
                     || allowedFields.contains("successor.label");
-            this.successor = this.successorSwhid || this.successorLabel;
+            this.nodeId = allowedFields != null && allowedFields.contains("node_id");
+            this.successorNodeId = allowedFields != null && allowedFields.contains("successor.node_id");
+            this.successor = this.successorSwhid || this.successorLabel || this.successorNodeId;
             this.numSuccessors = allowedFields == null || allowedFields.contains("num_successors");
             this.cntLength = allowedFields == null || allowedFields.contains("cnt.length");
             this.cntIsSkipped = allowedFields == null || allowedFields.contains("cnt.is_skipped");
@@ -81,11 +95,26 @@ public class NodePropertyBuilder {
         }
     }
 
+    /**
+     * Return the string representation of the SWHID of a node, as the UTF-8 bytes of a protobuf string
+     * field. The bytes are written directly from the node -> SWHID map, without building a
+     * {@link SWHID} or a String.
+     */
+    private static ByteString getSWHIDAscii(SwhUnidirectionalGraph graph, long node) {
+        byte[] swhid = new byte[SWHID.STRING_LENGTH];
+        graph.getSWHIDAscii(node, swhid, 0);
+        // The array is never modified after this point, so it does not need to be copied
+        return UnsafeByteOperations.unsafeWrap(swhid);
+    }
+
     /** Enrich a Node message with node properties requested in the NodeDataMask. */
     public static void buildNodeProperties(SwhUnidirectionalGraph graph, NodeDataMask mask, Node.Builder nodeBuilder,
             long node) {
         if (mask.swhid) {
-            nodeBuilder.setSwhid(graph.getSWHID(node).toString());
+            nodeBuilder.setSwhidBytes(getSWHIDAscii(graph, node));
+        }
+        if (mask.nodeId) {
+            nodeBuilder.setNodeId(node);
         }
 
         switch (graph.getNodeType(node)) {
@@ -164,6 +193,36 @@ public class NodePropertyBuilder {
         }
     }
 
+    /**
+     * Build the Node messages of multiple nodes, with the node properties requested in the
+     * NodeDataMask.
+     * <p>
+     * The properties are read in increasing node id order, so that the reads in the memory-mapped
+     * property files move forward through the files instead of jumping randomly between pages. The
+     * sorted nodes are split in chunks of {@link #BULK_CHUNK_SIZE} nodes, which are processed in
+     * parallel.
+     *
+     * @return the Node messages, in the same order as {@code nodeIds}
+     */
+    public static Node[] buildNodes(SwhUnidirectionalGraph graph, NodeDataMask mask, long[] nodeIds) {
+        int[] order = new int[nodeIds.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        IntArrays.parallelQuickSort(order, (i, j) -> Long.compare(nodeIds[i], nodeIds[j]));
+        Node[] nodes = new Node[nodeIds.length];
+        int numChunks = (nodeIds.length + BULK_CHUNK_SIZE - 1) / BULK_CHUNK_SIZE;
+        IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+            int end = Math.min((chunk + 1) * BULK_CHUNK_SIZE, order.length);
+            for (int i = chunk * BULK_CHUNK_SIZE; i < end; i++) {
+                Node.Builder nodeBuilder = Node.newBuilder();
+                buildNodeProperties(graph, mask, nodeBuilder, nodeIds[order[i]]);
+                nodes[order[i]] = nodeBuilder.build();
+            }
+        });
+        return nodes;
+    }
+
     /** Enrich a Node message with node properties requested in the FieldMask. */
     public static void buildNodeProperties(SwhUnidirectionalGraph graph, FieldMask mask, Node.Builder nodeBuilder,
             long node) {
@@ -179,7 +238,7 @@ public class NodePropertyBuilder {
         if (nodeBuilder != null) {
             Successor.Builder successorBuilder = Successor.newBuilder();
             if (mask.successorSwhid) {
-                successorBuilder.setSwhid(graph.getSWHID(dst).toString());
+                successorBuilder.setSwhidBytes(getSWHIDAscii(graph, dst));
             }
             if (mask.successorLabel) {
                 DirEntry[] entries = (DirEntry[]) label.get();
@@ -190,8 +249,13 @@ public class NodePropertyBuilder {
                     successorBuilder.addLabel(builder.build());
                 }
             }
+            if (mask.successorNodeId) {
+                successorBuilder.setNodeId(dst);
+            }
+            // Successors without any of the requested fields (e.g., unlabelled arcs when only their labels are
+            // requested) are not returned, but still counted in num_successors
             Successor successor = successorBuilder.build();
-            if (successor != Successor.getDefaultInstance()) {
+            if (!successor.equals(Successor.getDefaultInstance())) {
                 nodeBuilder.addSuccessor(successor);
             }
 
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import it.unimi.dsi.big.webgraph.LazyLongIterator;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.softwareheritage.graph.SwhUnidirectionalGraph;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parallel expansion of the frontier of a level-synchronous BFS.
+ * <p>
+ * The nodes of the frontier are visited concurrently by a fixed set of {@link Worker}s running in a
+ * {@link ForkJoinPool}. Each worker has its own copy of the graph (the compressed graphs are not
+ * thread-safe) and its own buffer for the nodes of the next frontier, so the only shared state is
+ * the {@link AtomicBitVector} of visited nodes, which guarantees that each node is added to exactly
+ * one next-frontier buffer. Workers claim blocks of the frontier from a shared cursor, which
+ * balances the load when some nodes have a much larger degree than others.
+ * <p>
+ * Besides this "top-down" expansion, where the successors of the frontier are scanned, the next
+ * frontier can also be computed "bottom-up" (see {@link #pull(AtomicBitVector)}): each unvisited
+ * node scans its predecessors in the transposed graph, and joins the next frontier as soon as one
+ * of them is in the current frontier. This is much cheaper than the top-down expansion when the
+ * frontier holds a large part of the graph (Beamer et al., "Direction-Optimizing Breadth-First
+ * Search", SC 2012).
+ * <p>
+ * The order in which nodes of the same depth are visited is not deterministic, unless there is a
+ * single worker.
+ */
+class ParallelBFS<W extends ParallelBFS.Worker> {
+    /** Number of consecutive frontier nodes claimed at once by a worker. */
+    static final int BLOCK_SIZE = 1024;
+
+    /** Visits nodes of the frontier on behalf of a single thread. */
+    abstract static class Worker {
+        /** The copy of the graph used by this worker. */
+        protected final SwhUnidirectionalGraph g;
+        /** The copy of the transposed graph used by this worker, or null if it cannot pull. */
+        protected final SwhUnidirectionalGraph transposed;
+        /** Nodes discovered by this worker, i.e., its share of the next frontier. */
+        final LongArrayList next = new LongArrayList();
+        /** Sum of the outdegrees of the discovered nodes (only computed if the worker can pull) */
+        long nextOutdegrees = 0;
+        /** Sum of the indegrees of the discovered nodes (only computed if the worker can pull) */
+        long nextIndegrees = 0;
+        private AtomicBitVector visited;
+
+        /** @param g the graph to traverse, which must not be used by any other worker */
+        protected Worker(SwhUnidirectionalGraph g) {
+            this(g, null);
+        }
+
+        /**
+         * @param g the graph to traverse, which must not be used by any other worker
+         * @param transposed the transposed graph, which must not be used by any other worker, or null if
+         *            the worker is only used for top-down expansions
+         */
+        protected Worker(SwhUnidirectionalGraph g, SwhUnidirectionalGraph transposed) {
+            this.g = g;
+            this.transposed = transposed;
+        }
+
+        /**
+         * Visit a node of the frontier. If {@code expand} is true, implementations must call
+         * {@link #visitEdge(long)} on each of the successors of the node that should be traversed;
+         * otherwise the next frontier is computed bottom-up and the successors must not be visited.
+         */
+        protected abstract void visitNode(long node, long depth, boolean expand);
+
+        /** Return whether the edge src -> dst can be traversed. Used by the bottom-up step. */
+        protected boolean isAllowedEdge(long src, long dst) {
+            return true;
+        }
+
+        /** Visit an edge, adding its destination to the next frontier if it was not visited yet. */
+        protected final void visitEdge(long dst) {
+            if (visited.testAndSet(dst)) {
+                discovered(dst);
+            }
+        }
+
+        /** Add a newly visited node to the next frontier. */
+        void discovered(long node) {
+            next.add(node);
+            if (transposed != null) {
+                nextOutdegrees += g.outdegree(node);
+                nextIndegrees += transposed.outdegree(node);
+            }
+        }
+
+        /** Reset the buffers holding the results of the last expansion. */
+        void clear() {
+            next.clear();
+            nextOutdegrees = 0;
+            nextIndegrees = 0;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final AtomicBitVector visited;
+    private final List<W> workers;
+    private final long maxEdges;
+    private final AtomicLong edgesAccessed;
+    private volatile boolean edgeLimitReached = false;
+
+    /**
+     * @param pool the pool running the workers
+     * @param visited the set of already visited nodes, which is updated by the workers
+     * @param workers the workers, at most one of which is run by each thread of the pool
+     * @param maxEdges if >= 0, the maximum number of edges to access, after which the expansion stops
+     * @param edgesAccessed the number of edges already accessed by the traversal
+     */
+    ParallelBFS(ForkJoinPool pool, AtomicBitVector visited, List<W> workers, long maxEdges, long edgesAccessed) {
+        this.pool = pool;
+        this.visited = visited;
+        this.workers = workers;
+        this.maxEdges = maxEdges;
+        this.edgesAccessed = new AtomicLong(edgesAccessed);
+        for (Worker worker : workers) {
+            worker.visited = visited;
+        }
+    }
+
+    /** Return the workers, whose buffers hold the results of the last expansion. */
+    List<W> getWorkers() {
+        return workers;
+    }
+
+    /** Return whether a node has been visited. Must not be called concurrently with an expansion. */
+    boolean isVisited(long node) {
+        return visited.get(node);
+    }
+
+    /** Return the number of edges accessed since the beginning of the traversal. */
+    long getEdgesAccessed() {
+        return edgesAccessed.get();
+    }
+
+    /**
+     * Visit a slice of the frontier in parallel and wait for all the workers to be done. If
+     * {@code expand} is true, the next frontier is left in the {@link Worker#next} buffers of the
+     * workers.
+     *
+     * @param frontier array containing the nodes to visit
+     * @param length the number of nodes to visit from the start of the array
+     * @param depth the depth of the visited nodes
+     * @param expand whether the successors of the nodes should be visited (top-down step). If false,
+     *            the next frontier must be computed with {@link #pull(AtomicBitVector)} once the whole
+     *            frontier has been visited.
+     * @return false if the maximum number of edges was reached, in which case some nodes have not been
+     *         visited and the traversal should stop, true otherwise
+     */
+    boolean expand(long[] frontier, int length, long depth, boolean expand) {
+        AtomicInteger cursor = new AtomicInteger(0);
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[workers.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            W worker = workers.get(i);
+            tasks[i] = pool.submit(() -> run(worker, frontier, length, depth, expand, cursor));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        return !edgeLimitReached;
+    }
+
+    /**
+     * Compute the next frontier bottom-up, i.e., find all the unvisited nodes that have a predecessor
+     * in the given frontier, and wait for all the workers to be done. The next frontier is left in the
+     * {@link Worker#next} buffers of the workers, which must all have a transposed graph.
+     * <p>
+     * The predecessor arcs scanned by this step are added to the number of accessed edges. The step
+     * does not check the maximum number of edges, as it is only used by traversals without such limit.
+     *
+     * @param frontier the nodes of the current frontier
+     */
+    void pull(AtomicBitVector frontier) {
+        AtomicLong cursor = new AtomicLong(0);
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[workers.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            W worker = workers.get(i);
+            tasks[i] = pool.submit(() -> runPull(worker, frontier, cursor));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    private void runPull(W worker, AtomicBitVector frontier, AtomicLong cursor) {
+        long numNodes = visited.length();
+        long localEdges = 0;
+        // Blocks are aligned on 64 nodes, so that workers never contend on the same word of the bitmap.
+        long blockNodes = BLOCK_SIZE * 64L;
+        for (long start; (start = cursor.getAndAdd(blockNodes)) < numNodes;) {
+            long end = Math.min(start + blockNodes, numNodes);
+            for (long node = start; node < end; node++) {
+                if (visited.get(node)) {
+                    continue;
+                }
+                LazyLongIterator predecessors = worker.transposed.successors(node);
+                for (long pred; (pred = predecessors.nextLong()) != -1;) {
+                    localEdges++;
+                    if (frontier.get(pred) && worker.isAllowedEdge(pred, node)) {
+                        visited.testAndSet(node);
+                        worker.discovered(node);
+                        break;
+                    }
+                }
+            }
+        }
+        edgesAccessed.addAndGet(localEdges);
+    }
+
+    private void run(W worker, long[] frontier, int length, long depth, boolean expand, AtomicInteger cursor) {
+        long localEdges = 0;
+        for (int start; !edgeLimitReached && (start = cursor.getAndAdd(BLOCK_SIZE)) < length;) {
+            int end = Math.min(start + BLOCK_SIZE, length);
+            for (int i = start; i < end; i++) {
+                long node = frontier[i];
+                // A bottom-up level only visits the nodes of the frontier, it does not read their successors
+                long outdegree = expand ? worker.g.outdegree(node) : 0;
+                if (maxEdges >= 0) {
+                    // The edge limit is shared by all the workers, so it must be checked globally.
+                    if (edgesAccessed.addAndGet(outdegree) > maxEdges) {
+                        edgeLimitReached = true;
+                        break;
+                    }
+                } else {
+                    localEdges += outdegree;
+                }
+                worker.visitNode(node, depth, expand);
+            }
+        }
+        edgesAccessed.addAndGet(localEdges);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resources shared by the level-synchronous traversals of a server (see
+ * {@link Traversal.SimpleTraversal}): the fork-join pool expanding their frontiers, and the bit
+ * vectors of their visited sets and frontiers.
+ * <p>
+ * At most {@code maxTraversals} traversals can be level-synchronous at the same time; the other ones
+ * keep expanding their frontier sequentially. This bounds the memory used by the bit vectors (which
+ * have one bit per node of the graph) and by the graph copies of the workers. The bit vectors of
+ * finished traversals are cleared and kept for the next ones, as long as the kept bit vectors do not
+ * exceed a maximum number of bytes ({@link #DEFAULT_MAX_CACHED_BYTES} by default): on large graphs,
+ * where a single bit vector takes gigabytes, they are thus freed instead of being retained for the
+ * life of the pool.
+ */
+public class ParallelTraversalPool implements AutoCloseable {
+    /** Default number of traversals that can be level-synchronous at the same time. */
+    public static final int DEFAULT_MAX_TRAVERSALS = 2;
+    /** Default maximum number of bytes retained by the bit vectors kept for the next traversals. */
+    public static final long DEFAULT_MAX_CACHED_BYTES = 64L << 20;
+
+    private static ParallelTraversalPool defaultPool = null;
+
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+    private final Semaphore slots;
+    private final long maxCachedBytes;
+    private final ConcurrentLinkedQueue<AtomicBitVector> bitVectors = new ConcurrentLinkedQueue<>();
+    /** Number of bytes retained by the bit vectors kept for the next traversals. */
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    /**
+     * @param parallelism the number of threads of the dedicated fork-join pool, i.e., the number of
+     *            workers of each level-synchronous traversal
+     * @param maxTraversals the maximum number of traversals that can be level-synchronous at the same
+     *            time
+     */
+    public ParallelTraversalPool(int parallelism, int maxTraversals) {
+        this(parallelism, maxTraversals, DEFAULT_MAX_CACHED_BYTES);
+    }
+
+    /**
+     * @param parallelism the number of threads of the dedicated fork-join pool
+     * @param maxTraversals the maximum number of traversals that can be level-synchronous at the same
+     *            time
+     * @param maxCachedBytes the maximum number of bytes retained by the bit vectors kept for the next
+     *            traversals
+     */
+    ParallelTraversalPool(int parallelism, int maxTraversals, long maxCachedBytes) {
+        this(new ForkJoinPool(parallelism), true, maxTraversals, maxCachedBytes);
+    }
+
+    /**
+     * @param pool the fork-join pool expanding the frontiers, which is not shut down by
+     *            {@link #close()}
+     * @param maxTraversals the maximum number of traversals that can be level-synchronous at the same
+     *            time
+     */
+    public ParallelTraversalPool(ForkJoinPool pool, int maxTraversals) {
+        this(pool, false, maxTraversals, DEFAULT_MAX_CACHED_BYTES);
+    }
+
+    private ParallelTraversalPool(ForkJoinPool pool, boolean ownsPool, int maxTraversals, long maxCachedBytes) {
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.slots = new Semaphore(maxTraversals);
+        this.maxCachedBytes = maxCachedBytes;
+    }
+
+    /**
+     * Return the pool used by the traversals that are not run by a server, with one thread per core
+     * and {@link #DEFAULT_MAX_TRAVERSALS} slots.
+     */
+    public static synchronized ParallelTraversalPool getDefault() {
+        if (defaultPool == null) {
+            defaultPool = new ParallelTraversalPool(Runtime.getRuntime().availableProcessors(),
+                    DEFAULT_MAX_TRAVERSALS);
+        }
+        return defaultPool;
+    }
+
+    /** Return the fork-join pool expanding the frontiers. */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Try to reserve a slot for a level-synchronous traversal.
+     *
+     * @return true if the traversal can become level-synchronous, in which case it must call
+     *         {@link #releaseSlot()} once it is over, false otherwise
+     */
+    public boolean tryAcquireSlot() {
+        return slots.tryAcquire();
+    }
+
+    /** Give back a slot reserved by {@link #tryAcquireSlot()}. */
+    public void releaseSlot() {
+        slots.release();
+    }
+
+    /** Return a bit vector of the given length with all its bits unset, reused if possible. */
+    public AtomicBitVector acquireBitVector(long length) {
+        for (AtomicBitVector bits : bitVectors) {
+            if (bits.length() == length && bitVectors.remove(bits)) {
+                cachedBytes.addAndGet(-bits.memoryUsage());
+                return bits;
+            }
+        }
+        return new AtomicBitVector(length);
+    }
+
+    /**
+     * Clear a bit vector and keep it for a next traversal, unless it would make the kept bit vectors
+     * exceed the maximum number of bytes of the pool.
+     */
+    public void releaseBitVector(AtomicBitVector bits) {
+        long bytes = bits.memoryUsage();
+        if (cachedBytes.addAndGet(bytes) > maxCachedBytes) {
+            cachedBytes.addAndGet(-bytes);
+            return;
+        }
+        bits.clear();
+        bitVectors.add(bits);
+    }
+
+    /** Drop the cached bit vectors, and shut down the fork-join pool if it was created by this pool. */
+    @Override
+    public void close() {
+        for (AtomicBitVector bits; (bits = bitVectors.poll()) != null;) {
+            cachedBytes.addAndGet(-bits.memoryUsage());
+        }
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+}
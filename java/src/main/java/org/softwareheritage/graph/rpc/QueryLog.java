@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Server interceptor recording the calls of the server to a compact binary query log, which can be
+ * replayed against a server with {@link ReplayQueryLog}.
+ * <p>
+ * The log starts with {@link #MAGIC} and {@link #VERSION}, followed by one record per call: the
+ * time at which the call started, relative to the creation of the log, and its duration (two longs,
+ * in nanoseconds), its status code (a byte), the full name of its method (a modified UTF-8 string,
+ * see {@link DataOutput#writeUTF}), and the length (an int) and bytes of its serialized request. A
+ * record is written when the call is closed, so the records are not sorted by start time. Calls
+ * closed before their request was received (e.g., rejected by {@link AdmissionControl}) are recorded
+ * with an empty request.
+ * <p>
+ * The requests are serialized again from the parsed messages, which costs about as much as their
+ * parsing; the log should only be enabled to capture traffic.
+ */
+public class QueryLog implements ServerInterceptor, Closeable {
+    private final static Logger logger = LoggerFactory.getLogger(QueryLog.class);
+
+    static final byte[] MAGIC = "SWHGQLOG".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final long originNanos = System.nanoTime();
+    /** Whether the log is closed, or stopped after a write error */
+    private volatile boolean closed = false;
+
+    /** A call recorded in a query log. */
+    public static class Record {
+        /** Full name of the method (e.g., "swh.graph.TraversalService/Traverse") */
+        public final String method;
+        /** Serialized request of the call */
+        public final byte[] request;
+        /** Time at which the call started, relative to the creation of the log, in nanoseconds */
+        public final long startNanos;
+        /** Duration of the call on the server, in nanoseconds */
+        public final long durationNanos;
+        public final Status.Code status;
+
+        Record(String method, byte[] request, long startNanos, long durationNanos, Status.Code status) {
+            this.method = method;
+            this.request = request;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.status = status;
+        }
+    }
+
+    /** Start a query log written to a stream, which is closed with the log. */
+    public QueryLog(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.write(MAGIC);
+        this.out.writeInt(VERSION);
+    }
+
+    /** Start a query log written to a file. */
+    public static QueryLog create(Path path) throws IOException {
+        return new QueryLog(Files.newOutputStream(path));
+    }
+
+    /** Stop recording calls, and close the log. */
+    @Override
+    public void close() throws IOException {
+        synchronized (out) {
+            closed = true;
+            out.close();
+        }
+    }
+
+    /** Write the buffered records to the log. */
+    public void flush() throws IOException {
+        synchronized (out) {
+            if (!closed) {
+                out.flush();
+            }
+        }
+    }
+
+    /** State of a recorded call: the record is written once its status is known */
+    private class CallRecorder {
+        private final String method;
+        private final long startNanos = System.nanoTime();
+        private byte[] request = null;
+        private Status.Code status = null;
+
+        CallRecorder(String method) {
+            this.method = method;
+        }
+
+        synchronized void setRequest(Object message) {
+            if (request == null && status == null && message instanceof MessageLite) {
+                request = ((MessageLite) message).toByteArray();
+            }
+        }
+
+        synchronized void setStatus(Status.Code code) {
+            if (status == null) {
+                status = code;
+                long durationNanos = System.nanoTime() - startNanos;
+                write(new Record(method, request != null ? request : new byte[0], startNanos - originNanos,
+                        durationNanos, status));
+            }
+        }
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+            ServerCallHandler<ReqT, RespT> next) {
+        if (closed) {
+            return next.startCall(call, headers);
+        }
+        CallRecorder recorder = new CallRecorder(call.getMethodDescriptor().getFullMethodName());
+        ServerCall<ReqT, RespT> forwardingCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                recorder.setStatus(status.getCode());
+                super.close(status, trailers);
+            }
+        };
+        ServerCall.Listener<ReqT> listener = next.startCall(forwardingCall, headers);
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onMessage(ReqT message) {
+                recorder.setRequest(message);
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onCancel() {
+                recorder.setStatus(Status.Code.CANCELLED);
+                super.onCancel();
+            }
+        };
+    }
+
+    private void write(Record record) {
+        synchronized (out) {
+            if (closed) {
+                return;
+            }
+            try {
+                out.writeLong(record.startNanos);
+                out.writeLong(record.durationNanos);
+                out.writeByte(record.status.value());
+                out.writeUTF(record.method);
+                out.writeInt(record.request.length);
+                out.write(record.request);
+            } catch (IOException e) {
+                logger.error("Cannot write to the query log, stopping it", e);
+                closed = true;
+            }
+        }
+    }
+
+    /**
+     * Read all the records of a query log, sorted by start time.
+     *
+     * @throws IOException if the stream cannot be read or is not a query log
+     */
+    public static List<Record> read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a query log");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported query log version: " + version);
+        }
+        ArrayList<Record> records = new ArrayList<>();
+        while (true) {
+            try {
+                long startNanos = in.readLong();
+                long durationNanos = in.readLong();
+                Status.Code status = Status.fromCodeValue(in.readByte()).getCode();
+                String method = in.readUTF();
+                byte[] request = new byte[in.readInt()];
+                in.readFully(request);
+                records.add(new Record(method, request, startNanos, durationNanos, status));
+            } catch (EOFException e) {
+                // End of the log, or last record truncated by a crash of the server
+                break;
+            }
+        }
+        records.sort(Comparator.comparingLong(r -> r.startNanos));
+        return records;
+    }
+
+    /** Read all the records of a query log file, sorted by start time. */
+    public static List<Record> read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+}
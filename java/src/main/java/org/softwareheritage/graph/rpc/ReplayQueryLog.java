@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.martiansoftware.jsap.*;
+import io.grpc.*;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.StreamObserver;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator replaying the calls of a {@link QueryLog} against a {@link GraphServer}, and
+ * reporting the throughput and the latency percentiles of each method.
+ * <p>
+ * The calls are replayed in the order in which they started, in one of two modes:
+ * <ul>
+ * <li>{@link Mode#OPEN open loop}: each call is sent at the time at which it started in the log,
+ * divided by the time scale, whether the previous calls are completed or not. The latency of a call
+ * is measured from this time, so that it includes the time spent waiting for a free slot when the
+ * server does not keep up (and {@code concurrency} calls are already in flight).</li>
+ * <li>{@link Mode#CLOSED closed loop}: {@code concurrency} clients send the calls one after the
+ * other as fast as possible, each waiting for the completion of its previous call.</li>
+ * </ul>
+ * The requests are sent as recorded, without being parsed, and a call is complete once all its
+ * responses have been received.
+ */
+public class ReplayQueryLog {
+    public enum Mode {
+        OPEN, CLOSED
+    }
+
+    /** Marshaller passing serialized messages through, to replay the requests without parsing them */
+    private static final MethodDescriptor.Marshaller<byte[]> RAW_MARSHALLER = new MethodDescriptor.Marshaller<>() {
+        @Override
+        public InputStream stream(byte[] value) {
+            return new ByteArrayInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            try {
+                return stream.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    /** Percentiles of the latency in the report */
+    static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Channel channel;
+    private final Mode mode;
+    private final int concurrency;
+    private final double timeScale;
+    private final Map<String, MethodDescriptor<byte[], byte[]>> methods = new HashMap<>();
+
+    /**
+     * @param channel the channel to the server
+     * @param mode the replay mode
+     * @param concurrency the maximum number of calls in flight
+     * @param timeScale in open loop, the factor by which the calls are sent faster than recorded (e.g.,
+     *            2 to send them twice as fast)
+     */
+    public ReplayQueryLog(Channel channel, Mode mode, int concurrency, double timeScale) {
+        if (concurrency <= 0 || timeScale <= 0) {
+            throw new IllegalArgumentException("The concurrency and the time scale must be positive");
+        }
+        this.channel = channel;
+        this.mode = mode;
+        this.concurrency = concurrency;
+        this.timeScale = timeScale;
+        for (MethodDescriptor<?, ?> method : TraversalServiceGrpc.getServiceDescriptor().getMethods()) {
+            methods.put(method.getFullMethodName(), method.toBuilder(RAW_MARSHALLER, RAW_MARSHALLER).build());
+        }
+    }
+
+    /** Results of the replayed calls of a method. */
+    public static class MethodReport {
+        private final LongArrayList latencies = new LongArrayList();
+        private final EnumMap<Status.Code, Long> calls = new EnumMap<>(Status.Code.class);
+        private long responses = 0;
+        private long responseBytes = 0;
+        private long[] sortedLatencies;
+
+        private synchronized void record(Status.Code code, long latencyNanos, long responses, long bytes) {
+            latencies.add(latencyNanos);
+            calls.merge(code, 1L, Long::sum);
+            this.responses += responses;
+            this.responseBytes += bytes;
+            sortedLatencies = null;
+        }
+
+        private synchronized void merge(MethodReport other) {
+            synchronized (other) {
+                latencies.addAll(other.latencies);
+                other.calls.forEach((code, n) -> calls.merge(code, n, Long::sum));
+                responses += other.responses;
+                responseBytes += other.responseBytes;
+            }
+            sortedLatencies = null;
+        }
+
+        public synchronized long getCalls() {
+            return latencies.size();
+        }
+
+        /** Return the number of calls completed with a given status code. */
+        public synchronized long getCalls(Status.Code code) {
+            return calls.getOrDefault(code, 0L);
+        }
+
+        public synchronized long getErrors() {
+            return getCalls() - getCalls(Status.Code.OK);
+        }
+
+        /** Return the number of response messages received. */
+        public synchronized long getResponses() {
+            return responses;
+        }
+
+        public synchronized long getResponseBytes() {
+            return responseBytes;
+        }
+
+        /** Return a percentile of the latency of the calls (nearest-rank method), in nanoseconds. */
+        public synchronized long getLatencyPercentile(double percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            if (sortedLatencies == null) {
+                sortedLatencies = latencies.toLongArray();
+                LongArrays.quickSort(sortedLatencies);
+            }
+            int rank = (int) Math.ceil(percentile / 100 * sortedLatencies.length);
+            return sortedLatencies[Math.max(0, Math.min(rank, sortedLatencies.length) - 1)];
+        }
+    }
+
+    /** Results of a replay. */
+    public static class Report {
+        private final TreeMap<String, MethodReport> methods = new TreeMap<>();
+        private long elapsedNanos;
+        private long skipped = 0;
+
+        private synchronized MethodReport getOrCreate(String method) {
+            return methods.computeIfAbsent(method, m -> new MethodReport());
+        }
+
+        /** Return the results of a method, identified by its bare name (e.g., "Traverse"), or null. */
+        public synchronized MethodReport getMethod(String method) {
+            return methods.get(method);
+        }
+
+        /** Return the results of all the methods. */
+        public synchronized MethodReport getTotal() {
+            MethodReport total = new MethodReport();
+            methods.values().forEach(total::merge);
+            return total;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /** Return the number of records that were not replayed: unknown methods and rejected calls. */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /** Return the throughput of the replay, in calls per second. */
+        public double getThroughput(MethodReport method) {
+            return method.getCalls() / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        /** Print the results as a table, with one line per method and the latencies in milliseconds. */
+        public synchronized void print(PrintStream out) {
+            StringBuilder header = new StringBuilder(String.format("%-20s %10s %8s %10s", "method", "calls",
+                    "errors", "calls/s"));
+            for (double percentile : PERCENTILES) {
+                header.append(String.format(" %9s", "p" + (percentile == (long) percentile
+                        ? String.valueOf((long) percentile)
+                        : String.valueOf(percentile))));
+            }
+            out.println(header.append(String.format(" %9s", "max")));
+            Map<String, MethodReport> lines = new LinkedHashMap<>(methods);
+            lines.put("total", getTotal());
+            lines.forEach((name, m) -> {
+                StringBuilder line = new StringBuilder(
+                        String.format("%-20s %10d %8d %10.1f", name, m.getCalls(), m.getErrors(), getThroughput(m)));
+                for (double percentile : PERCENTILES) {
+                    line.append(String.format(" %9.3f", m.getLatencyPercentile(percentile) / 1e6));
+                }
+                out.println(line.append(String.format(" %9.3f", m.getLatencyPercentile(100) / 1e6)));
+            });
+            if (skipped > 0) {
+                out.println(skipped + " calls to unknown methods or rejected without their request skipped");
+            }
+        }
+    }
+
+    /** Replay the calls of a query log, and return their results once they are all completed. */
+    public Report run(List<QueryLog.Record> records) throws InterruptedException {
+        Report report = new Report();
+        Semaphore slots = new Semaphore(concurrency);
+        long firstStartNanos = records.isEmpty() ? 0 : records.get(0).startNanos;
+        long replayStartNanos = System.nanoTime();
+        for (QueryLog.Record record : records) {
+            MethodDescriptor<byte[], byte[]> method = methods.get(record.method);
+            // Calls rejected by admission control are recorded without their request
+            boolean rejected = record.status == Status.Code.RESOURCE_EXHAUSTED && record.request.length == 0;
+            if (method == null || rejected) {
+                report.skipped++;
+                continue;
+            }
+            long sendNanos;
+            if (mode == Mode.OPEN) {
+                sendNanos = replayStartNanos + (long) ((record.startNanos - firstStartNanos) / timeScale);
+                for (long wait; (wait = sendNanos - System.nanoTime()) > 0;) {
+                    LockSupport.parkNanos(wait);
+                }
+                slots.acquire();
+            } else {
+                slots.acquire();
+                sendNanos = System.nanoTime();
+            }
+            send(method, record.request, sendNanos, report.getOrCreate(method.getBareMethodName()), slots);
+        }
+        slots.acquire(concurrency);
+        report.elapsedNanos = System.nanoTime() - replayStartNanos;
+        return report;
+    }
+
+    private void send(MethodDescriptor<byte[], byte[]> method, byte[] request, long sendNanos,
+            MethodReport methodReport, Semaphore slots) {
+        StreamObserver<byte[]> observer = new StreamObserver<>() {
+            private long responses = 0;
+            private long bytes = 0;
+
+            @Override
+            public void onNext(byte[] value) {
+                responses++;
+                bytes += value.length;
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done(Status.fromThrowable(t).getCode());
+            }
+
+            @Override
+            public void onCompleted() {
+                done(Status.Code.OK);
+            }
+
+            private void done(Status.Code code) {
+                methodReport.record(code, System.nanoTime() - sendNanos, responses, bytes);
+                slots.release();
+            }
+        };
+        ClientCall<byte[], byte[]> call = channel.newCall(method, CallOptions.DEFAULT);
+        if (method.getType() == MethodDescriptor.MethodType.UNARY) {
+            ClientCalls.asyncUnaryCall(call, request, observer);
+        } else {
+            ClientCalls.asyncServerStreamingCall(call, request, observer);
+        }
+    }
+
+    private static JSAPResult parseArgs(String[] args) {
+        JSAPResult config = null;
+        try {
+            SimpleJSAP jsap = new SimpleJSAP(ReplayQueryLog.class.getName(),
+                    "Replay the calls of a query log against a graph server, and report their throughput and "
+                            + "latency percentiles.",
+                    new Parameter[]{
+                            new FlaggedOption("host", JSAP.STRING_PARSER, "localhost", JSAP.NOT_REQUIRED, 'H',
+                                    "host", "The host of the server."),
+                            new FlaggedOption("port", JSAP.INTEGER_PARSER, "50091", JSAP.NOT_REQUIRED, 'p', "port",
+                                    "The port of the server."),
+                            new FlaggedOption("mode", JSAP.STRING_PARSER, "closed", JSAP.NOT_REQUIRED, 'm', "mode",
+                                    "open: send the calls at their recorded times; closed: send them as fast as "
+                                            + "the concurrent clients can."),
+                            new FlaggedOption("concurrency", JSAP.INTEGER_PARSER, "16", JSAP.NOT_REQUIRED, 'c',
+                                    "concurrency", "The maximum number of calls in flight."),
+                            new FlaggedOption("timeScale", JSAP.DOUBLE_PARSER, "1", JSAP.NOT_REQUIRED, 's',
+                                    "time-scale", "In open loop, the factor by which the calls are sent faster than "
+                                            + "recorded."),
+                            new UnflaggedOption("queryLog", JSAP.STRING_PARSER, JSAP.REQUIRED,
+                                    "The query log to replay.")});
+
+            config = jsap.parse(args);
+            if (jsap.messagePrinted()) {
+                System.exit(1);
+            }
+        } catch (JSAPException e) {
+            e.printStackTrace();
+        }
+        return config;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        JSAPResult config = parseArgs(args);
+        List<QueryLog.Record> records = QueryLog.read(Paths.get(config.getString("queryLog")));
+        ManagedChannel channel = ManagedChannelBuilder.forAddress(config.getString("host"), config.getInt("port"))
+                .usePlaintext().build();
+        try {
+            ReplayQueryLog replay = new ReplayQueryLog(channel,
+                    Mode.valueOf(config.getString("mode").toUpperCase(Locale.ROOT)), config.getInt("concurrency"),
+                    config.getDouble("timeScale"));
+            replay.run(records).print(System.out);
+        } finally {
+            channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
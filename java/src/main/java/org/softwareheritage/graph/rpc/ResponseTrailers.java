@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.*;
+
+/**
+ * Server interceptor allowing the RPC handlers to attach metadata to the trailers of their
+ * response, whatever the way the call is closed ({@code onCompleted()} or {@code onError()}).
+ * <p>
+ * The interceptor stores an empty {@link Metadata} object in the gRPC context of each call, that
+ * handlers can fill with {@link #put(Metadata.Key, Object)}. It is merged into the trailers when
+ * the call is closed.
+ */
+public class ResponseTrailers implements ServerInterceptor {
+    private static final Context.Key<Metadata> TRAILERS = Context.key("swh-graph-trailers");
+
+    /** Reason why a traversal was interrupted before its end ("max_duration", "deadline", "cancelled") */
+    public static final Metadata.Key<String> INTERRUPTED = Metadata.Key.of("swh-graph-interrupted",
+            Metadata.ASCII_STRING_MARSHALLER);
+    /** Statistics on the cost of a traversal, as a serialized {@link TraversalStats} message */
+    public static final Metadata.Key<byte[]> STATS = Metadata.Key.of("swh-graph-stats-bin",
+            Metadata.BINARY_BYTE_MARSHALLER);
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+            ServerCallHandler<ReqT, RespT> next) {
+        Metadata trailers = new Metadata();
+        ServerCall<ReqT, RespT> forwardingCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata callTrailers) {
+                callTrailers.merge(trailers);
+                super.close(status, callTrailers);
+            }
+        };
+        return Contexts.interceptCall(Context.current().withValue(TRAILERS, trailers), forwardingCall, headers, next);
+    }
+
+    /**
+     * Attach a value to the trailers of the current call. Does nothing if the service is not
+     * intercepted by {@link ResponseTrailers}.
+     */
+    public static <T> void put(Metadata.Key<T> key, T value) {
+        Metadata trailers = TRAILERS.get();
+        if (trailers != null) {
+            trailers.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.google.protobuf.MessageLite;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.*;
+import org.softwareheritage.graph.SwhGraphProperties;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Server interceptor collecting metrics on the calls of the server, exposed in the Prometheus text
+ * exposition format.
+ * <p>
+ * For each RPC method, the interceptor counts the calls by status code and the cancelled calls, and
+ * records a histogram of their latency, the number of messages and bytes they sent, and the number
+ * of nodes and edges visited by their traversals (reported by {@link Traversal.BFSVisitor} through
+ * the {@link MethodMetrics} stored in the gRPC context of the call). The server also exposes the
+ * number of accesses to each property column of the graph (see
+ * {@link SwhGraphProperties#getAccessCount}), the page faults of the process, and the gauges added
+ * with {@link #addGauge}.
+ * <p>
+ * All the counters are {@link LongAdder}s, so that the threads of the server update them without
+ * contending on a lock or a single cache line; they are only summed when the metrics are rendered.
+ */
+public class ServerMetrics implements ServerInterceptor {
+    private static final Context.Key<MethodMetrics> METHOD = Context.key("swh-graph-metrics");
+
+    /** Upper bounds of the buckets of the latency histograms, in seconds */
+    static final double[] LATENCY_BUCKETS = {0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10, 60, 300};
+    /** Statistics file of the process on Linux, to read its page faults from */
+    private static final String PROC_STAT = "/proc/self/stat";
+
+    private final SwhGraphProperties properties;
+    private final ConcurrentHashMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+    private final ArrayList<CallbackMetric> callbacks = new ArrayList<>();
+
+    /**
+     * @param properties the properties of the graph served, whose column accesses are exposed, or
+     *            null
+     */
+    public ServerMetrics(SwhGraphProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Return the metrics of the method of the current call, or null if the service is not
+     * intercepted by {@link ServerMetrics}.
+     */
+    static MethodMetrics currentMethod() {
+        return METHOD.get();
+    }
+
+    /** Return the metrics of a method, identified by its bare name (e.g., "Traverse"). */
+    public MethodMetrics getMethod(String method) {
+        return methods.computeIfAbsent(method, MethodMetrics::new);
+    }
+
+    /**
+     * Expose a value computed when the metrics are rendered, as a gauge.
+     *
+     * @param name the name of the metric, without the {@code swh_graph_} prefix
+     * @param labels the labels of the value (e.g., {@code lane="lookup"}), or an empty string
+     * @param help the description of the metric
+     * @param value the function returning the value
+     */
+    public synchronized void addGauge(String name, String labels, String help, LongSupplier value) {
+        callbacks.add(new CallbackMetric(name, labels, "gauge", help, value));
+    }
+
+    /** Expose a value computed when the metrics are rendered, as a counter (see {@link #addGauge}). */
+    public synchronized void addCounter(String name, String labels, String help, LongSupplier value) {
+        callbacks.add(new CallbackMetric(name, labels, "counter", help, value));
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+            ServerCallHandler<ReqT, RespT> next) {
+        MethodMetrics method = getMethod(call.getMethodDescriptor().getBareMethodName());
+        long startNanos = System.nanoTime();
+        AtomicBoolean closed = new AtomicBoolean();
+        ServerCall<ReqT, RespT> forwardingCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void sendMessage(RespT message) {
+                method.messages.increment();
+                if (message instanceof Node || message instanceof NodeEncoder.EncodedNode) {
+                    method.nodesEmitted.increment();
+                } else if (message instanceof NodeBatch) {
+                    method.nodesEmitted.add(((NodeBatch) message).getNodesCount());
+                }
+                if (message instanceof MessageLite) {
+                    method.bytesSent.add(((MessageLite) message).getSerializedSize());
+                } else if (message instanceof NodeEncoder.EncodedNode) {
+                    method.bytesSent.add(((NodeEncoder.EncodedNode) message).getSerializedSize());
+                }
+                super.sendMessage(message);
+            }
+
+            @Override
+            public void close(Status status, Metadata trailers) {
+                if (closed.compareAndSet(false, true)) {
+                    method.record(status.getCode(), System.nanoTime() - startNanos);
+                }
+                super.close(status, trailers);
+            }
+        };
+        ServerCall.Listener<ReqT> listener = Contexts.interceptCall(Context.current().withValue(METHOD, method),
+                forwardingCall, headers, next);
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onCancel() {
+                method.cancellations.increment();
+                if (closed.compareAndSet(false, true)) {
+                    method.record(Status.Code.CANCELLED, System.nanoTime() - startNanos);
+                }
+                super.onCancel();
+            }
+        };
+    }
+
+    /** Write all the metrics, in the Prometheus text exposition format. */
+    public void write(Writer out) throws IOException {
+        TreeMap<String, MethodMetrics> sortedMethods = new TreeMap<>(methods);
+
+        writeHeader(out, "calls_total", "counter", "Number of completed calls, by method and status code.");
+        for (MethodMetrics m : sortedMethods.values()) {
+            for (Status.Code code : Status.Code.values()) {
+                long calls = m.calls[code.ordinal()].sum();
+                if (calls > 0) {
+                    writeSample(out, "calls_total", m.labels() + ",code=\"" + code.name() + "\"", calls);
+                }
+            }
+        }
+
+        writeHeader(out, "call_latency_seconds", "histogram", "Latency of the calls, by method.");
+        for (MethodMetrics m : sortedMethods.values()) {
+            long cumulative = 0;
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                cumulative += m.latencyBuckets[i].sum();
+                writeSample(out, "call_latency_seconds_bucket", m.labels() + ",le=\"" + LATENCY_BUCKETS[i] + "\"",
+                        cumulative);
+            }
+            // Calls can be recorded while the counters are read: keep the +Inf bucket above the others
+            long count = Math.max(m.latencyCount.sum(), cumulative);
+            writeSample(out, "call_latency_seconds_bucket", m.labels() + ",le=\"+Inf\"", count);
+            out.write("swh_graph_call_latency_seconds_sum{" + m.labels() + "} "
+                    + m.latencyNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1) + "\n");
+            writeSample(out, "call_latency_seconds_count", m.labels(), count);
+        }
+
+        writeMethodCounter(out, sortedMethods, "cancellations_total", "Number of calls cancelled by the client.",
+                m -> m.cancellations);
+        writeMethodCounter(out, sortedMethods, "nodes_visited_total", "Number of nodes visited by the traversals.",
+                m -> m.nodesVisited);
+        writeMethodCounter(out, sortedMethods, "edges_visited_total",
+                "Number of edges accessed by the traversals.", m -> m.edgesVisited);
+        writeMethodCounter(out, sortedMethods, "nodes_emitted_total", "Number of nodes sent to the clients.",
+                m -> m.nodesEmitted);
+        writeMethodCounter(out, sortedMethods, "messages_sent_total", "Number of response messages sent.",
+                m -> m.messages);
+        writeMethodCounter(out, sortedMethods, "bytes_sent_total",
+                "Serialized size of the response messages sent, in bytes.", m -> m.bytesSent);
+
+        if (properties != null) {
+            writeHeader(out, "property_accesses_total", "counter",
+                    "Number of accesses to the property columns of the graph.");
+            for (SwhGraphProperties.Column column : SwhGraphProperties.Column.values()) {
+                writeSample(out, "property_accesses_total", "column=\"" + column.getName() + "\"",
+                        properties.getAccessCount(column));
+            }
+        }
+
+        long[] pageFaults = readPageFaults();
+        if (pageFaults != null) {
+            writeHeader(out, "page_faults_total", "counter",
+                    "Number of page faults of the process, i.e., of reads of the memory-mapped graph "
+                            + "missing the page cache (major) or its mapping (minor).");
+            writeSample(out, "page_faults_total", "type=\"minor\"", pageFaults[0]);
+            writeSample(out, "page_faults_total", "type=\"major\"", pageFaults[1]);
+        }
+
+        ArrayList<CallbackMetric> sortedCallbacks;
+        synchronized (this) {
+            sortedCallbacks = new ArrayList<>(callbacks);
+        }
+        sortedCallbacks.sort(Comparator.comparing(c -> c.name));
+        String previous = null;
+        for (CallbackMetric c : sortedCallbacks) {
+            if (!c.name.equals(previous)) {
+                writeHeader(out, c.name, c.type, c.help);
+                previous = c.name;
+            }
+            writeSample(out, c.name, c.labels, c.value.getAsLong());
+        }
+        out.flush();
+    }
+
+    /** Return all the metrics, in the Prometheus text exposition format. */
+    public String render() {
+        StringWriter out = new StringWriter();
+        try {
+            write(out);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return out.toString();
+    }
+
+    private interface CounterGetter {
+        LongAdder get(MethodMetrics m);
+    }
+
+    private static void writeMethodCounter(Writer out, Map<String, MethodMetrics> methods, String name, String help,
+            CounterGetter counter) throws IOException {
+        writeHeader(out, name, "counter", help);
+        for (MethodMetrics m : methods.values()) {
+            writeSample(out, name, m.labels(), counter.get(m).sum());
+        }
+    }
+
+    private static void writeHeader(Writer out, String name, String type, String help) throws IOException {
+        out.write("# HELP swh_graph_" + name + " " + help + "\n");
+        out.write("# TYPE swh_graph_" + name + " " + type + "\n");
+    }
+
+    private static void writeSample(Writer out, String name, String labels, long value) throws IOException {
+        out.write("swh_graph_" + name + (labels.isEmpty() ? "" : "{" + labels + "}") + " " + value + "\n");
+    }
+
+    /**
+     * Return the numbers of minor and major page faults of the process, or null if they are not
+     * available (i.e., not on Linux).
+     */
+    static long[] readPageFaults() {
+        try {
+            String stat = Files.readString(Paths.get(PROC_STAT));
+            // The fields after the command name, which can contain spaces, start at the state (field 3)
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return new long[]{Long.parseLong(fields[7]), Long.parseLong(fields[9])};
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Start an HTTP server exposing the metrics on {@code /metrics}, on the loopback interface.
+     *
+     * @param port the port on which the HTTP server will listen, or 0 for any free port
+     * @return the started server
+     */
+    public HttpServer startHttpServer(int port) throws IOException {
+        return startHttpServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Start an HTTP server exposing the metrics on {@code /metrics}.
+     *
+     * @param address the address on which the HTTP server will listen
+     * @return the started server
+     */
+    public HttpServer startHttpServer(InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /** Metrics of a single RPC method, updated concurrently by its calls. */
+    public static class MethodMetrics {
+        private final String method;
+        private final LongAdder[] calls = new LongAdder[Status.Code.values().length];
+        private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKETS.length];
+        private final LongAdder latencyNanos = new LongAdder();
+        private final LongAdder latencyCount = new LongAdder();
+        private final LongAdder cancellations = new LongAdder();
+        private final LongAdder nodesVisited = new LongAdder();
+        private final LongAdder edgesVisited = new LongAdder();
+        private final LongAdder nodesEmitted = new LongAdder();
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+
+        MethodMetrics(String method) {
+            this.method = method;
+            for (int i = 0; i < calls.length; i++) {
+                calls[i] = new LongAdder();
+            }
+            for (int i = 0; i < latencyBuckets.length; i++) {
+                latencyBuckets[i] = new LongAdder();
+            }
+        }
+
+        private String labels() {
+            return "method=\"" + method + "\"";
+        }
+
+        /** Record a completed call. */
+        private void record(Status.Code code, long latencyNanos) {
+            calls[code.ordinal()].increment();
+            double seconds = latencyNanos / (double) TimeUnit.SECONDS.toNanos(1);
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                if (seconds <= LATENCY_BUCKETS[i]) {
+                    latencyBuckets[i].increment();
+                    break;
+                }
+            }
+            this.latencyNanos.add(latencyNanos);
+            latencyCount.increment();
+        }
+
+        /** Add the nodes and edges visited by a traversal of the method. */
+        void addVisited(long nodes, long edges) {
+            nodesVisited.add(nodes);
+            edgesVisited.add(edges);
+        }
+
+        /** Return the number of completed calls of the method with a given status code. */
+        public long getCalls(Status.Code code) {
+            return calls[code.ordinal()].sum();
+        }
+
+        /** Return the number of calls of the method cancelled by the client. */
+        public long getCancellations() {
+            return cancellations.sum();
+        }
+
+        /** Return the number of nodes visited by the traversals of the method. */
+        public long getNodesVisited() {
+            return nodesVisited.sum();
+        }
+
+        /** Return the number of edges accessed by the traversals of the method. */
+        public long getEdgesVisited() {
+            return edgesVisited.sum();
+        }
+
+        /** Return the number of nodes sent by the method. */
+        public long getNodesEmitted() {
+            return nodesEmitted.sum();
+        }
+
+        /** Return the serialized size of the messages sent by the method, in bytes. */
+        public long getBytesSent() {
+            return bytesSent.sum();
+        }
+    }
+
+    /** Metric whose value is computed when the metrics are rendered. */
+    private static class CallbackMetric {
+        final String name;
+        final String labels;
+        final String type;
+        final String help;
+        final LongSupplier value;
+
+        CallbackMetric(String name, String labels, String type, String help, LongSupplier value) {
+            this.name = name;
+            this.labels = labels;
+            this.type = type;
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
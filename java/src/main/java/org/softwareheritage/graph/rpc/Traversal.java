@@ -7,75 +7,379 @@
 
 package org.softwareheritage.graph.rpc;
 
+import com.google.protobuf.ByteString;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import it.unimi.dsi.big.webgraph.LazyLongIterator;
 import it.unimi.dsi.big.webgraph.labelling.ArcLabelledNodeIterator;
 import it.unimi.dsi.big.webgraph.labelling.Label;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.softwareheritage.graph.*;
+import org.softwareheritage.graph.labels.DirEntry;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /** Traversal contains all the algorithms used for graph traversals */
 public class Traversal {
     /**
      * Wrapper around g.successors(), only follows edges that are allowed by the given
-     * {@link AllowedEdges} object.
+     * {@link AllowedEdges} object, by the given edge label filter, and whose destination is allowed by
+     * the given prune filter (the filters are ignored if they are null).
+     * <p>
+     * On a {@link SwhSymmetrizedGraph}, the edge restrictions apply to the edges of the forward
+     * graph: an edge src -> dst of the forward graph can be followed from dst to src if it is
+     * allowed, even though dst -> src is not.
+     *
+     * @param labelled whether the labels of the arcs are needed by the caller; if false, the labels are
+     *            only decoded if the label filter needs them, and {@code label()} returns null
      */
     private static ArcLabelledNodeIterator.LabelledArcIterator filterLabelledSuccessors(SwhUnidirectionalGraph g,
-            long nodeId, AllowedEdges allowedEdges) {
-        if (allowedEdges.restrictedTo == null) {
+            long nodeId, AllowedEdges allowedEdges, NodeFilterChecker prune, EdgeLabelFilterChecker labelFilter,
+            boolean labelled) {
+        labelled |= labelFilter != null;
+        if (allowedEdges.restrictedTo == null && prune == null && labelFilter == null) {
             // All edges are allowed, bypass edge check
-            return g.labelledSuccessors(nodeId);
+            return labelled ? g.labelledSuccessors(nodeId) : new UnlabelledArcIterator(g.successors(nodeId));
+        } else if (g instanceof SwhSymmetrizedGraph) {
+            SwhSymmetrizedGraph sg = (SwhSymmetrizedGraph) g;
+            return new SwhSymmetrizedGraph.UnionArcIterator(
+                    filterLabelledArcs(sg.getForwardGraph(), nodeId, allowedEdges, prune, labelFilter, labelled,
+                            false),
+                    filterLabelledArcs(sg.getBackwardGraph(), nodeId, allowedEdges, prune, labelFilter, labelled,
+                            true));
         } else {
-            ArcLabelledNodeIterator.LabelledArcIterator allSuccessors = g.labelledSuccessors(nodeId);
-            return new ArcLabelledNodeIterator.LabelledArcIterator() {
-                @Override
-                public Label label() {
-                    return allSuccessors.label();
-                }
-
-                @Override
-                public long nextLong() {
-                    long neighbor;
-                    while ((neighbor = allSuccessors.nextLong()) != -1) {
-                        if (allowedEdges.isAllowed(g.getNodeType(nodeId), g.getNodeType(neighbor))) {
-                            return neighbor;
+            return filterLabelledArcs(g, nodeId, allowedEdges, prune, labelFilter, labelled, false);
+        }
+    }
+
+    /**
+     * Filter the successors of a node with edge restrictions and optional label and prune filters.
+     *
+     * @param transposed whether g is a transposed graph, whose edges must be checked in the reverse
+     *            direction
+     */
+    private static ArcLabelledNodeIterator.LabelledArcIterator filterLabelledArcs(SwhUnidirectionalGraph g,
+            long nodeId, AllowedEdges allowedEdges, NodeFilterChecker prune, EdgeLabelFilterChecker labelFilter,
+            boolean labelled, boolean transposed) {
+        ArcLabelledNodeIterator.LabelledArcIterator labelledSuccessors = labelled
+                ? g.labelledSuccessors(nodeId)
+                : null;
+        LazyLongIterator allSuccessors = labelled ? labelledSuccessors : g.successors(nodeId);
+        SwhType nodeType = g.getNodeType(nodeId);
+        return new ArcLabelledNodeIterator.LabelledArcIterator() {
+            @Override
+            public Label label() {
+                return labelled ? labelledSuccessors.label() : null;
+            }
+
+            @Override
+            public long nextLong() {
+                long neighbor;
+                while ((neighbor = allSuccessors.nextLong()) != -1) {
+                    if (allowedEdges.restrictedTo != null) {
+                        SwhType neighborType = g.getNodeType(neighbor);
+                        if (transposed
+                                ? !allowedEdges.isAllowed(neighborType, nodeType)
+                                : !allowedEdges.isAllowed(nodeType, neighborType)) {
+                            continue;
                         }
                     }
-                    return -1;
+                    if (labelFilter != null && !labelFilter.allowed(labelledSuccessors.label())) {
+                        continue;
+                    }
+                    if (prune == null || prune.allowed(neighbor)) {
+                        return neighbor;
+                    }
                 }
+                return -1;
+            }
 
-                @Override
-                public long skip(final long n) {
-                    long i = 0;
-                    while (i < n && nextLong() != -1)
-                        i++;
-                    return i;
-                }
-            };
+            @Override
+            public long skip(final long n) {
+                long i = 0;
+                while (i < n && nextLong() != -1)
+                    i++;
+                return i;
+            }
+        };
+    }
+
+    /** Arc iterator over unlabelled successors, whose labels are null. */
+    private static class UnlabelledArcIterator implements ArcLabelledNodeIterator.LabelledArcIterator {
+        private final LazyLongIterator successors;
+
+        UnlabelledArcIterator(LazyLongIterator successors) {
+            this.successors = successors;
+        }
+
+        @Override
+        public Label label() {
+            return null;
+        }
+
+        @Override
+        public long nextLong() {
+            return successors.nextLong();
+        }
+
+        @Override
+        public long skip(final long n) {
+            return successors.skip(n);
         }
     }
 
-    /** Helper class to check that a given node is "valid" for some given {@link NodeFilter} */
-    private static class NodeFilterChecker {
+    /** Returns whether a {@link NodeFilter} has predicates on the properties of the nodes. */
+    static boolean hasPropertyPredicates(NodeFilter filter) {
+        return filter.hasCntLength() || filter.hasCntIsSkipped() || filter.hasAuthorDate()
+                || filter.hasCommitterDate() || filter.getAuthorCount() > 0 || filter.getCommitterCount() > 0;
+    }
+
+    /**
+     * Helper class to check that a given node is "valid" for some given {@link NodeFilter}.
+     * <p>
+     * The number of traversal successors is not checked, as it depends on the traversal. The
+     * predicates on the node properties are evaluated on the memory-mapped property files, which must
+     * be loaded.
+     */
+    static class NodeFilterChecker {
         private final SwhUnidirectionalGraph g;
         private final NodeFilter filter;
         private final AllowedNodes allowedNodes;
+        /** Whether the filter has predicates on the node properties */
+        private final boolean checkProperties;
+        private final LongOpenHashSet authors;
+        private final LongOpenHashSet committers;
 
-        private NodeFilterChecker(SwhUnidirectionalGraph graph, NodeFilter filter) {
+        NodeFilterChecker(SwhUnidirectionalGraph graph, NodeFilter filter) {
             this.g = graph;
             this.filter = filter;
             this.allowedNodes = new AllowedNodes(filter.hasTypes() ? filter.getTypes() : "*");
+            this.checkProperties = hasPropertyPredicates(filter);
+            this.authors = new LongOpenHashSet(filter.getAuthorList());
+            this.committers = new LongOpenHashSet(filter.getCommitterList());
+            for (Int64Range range : new Int64Range[]{filter.getCntLength(), filter.getAuthorDate(),
+                    filter.getCommitterDate()}) {
+                if (range.hasMin() && range.hasMax() && range.getMin() > range.getMax()) {
+                    throw new IllegalArgumentException("Empty range in node filter: " + range.getMin() + " > "
+                            + range.getMax());
+                }
+            }
         }
 
         public boolean allowed(long nodeId) {
             if (filter == null) {
                 return true;
             }
-            if (!this.allowedNodes.isAllowed(g.getNodeType(nodeId))) {
+            SwhType type = g.getNodeType(nodeId);
+            if (!this.allowedNodes.isAllowed(type)) {
+                return false;
+            }
+            if (checkProperties && !allowedProperties(nodeId, type)) {
                 return false;
             }
 
             return true;
         }
+
+        private boolean allowedProperties(long nodeId, SwhType type) {
+            switch (type) {
+                case CNT:
+                    return (!filter.hasCntLength() || inRange(g.getContentLength(nodeId), filter.getCntLength()))
+                            && (!filter.hasCntIsSkipped() || g.isContentSkipped(nodeId) == filter.getCntIsSkipped());
+                case REV:
+                    return allowedAuthor(nodeId)
+                            && (!filter.hasCommitterDate()
+                                    || inRange(g.getCommitterTimestamp(nodeId), filter.getCommitterDate()))
+                            && (committers.isEmpty() || inSet(g.getCommitterId(nodeId), committers));
+                case REL:
+                    return allowedAuthor(nodeId);
+                default :
+                    return true;
+            }
+        }
+
+        private boolean allowedAuthor(long nodeId) {
+            return (!filter.hasAuthorDate() || inRange(g.getAuthorTimestamp(nodeId), filter.getAuthorDate()))
+                    && (authors.isEmpty() || inSet(g.getAuthorId(nodeId), authors));
+        }
+
+        private static boolean inRange(Long value, Int64Range range) {
+            return value != null && (!range.hasMin() || value >= range.getMin())
+                    && (!range.hasMax() || value <= range.getMax());
+        }
+
+        private static boolean inSet(Long value, LongOpenHashSet set) {
+            return value != null && set.contains(value.longValue());
+        }
+    }
+
+    /**
+     * Helper class to check that the labels of an edge are "valid" for some given
+     * {@link EdgeLabelFilter}.
+     * <p>
+     * Exact names are resolved to label IDs once, so that the labels can be checked without decoding
+     * their names. Names are only decoded to check prefixes and glob patterns; the result is cached
+     * for the most recent label IDs. Instances are not thread-safe: use {@link #copy()} to get an
+     * instance for another thread.
+     */
+    static class EdgeLabelFilterChecker {
+        /** Maximum number of label IDs whose name check is cached */
+        static final int MAX_CACHED_NAMES = 1 << 16;
+        private static final Map<String, Integer> PERMISSIONS = Map.of("content", 0100644, "executable_content",
+                0100755, "symlink", 0120000, "directory", 0040000, "revision", 0160000);
+
+        private final SwhUnidirectionalGraph g;
+        /** Whether the label names must be included in the names, prefixes or globs */
+        private final boolean restrictNames;
+        private final LongOpenHashSet names;
+        private final byte[][] prefixes;
+        private final byte[][] globs;
+        private final LongOpenHashSet excludedNames;
+        private final byte[][] excludedPrefixes;
+        private final byte[][] excludedGlobs;
+        /** Allowed permissions, or null if all permissions are allowed */
+        private final IntOpenHashSet permissions;
+        private final Long2BooleanOpenHashMap cachedNames = new Long2BooleanOpenHashMap();
+
+        EdgeLabelFilterChecker(SwhUnidirectionalGraph graph, EdgeLabelFilter filter) {
+            this.g = graph;
+            this.restrictNames = filter.getNamesCount() > 0 || filter.getPrefixesCount() > 0
+                    || filter.getGlobsCount() > 0;
+            this.names = resolveNames(graph, filter.getNamesList());
+            this.prefixes = toArrays(filter.getPrefixesList());
+            this.globs = toArrays(filter.getGlobsList());
+            this.excludedNames = resolveNames(graph, filter.getExcludeNamesList());
+            this.excludedPrefixes = toArrays(filter.getExcludePrefixesList());
+            this.excludedGlobs = toArrays(filter.getExcludeGlobsList());
+            if (!filter.hasPermissions() || filter.getPermissions().equals("*")) {
+                this.permissions = null;
+            } else {
+                this.permissions = new IntOpenHashSet();
+                for (String permission : filter.getPermissions().split(",")) {
+                    Integer perm = PERMISSIONS.get(permission);
+                    if (perm == null) {
+                        throw new IllegalArgumentException("Unknown permission: " + permission);
+                    }
+                    this.permissions.add(perm.intValue());
+                }
+            }
+        }
+
+        private EdgeLabelFilterChecker(EdgeLabelFilterChecker other) {
+            this.g = other.g;
+            this.restrictNames = other.restrictNames;
+            this.names = other.names;
+            this.prefixes = other.prefixes;
+            this.globs = other.globs;
+            this.excludedNames = other.excludedNames;
+            this.excludedPrefixes = other.excludedPrefixes;
+            this.excludedGlobs = other.excludedGlobs;
+            this.permissions = other.permissions;
+        }
+
+        /** Returns a checker of the same filter, with its own cache. */
+        EdgeLabelFilterChecker copy() {
+            return new EdgeLabelFilterChecker(this);
+        }
+
+        private static LongOpenHashSet resolveNames(SwhUnidirectionalGraph graph, List<ByteString> names) {
+            LongOpenHashSet labelIds = new LongOpenHashSet();
+            for (ByteString name : names) {
+                long labelId = graph.getLabelNameId(name.toByteArray());
+                if (labelId != -1) {
+                    labelIds.add(labelId);
+                }
+            }
+            return labelIds;
+        }
+
+        private static byte[][] toArrays(List<ByteString> strings) {
+            return strings.stream().map(ByteString::toByteArray).toArray(byte[][]::new);
+        }
+
+        /** Returns whether an edge can be followed given its labels. */
+        public boolean allowed(Label label) {
+            DirEntry[] entries = (DirEntry[]) label.get();
+            if (entries.length == 0) {
+                return true;
+            }
+            for (DirEntry entry : entries) {
+                if ((permissions == null || entry.permission == 0 || permissions.contains(entry.permission))
+                        && allowedName(entry.filenameId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean allowedName(long labelId) {
+            if (excludedNames.contains(labelId)) {
+                return false;
+            }
+            if (prefixes.length == 0 && globs.length == 0 && excludedPrefixes.length == 0
+                    && excludedGlobs.length == 0) {
+                return !restrictNames || names.contains(labelId);
+            }
+            if (cachedNames.containsKey(labelId)) {
+                return cachedNames.get(labelId);
+            }
+            byte[] name = g.getLabelName(labelId);
+            boolean allowed = (!restrictNames || names.contains(labelId) || matchesAny(name, prefixes, globs))
+                    && !matchesAny(name, excludedPrefixes, excludedGlobs);
+            if (cachedNames.size() >= MAX_CACHED_NAMES) {
+                cachedNames.clear();
+            }
+            cachedNames.put(labelId, allowed);
+            return allowed;
+        }
+
+        private static boolean matchesAny(byte[] name, byte[][] prefixes, byte[][] globs) {
+            for (byte[] prefix : prefixes) {
+                if (name.length >= prefix.length && Arrays.equals(name, 0, prefix.length, prefix, 0, prefix.length)) {
+                    return true;
+                }
+            }
+            for (byte[] glob : globs) {
+                if (globMatches(glob, name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Returns whether a name matches a glob, where '*' matches any sequence of bytes and '?' any byte. */
+        static boolean globMatches(byte[] glob, byte[] name) {
+            int p = 0, n = 0;
+            // Position of the last '*' in the glob, and of the name byte it was matched up to
+            int star = -1, starMatch = 0;
+            while (n < name.length) {
+                if (p < glob.length && (glob[p] == '?' || (glob[p] != '*' && glob[p] == name[n]))) {
+                    p++;
+                    n++;
+                } else if (p < glob.length && glob[p] == '*') {
+                    star = p++;
+                    starMatch = n;
+                } else if (star != -1) {
+                    p = star + 1;
+                    n = ++starMatch;
+                } else {
+                    return false;
+                }
+            }
+            while (p < glob.length && glob[p] == '*') {
+                p++;
+            }
+            return p == glob.length;
+        }
     }
 
     /** Returns the unidirectional graph from a bidirectional graph and a {@link GraphDirection}. */
@@ -85,10 +389,8 @@ public class Traversal {
                 return g.getForwardGraph();
             case BACKWARD:
                 return g.getBackwardGraph();
-            /*
-             * TODO: add support for BOTH case BOTH: return new SwhUnidirectionalGraph(g.symmetrize(),
-             * g.getProperties());
-             */
+            case BOTH:
+                return new SwhSymmetrizedGraph(g);
             default :
                 throw new IllegalArgumentException("Unknown direction: " + direction);
         }
@@ -101,9 +403,8 @@ public class Traversal {
                 return GraphDirection.BACKWARD;
             case BACKWARD:
                 return GraphDirection.FORWARD;
-            /*
-             * TODO: add support for BOTH case BOTH: return GraphDirection.BOTH;
-             */
+            case BOTH:
+                return GraphDirection.BOTH;
             default :
                 throw new IllegalArgumentException("Unknown direction: " + direction);
         }
@@ -113,8 +414,36 @@ public class Traversal {
     static class StopTraversalException extends RuntimeException {
     }
 
+    /** Reason why a traversal was interrupted before the end of its visit. */
+    enum Interruption {
+        /** The maximum duration of the traversal (max_duration_ms) was reached. */
+        MAX_DURATION("max_duration"),
+        /** The deadline of the RPC call expired. */
+        DEADLINE("deadline"),
+        /** The RPC call was cancelled by the client. */
+        CANCELLED("cancelled"),
+        /** The ceiling imposed by the server on the number of accessed edges was reached. */
+        MAX_EDGES("max_edges");
+
+        /** Name of the interruption reason, as reported to the clients. */
+        final String name;
+
+        Interruption(String name) {
+            this.name = name;
+        }
+    }
+
     /** Generic BFS traversal algorithm. */
-    static class BFSVisitor {
+    static class BFSVisitor implements AutoCloseable {
+        /** Source of the CPU time of the threads running the traversals */
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+        /**
+         * Number of visit steps between two checks of the cancellation status of the call and of the
+         * maximum duration of the traversal.
+         */
+        static final int INTERRUPTION_CHECK_INTERVAL = 1024;
+
         /** The graph to traverse. */
         protected final SwhUnidirectionalGraph g;
         /** Depth of the node currently being visited */
@@ -126,27 +455,96 @@ public class Traversal {
         protected long traversalSuccessors = 0;
         /** Number of edges accessed since the beginning of the traversal */
         protected long edgesAccessed = 0;
+        /** Number of nodes visited since the beginning of the traversal */
+        protected long nodesVisited = 0;
+        /** Number of nodes returned to the client since the beginning of the traversal */
+        protected long nodesReturned = 0;
+        /** Largest depth at which a node was visited */
+        protected long depthReached = 0;
+        /** Largest number of nodes in the frontier of a level */
+        protected long frontierPeak = 0;
+        /** If not null, the limit of the request that stopped the traversal ("max_depth" or "max_edges") */
+        protected String limitReached = null;
 
         /**
-         * Map from a node ID to its parent node ID. The key set can be used as the set of all visited
-         * nodes.
+         * Set of all visited nodes. If the visitor needs to backtrack, it also maps each visited node to
+         * its parent node ID.
          */
-        protected HashMap<Long, Long> parents = new HashMap<>();
+        protected final VisitedNodes visited;
         /** Queue of nodes to visit (also called "frontier", "open set", "wavefront" etc.) */
-        protected ArrayDeque<Long> queue = new ArrayDeque<>();
+        protected final LongArrayFIFOQueue queue = new LongArrayFIFOQueue();
         /** If > 0, the maximum depth of the traversal. */
-        private long maxDepth = -1;
+        protected long maxDepth = -1;
         /** If > 0, the maximum number of edges to traverse. */
-        private long maxEdges = -1;
+        protected long maxEdges = -1;
+        /** Whether {@link #maxEdges} is the ceiling imposed by the server rather than a limit of the request */
+        protected boolean maxEdgesIsCeiling = false;
+        /** If >= 0, the maximum duration of the traversal, in nanoseconds. */
+        private long maxDurationNanos = -1;
+        /** Value of {@link System#nanoTime()} after which the traversal is interrupted. */
+        private long deadlineNanos = Long.MAX_VALUE;
+        /** The gRPC context of the call that created the visitor, checked for cancellation. */
+        private final Context context = Context.current();
+        /** Budget of the call that created the visitor, charged with the accessed edges, or null. */
+        private final AdmissionControl.CallBudget budget = AdmissionControl.currentBudget();
+        /** Number of accessed edges already charged to the budget of the call and reported to the metrics. */
+        protected long chargedEdges = 0;
+        /** Metrics of the method of the call that created the visitor, or null. */
+        private final ServerMetrics.MethodMetrics metrics = ServerMetrics.currentMethod();
+        /** Number of visited nodes already reported to the metrics of the method. */
+        private long reportedNodes = 0;
+        /** Number of visit steps performed since the beginning of the traversal. */
+        private long steps = 0;
+        /** Value of {@link System#nanoTime()} when the visitor was created. */
+        private final long createdNanos = System.nanoTime();
+        /** CPU time spent running the traversal, in nanoseconds, see {@link #startClock()}. */
+        private long cpuNanos = 0;
+        /** CPU time of the current thread when the clock was started, or -1 if it is stopped. */
+        private long cpuStartNanos = -1;
+        /** If not null, the reason why the traversal was interrupted. */
+        protected Interruption interruption = null;
 
         BFSVisitor(SwhUnidirectionalGraph g) {
+            this(g, true);
+        }
+
+        /**
+         * @param g the graph to traverse
+         * @param trackParents whether the parent of each visited node should be stored, which is only
+         *            needed by visitors that backtrack to build a path
+         */
+        BFSVisitor(SwhUnidirectionalGraph g, boolean trackParents) {
+            this(g, VisitedNodes.acquire(g.numNodes(), trackParents));
+        }
+
+        /**
+         * @param g the graph to traverse
+         * @param visited the set of visited nodes, or null for visitors that only delegate the visit to
+         *            other visitors
+         */
+        BFSVisitor(SwhUnidirectionalGraph g, VisitedNodes visited) {
             this.g = g;
+            this.visited = visited;
+            setMaxEdges(-1);
+        }
+
+        /**
+         * Give the visited set back to the per-thread cache. The visitor must not be used after this
+         * call.
+         */
+        @Override
+        public void close() {
+            reportProgress();
+            if (visited != null) {
+                visited.release();
+            }
         }
 
         /** Add a new source node to the initial queue. */
         public void addSource(long nodeId) {
-            queue.add(nodeId);
-            parents.put(nodeId, -1L);
+            if (visited.add(nodeId, -1L)) {
+                queue.enqueue(nodeId);
+            }
         }
 
         /** Set the maximum depth of the traversal. */
@@ -154,46 +552,97 @@ public class Traversal {
             maxDepth = depth;
         }
 
-        /** Set the maximum number of edges to traverse. */
+        /**
+         * Set the maximum number of edges to traverse, or -1 for no limit. The limit cannot exceed the
+         * ceiling imposed by the server on the call, if any (see {@link AdmissionControl}).
+         */
         public void setMaxEdges(long edges) {
-            maxEdges = edges;
+            long ceiling = budget != null ? budget.getMaxEdges() : -1;
+            maxEdgesIsCeiling = ceiling >= 0 && (edges < 0 || edges > ceiling);
+            maxEdges = maxEdgesIsCeiling ? ceiling : edges;
+        }
+
+        /**
+         * Set the maximum duration of the traversal, in milliseconds. The duration is counted from the
+         * call to {@link #visitSetup()}.
+         */
+        public void setMaxDuration(long durationMs) {
+            maxDurationNanos = TimeUnit.MILLISECONDS.toNanos(durationMs);
+        }
+
+        /** Return the number of edges accessed since the beginning of the traversal. */
+        public long getEdgesAccessed() {
+            return edgesAccessed;
+        }
+
+        /** Return the reason why the traversal was interrupted, or null if it was not interrupted. */
+        public Interruption getInterruption() {
+            return interruption;
         }
 
         /** Setup the visit counters and depth sentinel. */
         public void visitSetup() {
             edgesAccessed = 0;
+            chargedEdges = 0;
+            nodesVisited = 0;
+            reportedNodes = 0;
             depth = 0;
-            queue.add(-1L); // depth sentinel
+            steps = 0;
+            if (maxDurationNanos >= 0) {
+                deadlineNanos = System.nanoTime() + maxDurationNanos;
+            }
+            queue.enqueue(-1L); // depth sentinel
+            startLevel();
         }
 
         /** Perform the visit */
         public void visit() {
-            visitSetup();
-            while (!queue.isEmpty()) {
-                visitStep();
+            startClock();
+            try {
+                visitSetup();
+                while (!isFinished()) {
+                    visitStep();
+                }
+            } finally {
+                stopClock();
             }
         }
 
+        /**
+         * Return whether the visit is over, i.e., whether there is no step left to perform. Together with
+         * {@link #visitSetup()} and {@link #visitStep()}, this allows callers to drive the visit
+         * incrementally and pause it between two steps.
+         */
+        public boolean isFinished() {
+            return queue.isEmpty();
+        }
+
         /** Single "step" of a visit. Advance the frontier of exactly one node. */
         public void visitStep() {
             try {
                 assert !queue.isEmpty();
-                long curr = queue.poll();
+                long curr = queue.dequeueLong();
                 if (curr == -1L) {
                     ++depth;
                     if (!queue.isEmpty()) {
-                        queue.add(-1L);
+                        queue.enqueue(-1L);
+                        startLevel();
                         visitStep();
                     }
                     return;
                 }
+                if (steps++ % INTERRUPTION_CHECK_INTERVAL == 0) {
+                    checkInterrupted();
+                }
                 if (maxDepth >= 0 && depth > maxDepth) {
-                    throw new StopTraversalException();
+                    stopOnMaxDepth();
                 }
                 edgesAccessed += g.outdegree(curr);
                 if (maxEdges >= 0 && edgesAccessed > maxEdges) {
-                    throw new StopTraversalException();
+                    stopOnMaxEdges();
                 }
+                ++nodesVisited;
+                depthReached = depth;
                 visitNode(curr);
             } catch (StopTraversalException e) {
                 // Traversal is over, clear the to-do queue.
@@ -201,6 +650,110 @@ public class Traversal {
             }
         }
 
+        /** Record the size of the frontier of the level that starts, and notify {@link #onLevelStart()}. */
+        private void startLevel() {
+            frontierPeak = Math.max(frontierPeak, queue.size() - 1); // depth sentinel excluded
+            onLevelStart();
+        }
+
+        /**
+         * Called when the visit of a new depth level starts, i.e., when the queue contains exactly the
+         * frontier of the level followed by the depth sentinel. Override to adapt the visit to the size of
+         * the frontier.
+         */
+        protected void onLevelStart() {
+        }
+
+        /**
+         * Interrupt the traversal if the call was cancelled, its deadline expired, or the maximum duration
+         * of the traversal was reached.
+         */
+        protected void checkInterrupted() {
+            reportProgress();
+            if (context.isCancelled()) {
+                Deadline deadline = context.getDeadline();
+                interruption = (deadline != null && deadline.isExpired())
+                        ? Interruption.DEADLINE
+                        : Interruption.CANCELLED;
+                throw new StopTraversalException();
+            }
+            if (System.nanoTime() >= deadlineNanos) {
+                interruption = Interruption.MAX_DURATION;
+                throw new StopTraversalException();
+            }
+        }
+
+        /** Stop the traversal because it reached its maximum number of edges. */
+        protected void stopOnMaxEdges() {
+            if (maxEdgesIsCeiling) {
+                interruption = Interruption.MAX_EDGES;
+            }
+            limitReached = "max_edges";
+            throw new StopTraversalException();
+        }
+
+        /** Stop the traversal because the nodes left to visit are deeper than its maximum depth. */
+        protected void stopOnMaxDepth() {
+            limitReached = "max_depth";
+            throw new StopTraversalException();
+        }
+
+        /**
+         * Start counting the CPU time of the current thread as spent by the traversal, until
+         * {@link #stopClock()}. Callers driving the visit step by step must call both around their steps.
+         */
+        void startClock() {
+            if (cpuStartNanos < 0) {
+                cpuStartNanos = Math.max(0, THREADS.getCurrentThreadCpuTime());
+            }
+        }
+
+        /** Stop counting the CPU time of the current thread as spent by the traversal. */
+        void stopClock() {
+            if (cpuStartNanos >= 0) {
+                cpuNanos += Math.max(0, THREADS.getCurrentThreadCpuTime() - cpuStartNanos);
+                cpuStartNanos = -1;
+            }
+        }
+
+        /** Return an estimation of the memory used by the visited set of the traversal, in bytes. */
+        protected long getVisitedMemory() {
+            return visited != null ? visited.memoryUsage() : 0;
+        }
+
+        /**
+         * Return statistics on the cost of the traversal so far. Must be called before {@link #close()},
+         * which releases the visited set.
+         */
+        public TraversalStats getStats() {
+            TraversalStats.Builder stats = TraversalStats.newBuilder().setEdgesAccessed(edgesAccessed)
+                    .setNodesVisited(nodesVisited).setNodesReturned(nodesReturned).setMaxDepthReached(depthReached)
+                    .setFrontierPeak(frontierPeak)
+                    .setWallTimeUs(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - createdNanos))
+                    .setCpuTimeUs(TimeUnit.NANOSECONDS.toMicros(cpuNanos)).setVisitedSetBytes(getVisitedMemory());
+            if (interruption != null) {
+                stats.setLimitReached(interruption.name);
+            } else if (limitReached != null) {
+                stats.setLimitReached(limitReached);
+            }
+            return stats.build();
+        }
+
+        /**
+         * Charge the budget of the call with the edges accessed since the last charge, and add the nodes
+         * and edges visited since then to the metrics of the method.
+         */
+        private void reportProgress() {
+            if (metrics != null) {
+                metrics.addVisited(nodesVisited - reportedNodes, edgesAccessed - chargedEdges);
+                reportedNodes = nodesVisited;
+            }
+            if (budget != null) {
+                budget.charge(edgesAccessed - chargedEdges);
+            }
+            chargedEdges = edgesAccessed;
+        }
+
         /**
          * Get the successors of a node. Override this function if you want to filter which successors are
          * considered during the traversal.
@@ -221,9 +774,8 @@ public class Traversal {
 
         /** Visit an edge. Override to do additional processing on the edge. */
         protected void visitEdge(long src, long dst, Label label) {
-            if (!parents.containsKey(dst)) {
-                queue.add(dst);
-                parents.put(dst, src);
+            if (visited.add(dst, src)) {
+                queue.enqueue(dst);
             }
         }
     }
@@ -231,9 +783,42 @@ public class Traversal {
     /**
      * SimpleTraversal is used by the Traverse endpoint. It extends BFSVisitor with additional
      * processing, notably related to graph properties and filters.
+     * <p>
+     * Once the frontier of a level is large enough (or from the start, if the request asks for it),
+     * the traversal switches to a parallel, level-synchronous expansion of the frontier (see
+     * {@link ParallelBFS}). The nodes of a same depth are then returned in no particular order.
+     * <p>
+     * When the returned nodes do not depend on their successors (i.e., when the mask does not request
+     * successors nor their number, and nodes are not filtered by their number of traversal successors)
+     * and the number of accessed edges is not limited, which notably includes CountNodes, the traversal
+     * is also <em>direction-optimizing</em>: levels whose frontier is large compared to the rest of the
+     * graph are computed bottom-up, by scanning the predecessors of the unvisited nodes in the
+     * transposed graph. The direction of each level is chosen with the heuristic of Beamer et al.: pull
+     * when the frontier has more than 1/{@value #HYBRID_ALPHA} of the edges of the unexplored nodes,
+     * and push again when the frontier has less than 1/{@value #HYBRID_BETA} of the nodes of the graph.
      */
     static class SimpleTraversal extends BFSVisitor {
+        /** Frontier size from which the traversal automatically switches to a parallel expansion. */
+        static final int PARALLEL_FRONTIER_THRESHOLD = 100_000;
+        /** Maximum number of frontier nodes expanded in parallel in a single visit step. */
+        static final int PARALLEL_CHUNK_SIZE = 1 << 16;
+        /** Ratio of unexplored edges to frontier edges below which a level is computed bottom-up. */
+        static final int HYBRID_ALPHA = 14;
+        /** Ratio of graph nodes to frontier nodes above which a level is computed top-down. */
+        static final int HYBRID_BETA = 24;
+        /**
+         * Minimum ratio of visited nodes to nodes returned since the previous checkpoint. Saving a
+         * checkpoint costs time proportional to the number of visited nodes, so spacing the checkpoints
+         * accordingly keeps their total cost linear in the size of the traversal, whatever the
+         * continuation interval.
+         */
+        static final int CHECKPOINT_AMORTIZATION = 16;
+
         private final NodeFilterChecker nodeReturnChecker;
+        /** Filter of the traversed nodes, or null if all nodes are traversed */
+        private final NodeFilterChecker pruneChecker;
+        /** Filter of the edge labels, or null if all edges are followed */
+        private final EdgeLabelFilterChecker labelFilterChecker;
         private final AllowedEdges allowedEdges;
         private final TraversalRequest request;
         private final NodePropertyBuilder.NodeDataMask nodeDataMask;
@@ -241,11 +826,67 @@ public class Traversal {
 
         private Node.Builder nodeBuilder;
 
+        /**
+         * If not null, the returned nodes are written directly in their protobuf encoding by this
+         * encoder, and sent to {@link #encodedNodeObserver} instead of {@link #nodeObserver}
+         */
+        private NodeEncoder encoder = null;
+        private EncodedNodeObserver encodedNodeObserver;
+
+        /** Store of the checkpoints of the traversal, or null if no continuation token is returned */
+        private CheckpointStore checkpointStore = null;
+        /** Checkpoint from which the traversal resumes, or null if it starts from its sources */
+        private TraversalCheckpoint resumedCheckpoint = null;
+        /** Number of nodes returned when the last checkpoint was saved */
+        private long checkpointNodesReturned = 0;
+
+        /** Pool running the parallel expansion of the frontier, and providing its bit vectors */
+        private ParallelTraversalPool parallelPool = ParallelTraversalPool.getDefault();
+        /** If not null, the frontier is expanded level by level, possibly in parallel */
+        private ParallelBFS<ParallelWorker> parallelBFS = null;
+        /** Visited set of the level-synchronous expansion, shared by its workers */
+        private AtomicBitVector parallelVisited;
+        /** Slice of the frontier being expanded in parallel */
+        private long[] frontierChunk;
+        /** Nodes returned by the workers that remain to be sent, one per visit step */
+        private final ArrayDeque<Node> pendingResults = new ArrayDeque<>();
+        private final ArrayDeque<NodeEncoder.EncodedNode> pendingEncodedResults = new ArrayDeque<>();
+
+        /** The transposed graph, or null if the traversal cannot be direction-optimizing */
+        private final SwhUnidirectionalGraph transposedGraph;
+        /** Whether the current level is computed bottom-up */
+        private boolean pullLevel = false;
+        /** Whether the bottom-up step of the current level remains to be done */
+        private boolean pullPending = false;
+        /** Nodes of the current level, if it is computed bottom-up */
+        private AtomicBitVector frontierBits;
+        /** Sum of the outdegrees of the nodes of the current frontier */
+        private long frontierEdges = 0;
+        /** Sum of the outdegrees of the nodes discovered so far for the next frontier */
+        private long nextFrontierEdges = 0;
+        /** Sum of the indegrees of the nodes that have not been visited yet */
+        private long unexploredEdges = 0;
+        /** Whether the above counters have been computed for the first level */
+        private boolean edgeCountsInitialized = false;
+
         SimpleTraversal(SwhBidirectionalGraph bidirectionalGraph, TraversalRequest request, NodeObserver nodeObserver) {
-            super(getDirectedGraph(bidirectionalGraph, request.getDirection()));
+            super(getDirectedGraph(bidirectionalGraph, request.getDirection()), false);
             this.request = request;
             this.nodeObserver = nodeObserver;
             this.nodeReturnChecker = new NodeFilterChecker(g, request.getReturnNodes());
+            if (request.hasPrune()) {
+                NodeFilter prune = request.getPrune();
+                if (prune.hasMinTraversalSuccessors() || prune.hasMaxTraversalSuccessors()) {
+                    throw new IllegalArgumentException(
+                            "The prune filter cannot use the number of traversal successors");
+                }
+                this.pruneChecker = new NodeFilterChecker(g, prune);
+            } else {
+                this.pruneChecker = null;
+            }
+            this.labelFilterChecker = request.hasEdgeLabelFilter()
+                    ? new EdgeLabelFilterChecker(g, request.getEdgeLabelFilter())
+                    : null;
             this.nodeDataMask = new NodePropertyBuilder.NodeDataMask(request.hasMask() ? request.getMask() : null);
             this.allowedEdges = new AllowedEdges(request.hasEdges() ? request.getEdges() : "*");
             request.getSrcList().forEach(srcSwhid -> {
@@ -258,36 +899,449 @@ public class Traversal {
             if (request.hasMaxEdges()) {
                 setMaxEdges(request.getMaxEdges());
             }
+            if (request.hasMaxDurationMs()) {
+                setMaxDuration(request.getMaxDurationMs());
+            }
+            if (request.hasContinuationInterval() && request.getContinuationInterval() <= 0) {
+                throw new IllegalArgumentException("continuation_interval must be positive");
+            }
+            // The bottom-up steps check the edge restrictions without knowing the direction of the edges in
+            // the original graph, which is ambiguous in a symmetrized graph, nor their labels. Checkpoints
+            // can only be taken between two steps of a sequential traversal.
+            boolean directionOptimizing = maxEdges < 0 && !request.hasContinuationInterval()
+                    && !nodeDataMask.successor
+                    && !nodeDataMask.numSuccessors && !request.getReturnNodes().hasMinTraversalSuccessors()
+                    && !request.getReturnNodes().hasMaxTraversalSuccessors() && labelFilterChecker == null
+                    && !(g instanceof SwhSymmetrizedGraph && allowedEdges.restrictedTo != null);
+            this.transposedGraph = directionOptimizing
+                    ? getDirectedGraph(bidirectionalGraph, reverseDirection(request.getDirection()))
+                    : null;
+        }
+
+        /**
+         * Set the pool used to expand the frontier in parallel (by default,
+         * {@link ParallelTraversalPool#getDefault()}). The traversal uses one worker per thread of the
+         * fork-join pool, and stays sequential if the pool has no slot left for it.
+         */
+        void setParallelPool(ParallelTraversalPool pool) {
+            this.parallelPool = pool;
+        }
+
+        /**
+         * Write the returned nodes directly in their protobuf encoding (see {@link NodeEncoder}) and send
+         * them to the given observer, instead of building Node messages for the observer of the
+         * traversal. Must be called before the visit starts.
+         */
+        void encodeNodes(EncodedNodeObserver observer) {
+            this.encoder = new NodeEncoder(g, nodeDataMask);
+            this.encodedNodeObserver = observer;
+        }
+
+        /**
+         * Set the store of the checkpoints of the traversal. If the request has a continuation interval,
+         * a checkpoint of the traversal is stored every continuation_interval returned nodes (or more,
+         * see {@link #CHECKPOINT_AMORTIZATION}), and its token is sent in the returned node.
+         */
+        void setCheckpointStore(CheckpointStore store) {
+            this.checkpointStore = store;
+        }
+
+        /**
+         * Resume the traversal from a checkpoint of a previous traversal of the same request, instead of
+         * starting from the sources. The checkpoint is restored by {@link #visitSetup()}.
+         */
+        void resumeFrom(TraversalCheckpoint checkpoint) {
+            this.resumedCheckpoint = checkpoint;
+        }
+
+        /**
+         * Take a checkpoint of the current state of the traversal. Must only be called between two steps of
+         * a sequential traversal, or while visiting a node after its successors were added to the queue.
+         */
+        TraversalCheckpoint checkpoint() {
+            LongArrayList level = new LongArrayList();
+            LongArrayList nextLevel = new LongArrayList();
+            boolean beforeSentinel = true;
+            for (long i = 0, n = queue.size(); i < n; i++) {
+                long node = queue.dequeueLong();
+                if (node == -1L) {
+                    beforeSentinel = false;
+                } else {
+                    (beforeSentinel ? level : nextLevel).add(node);
+                }
+                queue.enqueue(node);
+            }
+            long numNodes = g.numNodes();
+            return new TraversalCheckpoint(request, numNodes, depth, edgesAccessed,
+                    TraversalCheckpoint.NodeSet.of(visited.size(), visited::forEach, numNodes),
+                    TraversalCheckpoint.NodeSet.of(level.size(), level::forEach, numNodes),
+                    TraversalCheckpoint.NodeSet.of(nextLevel.size(), nextLevel::forEach, numNodes));
+        }
+
+        @Override
+        public void visitSetup() {
+            super.visitSetup();
+            TraversalCheckpoint checkpoint = resumedCheckpoint;
+            if (checkpoint != null) {
+                visited.reset();
+                queue.clear();
+                checkpoint.visited.forEach(node -> visited.add(node, -1L));
+                checkpoint.level.forEach(queue::enqueue);
+                queue.enqueue(-1L); // depth sentinel
+                checkpoint.nextLevel.forEach(queue::enqueue);
+                depth = checkpoint.depth;
+                // The edges accessed before the checkpoint were charged to the call that took it
+                edgesAccessed = checkpoint.edgesAccessed;
+                chargedEdges = edgesAccessed;
+            }
+        }
+
+        /** Give the bit vectors and the slot of the level-synchronous expansion back to the parallel pool. */
+        @Override
+        public void close() {
+            super.close();
+            pendingResults.clear();
+            pendingEncodedResults.clear();
+            if (parallelBFS != null) {
+                parallelPool.releaseBitVector(parallelVisited);
+                if (frontierBits != null) {
+                    parallelPool.releaseBitVector(frontierBits);
+                }
+                parallelVisited = null;
+                frontierBits = null;
+                parallelBFS = null;
+                parallelPool.releaseSlot();
+            }
+        }
+
+        /** Return whether the frontier is currently expanded in parallel. */
+        boolean isParallel() {
+            return parallelBFS != null;
+        }
+
+        @Override
+        protected long getVisitedMemory() {
+            long bytes = super.getVisitedMemory();
+            if (parallelVisited != null) {
+                bytes += parallelVisited.memoryUsage();
+            }
+            if (frontierBits != null) {
+                bytes += frontierBits.memoryUsage();
+            }
+            return bytes;
+        }
+
+        /** Return whether a node has been visited, or added to the queue, by the traversal so far. */
+        boolean isVisited(long node) {
+            return parallelBFS != null ? parallelBFS.isVisited(node) : visited.contains(node);
         }
 
         @Override
         protected ArcLabelledNodeIterator.LabelledArcIterator getSuccessors(long nodeId) {
-            return filterLabelledSuccessors(g, nodeId, allowedEdges);
+            return filterLabelledSuccessors(g, nodeId, allowedEdges, pruneChecker, labelFilterChecker,
+                    nodeDataMask.successorLabel);
+        }
+
+        /** Return whether a node should be returned given its number of traversal successors. */
+        private boolean allowedTraversalSuccessors(long successors) {
+            NodeFilter filter = request.getReturnNodes();
+            return !(filter.hasMinTraversalSuccessors() && successors < filter.getMinTraversalSuccessors()
+                    || filter.hasMaxTraversalSuccessors() && successors > filter.getMaxTraversalSuccessors());
         }
 
         @Override
         public void visitNode(long node) {
             nodeBuilder = null;
-            if (nodeReturnChecker.allowed(node) && (!request.hasMinDepth() || depth >= request.getMinDepth())) {
-                nodeBuilder = Node.newBuilder();
-                NodePropertyBuilder.buildNodeProperties(g, nodeDataMask, nodeBuilder, node);
+            boolean returned = nodeReturnChecker.allowed(node)
+                    && (!request.hasMinDepth() || depth >= request.getMinDepth());
+            if (returned) {
+                if (encoder != null) {
+                    encoder.startNode(node);
+                } else {
+                    nodeBuilder = Node.newBuilder();
+                    NodePropertyBuilder.buildNodeProperties(g, nodeDataMask, nodeBuilder, node);
+                }
             }
             super.visitNode(node);
-            if (request.getReturnNodes().hasMinTraversalSuccessors()
-                    && traversalSuccessors < request.getReturnNodes().getMinTraversalSuccessors()
-                    || request.getReturnNodes().hasMaxTraversalSuccessors()
-                            && traversalSuccessors > request.getReturnNodes().getMaxTraversalSuccessors()) {
-                nodeBuilder = null;
+            if (!returned || !allowedTraversalSuccessors(traversalSuccessors)) {
+                if (encoder != null) {
+                    encoder.reset();
+                }
+                return;
+            }
+            ++nodesReturned;
+            String continuationToken = null;
+            long sinceCheckpoint = nodesReturned - checkpointNodesReturned;
+            if (checkpointStore != null && request.hasContinuationInterval()
+                    && sinceCheckpoint >= request.getContinuationInterval()
+                    && sinceCheckpoint * CHECKPOINT_AMORTIZATION >= visited.size()) {
+                checkpointNodesReturned = nodesReturned;
+                try {
+                    continuationToken = checkpointStore.save(checkpoint());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
             }
-            if (nodeBuilder != null) {
+            if (encoder != null) {
+                encodedNodeObserver.onNext(encoder.finishNode(continuationToken));
+            } else {
+                if (continuationToken != null) {
+                    nodeBuilder.setContinuationToken(continuationToken);
+                }
                 nodeObserver.onNext(nodeBuilder.build());
             }
         }
 
         @Override
         protected void visitEdge(long src, long dst, Label label) {
-            super.visitEdge(src, dst, label);
-            NodePropertyBuilder.buildSuccessorProperties(g, nodeDataMask, nodeBuilder, src, dst, label);
+            if (visited.add(dst, src)) {
+                queue.enqueue(dst);
+                if (transposedGraph != null) {
+                    nextFrontierEdges += g.outdegree(dst);
+                    unexploredEdges -= transposedGraph.outdegree(dst);
+                }
+            }
+            if (encoder != null) {
+                encoder.addSuccessor(dst, label);
+            } else {
+                NodePropertyBuilder.buildSuccessorProperties(g, nodeDataMask, nodeBuilder, src, dst, label);
+            }
+        }
+
+        /** Return whether the current level is computed bottom-up. */
+        boolean isPullLevel() {
+            return pullLevel;
+        }
+
+        @Override
+        protected void onLevelStart() {
+            long frontierSize = queue.size() - 1; // depth sentinel excluded
+            boolean pull = false;
+            if (transposedGraph != null) {
+                updateEdgeCounts();
+                // Beamer's rule: pull once the frontier has a large share of the unexplored edges, and push
+                // again once it has a small share of the nodes of the graph.
+                pull = pullLevel
+                        ? frontierSize * HYBRID_BETA >= g.numNodes()
+                        : frontierEdges * HYBRID_ALPHA > unexploredEdges;
+            }
+            if (parallelBFS == null) {
+                boolean parallel;
+                if (request.hasContinuationInterval()) {
+                    parallel = false;
+                } else if (request.hasParallel()) {
+                    parallel = request.getParallel() && frontierSize > 0;
+                } else {
+                    parallel = frontierSize >= PARALLEL_FRONTIER_THRESHOLD
+                            && parallelPool.getPool().getParallelism() > 1;
+                }
+                if ((!parallel && !pull) || !parallelPool.tryAcquireSlot()) {
+                    return;
+                }
+                startLevelSynchronous();
+            }
+            if (transposedGraph != null) {
+                pullLevel = pull;
+                pullPending = pullLevel;
+                if (pullLevel && frontierBits == null) {
+                    frontierBits = parallelPool.acquireBitVector(g.numNodes());
+                }
+            }
+        }
+
+        /**
+         * Switch to the level-synchronous expansion of the frontier, at the start of a level. The slot of
+         * the traversal in the parallel pool must have been acquired.
+         */
+        private void startLevelSynchronous() {
+            parallelVisited = parallelPool.acquireBitVector(g.numNodes());
+            visited.forEach(parallelVisited::testAndSet);
+            ForkJoinPool pool = parallelPool.getPool();
+            int numWorkers = (request.hasParallel() && !request.getParallel()) ? 1 : pool.getParallelism();
+            List<ParallelWorker> workers = new ArrayList<>();
+            for (int i = 0; i < numWorkers; i++) {
+                workers.add(new ParallelWorker(g.copy(), transposedGraph != null ? transposedGraph.copy() : null));
+            }
+            parallelBFS = new ParallelBFS<>(pool, parallelVisited, workers, maxEdges, edgesAccessed);
+            frontierChunk = new long[PARALLEL_CHUNK_SIZE];
+        }
+
+        /**
+         * Update the edge counters of the direction-optimizing heuristic at the start of a level. They are
+         * computed from the queue and the visited set for the first level, then updated incrementally as
+         * nodes are discovered, by {@link #visitEdge} or by the workers.
+         */
+        private void updateEdgeCounts() {
+            if (edgeCountsInitialized) {
+                frontierEdges = nextFrontierEdges;
+                nextFrontierEdges = 0;
+                return;
+            }
+            edgeCountsInitialized = true;
+            frontierEdges = 0;
+            for (long i = 0, n = queue.size(); i < n; i++) {
+                long node = queue.dequeueLong();
+                if (node != -1L) {
+                    frontierEdges += g.outdegree(node);
+                }
+                queue.enqueue(node);
+            }
+            long[] visitedIndegrees = {0};
+            visited.forEach(node -> visitedIndegrees[0] += transposedGraph.outdegree(node));
+            unexploredEdges = g.numArcs() - visitedIndegrees[0];
+            nextFrontierEdges = 0;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return super.isFinished() && pendingResults.isEmpty() && pendingEncodedResults.isEmpty();
+        }
+
+        /**
+         * Single "step" of a visit. Once the traversal is level-synchronous, a step expands a whole slice of
+         * the frontier of the current level (up to {@link #PARALLEL_CHUNK_SIZE} nodes), or computes the
+         * next frontier bottom-up once all the nodes of the current level have been visited. The nodes
+         * returned by such a step are buffered, then sent one per step like in a sequential traversal, so
+         * that callers driving the visit step by step (see {@link FlowControlledTraversal}) can pause it
+         * between two of them.
+         */
+        @Override
+        public void visitStep() {
+            if (!pendingResults.isEmpty()) {
+                ++nodesReturned;
+                nodeObserver.onNext(pendingResults.poll());
+                return;
+            }
+            if (!pendingEncodedResults.isEmpty()) {
+                ++nodesReturned;
+                encodedNodeObserver.onNext(pendingEncodedResults.poll());
+                return;
+            }
+            if (parallelBFS == null || (queue.firstLong() == -1L && !pullPending)) {
+                super.visitStep();
+                return;
+            }
+            try {
+                checkInterrupted();
+                if (queue.firstLong() == -1L) {
+                    pullPending = false;
+                    if (maxDepth < 0 || depth < maxDepth) {
+                        parallelBFS.pull(frontierBits);
+                        edgesAccessed = parallelBFS.getEdgesAccessed();
+                        drainWorkers();
+                    }
+                    frontierBits.clear();
+                    return;
+                }
+                int length = 0;
+                while (length < frontierChunk.length && queue.firstLong() != -1L) {
+                    long node = queue.dequeueLong();
+                    frontierChunk[length++] = node;
+                    if (pullLevel) {
+                        frontierBits.testAndSet(node);
+                    }
+                }
+                if (maxDepth >= 0 && depth > maxDepth) {
+                    stopOnMaxDepth();
+                }
+                boolean complete = parallelBFS.expand(frontierChunk, length, depth, !pullLevel);
+                edgesAccessed = parallelBFS.getEdgesAccessed();
+                nodesVisited += length;
+                depthReached = depth;
+                drainWorkers();
+                if (!complete) {
+                    stopOnMaxEdges();
+                }
+            } catch (StopTraversalException e) {
+                // Traversal is over, clear the to-do queue.
+                queue.clear();
+            }
+        }
+
+        /**
+         * Buffer the nodes returned by the workers until they are sent, and add the nodes they discovered to
+         * the queue.
+         */
+        private void drainWorkers() {
+            for (ParallelWorker worker : parallelBFS.getWorkers()) {
+                pendingResults.addAll(worker.results);
+                worker.results.clear();
+                pendingEncodedResults.addAll(worker.encodedResults);
+                worker.encodedResults.clear();
+                worker.next.forEach(queue::enqueue);
+                nextFrontierEdges += worker.nextOutdegrees;
+                unexploredEdges -= worker.nextIndegrees;
+                worker.clear();
+            }
+        }
+
+        /** Worker of the parallel expansion, buffering the nodes to return. */
+        private class ParallelWorker extends ParallelBFS.Worker {
+            private final NodeFilterChecker nodeReturnChecker;
+            private final NodeFilterChecker pruneChecker;
+            private final EdgeLabelFilterChecker labelFilterChecker;
+            private final ArrayList<Node> results = new ArrayList<>();
+            /** Encoder of the returned nodes, or null if the traversal builds Node messages */
+            private final NodeEncoder encoder;
+            private final ArrayList<NodeEncoder.EncodedNode> encodedResults = new ArrayList<>();
+
+            ParallelWorker(SwhUnidirectionalGraph g, SwhUnidirectionalGraph transposed) {
+                super(g, transposed);
+                this.encoder = SimpleTraversal.this.encoder != null ? new NodeEncoder(g, nodeDataMask) : null;
+                this.nodeReturnChecker = new NodeFilterChecker(g, request.getReturnNodes());
+                this.pruneChecker = request.hasPrune() ? new NodeFilterChecker(g, request.getPrune()) : null;
+                this.labelFilterChecker = SimpleTraversal.this.labelFilterChecker != null
+                        ? SimpleTraversal.this.labelFilterChecker.copy()
+                        : null;
+            }
+
+            @Override
+            protected boolean isAllowedEdge(long src, long dst) {
+                return (allowedEdges.restrictedTo == null
+                        || allowedEdges.isAllowed(g.getNodeType(src), g.getNodeType(dst)))
+                        && (pruneChecker == null || pruneChecker.allowed(dst));
+            }
+
+            @Override
+            protected void visitNode(long node, long depth, boolean expand) {
+                Node.Builder builder = null;
+                boolean returned = nodeReturnChecker.allowed(node)
+                        && (!request.hasMinDepth() || depth >= request.getMinDepth());
+                if (returned) {
+                    if (encoder != null) {
+                        encoder.startNode(node);
+                    } else {
+                        builder = Node.newBuilder();
+                        NodePropertyBuilder.buildNodeProperties(g, nodeDataMask, builder, node);
+                    }
+                }
+                if (expand) {
+                    ArcLabelledNodeIterator.LabelledArcIterator it = filterLabelledSuccessors(g, node, allowedEdges,
+                            pruneChecker, labelFilterChecker, nodeDataMask.successorLabel);
+                    long successors = 0;
+                    for (long succ; (succ = it.nextLong()) != -1;) {
+                        successors++;
+                        visitEdge(succ);
+                        if (encoder != null) {
+                            encoder.addSuccessor(succ, it.label());
+                        } else {
+                            NodePropertyBuilder.buildSuccessorProperties(g, nodeDataMask, builder, node, succ,
+                                    it.label());
+                        }
+                    }
+                    returned = returned && allowedTraversalSuccessors(successors);
+                }
+                // Otherwise, bottom-up level: the returned nodes do not depend on their successors
+                if (!returned) {
+                    if (encoder != null) {
+                        encoder.reset();
+                    }
+                } else if (encoder != null) {
+                    encodedResults.add(encoder.finishNode(null));
+                } else {
+                    results.add(builder.build());
+                }
+            }
         }
     }
 
@@ -301,12 +1355,17 @@ public class Traversal {
         private final FindPathToRequest request;
         private final NodePropertyBuilder.NodeDataMask nodeDataMask;
         private final NodeFilterChecker targetChecker;
+        /** Filter of the edge labels, or null if all edges are followed */
+        private final EdgeLabelFilterChecker labelFilterChecker;
         private Long targetNode = null;
 
         FindPathTo(SwhBidirectionalGraph bidirectionalGraph, FindPathToRequest request) {
             super(getDirectedGraph(bidirectionalGraph, request.getDirection()));
             this.request = request;
             this.targetChecker = new NodeFilterChecker(g, request.getTarget());
+            this.labelFilterChecker = request.hasEdgeLabelFilter()
+                    ? new EdgeLabelFilterChecker(g, request.getEdgeLabelFilter())
+                    : null;
             this.nodeDataMask = new NodePropertyBuilder.NodeDataMask(request.hasMask() ? request.getMask() : null);
             this.allowedEdges = new AllowedEdges(request.hasEdges() ? request.getEdges() : "*");
             if (request.hasMaxDepth()) {
@@ -315,6 +1374,9 @@ public class Traversal {
             if (request.hasMaxEdges()) {
                 setMaxEdges(request.getMaxEdges());
             }
+            if (request.hasMaxDurationMs()) {
+                setMaxDuration(request.getMaxDurationMs());
+            }
             request.getSrcList().forEach(srcSwhid -> {
                 long srcNodeId = g.getNodeId(new SWHID(srcSwhid));
                 addSource(srcNodeId);
@@ -323,7 +1385,7 @@ public class Traversal {
 
         @Override
         protected ArcLabelledNodeIterator.LabelledArcIterator getSuccessors(long nodeId) {
-            return filterLabelledSuccessors(g, nodeId, allowedEdges);
+            return filterLabelledSuccessors(g, nodeId, allowedEdges, null, labelFilterChecker, false);
         }
 
         @Override
@@ -350,7 +1412,7 @@ public class Traversal {
             ArrayList<Long> path = new ArrayList<>();
             while (curNode != -1) {
                 path.add(curNode);
-                curNode = parents.get(curNode);
+                curNode = visited.getParent(curNode);
             }
             Collections.reverse(path);
 
@@ -361,6 +1423,7 @@ public class Traversal {
                 NodePropertyBuilder.buildNodeProperties(g, nodeDataMask, nodeBuilder, nodeId);
                 pathBuilder.addNode(nodeBuilder.build());
             }
+            nodesReturned = path.size();
             return pathBuilder.build();
         }
     }
@@ -373,7 +1436,15 @@ public class Traversal {
      * searches, one from the source set ("src-BFS") and one from the destination set ("dst-BFS"), until
      * both searches find a common node that joins their visited sets. This node is called the "midpoint
      * node". The path returned is the path src -> ... -> midpoint -> ... -> dst, which is always a
-     * shortest path between src and dst.
+     * shortest path between src and dst (unless the search is stopped by max_edges).
+     *
+     * When looking for a common ancestor or descendant, the first midpoint found is not necessarily the
+     * best one: the searches go on until all the nodes that could join them with a shorter path have
+     * been visited.
+     *
+     * The two searches are not advanced in lockstep: each step expands a whole level of the search whose
+     * frontier has the smallest sum of outdegrees, and the edges accessed by both searches are counted
+     * against a single max_edges budget.
      *
      * The graph direction of both BFS can be configured separately. By default, the dst-BFS will use
      * the graph in the opposite direction than the src-BFS (if direction = FORWARD, by default
@@ -389,12 +1460,18 @@ public class Traversal {
         private final AllowedEdges allowedEdgesSrc;
         private final AllowedEdges allowedEdgesDst;
 
-        private final BFSVisitor srcVisitor;
-        private final BFSVisitor dstVisitor;
+        /** Whether the dst-BFS follows the reverse edges of the src-BFS */
+        private final boolean oppositeSearches;
+
+        private final SearchSide srcVisitor;
+        private final SearchSide dstVisitor;
         private Long middleNode = null;
+        /** Length of the path going through {@link #middleNode} */
+        private long middlePathLength = -1;
 
         FindPathBetween(SwhBidirectionalGraph bidirectionalGraph, FindPathBetweenRequest request) {
-            super(getDirectedGraph(bidirectionalGraph, request.getDirection()));
+            // The outer visitor only delegates to the two sub-visitors, it never visits anything itself.
+            super(getDirectedGraph(bidirectionalGraph, request.getDirection()), (VisitedNodes) null);
             this.request = request;
             this.nodeDataMask = new NodePropertyBuilder.NodeDataMask(request.hasMask() ? request.getMask() : null);
 
@@ -421,77 +1498,232 @@ public class Traversal {
                             : new AllowedEdges("*"));
 
             /*
-             * Source sub-visitor. Aborts as soon as it finds a node already visited by the destination
-             * sub-visitor.
+             * If the dst-BFS follows the reverse edges of the src-BFS, a path is found at the first level
+             * where the two searches meet, and there is none once either search visited all its reachable
+             * nodes. This does not hold when looking for a common ancestor or descendant.
              */
-            this.srcVisitor = new BFSVisitor(srcGraph) {
-                @Override
-                protected ArcLabelledNodeIterator.LabelledArcIterator getSuccessors(long nodeId) {
-                    return filterLabelledSuccessors(g, nodeId, allowedEdgesSrc);
-                }
-
-                @Override
-                public void visitNode(long node) {
-                    if (dstVisitor.parents.containsKey(node)) {
-                        middleNode = node;
-                        throw new StopTraversalException();
-                    }
-                    super.visitNode(node);
-                }
-            };
+            this.oppositeSearches = direction != directionReverse && !request.hasEdgesReverse();
 
-            /*
-             * Destination sub-visitor. Aborts as soon as it finds a node already visited by the source
-             * sub-visitor.
-             */
-            this.dstVisitor = new BFSVisitor(dstGraph) {
-                @Override
-                protected ArcLabelledNodeIterator.LabelledArcIterator getSuccessors(long nodeId) {
-                    return filterLabelledSuccessors(g, nodeId, allowedEdgesDst);
-                }
-
-                @Override
-                public void visitNode(long node) {
-                    if (srcVisitor.parents.containsKey(node)) {
-                        middleNode = node;
-                        throw new StopTraversalException();
-                    }
-                    super.visitNode(node);
-                }
-            };
+            this.srcVisitor = new SearchSide(srcGraph, allowedEdgesSrc);
+            this.dstVisitor = new SearchSide(dstGraph, allowedEdgesDst);
+            this.srcVisitor.other = this.dstVisitor;
+            this.dstVisitor.other = this.srcVisitor;
             if (request.hasMaxDepth()) {
                 this.srcVisitor.setMaxDepth(request.getMaxDepth());
                 this.dstVisitor.setMaxDepth(request.getMaxDepth());
             }
             if (request.hasMaxEdges()) {
-                this.srcVisitor.setMaxEdges(request.getMaxEdges());
-                this.dstVisitor.setMaxEdges(request.getMaxEdges());
+                // Shared by both searches, see shareEdgeBudget()
+                setMaxEdges(request.getMaxEdges());
+            }
+            if (request.hasMaxDurationMs()) {
+                this.srcVisitor.setMaxDuration(request.getMaxDurationMs());
+                this.dstVisitor.setMaxDuration(request.getMaxDurationMs());
             }
             request.getSrcList().forEach(srcSwhid -> {
                 long srcNodeId = g.getNodeId(new SWHID(srcSwhid));
                 srcVisitor.addSource(srcNodeId);
             });
-            request.getDstList().forEach(srcSwhid -> {
-                long srcNodeId = g.getNodeId(new SWHID(srcSwhid));
-                dstVisitor.addSource(srcNodeId);
+            request.getDstList().forEach(dstSwhid -> {
+                long dstNodeId = g.getNodeId(new SWHID(dstSwhid));
+                dstVisitor.addSource(dstNodeId);
+                if (middleNode == null && srcVisitor.visited.contains(dstNodeId)) {
+                    // Both a source and a destination: a path of length 0
+                    middleNode = dstNodeId;
+                    middlePathLength = 0;
+                }
             });
         }
 
+        /**
+         * One of the two searches of the bidirectional BFS. It visits the graph level by level, and records
+         * a midpoint each time it discovers a node already visited by the other search.
+         */
+        private class SearchSide extends BFSVisitor {
+            private final AllowedEdges allowedEdges;
+            /** The search running in the other direction */
+            private SearchSide other;
+            /** Sum of the outdegrees of the nodes discovered since the last level expansion */
+            private long frontierEdges = 0;
+            /** Number of levels expanded so far */
+            private long levelsExpanded = 0;
+
+            SearchSide(SwhUnidirectionalGraph g, AllowedEdges allowedEdges) {
+                super(g);
+                this.allowedEdges = allowedEdges;
+            }
+
+            @Override
+            public void addSource(long nodeId) {
+                if (visited.add(nodeId, -1L)) {
+                    queue.enqueue(nodeId);
+                    frontierEdges += g.outdegree(nodeId);
+                }
+            }
+
+            @Override
+            protected ArcLabelledNodeIterator.LabelledArcIterator getSuccessors(long nodeId) {
+                return filterLabelledSuccessors(g, nodeId, allowedEdges, null, null, false);
+            }
+
+            @Override
+            protected void visitEdge(long src, long dst, Label label) {
+                if (!visited.add(dst, src)) {
+                    return;
+                }
+                queue.enqueue(dst);
+                frontierEdges += g.outdegree(dst);
+                if (other.visited.contains(dst) && (maxDepth < 0 || depth < maxDepth)) {
+                    onMidpoint(dst, depth + 1 + other.getDistance(dst));
+                }
+            }
+
+            /** Return the distance between a visited node and the sources, by backtracking its parents. */
+            long getDistance(long node) {
+                long distance = 0;
+                for (long parent = visited.getParent(node); parent != -1; parent = visited.getParent(parent)) {
+                    distance++;
+                }
+                return distance;
+            }
+
+            /** Visit all the nodes of the current level, i.e., all the nodes before the next depth sentinel. */
+            void expandLevel() {
+                frontierEdges = 0;
+                do {
+                    visitStep();
+                } while (!isFinished() && queue.firstLong() != -1L);
+                levelsExpanded++;
+            }
+
+            /**
+             * Return the distance from the sources up to which all the nodes that the search can reach have
+             * been visited.
+             */
+            long getVisitedDistance() {
+                return isFinished() ? Long.MAX_VALUE : levelsExpanded;
+            }
+
+            /** Return whether the search visited all its reachable nodes without being stopped. */
+            boolean isExhausted() {
+                return isFinished() && limitReached == null && interruption == null;
+            }
+        }
+
+        /** Record a node joining the two searches, if it makes a shorter path than the current midpoint. */
+        private void onMidpoint(long node, long pathLength) {
+            if (middleNode == null || pathLength < middlePathLength) {
+                middleNode = node;
+                middlePathLength = pathLength;
+            }
+            if (oppositeSearches) {
+                // All the midpoints of this level make paths of the same length
+                throw new StopTraversalException();
+            }
+        }
+
+        /**
+         * Return the search whose next level is the cheapest to expand, as estimated by the sum of the
+         * outdegrees of its frontier, or null if the search is over.
+         */
+        private SearchSide nextSide() {
+            if (oppositeSearches && (srcVisitor.isExhausted() || dstVisitor.isExhausted())) {
+                return null;
+            }
+            if (srcVisitor.isFinished()) {
+                return dstVisitor.isFinished() ? null : dstVisitor;
+            }
+            if (dstVisitor.isFinished()) {
+                return srcVisitor;
+            }
+            if (middleNode != null) {
+                // Only expanding the search with the smallest visited distance can rule out shorter paths
+                return dstVisitor.getVisitedDistance() < srcVisitor.getVisitedDistance() ? dstVisitor : srcVisitor;
+            }
+            return dstVisitor.frontierEdges < srcVisitor.frontierEdges ? dstVisitor : srcVisitor;
+        }
+
+        /** Return whether no path shorter than the one through {@link #middleNode} remains to be found. */
+        private boolean isShortestPathFound() {
+            if (middleNode == null) {
+                return false;
+            }
+            if (oppositeSearches) {
+                return true;
+            }
+            // A midpoint that was not found yet is farther than the visited distance of one of the searches
+            long distance = Math.min(srcVisitor.getVisitedDistance(), dstVisitor.getVisitedDistance());
+            return distance == Long.MAX_VALUE || distance + 1 >= middlePathLength;
+        }
+
+        /** Limit the edges accessed by a search to what the other search left of the budget of the request. */
+        private void shareEdgeBudget(SearchSide side) {
+            if (maxEdges >= 0) {
+                side.maxEdges = Math.max(0, maxEdges - side.other.edgesAccessed);
+                side.maxEdgesIsCeiling = maxEdgesIsCeiling;
+            }
+        }
+
         @Override
         public void visit() {
             /*
-             * Bidirectional BFS: maintain two sub-visitors, and alternately run a visit step in each of them.
+             * Balanced bidirectional BFS: expand a whole level of one of the two searches at a time, always
+             * the one with the smallest frontier, so that a large fan-out on one side (e.g., a popular
+             * content searched backwards) is only explored when the other side is even more expensive.
+             * A level is completed once a midpoint is found, so that the shortest path through it is kept.
+             * When looking for a common ancestor or descendant, the searches then go on until no shorter path
+             * can remain (see isShortestPathFound()).
              */
-            srcVisitor.visitSetup();
-            dstVisitor.visitSetup();
-            while (!srcVisitor.queue.isEmpty() || !dstVisitor.queue.isEmpty()) {
-                if (!srcVisitor.queue.isEmpty()) {
-                    srcVisitor.visitStep();
-                }
-                if (!dstVisitor.queue.isEmpty()) {
-                    dstVisitor.visitStep();
+            startClock();
+            try {
+                srcVisitor.visitSetup();
+                dstVisitor.visitSetup();
+                while (!isShortestPathFound()) {
+                    SearchSide side = nextSide();
+                    if (side == null) {
+                        break;
+                    }
+                    shareEdgeBudget(side);
+                    side.expandLevel();
+                    interruption = srcVisitor.interruption != null
+                            ? srcVisitor.interruption
+                            : dstVisitor.interruption;
+                    if (interruption != null || "max_edges".equals(side.limitReached)) {
+                        // If one of the sub-visitors was interrupted, or used up the budget of both, the whole
+                        // search is over.
+                        break;
+                    }
                 }
+            } finally {
+                stopClock();
+            }
+        }
+
+        /**
+         * Return the statistics of both searches: their costs are summed, except for the depth which is
+         * the largest depth reached by either search.
+         */
+        @Override
+        public TraversalStats getStats() {
+            TraversalStats src = srcVisitor.getStats();
+            TraversalStats dst = dstVisitor.getStats();
+            TraversalStats.Builder stats = super.getStats().toBuilder()
+                    .setEdgesAccessed(src.getEdgesAccessed() + dst.getEdgesAccessed())
+                    .setNodesVisited(src.getNodesVisited() + dst.getNodesVisited())
+                    .setMaxDepthReached(Math.max(src.getMaxDepthReached(), dst.getMaxDepthReached()))
+                    .setFrontierPeak(src.getFrontierPeak() + dst.getFrontierPeak())
+                    .setVisitedSetBytes(src.getVisitedSetBytes() + dst.getVisitedSetBytes());
+            if (!stats.hasLimitReached() && (src.hasLimitReached() || dst.hasLimitReached())) {
+                stats.setLimitReached(src.hasLimitReached() ? src.getLimitReached() : dst.getLimitReached());
             }
+            return stats.build();
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            srcVisitor.close();
+            dstVisitor.close();
         }
 
         public Path getPath() {
@@ -505,16 +1737,16 @@ public class Traversal {
             long curNode = middleNode;
             while (curNode != -1) {
                 path.add(curNode);
-                curNode = srcVisitor.parents.get(curNode);
+                curNode = srcVisitor.visited.getParent(curNode);
             }
             pathBuilder.setMidpointIndex(path.size() - 1);
             Collections.reverse(path);
 
             /* Second section of the path: midpoint -> dst */
-            curNode = dstVisitor.parents.get(middleNode);
+            curNode = dstVisitor.visited.getParent(middleNode);
             while (curNode != -1) {
                 path.add(curNode);
-                curNode = dstVisitor.parents.get(curNode);
+                curNode = dstVisitor.visited.getParent(curNode);
             }
 
             /* Enrich path with node properties */
@@ -523,6 +1755,7 @@ public class Traversal {
                 NodePropertyBuilder.buildNodeProperties(g, nodeDataMask, nodeBuilder, nodeId);
                 pathBuilder.addNode(nodeBuilder.build());
             }
+            nodesReturned = path.size();
             return pathBuilder.build();
         }
     }
@@ -530,4 +1763,9 @@ public class Traversal {
     public interface NodeObserver {
         void onNext(Node nodeId);
     }
+
+    /** Observer of the nodes returned by a traversal, when they are encoded by a {@link NodeEncoder}. */
+    public interface EncodedNodeObserver {
+        void onNext(NodeEncoder.EncodedNode node);
+    }
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterators;
+import it.unimi.dsi.sux4j.util.EliasFanoMonotoneLongBigList;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Snapshot of the state of a {@link Traversal.SimpleTraversal}, from which it can be resumed later.
+ * <p>
+ * The state consists of the set of visited nodes and of the frontier of the traversal, i.e., the
+ * nodes of the current depth level that remain to be visited and the nodes of the next level. Each
+ * of these sets is compressed, either as an Elias-Fano list of its sorted node ids or as a bitmap of
+ * the nodes of the graph, whichever is the smallest.
+ * <p>
+ * Checkpoints are written in an explicit binary format: a magic string and a format version (an
+ * int), the length (an int) and bytes of the serialized request, the number of nodes of the graph,
+ * the depth and the number of edges accessed (longs), then the three node sets. Each node set is
+ * written as a kind byte followed either by its size (a long) and the gaps between its sorted node
+ * ids (as variable-length integers), or by the words of its bitmap (longs).
+ *
+ * @see CheckpointStore
+ */
+class TraversalCheckpoint {
+    static final byte[] MAGIC = "SWHGCKPT".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 2;
+
+    /** The request of the traversal */
+    final TraversalRequest request;
+    /** Number of nodes of the traversed graph */
+    final long numNodes;
+    /** Depth of the current level */
+    final long depth;
+    /** Number of edges accessed by the traversal so far */
+    final long edgesAccessed;
+    final NodeSet visited;
+    /** Nodes of the current level that remain to be visited */
+    final NodeSet level;
+    /** Nodes of the next level discovered so far */
+    final NodeSet nextLevel;
+
+    TraversalCheckpoint(TraversalRequest request, long numNodes, long depth, long edgesAccessed, NodeSet visited,
+            NodeSet level, NodeSet nextLevel) {
+        this.request = request;
+        this.numNodes = numNodes;
+        this.depth = depth;
+        this.edgesAccessed = edgesAccessed;
+        this.visited = visited;
+        this.level = level;
+        this.nextLevel = nextLevel;
+    }
+
+    /** Serialize the checkpoint to a stream. */
+    void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.write(MAGIC);
+        out.writeInt(VERSION);
+        byte[] requestBytes = request.toByteArray();
+        out.writeInt(requestBytes.length);
+        out.write(requestBytes);
+        out.writeLong(numNodes);
+        out.writeLong(depth);
+        out.writeLong(edgesAccessed);
+        visited.write(out);
+        level.write(out);
+        nextLevel.write(out);
+        out.flush();
+    }
+
+    /**
+     * Deserialize a checkpoint written by {@link #write(OutputStream)}.
+     *
+     * @throws IllegalArgumentException if the stream is not a checkpoint, or was written in another
+     *             version of the format
+     * @throws IOException if the stream cannot be read or the checkpoint is corrupted
+     */
+    static TraversalCheckpoint read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IllegalArgumentException("Not a traversal checkpoint");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported checkpoint version: " + version);
+        }
+        int requestLength = in.readInt();
+        if (requestLength < 0) {
+            throw new IOException("Corrupted checkpoint: negative request length");
+        }
+        byte[] requestBytes = new byte[requestLength];
+        in.readFully(requestBytes);
+        TraversalRequest request = TraversalRequest.parseFrom(requestBytes);
+        long numNodes = in.readLong();
+        long depth = in.readLong();
+        long edgesAccessed = in.readLong();
+        return new TraversalCheckpoint(request, numNodes, depth, edgesAccessed, NodeSet.read(in, numNodes),
+                NodeSet.read(in, numNodes), NodeSet.read(in, numNodes));
+    }
+
+    /** Compressed immutable set of node ids. */
+    static class NodeSet {
+        private static final byte SORTED_LIST = 0;
+        private static final byte BITMAP = 1;
+
+        /** Either a {@link EliasFanoMonotoneLongBigList} or a {@link LongArrayBitVector} */
+        private final Object nodes;
+
+        private NodeSet(Object nodes) {
+            if (!(nodes instanceof EliasFanoMonotoneLongBigList || nodes instanceof LongArrayBitVector)) {
+                throw new IllegalArgumentException("Unexpected node set: " + nodes.getClass().getName());
+            }
+            this.nodes = nodes;
+        }
+
+        /**
+         * Build a set of nodes.
+         *
+         * @param size the number of nodes of the set
+         * @param forEach function calling its argument on each node of the set, in any order
+         * @param numNodes the number of nodes of the graph
+         */
+        static NodeSet of(long size, Consumer<LongConsumer> forEach, long numNodes) {
+            if (size >= Integer.MAX_VALUE - 8 || eliasFanoBits(size, numNodes) >= numNodes) {
+                LongArrayBitVector bits = LongArrayBitVector.ofLength(numNodes);
+                forEach.accept(bits::set);
+                return new NodeSet(bits);
+            }
+            long[] sorted = new long[(int) size];
+            int[] length = {0};
+            forEach.accept(node -> sorted[length[0]++] = node);
+            Arrays.parallelSort(sorted);
+            return new NodeSet(new EliasFanoMonotoneLongBigList(size, numNodes, LongIterators.wrap(sorted)));
+        }
+
+        /** Write the set to a stream, see {@link TraversalCheckpoint} for the format. */
+        void write(DataOutputStream out) throws IOException {
+            if (nodes instanceof LongArrayBitVector) {
+                LongArrayBitVector bits = (LongArrayBitVector) nodes;
+                long[] words = bits.bits();
+                out.writeByte(BITMAP);
+                for (int i = 0; i < (bits.length() + 63) >>> 6; i++) {
+                    out.writeLong(words[i]);
+                }
+            } else {
+                EliasFanoMonotoneLongBigList list = (EliasFanoMonotoneLongBigList) nodes;
+                out.writeByte(SORTED_LIST);
+                out.writeLong(list.size64());
+                long previous = -1;
+                for (LongIterator it = list.iterator(); it.hasNext();) {
+                    long node = it.nextLong();
+                    writeVarLong(out, node - previous - 1);
+                    previous = node;
+                }
+            }
+        }
+
+        /** Read a set written by {@link #write(DataOutputStream)}, for a graph of the given number of nodes. */
+        static NodeSet read(DataInputStream in, long numNodes) throws IOException {
+            byte kind = in.readByte();
+            if (kind == BITMAP) {
+                long[] words = new long[Math.toIntExact((numNodes + 63) >>> 6)];
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = in.readLong();
+                }
+                return new NodeSet(LongArrayBitVector.wrap(words, numNodes));
+            } else if (kind == SORTED_LIST) {
+                long size = in.readLong();
+                if (size < 0 || size > numNodes || size >= Integer.MAX_VALUE - 8) {
+                    throw new IOException("Corrupted checkpoint: invalid node set size " + size);
+                }
+                long[] sorted = new long[(int) size];
+                long node = -1;
+                for (int i = 0; i < sorted.length; i++) {
+                    node += readVarLong(in) + 1;
+                    if (node < 0 || node >= numNodes) {
+                        throw new IOException("Corrupted checkpoint: invalid node " + node);
+                    }
+                    sorted[i] = node;
+                }
+                return new NodeSet(new EliasFanoMonotoneLongBigList(size, numNodes, LongIterators.wrap(sorted)));
+            } else {
+                throw new IOException("Corrupted checkpoint: unknown node set kind " + kind);
+            }
+        }
+
+        /** Write a non-negative long, 7 bits per byte, the high bit of each byte flagging that more bytes follow. */
+        private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        private static long readVarLong(DataInputStream in) throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupted checkpoint: variable-length integer too long");
+        }
+
+        /** Approximate number of bits of an Elias-Fano list of n values lower than a given bound. */
+        private static long eliasFanoBits(long n, long upperBound) {
+            if (n == 0) {
+                return 0;
+            }
+            long lowBits = Math.max(0, 63 - Long.numberOfLeadingZeros(upperBound / n));
+            return n * (2 + lowBits);
+        }
+
+        /** Return the number of nodes of the set. */
+        long size() {
+            return nodes instanceof LongArrayBitVector
+                    ? ((LongArrayBitVector) nodes).count()
+                    : ((EliasFanoMonotoneLongBigList) nodes).size64();
+        }
+
+        /** Call a function on each node of the set, in increasing order. */
+        void forEach(LongConsumer action) {
+            if (nodes instanceof LongArrayBitVector) {
+                LongArrayBitVector bits = (LongArrayBitVector) nodes;
+                for (long node = bits.nextOne(0); node != -1; node = bits.nextOne(node + 1)) {
+                    action.accept(node);
+                }
+            } else {
+                LongIterator it = ((EliasFanoMonotoneLongBigList) nodes).iterator();
+                while (it.hasNext()) {
+                    action.accept(it.nextLong());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import it.unimi.dsi.fastutil.BigArrays;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.LongBigArrays;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Set of visited nodes used by the traversal algorithms, optionally storing the parent of each
+ * visited node.
+ * <p>
+ * The set is adaptive: it starts as an open-addressing hash table of primitive longs, which is
+ * compact for small traversals, and switches to a dense bitmap (plus a parent array, if parents are
+ * tracked) indexed by node ID once the hash table would take more memory than the dense
+ * representation, or would outgrow the maximum size of a Java array.
+ * <p>
+ * Both representations are <em>epoch-stamped</em>: each hash table slot and each 64-bit word of the
+ * bitmap records the epoch in which it was last written, and entries from previous epochs are
+ * considered empty. {@link #reset()} thus only has to increment the epoch, which makes it cheap to
+ * reuse the same instance (and its already allocated arrays) across many traversals. Instances are
+ * cached per thread, see {@link #acquire(long, boolean)} and {@link #release()}. Only their hash
+ * table is kept in the cache: the dense arrays are sized after the whole graph, and are freed on
+ * release.
+ */
+public class VisitedNodes {
+    /** Initial capacity of the hash table (must be a power of two). */
+    private static final int INITIAL_CAPACITY = 1024;
+    /** Maximum capacity of the hash table (the largest power of two that is a valid array length). */
+    static final int MAX_CAPACITY = 1 << 30;
+    /** Maximum number of instances kept in the per-thread cache. */
+    private static final int MAX_CACHED_PER_THREAD = 4;
+    /** Maximum number of bytes retained by the instances in the caches of all threads. */
+    private static final long MAX_CACHED_BYTES = 64L << 20;
+
+    private static final ThreadLocal<ArrayDeque<VisitedNodes>> threadCache = ThreadLocal.withInitial(ArrayDeque::new);
+    /** Number of bytes retained by the instances in the caches of all threads. */
+    private static final AtomicLong cachedBytes = new AtomicLong();
+
+    /** Number of nodes in the graph, i.e., the size of the dense representation. */
+    private final long numNodes;
+    /** Whether the parent of each visited node is stored. */
+    private final boolean trackParents;
+    /** Capacity beyond which the hash table is not grown, and the dense representation is used instead. */
+    private final int maxCapacity;
+
+    /** Current epoch. Entries stamped with a different epoch are considered empty. */
+    private int epoch = 1;
+    /** Number of nodes visited in the current epoch. */
+    private long size = 0;
+    /** Whether the dense representation is used in the current epoch. */
+    private boolean dense = false;
+
+    /* Sparse representation: open-addressing hash table with linear probing. */
+    private long[] keys;
+    private long[] values;
+    private int[] slotEpochs;
+    private int mask;
+    private int maxFill;
+
+    /* Dense representation: bitmap + parent big array, allocated on first use and then reused. */
+    private long[] bits;
+    private int[] wordEpochs;
+    private long[][] parents;
+
+    /**
+     * Constructor.
+     *
+     * @param numNodes the number of nodes of the graph
+     * @param trackParents whether the parent of each visited node should be stored
+     */
+    public VisitedNodes(long numNodes, boolean trackParents) {
+        this(numNodes, trackParents, MAX_CAPACITY);
+    }
+
+    /**
+     * Constructor with a custom maximum capacity of the hash table, for testing purposes.
+     *
+     * @param numNodes the number of nodes of the graph
+     * @param trackParents whether the parent of each visited node should be stored
+     * @param maxCapacity the maximum capacity of the hash table (a power of two, at most
+     *            {@link #MAX_CAPACITY})
+     */
+    VisitedNodes(long numNodes, boolean trackParents, int maxCapacity) {
+        this.numNodes = numNodes;
+        this.trackParents = trackParents;
+        this.maxCapacity = maxCapacity;
+        allocateTable(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Return an empty instance from the cache of the current thread, or a new one if there is no
+     * suitable cached instance. The instance should be given back with {@link #release()} once it is
+     * not used anymore.
+     */
+    public static VisitedNodes acquire(long numNodes, boolean trackParents) {
+        ArrayDeque<VisitedNodes> cache = threadCache.get();
+        for (VisitedNodes v : cache) {
+            if (v.numNodes == numNodes && v.trackParents == trackParents) {
+                cache.remove(v);
+                cachedBytes.addAndGet(-v.memoryUsage());
+                v.reset();
+                return v;
+            }
+        }
+        return new VisitedNodes(numNodes, trackParents);
+    }
+
+    /**
+     * Give this instance back to the cache of the current thread, after freeing its dense arrays. The
+     * instance is dropped if the cache is full, or if the caches of all threads already retain
+     * {@link #MAX_CACHED_BYTES}.
+     */
+    public void release() {
+        bits = null;
+        wordEpochs = null;
+        parents = null;
+        reset();
+        ArrayDeque<VisitedNodes> cache = threadCache.get();
+        if (cache.size() >= MAX_CACHED_PER_THREAD || cache.contains(this)) {
+            return;
+        }
+        long bytes = memoryUsage();
+        if (cachedBytes.addAndGet(bytes) > MAX_CACHED_BYTES) {
+            cachedBytes.addAndGet(-bytes);
+            return;
+        }
+        cache.push(this);
+    }
+
+    /** Return whether the dense arrays are allocated, even if the dense representation is not in use. */
+    boolean hasDenseArrays() {
+        return bits != null;
+    }
+
+    /** Empty the set. This does not clear nor deallocate any array. */
+    public void reset() {
+        size = 0;
+        dense = false;
+        if (++epoch == 0) {
+            // The epoch wrapped around, old stamps could be mistaken for current ones.
+            Arrays.fill(slotEpochs, 0);
+            if (wordEpochs != null) {
+                Arrays.fill(wordEpochs, 0);
+            }
+            epoch = 1;
+        }
+    }
+
+    /** Return whether the parent of each visited node is stored. */
+    public boolean tracksParents() {
+        return trackParents;
+    }
+
+    /** Return the number of visited nodes. */
+    public long size() {
+        return size;
+    }
+
+    /** Return whether the dense representation is currently in use. */
+    public boolean isDense() {
+        return dense;
+    }
+
+    /** Return whether a node has been visited. */
+    public boolean contains(long node) {
+        if (dense) {
+            int word = (int) (node >>> 6);
+            return wordEpochs[word] == epoch && (bits[word] & (1L << node)) != 0;
+        }
+        for (int pos = slot(node); slotEpochs[pos] == epoch; pos = (pos + 1) & mask) {
+            if (keys[pos] == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Mark a node as visited.
+     *
+     * @param node the visited node
+     * @param parent the node from which it was reached, or -1 for source nodes (ignored if parents are
+     *            not tracked)
+     * @return true if the node was not visited yet, false otherwise
+     */
+    public boolean add(long node, long parent) {
+        if (dense) {
+            return addDense(node, parent);
+        }
+        int pos = slot(node);
+        for (; slotEpochs[pos] == epoch; pos = (pos + 1) & mask) {
+            if (keys[pos] == node) {
+                return false;
+            }
+        }
+        slotEpochs[pos] = epoch;
+        keys[pos] = node;
+        if (trackParents) {
+            values[pos] = parent;
+        }
+        if (++size >= maxFill) {
+            long capacity = 2L * (mask + 1);
+            if (capacity > maxCapacity || sparseBytes(capacity) >= denseBytes()) {
+                switchToDense();
+            } else {
+                rehash((int) capacity);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the parent of a visited node, or -1 if it is a source node.
+     *
+     * @throws IllegalStateException if parents are not tracked
+     * @throws IllegalArgumentException if the node has not been visited
+     */
+    public long getParent(long node) {
+        if (!trackParents) {
+            throw new IllegalStateException("Parents are not tracked by this set of visited nodes");
+        }
+        if (dense) {
+            if (!contains(node)) {
+                throw new IllegalArgumentException("Node " + node + " has not been visited");
+            }
+            return BigArrays.get(parents, node);
+        }
+        for (int pos = slot(node); slotEpochs[pos] == epoch; pos = (pos + 1) & mask) {
+            if (keys[pos] == node) {
+                return values[pos];
+            }
+        }
+        throw new IllegalArgumentException("Node " + node + " has not been visited");
+    }
+
+    /** Call the given action on each visited node, in no particular order. */
+    public void forEach(LongConsumer action) {
+        if (dense) {
+            for (int word = 0; word < bits.length; word++) {
+                if (wordEpochs[word] == epoch) {
+                    for (long w = bits[word]; w != 0; w &= w - 1) {
+                        action.accept(((long) word << 6) + Long.numberOfTrailingZeros(w));
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < keys.length; i++) {
+                if (slotEpochs[i] == epoch) {
+                    action.accept(keys[i]);
+                }
+            }
+        }
+    }
+
+    /** Return an estimation of the memory used by the current representation, in bytes. */
+    public long memoryUsage() {
+        return dense ? denseBytes() : sparseBytes(mask + 1);
+    }
+
+    private int slot(long node) {
+        return (int) HashCommon.mix(node) & mask;
+    }
+
+    private boolean addDense(long node, long parent) {
+        int word = (int) (node >>> 6);
+        if (wordEpochs[word] != epoch) {
+            wordEpochs[word] = epoch;
+            bits[word] = 0;
+        }
+        long bit = 1L << node;
+        if ((bits[word] & bit) != 0) {
+            return false;
+        }
+        bits[word] |= bit;
+        if (trackParents) {
+            BigArrays.set(parents, node, parent);
+        }
+        size++;
+        return true;
+    }
+
+    private long sparseBytes(long capacity) {
+        return capacity * (Long.BYTES + Integer.BYTES + (trackParents ? Long.BYTES : 0));
+    }
+
+    private long denseBytes() {
+        long words = (numNodes + 63) >>> 6;
+        return words * (Long.BYTES + Integer.BYTES) + (trackParents ? numNodes * Long.BYTES : 0);
+    }
+
+    private void allocateTable(int capacity) {
+        keys = new long[capacity];
+        values = trackParents ? new long[capacity] : null;
+        slotEpochs = new int[capacity];
+        mask = capacity - 1;
+        maxFill = capacity / 2;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        int[] oldEpochs = slotEpochs;
+        allocateTable(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldEpochs[i] == epoch) {
+                int pos = slot(oldKeys[i]);
+                while (slotEpochs[pos] == epoch) {
+                    pos = (pos + 1) & mask;
+                }
+                slotEpochs[pos] = epoch;
+                keys[pos] = oldKeys[i];
+                if (trackParents) {
+                    values[pos] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    private void switchToDense() {
+        if (bits == null) {
+            int words = (int) ((numNodes + 63) >>> 6);
+            bits = new long[words];
+            wordEpochs = new int[words];
+            if (trackParents) {
+                parents = LongBigArrays.newBigArray(numNodes);
+            }
+        }
+        dense = true;
+        size = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (slotEpochs[i] == epoch) {
+                addDense(keys[i], trackParents ? values[i] : -1);
+            }
+        }
+        // The hash table will be reused from scratch in the next epoch.
+        allocateTable(INITIAL_CAPACITY);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SWHIDTest {
+    private static final String[] SWHIDS = {"swh:1:cnt:0000000000000000000000000000000000000001",
+            "swh:1:dir:0123456789abcdef0123456789abcdef01234567", "swh:1:ori:83404f995118bd25774f4ac14422a8f175e7a054",
+            "swh:1:rel:ffffffffffffffffffffffffffffffffffffffff", "swh:1:rev:80ff7f00fe01a5c3e2d4b6a8c9e0f1d2c3b4a596",
+            "swh:1:snp:0000000000000000000000000000000000000020"};
+
+    @Test
+    public void parse() {
+        for (String s : SWHIDS) {
+            SWHID swhid = new SWHID(s);
+            assertEquals(s, swhid.toString());
+            assertEquals(s.substring(6, 9).toUpperCase(), swhid.getType().toString());
+        }
+    }
+
+    @Test
+    public void malformed() {
+        String hash = "0000000000000000000000000000000000000001";
+        String[] malformed = {"", "swh:1:cnt:", "swh:2:cnt:" + hash, "swh:1:cnt:" + hash.substring(1),
+                "swh:1:cnt:0" + hash, "swh:1:cnt:" + hash.toUpperCase().replace('1', 'A'), "swh:1:xyz:" + hash,
+                "swh:1:cnt;" + hash, "swh:1:cnt:" + hash.replace("00000", "00:00"), "foo:1:cnt:" + hash};
+        for (String s : malformed) {
+            assertThrows(IllegalArgumentException.class, () -> new SWHID(s), s);
+        }
+    }
+
+    @Test
+    public void bytesRoundTrip() {
+        for (String s : SWHIDS) {
+            SWHID swhid = new SWHID(s);
+            byte[] bytes = swhid.toBytes();
+            assertEquals(swhid, SWHID.fromBytes(bytes));
+            assertEquals(swhid.getType(), SWHID.fromBytes(bytes).getType());
+
+            byte[] ascii = new byte[SWHID.STRING_LENGTH + 3];
+            SWHID.bytesToAscii(bytes, 0, ascii, 3);
+            assertEquals(s, new String(ascii, 3, SWHID.STRING_LENGTH, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void binarySWHID() {
+        for (String s : SWHIDS) {
+            SWHID swhid = new SWHID(s);
+            BinarySWHID binary = BinarySWHID.fromSWHID(swhid);
+            assertArrayEquals(swhid.toBytes(), binary.toBytes());
+            assertEquals(s, binary.toString());
+            assertEquals(swhid, binary.toSWHID());
+            assertEquals(swhid.getType(), binary.getType());
+
+            byte[] padded = new byte[BinarySWHID.SIZE + 5];
+            binary.toBytes(padded, 5);
+            BinarySWHID copy = BinarySWHID.fromBytes(padded, 5);
+            assertEquals(binary, copy);
+            assertEquals(binary.hashCode(), copy.hashCode());
+        }
+        assertNotEquals(BinarySWHID.fromSWHID(new SWHID(SWHIDS[0])), BinarySWHID.fromSWHID(new SWHID(SWHIDS[1])));
+    }
+
+    @Test
+    public void invalidBinarySWHID() {
+        byte[] bytes = new SWHID(SWHIDS[0]).toBytes();
+        bytes[1] = 6;
+        assertThrows(IllegalArgumentException.class, () -> SWHID.fromBytes(bytes));
+        assertThrows(IllegalArgumentException.class, () -> BinarySWHID.fromBytes(bytes, 0));
+        bytes[1] = 0;
+        bytes[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> SWHID.fromBytes(bytes));
+        assertThrows(IllegalArgumentException.class, () -> BinarySWHID.fromBytes(bytes, 0));
+    }
+}
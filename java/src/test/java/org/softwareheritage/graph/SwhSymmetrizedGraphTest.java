@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph;
+
+import it.unimi.dsi.big.webgraph.NodeIterator;
+import it.unimi.dsi.big.webgraph.labelling.ArcLabelledNodeIterator;
+import it.unimi.dsi.big.webgraph.labelling.Label;
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.labels.DirEntry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SwhSymmetrizedGraphTest extends GraphTest {
+    /** Return the successors of a node in the forward graph, followed by its predecessors. */
+    private static ArrayList<Long> getNeighbors(SwhBidirectionalGraph g, long node) {
+        ArrayList<Long> neighbors = lazyLongIteratorToList(g.getForwardGraph().successors(node));
+        neighbors.addAll(lazyLongIteratorToList(g.getBackwardGraph().successors(node)));
+        return neighbors;
+    }
+
+    private static long[] encodeLabel(Label label) {
+        return Arrays.stream((DirEntry[]) label.get()).mapToLong(DirEntry::toEncoded).toArray();
+    }
+
+    @Test
+    public void randomAccess() {
+        SwhBidirectionalGraph g = getGraph();
+        SwhSymmetrizedGraph sg = new SwhSymmetrizedGraph(g);
+        assertEquals(2 * g.numArcs(), sg.numArcs());
+        for (long node = 0; node < g.numNodes(); node++) {
+            assertEquals(getNeighbors(g, node), lazyLongIteratorToList(sg.successors(node)));
+            assertEquals(getNeighbors(g, node), lazyLongIteratorToList(sg.labelledSuccessors(node)));
+            assertEquals(g.getForwardGraph().outdegree(node) + g.getBackwardGraph().outdegree(node),
+                    sg.outdegree(node));
+        }
+    }
+
+    @Test
+    public void sequentialScan() {
+        SwhBidirectionalGraph g = getGraph();
+        SwhSymmetrizedGraph sg = new SwhSymmetrizedGraph(g);
+        NodeIterator it = sg.underlyingGraph().nodeIterator();
+        ArcLabelledNodeIterator labelledIt = sg.labelledNodeIterator();
+        for (long node = 0; node < g.numNodes(); node++) {
+            assertEquals(node, it.nextLong());
+            assertEquals(sg.outdegree(node), it.outdegree());
+            assertEquals(getNeighbors(g, node), lazyLongIteratorToList(it.successors()));
+
+            assertEquals(node, labelledIt.nextLong());
+            ArcLabelledNodeIterator.LabelledArcIterator arcs = labelledIt.successors();
+            ArcLabelledNodeIterator.LabelledArcIterator expectedArcs = sg.labelledSuccessors(node);
+            for (long succ; (succ = arcs.nextLong()) != -1;) {
+                assertEquals(expectedArcs.nextLong(), succ);
+                assertArrayEquals(encodeLabel(expectedArcs.label()), encodeLabel(arcs.label()));
+            }
+            assertEquals(-1, expectedArcs.nextLong());
+        }
+        assertFalse(it.hasNext());
+        assertFalse(labelledIt.hasNext());
+        assertEquals(sg.numArcs(), sg.underlyingLabelledGraph().numArcs());
+    }
+
+    @Test
+    public void unlabelled() throws IOException {
+        SwhBidirectionalGraph g = SwhBidirectionalGraph.load(getGraphPath().toString());
+        SwhSymmetrizedGraph sg = new SwhSymmetrizedGraph(g);
+        assertNull(sg.underlyingLabelledGraph());
+        for (long node = 0; node < g.numNodes(); node++) {
+            assertEquals(getNeighbors(g, node), lazyLongIteratorToList(sg.successors(node)));
+        }
+        assertThrows(RuntimeException.class, () -> sg.labelledSuccessors(0));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.compress;
+
+import it.unimi.dsi.big.webgraph.LazyLongIterator;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.softwareheritage.graph.AllowedNodes;
+import org.softwareheritage.graph.GraphTest;
+import org.softwareheritage.graph.SwhType;
+import org.softwareheritage.graph.SwhUnidirectionalGraph;
+import org.softwareheritage.graph.maps.ReachSketches;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteReachSketchesTest extends GraphTest {
+    private static long countReachable(SwhUnidirectionalGraph g, long src, SwhType type) {
+        LongOpenHashSet visited = new LongOpenHashSet();
+        LongArrayFIFOQueue queue = new LongArrayFIFOQueue();
+        visited.add(src);
+        queue.enqueue(src);
+        long count = 0;
+        while (!queue.isEmpty()) {
+            long node = queue.dequeueLong();
+            if (g.getNodeType(node) == type) {
+                count++;
+            }
+            LazyLongIterator successors = g.successors(node);
+            for (long succ; (succ = successors.nextLong()) != -1;) {
+                if (visited.add(succ)) {
+                    queue.enqueue(succ);
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void sameAsExampleDataset(@TempDir Path tmpDir) throws IOException, InterruptedException {
+        Path output = tmpDir.resolve("example" + ReachSketches.REACH_SKETCH);
+        new WriteReachSketches(getGraph(), WriteReachSketches.DEFAULT_PRECISION, WriteReachSketches.DEFAULT_TYPES)
+                .write(output.toString());
+        assertArrayEquals(Files.readAllBytes(Paths.get(getGraphPath() + ReachSketches.REACH_SKETCH)),
+                Files.readAllBytes(output));
+    }
+
+    @Test
+    public void estimatesCloseToExactCounts(@TempDir Path tmpDir) throws IOException, InterruptedException {
+        Path output = tmpDir.resolve("example" + ReachSketches.REACH_SKETCH);
+        new WriteReachSketches(getGraph(), 8, "cnt,dir").write(output.toString());
+        ReachSketches sketches = new ReachSketches(output.toString());
+        assertEquals(8, sketches.getPrecision());
+        assertTrue(sketches.isSketched(SwhType.CNT));
+        assertFalse(sketches.isSketched(SwhType.REV));
+
+        SwhUnidirectionalGraph g = getGraph().getForwardGraph();
+        for (long node = 0; node < g.numNodes(); node++) {
+            for (String type : new String[]{"cnt", "dir"}) {
+                long expected = countReachable(g, node, SwhType.fromStr(type));
+                double estimate = sketches.estimate(node, new AllowedNodes(type));
+                assertEquals(expected, estimate, 0.1 * expected + 0.5);
+            }
+        }
+        long node = 0;
+        assertThrows(IllegalArgumentException.class, () -> sketches.estimate(node, new AllowedNodes("rev")));
+    }
+}
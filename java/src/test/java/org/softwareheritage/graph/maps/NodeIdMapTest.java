@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.maps;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.BinarySWHID;
+import org.softwareheritage.graph.GraphTest;
+import org.softwareheritage.graph.SWHID;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NodeIdMapTest extends GraphTest {
+    private static NodeIdMap nodeIdMap;
+
+    @BeforeAll
+    public static void loadMap() throws IOException {
+        nodeIdMap = new NodeIdMap(getGraphPath().toString());
+    }
+
+    @Test
+    public void bytesToAscii() {
+        for (long node = 0; node < getGraph().numNodes(); node++) {
+            SWHID swhid = getGraph().getSWHID(node);
+            byte[] text = new byte[SWHID.STRING_LENGTH + 2];
+            SWHID.bytesToAscii(swhid.toBytes(), 0, text, 1);
+            assertEquals(swhid.toString(), new String(text, 1, SWHID.STRING_LENGTH, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void swhidAccessors() {
+        for (long node = 0; node < getGraph().numNodes(); node++) {
+            SWHID swhid = nodeIdMap.getSWHID(node);
+            assertEquals(node, nodeIdMap.getNodeId(swhid));
+
+            byte[] bytes = new byte[NodeIdMap.SWHID_BIN_SIZE + 1];
+            nodeIdMap.getSWHIDBytes(node, bytes, 1);
+            assertArrayEquals(swhid.toBytes(), Arrays.copyOfRange(bytes, 1, bytes.length));
+
+            byte[] ascii = new byte[SWHID.STRING_LENGTH + 1];
+            nodeIdMap.getSWHIDAscii(node, ascii, 1);
+            assertEquals(swhid.toString(), new String(ascii, 1, SWHID.STRING_LENGTH, StandardCharsets.US_ASCII));
+
+            assertEquals(BinarySWHID.fromSWHID(swhid), nodeIdMap.getBinarySWHID(node));
+        }
+        assertThrows(IllegalArgumentException.class, () -> nodeIdMap.getSWHID(getGraph().numNodes()));
+        assertThrows(IllegalArgumentException.class, () -> nodeIdMap.getSWHID(-1));
+    }
+
+    @Test
+    public void sameAsGetNodeId() {
+        // Many times more SWHIDs than nodes, to span several chunks, in an order unrelated to the node ids
+        int numNodes = (int) getGraph().numNodes();
+        int n = 3 * NodeIdMap.BATCH_CHUNK_SIZE + 7;
+        ByteBuffer swhids = ByteBuffer.allocate(n * NodeIdMap.SWHID_BIN_SIZE);
+        long[] expected = new long[n];
+        for (int i = 0; i < n; i++) {
+            expected[i] = (i * 7L) % numNodes;
+            swhids.put(getGraph().getSWHID(expected[i]).toBytes());
+        }
+        long[] nodeIds = new long[n];
+        assertEquals(0, nodeIdMap.getNodeIds(swhids, nodeIds));
+        assertArrayEquals(expected, nodeIds);
+    }
+
+    @Test
+    public void unknownSwhids() {
+        byte[] badType = fakeSWHID("cnt", 1).toBytes();
+        badType[1] = 42;
+        byte[][] swhids = new byte[][]{fakeSWHID("rev", 9).toBytes(), fakeSWHID("cnt", 404).toBytes(),
+                new SWHID(TEST_ORIGIN_ID).toBytes(), fakeSWHID("dir", 1).toBytes(), badType,
+                fakeSWHID("cnt", 1).toBytes()};
+        long[] nodeIds = new long[swhids.length];
+        assertEquals(3, nodeIdMap.getNodeIds(swhids, nodeIds));
+        assertArrayEquals(new long[]{nodeIdMap.getNodeId(fakeSWHID("rev", 9)), -1,
+                nodeIdMap.getNodeId(new SWHID(TEST_ORIGIN_ID)), -1, -1, nodeIdMap.getNodeId(fakeSWHID("cnt", 1))},
+                nodeIds);
+    }
+
+    @Test
+    public void empty() {
+        assertEquals(0, nodeIdMap.getNodeIds(new byte[0][], new long[0]));
+    }
+
+    @Test
+    public void bufferTooSmall() {
+        assertThrows(IllegalArgumentException.class,
+                () -> nodeIdMap.getNodeIds(ByteBuffer.allocate(NodeIdMap.SWHID_BIN_SIZE), new long[2]));
+    }
+}
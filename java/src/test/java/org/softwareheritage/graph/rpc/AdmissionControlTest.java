@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.MetadataUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.GraphTest;
+import org.softwareheritage.graph.SwhBidirectionalGraph;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControlTest extends GraphTest {
+    private static SwhBidirectionalGraph g;
+    private Server server;
+    private ManagedChannel channel;
+    private AdmissionControl admissionControl;
+    private TraversalServiceGrpc.TraversalServiceBlockingStub client;
+    private final AtomicReference<Metadata> trailers = new AtomicReference<>();
+
+    @BeforeAll
+    static void loadGraph() throws IOException {
+        g = GraphServer.loadGraph(getGraphPath().toString());
+    }
+
+    private void startServer(AdmissionControl admissionControl) throws IOException {
+        String serverName = InProcessServerBuilder.generateName();
+        this.admissionControl = admissionControl;
+        server = InProcessServerBuilder.forName(serverName).directExecutor()
+                .addService(ServerInterceptors.intercept(new GraphServer.TraversalService(g.copy()),
+                        new ResponseTrailers(), admissionControl))
+                .build().start();
+        channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+        client = TraversalServiceGrpc.newBlockingStub(channel)
+                .withInterceptors(MetadataUtils.newCaptureMetadataInterceptor(new AtomicReference<>(), trailers));
+    }
+
+    @AfterEach
+    void stopServer() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    private TraversalServiceGrpc.TraversalServiceBlockingStub clientNamed(String name) {
+        Metadata headers = new Metadata();
+        headers.put(AdmissionControl.CLIENT, name);
+        return client.withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+    }
+
+    private TraversalRequest originRequest() {
+        return TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build();
+    }
+
+    @Test
+    public void maxEdgesCeiling() throws IOException {
+        startServer(new AdmissionControl(0, 0, 5));
+        ArrayList<Node> nodes = new ArrayList<>();
+        client.traverse(originRequest()).forEachRemaining(nodes::add);
+        assertTrue(nodes.size() > 0 && nodes.size() < 12);
+        assertEquals("max_edges", trailers.get().get(ResponseTrailers.INTERRUPTED));
+
+        CountResponse response = client.countNodes(originRequest());
+        assertFalse(response.getExact());
+
+        // Lower limits of the requests are not reported as interruptions
+        nodes.clear();
+        client.traverse(originRequest().toBuilder().setMaxEdges(3).build()).forEachRemaining(nodes::add);
+        assertNull(trailers.get().get(ResponseTrailers.INTERRUPTED));
+    }
+
+    @Test
+    public void globalRate() throws IOException {
+        startServer(new AdmissionControl(1, 0, -1));
+        assertEquals(12, client.countNodes(originRequest()).getCount());
+
+        // The subgraph of the origin was traversed, which exhausts the budget of the server for a while
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> client.countNodes(originRequest()));
+        assertEquals(Status.RESOURCE_EXHAUSTED.getCode(), thrown.getStatus().getCode());
+        assertTrue(Long.parseLong(thrown.getTrailers().get(AdmissionControl.RETRY_PUSHBACK_MS)) > 0);
+        thrown = assertThrows(StatusRuntimeException.class, () -> client.traverse(originRequest()).hasNext());
+        assertEquals(Status.RESOURCE_EXHAUSTED.getCode(), thrown.getStatus().getCode());
+        assertEquals(2, admissionControl.getRejectedCalls());
+
+        // Cheap calls are always admitted
+        client.getNode(GetNodeRequest.newBuilder().setSwhid(TEST_ORIGIN_ID).build());
+    }
+
+    @Test
+    public void clientRate() throws IOException {
+        startServer(new AdmissionControl(0, 1, -1, Set.of(AdmissionControl.ALL_PROXIES)));
+        clientNamed("first").countNodes(originRequest());
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> clientNamed("first").countNodes(originRequest()));
+        assertEquals(Status.RESOURCE_EXHAUSTED.getCode(), thrown.getStatus().getCode());
+
+        // Other clients have their own budget
+        assertEquals(12, clientNamed("second").countNodes(originRequest()).getCount());
+    }
+
+    @Test
+    public void untrustedClientHeader() throws IOException {
+        startServer(new AdmissionControl(0, 1, -1));
+        clientNamed("first").countNodes(originRequest());
+        // The header is ignored: both calls come from the same address, and share its budget
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> clientNamed("second").countNodes(originRequest()));
+        assertEquals(Status.RESOURCE_EXHAUSTED.getCode(), thrown.getStatus().getCode());
+    }
+
+    @Test
+    public void leastRecentClientsDropped() throws IOException {
+        startServer(new AdmissionControl(0, 1, -1, Set.of(AdmissionControl.ALL_PROXIES)));
+        clientNamed("first").countNodes(originRequest());
+        assertThrows(StatusRuntimeException.class, () -> clientNamed("first").countNodes(originRequest()));
+        for (int i = 0; i < AdmissionControl.MAX_CLIENT_BUCKETS; i++) {
+            clientNamed("other" + i).countNodes(originRequest());
+        }
+        // The bucket of the first client was dropped
+        assertEquals(12, clientNamed("first").countNodes(originRequest()).getCount());
+    }
+
+    @Test
+    public void edgesInFlight() throws IOException {
+        startServer(AdmissionControl.unlimited());
+        ArrayList<Node> nodes = new ArrayList<>();
+        client.traverse(originRequest()).forEachRemaining(nodes::add);
+        client.findPathBetween(FindPathBetweenRequest.newBuilder().addSrc(TEST_ORIGIN_ID)
+                .addDst(fakeSWHID("cnt", 4).toString()).build());
+        assertEquals(12, nodes.size());
+        assertEquals(0, admissionControl.getActiveCalls());
+        assertEquals(0, admissionControl.getEdgesInFlight());
+        assertEquals(0, admissionControl.getRejectedCalls());
+    }
+
+    @Test
+    public void charges() {
+        AdmissionControl.EdgeBucket bucket = new AdmissionControl.EdgeBucket(1000);
+        assertEquals(0, bucket.getRetryAfterMs());
+        bucket.charge(3000);
+        long retryAfterMs = bucket.getRetryAfterMs();
+        assertTrue(retryAfterMs > 1000 && retryAfterMs <= 2000, Long.toString(retryAfterMs));
+        assertFalse(bucket.isFull());
+    }
+}
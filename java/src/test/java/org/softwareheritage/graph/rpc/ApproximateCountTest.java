@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ApproximateCountTest extends TraversalServiceTest {
+    private static CountResponse estimate(TraversalRequest request, boolean countEdges) {
+        try (ApproximateCount c = new ApproximateCount(g, request, countEdges)) {
+            // Switch to sampling right after the first node
+            c.setExactEdges(0);
+            c.setSeed(42);
+            return c.count();
+        }
+    }
+
+    private static void assertCloseTo(long expected, CountResponse response) {
+        assertFalse(response.getExact());
+        assertTrue(response.hasErrorBound());
+        // The error bound is a 95% confidence interval: allow some slack so that the test is not flaky.
+        assertTrue(Math.abs(response.getCount() - expected) <= 3 * response.getErrorBound(),
+                response.getCount() + " +/- " + response.getErrorBound() + " is too far from " + expected);
+    }
+
+    @Test
+    public void smallTraversalIsExact() {
+        CountResponse response = client
+                .countNodes(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setApproximate(true).build());
+        assertTrue(response.getExact());
+        assertFalse(response.hasErrorBound());
+        assertEquals(12, response.getCount());
+    }
+
+    @Test
+    public void unsupportedRequestIsExact() {
+        CountResponse response = client.countEdges(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID)
+                .setApproximate(true).setMaxDepth(1).build());
+        assertTrue(response.getExact());
+        assertEquals(client.countEdges(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setMaxDepth(1).build())
+                .getCount(), response.getCount());
+    }
+
+    @Test
+    public void estimateNodes() {
+        TraversalRequest request = TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build();
+        assertCloseTo(client.countNodes(request).getCount(), estimate(request, false));
+    }
+
+    @Test
+    public void estimateEdges() {
+        TraversalRequest request = TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build();
+        assertCloseTo(client.countEdges(request).getCount(), estimate(request, true));
+    }
+
+    @Test
+    public void estimateFiltered() {
+        TraversalRequest request = TraversalRequest.newBuilder().addSrc(fakeSWHID("rel", 19).toString())
+                .setEdges("rel:rev,rev:rev,rev:dir,dir:dir")
+                .setReturnNodes(NodeFilter.newBuilder().setTypes("dir").build()).build();
+        assertCloseTo(client.countNodes(request).getCount(), estimate(request, false));
+    }
+
+    @Test
+    public void estimateBackward() {
+        TraversalRequest request = TraversalRequest.newBuilder().addSrc(fakeSWHID("cnt", 1).toString())
+                .setDirection(GraphDirection.BACKWARD).build();
+        assertCloseTo(client.countNodes(request).getCount(), estimate(request, false));
+    }
+
+    @Test
+    public void zeroHitsHaveNonZeroBound() {
+        ApproximateCount.Samples samples = new ApproximateCount.Samples();
+        for (int i = 0; i < ApproximateCount.MIN_SAMPLES; i++) {
+            samples.add(0, 0);
+        }
+        assertEquals(0, samples.getMean());
+        // Close to the "rule of three" bound of 3 / n
+        assertTrue(samples.getErrorBound() > 0.03, String.valueOf(samples.getErrorBound()));
+    }
+
+    @Test
+    public void estimateTinyReachableSet() {
+        // Only cnt1 is returned, i.e., a small fraction of the graph: most samples are misses.
+        TraversalRequest request = TraversalRequest.newBuilder().addSrc(fakeSWHID("rev", 3).toString())
+                .setReturnNodes(NodeFilter.newBuilder().setTypes("cnt").build()).build();
+        assertEquals(1, client.countNodes(request).getCount());
+        CountResponse response = estimate(request, false);
+        assertTrue(response.getErrorBound() > 0);
+        assertCloseTo(1, response);
+    }
+
+    @Test
+    public void samplingEdgesAreBounded() {
+        TraversalRequest request = TraversalRequest.newBuilder().addSrc(fakeSWHID("cnt", 1).toString())
+                .setDirection(GraphDirection.BACKWARD).build();
+        try (ApproximateCount c = new ApproximateCount(g, request, false)) {
+            c.setExactEdges(0);
+            c.setSamplingEdges(10);
+            c.setSeed(42);
+            CountResponse response = c.count();
+            assertFalse(response.getExact());
+            assertTrue(response.getErrorBound() > 0);
+            // Sampling stops with the first sample that exceeds the budget
+            assertTrue(c.getSampledEdges() <= 10 + g.numArcs(), String.valueOf(c.getSampledEdges()));
+        }
+    }
+}
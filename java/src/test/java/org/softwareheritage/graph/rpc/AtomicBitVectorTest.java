@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AtomicBitVectorTest {
+    @Test
+    public void testAndSet() {
+        AtomicBitVector v = new AtomicBitVector(130);
+        assertEquals(130, v.length());
+        assertFalse(v.get(129));
+        assertTrue(v.testAndSet(129));
+        assertFalse(v.testAndSet(129));
+        assertTrue(v.get(129));
+        assertFalse(v.get(128));
+        assertFalse(v.get(1));
+        assertTrue(v.testAndSet(63));
+        assertTrue(v.testAndSet(64));
+        assertTrue(v.get(63));
+        assertTrue(v.get(64));
+    }
+
+    @Test
+    public void concurrentTestAndSet() throws InterruptedException {
+        int numBits = 100_000;
+        AtomicBitVector v = new AtomicBitVector(numBits);
+        AtomicLong claimed = new AtomicLong();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < numBits; i++) {
+                    if (v.testAndSet(i)) {
+                        claimed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // Each bit must have been claimed by exactly one thread
+        assertEquals(numBits, claimed.get());
+    }
+}
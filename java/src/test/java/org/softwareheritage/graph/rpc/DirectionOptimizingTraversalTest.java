@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.google.protobuf.FieldMask;
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.GraphTest;
+import org.softwareheritage.graph.SWHID;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectionOptimizingTraversalTest extends TraversalServiceTest {
+    private static final FieldMask SWHID_MASK = FieldMask.newBuilder().addPaths("swhid").build();
+
+    private List<TraversalRequest> getRequests() {
+        return List.of(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build(),
+                TraversalRequest.newBuilder().addSrc(fakeSWHID("cnt", 4).toString())
+                        .setDirection(GraphDirection.BACKWARD).build(),
+                TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setMinDepth(2).setMaxDepth(3).build(),
+                TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setEdges("ori:snp,snp:*,rel:*,rev:rev")
+                        .setReturnNodes(NodeFilter.newBuilder().setTypes("rev").build()).build(),
+                TraversalRequest.newBuilder().addSrc(fakeSWHID("dir", 12).toString()).setEdges("dir:dir").build());
+    }
+
+    /** Run a traversal returning only SWHIDs, and record whether some nodes were returned bottom-up. */
+    private static ArrayList<SWHID> traverse(TraversalRequest request, boolean[] pulled) {
+        ArrayList<SWHID> nodes = new ArrayList<>();
+        Traversal.SimpleTraversal[] t = new Traversal.SimpleTraversal[1];
+        t[0] = new Traversal.SimpleTraversal(g, request, n -> {
+            nodes.add(new SWHID(n.getSwhid()));
+            pulled[0] |= t[0].isPullLevel();
+        });
+        t[0].visit();
+        t[0].close();
+        return nodes;
+    }
+
+    @Test
+    public void sameNodesAsTopDown() {
+        boolean anyPulled = false;
+        for (TraversalRequest request : getRequests()) {
+            boolean[] pulled = {false};
+            // Requesting the successors disables the bottom-up steps
+            ArrayList<SWHID> expected = traverse(
+                    request.toBuilder().setMask(FieldMask.newBuilder().addPaths("swhid").addPaths("successor"))
+                            .build(),
+                    pulled);
+            assertFalse(pulled[0]);
+            ArrayList<SWHID> actual = traverse(request.toBuilder().setMask(SWHID_MASK).build(), pulled);
+            GraphTest.assertEqualsAnyOrder(expected, actual);
+            anyPulled |= pulled[0];
+        }
+        assertTrue(anyPulled);
+    }
+
+    @Test
+    public void maxEdgesDisablesPull() {
+        boolean[] pulled = {false};
+        traverse(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setMask(SWHID_MASK).setMaxEdges(100).build(),
+                pulled);
+        assertFalse(pulled[0]);
+    }
+
+    @Test
+    public void countNodes() {
+        for (TraversalRequest request : getRequests()) {
+            ArrayList<Node> nodes = new ArrayList<>();
+            client.traverse(request).forEachRemaining(nodes::add);
+            assertEquals(nodes.size(), client.countNodes(request).getCount());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EstimateReachableTest extends TraversalServiceTest {
+    private EstimateReachableResponse estimate(String swhid, String types) {
+        EstimateReachableRequest.Builder request = EstimateReachableRequest.newBuilder().setSwhid(swhid);
+        if (types != null) {
+            request.setTypes(types);
+        }
+        return client.estimateReachable(request.build());
+    }
+
+    @Test
+    public void fromOrigin() {
+        assertEquals(4, estimate(TEST_ORIGIN_ID, "cnt").getCount());
+        assertEquals(3, estimate(TEST_ORIGIN_ID, "dir").getCount());
+        assertEquals(2, estimate(TEST_ORIGIN_ID, "rev").getCount());
+        assertEquals(9, estimate(TEST_ORIGIN_ID, "cnt,dir,rev").getCount());
+        assertEquals(9, estimate(TEST_ORIGIN_ID, null).getCount());
+        assertEquals(9, estimate(TEST_ORIGIN_ID, "*").getCount());
+    }
+
+    @Test
+    public void includesSource() {
+        assertEquals(1, estimate(fakeSWHID("cnt", 1).toString(), "cnt").getCount());
+        assertEquals(1, estimate(fakeSWHID("rev", 3).toString(), "rev").getCount());
+        assertEquals(0, estimate(fakeSWHID("cnt", 1).toString(), "dir").getCount());
+    }
+
+    @Test
+    public void relativeError() {
+        // 64 registers per sketch
+        assertEquals(0.13, estimate(TEST_ORIGIN_ID, null).getRelativeError(), 1e-9);
+    }
+
+    @Test
+    public void typeNotSketched() {
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> estimate(TEST_ORIGIN_ID, "ori"));
+        assertEquals(Status.INVALID_ARGUMENT.getCode(), thrown.getStatus().getCode());
+    }
+
+    @Test
+    public void unknownNode() {
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> estimate(fakeSWHID("cnt", 404).toString(), null));
+        assertEquals(Status.INVALID_ARGUMENT.getCode(), thrown.getStatus().getCode());
+    }
+}
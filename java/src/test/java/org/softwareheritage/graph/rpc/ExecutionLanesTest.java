@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.GraphTest;
+import org.softwareheritage.graph.SwhBidirectionalGraph;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionLanesTest extends GraphTest {
+    private ExecutionLanes lanes;
+    private Server server;
+    private ManagedChannel channel;
+
+    /** Observer of a call, recording its completion and its error, if any */
+    static class CompletionObserver<T> implements StreamObserver<T> {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Throwable error = null;
+
+        @Override
+        public void onNext(T value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            done.countDown();
+        }
+    }
+
+    @BeforeEach
+    void startServer() throws Exception {
+        SwhBidirectionalGraph g = GraphServer.loadGraph(getGraphPath().toString());
+        lanes = new ExecutionLanes(2, 1);
+        String serverName = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(serverName).executor(lanes.getExecutor(ExecutionLanes.Lane.LOOKUP))
+                .callExecutor(lanes)
+                .addService(new GraphServer.TraversalService(g, 1,
+                        new CheckpointStore(null, CheckpointStore.DEFAULT_TTL_MS), lanes))
+                .build().start();
+        channel = InProcessChannelBuilder.forName(serverName).build();
+    }
+
+    @AfterEach
+    void stopServer() {
+        channel.shutdownNow();
+        server.shutdownNow();
+        lanes.shutdown();
+    }
+
+    @Test
+    public void methodLanes() {
+        assertEquals(ExecutionLanes.Lane.TRAVERSAL,
+                ExecutionLanes.getLane(TraversalServiceGrpc.getTraverseMethod().getFullMethodName()));
+        assertEquals(ExecutionLanes.Lane.TRAVERSAL,
+                ExecutionLanes.getLane(TraversalServiceGrpc.getCountEdgesMethod().getFullMethodName()));
+        assertEquals(ExecutionLanes.Lane.LOOKUP,
+                ExecutionLanes.getLane(TraversalServiceGrpc.getGetNodeMethod().getFullMethodName()));
+        assertEquals(ExecutionLanes.Lane.LOOKUP,
+                ExecutionLanes.getLane(TraversalServiceGrpc.getFindPathToMethod().getFullMethodName()));
+
+        assertTrue(ExecutionLanes.isSmallPathQuery(true, 1000, false, 0));
+        assertTrue(ExecutionLanes.isSmallPathQuery(false, 0, true, 10));
+        assertFalse(ExecutionLanes.isSmallPathQuery(false, 0, false, 0));
+        assertFalse(ExecutionLanes.isSmallPathQuery(true, Long.MAX_VALUE, true, 60000));
+    }
+
+    @Test
+    public void lookupsAreNotBlockedByTraversals() throws InterruptedException {
+        // Keep the single thread of the traversal lane busy
+        CountDownLatch release = new CountDownLatch(1);
+        lanes.getExecutor(ExecutionLanes.Lane.TRAVERSAL).execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        TraversalServiceGrpc.TraversalServiceStub client = TraversalServiceGrpc.newStub(channel);
+        CompletionObserver<CountResponse> count = new CompletionObserver<>();
+        client.countNodes(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build(), count);
+        CompletionObserver<Path> largePath = new CompletionObserver<>();
+        client.findPathTo(FindPathToRequest.newBuilder().addSrc(TEST_ORIGIN_ID)
+                .setTarget(NodeFilter.newBuilder().setTypes("cnt")).build(), largePath);
+
+        // Point lookups and small path queries run on the lookup lane
+        CompletionObserver<Node> node = new CompletionObserver<>();
+        client.getNode(GetNodeRequest.newBuilder().setSwhid(TEST_ORIGIN_ID).build(), node);
+        assertTrue(node.done.await(10, TimeUnit.SECONDS));
+        CompletionObserver<Path> smallPath = new CompletionObserver<>();
+        client.findPathTo(FindPathToRequest.newBuilder().addSrc(TEST_ORIGIN_ID)
+                .setTarget(NodeFilter.newBuilder().setTypes("cnt")).setMaxEdges(1000).build(), smallPath);
+        assertTrue(smallPath.done.await(10, TimeUnit.SECONDS));
+
+        // The count and the large path query wait on the traversal lane
+        for (int i = 0; i < 1000 && lanes.getQueueDepth(ExecutionLanes.Lane.TRAVERSAL) < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, lanes.getQueueDepth(ExecutionLanes.Lane.TRAVERSAL));
+        assertEquals(1, lanes.getActiveThreads(ExecutionLanes.Lane.TRAVERSAL));
+        assertEquals(1, count.done.getCount());
+        assertEquals(1, largePath.done.getCount());
+
+        release.countDown();
+        assertTrue(count.done.await(10, TimeUnit.SECONDS));
+        assertTrue(largePath.done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedQueriesAreClosed() throws Exception {
+        // Without its properties, the graph cannot build the content nodes of the responses
+        SwhBidirectionalGraph g = SwhBidirectionalGraph.loadLabelledMapped(getGraphPath().toString());
+        String serverName = InProcessServerBuilder.generateName();
+        Server failingServer = InProcessServerBuilder.forName(serverName)
+                .executor(lanes.getExecutor(ExecutionLanes.Lane.LOOKUP)).callExecutor(lanes)
+                .addService(new GraphServer.TraversalService(g, 1,
+                        new CheckpointStore(null, CheckpointStore.DEFAULT_TTL_MS), lanes))
+                .build().start();
+        ManagedChannel failingChannel = InProcessChannelBuilder.forName(serverName).build();
+        try {
+            TraversalServiceGrpc.TraversalServiceStub client = TraversalServiceGrpc.newStub(failingChannel);
+
+            // Handed off to the traversal lane
+            CompletionObserver<Path> path = new CompletionObserver<>();
+            client.findPathTo(FindPathToRequest.newBuilder().addSrc(TEST_ORIGIN_ID)
+                    .setTarget(NodeFilter.newBuilder().setTypes("cnt")).build(), path);
+            assertTrue(path.done.await(10, TimeUnit.SECONDS));
+            assertEquals(Status.Code.UNKNOWN, Status.fromThrowable(path.error).getCode());
+
+            // Streamed from the traversal lane
+            CompletionObserver<Node> nodes = new CompletionObserver<>();
+            client.traverse(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build(), nodes);
+            assertTrue(nodes.done.await(10, TimeUnit.SECONDS));
+            assertEquals(Status.Code.UNKNOWN, Status.fromThrowable(nodes.error).getCode());
+        } finally {
+            failingChannel.shutdownNow();
+            failingServer.shutdownNow();
+        }
+    }
+}
@@ -172,6 +172,18 @@ public class FindPathBetweenTest extends TraversalServiceTest {
         Assertions.assertEquals(expected, actual.get(p.getMidpointIndex()));
     }
 
+    // Common descendant between {rel 19, cnt 1} and rev 9: cnt 1 is 2 edges away from rev 9, while the
+    // search from rel 19 meets the one from rev 9 first, at rev 9 itself (3 edges away from rel 19)
+    @Test
+    public void commonDescendantUnbalanced() {
+        Path p = client.findPathBetween(FindPathBetweenRequest.newBuilder().addSrc(fakeSWHID("rel", 19).toString())
+                .addSrc(fakeSWHID("cnt", 1).toString()).addDst(fakeSWHID("rev", 9).toString())
+                .setDirection(GraphDirection.FORWARD).setDirectionReverse(GraphDirection.FORWARD).build());
+        List<SWHID> expected = List.of(fakeSWHID("cnt", 1), fakeSWHID("dir", 8), fakeSWHID("rev", 9));
+        Assertions.assertEquals(expected, getSWHIDs(p));
+        Assertions.assertEquals(0, p.getMidpointIndex());
+    }
+
     // Path between rel 19 and cnt 15 with various max depths
     @Test
     public void maxDepth() {
@@ -190,21 +202,35 @@ public class FindPathBetweenTest extends TraversalServiceTest {
         Assertions.assertEquals(thrown.getStatus().getCode(), Status.NOT_FOUND.getCode());
     }
 
-    // Path between rel 19 and cnt 15 with various max edges
+    // Path between rel 19 and cnt 15 with various max edges, shared by both searches
     @Test
     public void maxEdges() {
-        // Works with max_edges = 3
+        // Works with max_edges = 4
         ArrayList<SWHID> actual = getSWHIDs(client
-                .findPathBetween(getRequestBuilder(fakeSWHID("rel", 19), fakeSWHID("cnt", 15)).setMaxEdges(3).build()));
+                .findPathBetween(getRequestBuilder(fakeSWHID("rel", 19), fakeSWHID("cnt", 15)).setMaxEdges(4).build()));
         List<SWHID> expected = List.of(fakeSWHID("rel", 19), fakeSWHID("rev", 18), fakeSWHID("dir", 17),
                 fakeSWHID("dir", 16), fakeSWHID("cnt", 15));
         Assertions.assertEquals(expected, actual);
 
-        // Check that it throws NOT_FOUND with max_edges = 2
+        // Check that it throws NOT_FOUND with max_edges = 3
         StatusRuntimeException thrown = Assertions.assertThrows(StatusRuntimeException.class, () -> {
             client.findPathBetween(
-                    getRequestBuilder(fakeSWHID("rel", 19), fakeSWHID("cnt", 15)).setMaxEdges(2).build());
+                    getRequestBuilder(fakeSWHID("rel", 19), fakeSWHID("cnt", 15)).setMaxEdges(3).build());
         });
         Assertions.assertEquals(thrown.getStatus().getCode(), Status.NOT_FOUND.getCode());
     }
+
+    // Path between rel 19 and cnt 15: the backward search from cnt 15 has the smallest frontiers, so it is
+    // expanded until it reaches rev 18, and only the edges of the path are accessed
+    @Test
+    public void balancedFrontiers() {
+        FindPathBetweenRequest request = getRequestBuilder(fakeSWHID("rel", 19), fakeSWHID("cnt", 15)).build();
+        try (Traversal.FindPathBetween t = new Traversal.FindPathBetween(g, request)) {
+            t.visit();
+            Path path = t.getPath();
+            assertEquals(5, path.getNodeCount());
+            assertEquals(fakeSWHID("rev", 18).toString(), path.getNode(path.getMidpointIndex()).getSwhid());
+            assertEquals(4, t.getStats().getEdgesAccessed());
+        }
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlowControlledTraversalTest extends TraversalServiceTest {
+    /** Fake observer that only accepts a given number of messages before becoming "not ready". */
+    static class FakeObserver extends ServerCallStreamObserver<Node> {
+        ArrayList<Node> received = new ArrayList<>();
+        int credit;
+        boolean completed = false;
+        Runnable onReadyHandler;
+        Runnable onCancelHandler;
+
+        FakeObserver(int credit) {
+            this.credit = credit;
+        }
+
+        void grant(int n) {
+            credit += n;
+            onReadyHandler.run();
+        }
+
+        @Override
+        public boolean isReady() {
+            return credit > 0;
+        }
+
+        @Override
+        public void onNext(Node value) {
+            credit--;
+            received.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            fail(t.toString());
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+            this.onCancelHandler = onCancelHandler;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+    }
+
+    private TraversalRequest getRequest() {
+        return TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build();
+    }
+
+    @Test
+    public void pausesWhenNotReady() {
+        FakeObserver observer = new FakeObserver(3);
+        Traversal.SimpleTraversal t = new Traversal.SimpleTraversal(g, getRequest(), observer::onNext);
+        boolean[] cleanedUp = {false};
+        FlowControlledTraversal ft = new FlowControlledTraversal(t, observer, () -> cleanedUp[0] = true);
+        ft.start();
+        assertEquals(3, observer.received.size());
+        assertFalse(observer.completed);
+        assertFalse(ft.isDone());
+
+        observer.grant(2);
+        assertEquals(5, observer.received.size());
+        assertFalse(observer.completed);
+
+        observer.grant(100);
+        assertEquals(12, observer.received.size());
+        assertTrue(observer.completed);
+        assertTrue(ft.isDone());
+        assertTrue(cleanedUp[0]);
+    }
+
+    @Test
+    public void timeSlices() {
+        FakeObserver observer = new FakeObserver(100);
+        Traversal.SimpleTraversal t = new Traversal.SimpleTraversal(g, getRequest(), observer::onNext);
+        boolean[] cleanedUp = {false};
+        ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        FlowControlledTraversal ft = new FlowControlledTraversal(t, observer, () -> cleanedUp[0] = true);
+        // Empty time slices: the traversal yields after each step
+        ft.setTimeSlice(0, queue::add);
+        ft.start();
+        assertEquals(1, queue.size());
+        assertFalse(ft.isDone());
+
+        // A ready callback does not queue the traversal twice
+        observer.grant(0);
+        assertEquals(1, queue.size());
+
+        int slices = 1;
+        while (!queue.isEmpty()) {
+            queue.poll().run();
+            slices++;
+        }
+        assertTrue(slices > 2);
+        assertEquals(12, observer.received.size());
+        assertTrue(observer.completed);
+        assertTrue(cleanedUp[0]);
+    }
+
+    @Test
+    public void cancelStopsTraversal() {
+        FakeObserver observer = new FakeObserver(1);
+        Traversal.SimpleTraversal t = new Traversal.SimpleTraversal(g, getRequest(), observer::onNext);
+        boolean[] cleanedUp = {false};
+        FlowControlledTraversal ft = new FlowControlledTraversal(t, observer, () -> cleanedUp[0] = true);
+        ft.start();
+        observer.onCancelHandler.run();
+        assertTrue(cleanedUp[0]);
+        observer.grant(100);
+        assertEquals(1, observer.received.size());
+        assertFalse(observer.completed);
+    }
+}
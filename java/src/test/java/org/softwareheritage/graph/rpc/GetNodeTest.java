@@ -199,6 +199,20 @@ public class GetNodeTest extends TraversalServiceTest {
         assertTrue(n.getCnt().hasIsSkipped());
     }
 
+    @Test
+    public void testNodeIdMask() {
+        String swhid = fakeSWHID("cnt", 1).toString();
+
+        // Node ids are not returned by default
+        Node n = client.getNode(GetNodeRequest.newBuilder().setSwhid(swhid).build());
+        assertFalse(n.hasNodeId());
+
+        n = client.getNode(GetNodeRequest.newBuilder().setSwhid(swhid)
+                .setMask(FieldMask.newBuilder().addPaths("node_id").build()).build());
+        assertEquals(Node.newBuilder().setNodeId(g.getNodeId(new SWHID(swhid))).setCnt(ContentData.getDefaultInstance())
+                .build(), n);
+    }
+
     @Test
     public void testRevMask() {
         Node n;
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.google.protobuf.FieldMask;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GetNodesTest extends TraversalServiceTest {
+    private List<String> getSwhids() {
+        return List.of(fakeSWHID("rev", 9).toString(), TEST_ORIGIN_ID, fakeSWHID("cnt", 1).toString(),
+                fakeSWHID("rel", 10).toString(), fakeSWHID("dir", 2).toString(), fakeSWHID("cnt", 1).toString(),
+                fakeSWHID("snp", 20).toString(), fakeSWHID("cnt", 15).toString());
+    }
+
+    private static ArrayList<Node> getNodes(GetNodesRequest request) {
+        ArrayList<Node> nodes = new ArrayList<>();
+        client.getNodes(request).forEachRemaining(nodes::add);
+        return nodes;
+    }
+
+    @Test
+    public void sameAsGetNode() {
+        List<String> swhids = getSwhids();
+        ArrayList<Node> expected = new ArrayList<>();
+        for (String swhid : swhids) {
+            expected.add(client.getNode(GetNodeRequest.newBuilder().setSwhid(swhid).build()));
+        }
+        assertEquals(expected, getNodes(GetNodesRequest.newBuilder().addAllSwhids(swhids).build()));
+    }
+
+    @Test
+    public void withMask() {
+        List<String> swhids = getSwhids();
+        FieldMask mask = FieldMask.newBuilder().addPaths("swhid").addPaths("cnt.length").build();
+        ArrayList<Node> expected = new ArrayList<>();
+        for (String swhid : swhids) {
+            expected.add(client.getNode(GetNodeRequest.newBuilder().setSwhid(swhid).setMask(mask).build()));
+        }
+        assertEquals(expected, getNodes(GetNodesRequest.newBuilder().addAllSwhids(swhids).setMask(mask).build()));
+    }
+
+    @Test
+    public void empty() {
+        assertEquals(0, getNodes(GetNodesRequest.newBuilder().build()).size());
+    }
+
+    @Test
+    public void notFound() {
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> getNodes(GetNodesRequest.newBuilder().addSwhids(TEST_ORIGIN_ID)
+                        .addSwhids(fakeSWHID("cnt", 404).toString()).build()));
+        assertEquals(Status.INVALID_ARGUMENT.getCode(), thrown.getStatus().getCode());
+    }
+
+    @Test
+    public void manyChunks() {
+        // More nodes than a single chunk, in decreasing node id order
+        int numNodes = 3 * NodePropertyBuilder.BULK_CHUNK_SIZE + 1;
+        long[] nodeIds = new long[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            nodeIds[i] = (numNodes - i) % g.numNodes();
+        }
+        NodePropertyBuilder.NodeDataMask mask = new NodePropertyBuilder.NodeDataMask(null);
+        Node[] nodes = NodePropertyBuilder.buildNodes(g.getForwardGraph(), mask, nodeIds);
+        assertEquals(numNodes, nodes.length);
+        for (int i = 0; i < numNodes; i++) {
+            Node.Builder expected = Node.newBuilder();
+            NodePropertyBuilder.buildNodeProperties(g.getForwardGraph(), mask, expected, nodeIds[i]);
+            assertEquals(expected.build(), nodes[i]);
+        }
+    }
+}
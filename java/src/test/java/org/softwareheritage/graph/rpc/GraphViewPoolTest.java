@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.GraphTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphViewPoolTest extends GraphTest {
+    @Test
+    public void checkoutReusesViews() {
+        GraphViewPool pool = new GraphViewPool(getGraph(), 2);
+        assertEquals(2, pool.idleCount());
+        GraphViewPool.View view = pool.checkout();
+        assertEquals(1, pool.idleCount());
+        assertNotSame(getGraph(), view.graph());
+        assertSame(getGraph().getProperties(), view.graph().getForwardGraph().getProperties());
+        view.close();
+        assertEquals(2, pool.idleCount());
+    }
+
+    @Test
+    public void poolIsBounded() {
+        GraphViewPool pool = new GraphViewPool(getGraph(), 1);
+        GraphViewPool.View first = pool.checkout();
+        GraphViewPool.View second = pool.checkout();
+        assertNotSame(first.graph(), second.graph());
+        assertEquals(0, pool.idleCount());
+        first.close();
+        second.close();
+        assertEquals(1, pool.idleCount());
+    }
+}
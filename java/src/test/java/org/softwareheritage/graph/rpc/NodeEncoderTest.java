@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import it.unimi.dsi.big.webgraph.labelling.ArcLabelledNodeIterator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.GraphTest;
+import org.softwareheritage.graph.SWHID;
+import org.softwareheritage.graph.SwhBidirectionalGraph;
+import org.softwareheritage.graph.SwhUnidirectionalGraph;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NodeEncoderTest extends GraphTest {
+    private static SwhBidirectionalGraph g;
+
+    @BeforeAll
+    static void loadProperties() throws IOException {
+        g = GraphServer.loadGraph(getGraphPath().toString());
+    }
+
+    /** Check that the encoder writes the same bytes as the serialization of the built nodes. */
+    private static void assertSameNodes(SwhUnidirectionalGraph graph, FieldMask mask)
+            throws InvalidProtocolBufferException {
+        NodePropertyBuilder.NodeDataMask nodeMask = new NodePropertyBuilder.NodeDataMask(mask);
+        NodeEncoder encoder = new NodeEncoder(graph, nodeMask);
+        for (long node = 0; node < graph.numNodes(); node++) {
+            Node.Builder builder = Node.newBuilder();
+            NodePropertyBuilder.buildNodeProperties(graph, nodeMask, builder, node);
+            encoder.startNode(node);
+            ArcLabelledNodeIterator.LabelledArcIterator it = graph.labelledSuccessors(node);
+            for (long succ; (succ = it.nextLong()) != -1;) {
+                NodePropertyBuilder.buildSuccessorProperties(graph, nodeMask, builder, node, succ, it.label());
+                encoder.addSuccessor(succ, it.label());
+            }
+            Node expected = builder.build();
+            byte[] encoded = encoder.finishNode(null).bytes;
+            assertEquals(expected, Node.parseFrom(encoded));
+            assertArrayEquals(expected.toByteArray(), encoded);
+        }
+    }
+
+    @Test
+    public void allProperties() throws InvalidProtocolBufferException {
+        assertSameNodes(g.getForwardGraph(), null);
+        assertSameNodes(g.getBackwardGraph(), null);
+    }
+
+    @Test
+    public void maskedProperties() throws InvalidProtocolBufferException {
+        String[][] masks = {{"swhid"}, {"successor.swhid"}, {"successor.label"}, {"num_successors"},
+                {"cnt.is_skipped", "rev.author", "rev.message", "rel.name"}, {"ori.url", "successor"},
+                {"node_id", "successor.node_id"}, {"successor.node_id", "successor.label"}};
+        for (String[] paths : masks) {
+            FieldMask mask = FieldMask.newBuilder().addAllPaths(Arrays.asList(paths)).build();
+            assertSameNodes(g.getForwardGraph(), mask);
+        }
+        assertSameNodes(g.getForwardGraph(), FieldMask.getDefaultInstance());
+    }
+
+    @Test
+    public void continuationToken() throws InvalidProtocolBufferException {
+        SwhUnidirectionalGraph forward = g.getForwardGraph();
+        long node = forward.getNodeId(new SWHID(TEST_ORIGIN_ID));
+        NodeEncoder encoder = new NodeEncoder(forward,
+                new NodePropertyBuilder.NodeDataMask(FieldMask.newBuilder().addPaths("swhid").build()));
+
+        // The node being encoded is discarded when another one is started
+        encoder.startNode(0);
+        encoder.startNode(node);
+        assertTrue(encoder.isEncoding());
+        Node encoded = Node.parseFrom(encoder.finishNode("token").bytes);
+        assertFalse(encoder.isEncoding());
+        assertEquals(Node.newBuilder().setSwhid(TEST_ORIGIN_ID).setContinuationToken("token").build(), encoded);
+
+        encoder.startNode(node);
+        encoder.reset();
+        assertThrows(IllegalStateException.class, () -> encoder.finishNode(null));
+    }
+
+    @Test
+    public void serviceBoundBothWays() throws IOException {
+        GraphServer.TraversalService service = new GraphServer.TraversalService(g.copy());
+        String encodedName = InProcessServerBuilder.generateName();
+        String plainName = InProcessServerBuilder.generateName();
+        Server encodedServer = InProcessServerBuilder.forName(encodedName).directExecutor()
+                .addService(service.bindServiceWithEncodedNodes()).build().start();
+        Server plainServer = InProcessServerBuilder.forName(plainName).directExecutor()
+                .addService(service.bindService()).build().start();
+        ManagedChannel encodedChannel = InProcessChannelBuilder.forName(encodedName).directExecutor().build();
+        ManagedChannel plainChannel = InProcessChannelBuilder.forName(plainName).directExecutor().build();
+        try {
+            TraversalRequest request = TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build();
+            ArrayList<Node> encodedNodes = new ArrayList<>();
+            TraversalServiceGrpc.newBlockingStub(encodedChannel).traverse(request).forEachRemaining(encodedNodes::add);
+            ArrayList<Node> plainNodes = new ArrayList<>();
+            TraversalServiceGrpc.newBlockingStub(plainChannel).traverse(request).forEachRemaining(plainNodes::add);
+            assertEquals(12, plainNodes.size());
+            assertEquals(plainNodes, encodedNodes);
+        } finally {
+            encodedChannel.shutdownNow();
+            plainChannel.shutdownNow();
+            encodedServer.shutdownNow();
+            plainServer.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.google.protobuf.FieldMask;
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.GraphTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelTraversalTest extends TraversalServiceTest {
+    private List<TraversalRequest> getRequests() {
+        return List.of(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build(),
+                TraversalRequest.newBuilder().addSrc(fakeSWHID("cnt", 4).toString())
+                        .setDirection(GraphDirection.BACKWARD).build(),
+                TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setMinDepth(2).setMaxDepth(4).build(),
+                TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setEdges("snp:*,rel:*,rev:rev")
+                        .setReturnNodes(NodeFilter.newBuilder().setTypes("rev").build()).build(),
+                TraversalRequest.newBuilder().addSrc(fakeSWHID("rel", 19).toString())
+                        .setReturnNodes(NodeFilter.newBuilder().setMaxTraversalSuccessors(0).build()).build());
+    }
+
+    private static ArrayList<Node> traverse(TraversalRequest request, ParallelTraversalPool pool) {
+        ArrayList<Node> nodes = new ArrayList<>();
+        Traversal.SimpleTraversal t = new Traversal.SimpleTraversal(g, request, nodes::add);
+        t.setParallelPool(pool);
+        t.visit();
+        t.close();
+        return nodes;
+    }
+
+    @Test
+    public void sameNodesAsSequential() {
+        ParallelTraversalPool pool = new ParallelTraversalPool(4, 1);
+        for (TraversalRequest request : getRequests()) {
+            ArrayList<Node> expected = traverse(request.toBuilder().setParallel(false).build(), pool);
+            ArrayList<Node> actual = traverse(request.toBuilder().setParallel(true).build(), pool);
+            GraphTest.assertEqualsAnyOrder(expected, actual);
+        }
+        pool.close();
+    }
+
+    @Test
+    public void parallelFromStart() {
+        Traversal.SimpleTraversal t = new Traversal.SimpleTraversal(g,
+                TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setParallel(true).build(), n -> {
+                });
+        t.visitSetup();
+        assertTrue(t.isParallel());
+        t.close();
+
+        t = new Traversal.SimpleTraversal(g, TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build(), n -> {
+        });
+        t.visit();
+        assertFalse(t.isParallel());
+        t.close();
+    }
+
+    @Test
+    public void maxEdgesSingleWorker() {
+        // With a single worker, the parallel traversal visits the nodes in the same order
+        ParallelTraversalPool pool = new ParallelTraversalPool(new ForkJoinPool(1), 1);
+        for (int maxEdges = 0; maxEdges < 25; maxEdges++) {
+            TraversalRequest request = TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setMaxEdges(maxEdges)
+                    .setMask(FieldMask.newBuilder().addPaths("swhid").build()).build();
+            ArrayList<Node> expected = traverse(request.toBuilder().setParallel(false).build(), pool);
+            ArrayList<Node> actual = traverse(request.toBuilder().setParallel(true).build(), pool);
+            assertEquals(expected, actual);
+        }
+        pool.getPool().shutdown();
+    }
+
+    @Test
+    public void boundedParallelTraversals() {
+        ParallelTraversalPool pool = new ParallelTraversalPool(2, 1);
+        TraversalRequest request = TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setParallel(true).build();
+        Traversal.SimpleTraversal first = new Traversal.SimpleTraversal(g, request, n -> {
+        });
+        first.setParallelPool(pool);
+        first.visitSetup();
+        assertTrue(first.isParallel());
+
+        // No slot left: the second traversal stays sequential, with the same results
+        ArrayList<Node> nodes = new ArrayList<>();
+        Traversal.SimpleTraversal second = new Traversal.SimpleTraversal(g, request, nodes::add);
+        second.setParallelPool(pool);
+        second.visit();
+        assertFalse(second.isParallel());
+        second.close();
+        assertEquals(12, nodes.size());
+
+        // The slot and the visited bit vector of the first traversal are reused
+        first.close();
+        AtomicBitVector cached = pool.acquireBitVector(g.numNodes());
+        pool.releaseBitVector(cached);
+        Traversal.SimpleTraversal third = new Traversal.SimpleTraversal(g, request, n -> {
+        });
+        third.setParallelPool(pool);
+        third.visitSetup();
+        assertTrue(third.isParallel());
+        assertNotSame(cached, pool.acquireBitVector(g.numNodes()));
+        third.close();
+        pool.close();
+    }
+
+    @Test
+    public void oneNodePerStep() {
+        // The nodes returned by a parallel expansion are sent one per step, so that flow control can pause
+        // the traversal between them
+        ParallelTraversalPool pool = new ParallelTraversalPool(2, 1);
+        ArrayList<Node> nodes = new ArrayList<>();
+        Traversal.SimpleTraversal t = new Traversal.SimpleTraversal(g,
+                TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setParallel(true).build(), nodes::add);
+        t.setParallelPool(pool);
+        t.visitSetup();
+        assertTrue(t.isParallel());
+        while (!t.isFinished()) {
+            int returned = nodes.size();
+            t.visitStep();
+            assertTrue(nodes.size() - returned <= 1);
+        }
+        t.close();
+        assertEquals(12, nodes.size());
+        pool.close();
+    }
+
+    @Test
+    public void bitVectorCacheBoundedByBytes() {
+        long numNodes = 1000;
+        long bytes = new AtomicBitVector(numNodes).memoryUsage();
+        ParallelTraversalPool pool = new ParallelTraversalPool(1, 1, bytes);
+        AtomicBitVector first = pool.acquireBitVector(numNodes);
+        AtomicBitVector second = pool.acquireBitVector(numNodes);
+        pool.releaseBitVector(first);
+        pool.releaseBitVector(second);
+        // Only the first bit vector fits in the cache
+        assertSame(first, pool.acquireBitVector(numNodes));
+        assertNotSame(second, pool.acquireBitVector(numNodes));
+        pool.close();
+
+        pool = new ParallelTraversalPool(1, 1, 0);
+        pool.releaseBitVector(first);
+        assertNotSame(first, pool.acquireBitVector(numNodes));
+        pool.close();
+    }
+
+    @Test
+    public void countNodes() {
+        for (TraversalRequest request : getRequests()) {
+            assertEquals(client.countNodes(request.toBuilder().setParallel(false).build()).getCount(),
+                    client.countNodes(request.toBuilder().setParallel(true).build()).getCount());
+            assertEquals(client.countEdges(request.toBuilder().setParallel(false).build()).getCount(),
+                    client.countEdges(request.toBuilder().setParallel(true).build()).getCount());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.GraphTest;
+import org.softwareheritage.graph.SwhBidirectionalGraph;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryLogTest extends GraphTest {
+    private SwhBidirectionalGraph g;
+    private ByteArrayOutputStream logBytes;
+    private QueryLog queryLog;
+    private Server server;
+    private ManagedChannel channel;
+    private TraversalServiceGrpc.TraversalServiceBlockingStub client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        g = GraphServer.loadGraph(getGraphPath().toString());
+        logBytes = new ByteArrayOutputStream();
+        queryLog = new QueryLog(logBytes);
+        startServer(queryLog);
+    }
+
+    private void startServer(ServerInterceptor... interceptors) throws IOException {
+        String serverName = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(serverName)
+                .addService(ServerInterceptors.intercept(new GraphServer.TraversalService(g), interceptors)).build()
+                .start();
+        channel = InProcessChannelBuilder.forName(serverName).build();
+        client = TraversalServiceGrpc.newBlockingStub(channel);
+    }
+
+    @AfterEach
+    void stopServer() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    private List<QueryLog.Record> recordSampleCalls() throws IOException {
+        ArrayList<Node> nodes = new ArrayList<>();
+        client.traverse(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build()).forEachRemaining(nodes::add);
+        assertEquals(12, nodes.size());
+        client.getNode(GetNodeRequest.newBuilder().setSwhid(TEST_ORIGIN_ID).build());
+        assertThrows(StatusRuntimeException.class,
+                () -> client.getNode(GetNodeRequest.newBuilder().setSwhid("swh:1:lol:0").build()));
+        queryLog.close();
+        return QueryLog.read(new ByteArrayInputStream(logBytes.toByteArray()));
+    }
+
+    @Test
+    public void recordCalls() throws IOException {
+        List<QueryLog.Record> records = recordSampleCalls();
+        assertEquals(3, records.size());
+
+        assertEquals(TraversalServiceGrpc.getTraverseMethod().getFullMethodName(), records.get(0).method);
+        assertEquals(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build(),
+                TraversalRequest.parseFrom(records.get(0).request));
+        assertEquals(Status.Code.OK, records.get(0).status);
+
+        assertEquals(TraversalServiceGrpc.getGetNodeMethod().getFullMethodName(), records.get(2).method);
+        assertEquals("swh:1:lol:0", GetNodeRequest.parseFrom(records.get(2).request).getSwhid());
+        assertEquals(Status.Code.INVALID_ARGUMENT, records.get(2).status);
+
+        for (int i = 0; i < records.size(); i++) {
+            assertTrue(records.get(i).durationNanos >= 0);
+            if (i > 0) {
+                assertTrue(records.get(i).startNanos >= records.get(i - 1).startNanos);
+            }
+        }
+    }
+
+    @Test
+    public void recordRejectedCalls() throws IOException {
+        stopServer();
+        // The query log is the outermost interceptor, as in GraphServer
+        startServer(new AdmissionControl(1, 0, -1), queryLog);
+        TraversalRequest request = TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build();
+        assertEquals(12, client.countNodes(request).getCount());
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class, () -> client.countNodes(request));
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, thrown.getStatus().getCode());
+        queryLog.close();
+
+        List<QueryLog.Record> records = QueryLog.read(new ByteArrayInputStream(logBytes.toByteArray()));
+        assertEquals(2, records.size());
+        assertEquals(request, TraversalRequest.parseFrom(records.get(0).request));
+        assertEquals(Status.Code.OK, records.get(0).status);
+        // The rejected call is closed before its request is received
+        assertEquals(TraversalServiceGrpc.getCountNodesMethod().getFullMethodName(), records.get(1).method);
+        assertEquals(0, records.get(1).request.length);
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, records.get(1).status);
+    }
+
+    @Test
+    public void replayCalls() throws IOException, InterruptedException {
+        List<QueryLog.Record> records = recordSampleCalls();
+        for (ReplayQueryLog.Mode mode : ReplayQueryLog.Mode.values()) {
+            ReplayQueryLog.Report report = new ReplayQueryLog(channel, mode, 2, 100).run(records);
+
+            ReplayQueryLog.MethodReport traverse = report.getMethod("Traverse");
+            assertEquals(1, traverse.getCalls());
+            assertEquals(0, traverse.getErrors());
+            assertEquals(12, traverse.getResponses());
+
+            ReplayQueryLog.MethodReport getNode = report.getMethod("GetNode");
+            assertEquals(2, getNode.getCalls());
+            assertEquals(1, getNode.getCalls(Status.Code.INVALID_ARGUMENT));
+            assertTrue(getNode.getLatencyPercentile(50) <= getNode.getLatencyPercentile(100));
+
+            assertEquals(3, report.getTotal().getCalls());
+            assertTrue(report.getThroughput(report.getTotal()) > 0);
+        }
+    }
+
+    @Test
+    public void truncatedLog() throws IOException {
+        recordSampleCalls();
+        byte[] bytes = logBytes.toByteArray();
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+        assertEquals(2, QueryLog.read(new ByteArrayInputStream(truncated)).size());
+        assertThrows(IOException.class, () -> QueryLog.read(new ByteArrayInputStream(new byte[16])));
+    }
+}
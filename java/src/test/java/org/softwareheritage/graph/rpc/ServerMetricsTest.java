@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.GraphTest;
+import org.softwareheritage.graph.SwhBidirectionalGraph;
+import org.softwareheritage.graph.SwhGraphProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerMetricsTest extends GraphTest {
+    private SwhBidirectionalGraph g;
+    private ServerMetrics metrics;
+    private Server server;
+    private ManagedChannel channel;
+    private TraversalServiceGrpc.TraversalServiceBlockingStub client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        g = GraphServer.loadGraph(getGraphPath().toString());
+        metrics = new ServerMetrics(g.getProperties());
+        String serverName = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(serverName).directExecutor()
+                .addService(ServerInterceptors.intercept(new GraphServer.TraversalService(g),
+                        new ResponseTrailers(), metrics))
+                .build().start();
+        channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+        client = TraversalServiceGrpc.newBlockingStub(channel);
+    }
+
+    @AfterEach
+    void stopServer() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void callMetrics() {
+        ArrayList<Node> nodes = new ArrayList<>();
+        client.traverse(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build()).forEachRemaining(nodes::add);
+        assertEquals(12, nodes.size());
+        client.getNode(GetNodeRequest.newBuilder().setSwhid(TEST_ORIGIN_ID).build());
+        assertThrows(StatusRuntimeException.class,
+                () -> client.getNode(GetNodeRequest.newBuilder().setSwhid("swh:1:lol:0").build()));
+
+        ServerMetrics.MethodMetrics traverse = metrics.getMethod("Traverse");
+        assertEquals(1, traverse.getCalls(Status.Code.OK));
+        assertEquals(12, traverse.getNodesVisited());
+        assertEquals(13, traverse.getEdgesVisited());
+        assertEquals(12, traverse.getNodesEmitted());
+        assertTrue(traverse.getBytesSent() > 0);
+        assertEquals(0, traverse.getCancellations());
+
+        ServerMetrics.MethodMetrics getNode = metrics.getMethod("GetNode");
+        assertEquals(1, getNode.getCalls(Status.Code.OK));
+        assertEquals(1, getNode.getCalls(Status.Code.INVALID_ARGUMENT));
+        assertEquals(0, getNode.getNodesVisited());
+        assertTrue(g.getProperties().getAccessCount(SwhGraphProperties.Column.SWHID) >= 12);
+
+        String text = metrics.render();
+        assertTrue(text.contains("# TYPE swh_graph_call_latency_seconds histogram\n"));
+        assertTrue(text.contains("swh_graph_calls_total{method=\"GetNode\",code=\"INVALID_ARGUMENT\"} 1\n"));
+        assertTrue(text.contains("swh_graph_call_latency_seconds_bucket{method=\"Traverse\",le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("swh_graph_call_latency_seconds_count{method=\"GetNode\"} 2\n"));
+        assertTrue(text.contains("swh_graph_edges_visited_total{method=\"Traverse\"} 13\n"));
+        assertTrue(text.contains("swh_graph_nodes_emitted_total{method=\"Traverse\"} 12\n"));
+        assertTrue(text.contains("swh_graph_property_accesses_total{column=\"swhid\"} "));
+    }
+
+    @Test
+    public void callbackMetrics() {
+        metrics.addGauge("lane_queue_depth", "lane=\"lookup\"", "Queue depth.", () -> 3);
+        metrics.addCounter("rejected_calls_total", "", "Rejected calls.", () -> 5);
+        metrics.addGauge("lane_queue_depth", "lane=\"traversal\"", "Queue depth.", () -> 4);
+
+        String text = metrics.render();
+        assertTrue(text.contains("# TYPE swh_graph_lane_queue_depth gauge\n"
+                + "swh_graph_lane_queue_depth{lane=\"lookup\"} 3\n"
+                + "swh_graph_lane_queue_depth{lane=\"traversal\"} 4\n"));
+        assertTrue(text.contains("# TYPE swh_graph_rejected_calls_total counter\n"
+                + "swh_graph_rejected_calls_total 5\n"));
+    }
+
+    @Test
+    public void httpEndpoint() throws IOException {
+        client.getNode(GetNodeRequest.newBuilder().setSwhid(TEST_ORIGIN_ID).build());
+        HttpServer httpServer = metrics.startHttpServer(0);
+        try {
+            assertTrue(httpServer.getAddress().getAddress().isLoopbackAddress());
+            URL url = new URL("http://localhost:" + httpServer.getAddress().getPort() + "/metrics");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+            String body;
+            try (InputStream in = connection.getInputStream()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            assertTrue(body.contains("swh_graph_calls_total{method=\"GetNode\",code=\"OK\"} 1\n"));
+        } finally {
+            httpServer.stop(0);
+        }
+    }
+}
@@ -22,4 +22,11 @@ public class StatsTest extends TraversalServiceTest {
         assertEquals(stats.getOutdegreeMin(), 0);
         assertEquals(stats.getOutdegreeMax(), 3);
     }
+
+    @Test
+    public void testGraphFingerprint() {
+        String fingerprint = client.stats(StatsRequest.getDefaultInstance()).getGraphFingerprint();
+        assertTrue(fingerprint.matches("[0-9a-f]{32}"));
+        assertEquals(fingerprint, client.stats(StatsRequest.getDefaultInstance()).getGraphFingerprint());
+    }
 }
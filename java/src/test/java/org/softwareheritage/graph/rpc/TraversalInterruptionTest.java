@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.Context;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.MetadataUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TraversalInterruptionTest extends TraversalServiceTest {
+    private final AtomicReference<Metadata> trailers = new AtomicReference<>();
+
+    private TraversalServiceGrpc.TraversalServiceBlockingStub capturingClient() {
+        return client.withInterceptors(MetadataUtils.newCaptureMetadataInterceptor(new AtomicReference<>(), trailers));
+    }
+
+    @Test
+    public void traverseMaxDuration() {
+        ArrayList<Node> nodes = new ArrayList<>();
+        capturingClient().traverse(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setMaxDurationMs(0).build())
+                .forEachRemaining(nodes::add);
+        assertEquals(0, nodes.size());
+        assertEquals("max_duration", trailers.get().get(ResponseTrailers.INTERRUPTED));
+    }
+
+    @Test
+    public void traverseNotInterrupted() {
+        ArrayList<Node> nodes = new ArrayList<>();
+        capturingClient()
+                .traverse(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setMaxDurationMs(60000).build())
+                .forEachRemaining(nodes::add);
+        assertEquals(12, nodes.size());
+        assertNull(trailers.get().get(ResponseTrailers.INTERRUPTED));
+    }
+
+    @Test
+    public void countNodesMaxDuration() {
+        CountResponse response = capturingClient()
+                .countNodes(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setMaxDurationMs(0).build());
+        assertEquals(0, response.getCount());
+        assertEquals("max_duration", trailers.get().get(ResponseTrailers.INTERRUPTED));
+    }
+
+    @Test
+    public void findPathToMaxDuration() {
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> client.findPathTo(FindPathToRequest.newBuilder().addSrc(TEST_ORIGIN_ID)
+                        .setTarget(NodeFilter.newBuilder().setTypes("cnt").build()).setMaxDurationMs(0).build()));
+        assertEquals(Status.NOT_FOUND.getCode(), thrown.getStatus().getCode());
+        assertEquals("max_duration", thrown.getTrailers().get(ResponseTrailers.INTERRUPTED));
+    }
+
+    @Test
+    public void findPathBetweenMaxDuration() {
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> client.findPathBetween(FindPathBetweenRequest.newBuilder().addSrc(TEST_ORIGIN_ID)
+                        .addDst(fakeSWHID("cnt", 4).toString()).setMaxDurationMs(0).build()));
+        assertEquals(Status.NOT_FOUND.getCode(), thrown.getStatus().getCode());
+        assertEquals("max_duration", thrown.getTrailers().get(ResponseTrailers.INTERRUPTED));
+    }
+
+    @Test
+    public void cancelledContext() {
+        Context.CancellableContext context = Context.current().withCancellation();
+        context.cancel(null);
+        ArrayList<Node> nodes = new ArrayList<>();
+        Traversal.SimpleTraversal t;
+        Context previous = context.attach();
+        try {
+            t = new Traversal.SimpleTraversal(g, TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build(),
+                    nodes::add);
+        } finally {
+            context.detach(previous);
+        }
+        t.visit();
+        t.close();
+        assertEquals(0, nodes.size());
+        assertEquals(Traversal.Interruption.CANCELLED, t.getInterruption());
+    }
+}
@@ -9,6 +9,7 @@ package org.softwareheritage.graph.rpc;
 
 import io.grpc.ManagedChannel;
 import io.grpc.Server;
+import io.grpc.ServerInterceptors;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.testing.GrpcCleanupRule;
@@ -36,7 +37,10 @@ public class TraversalServiceTest extends GraphTest {
         String serverName = InProcessServerBuilder.generateName();
         g = GraphServer.loadGraph(getGraphPath().toString());
         server = InProcessServerBuilder.forName(serverName).directExecutor()
-                .addService(new GraphServer.TraversalService(g.copy())).build().start();
+                .addService(ServerInterceptors.intercept(
+                        new GraphServer.TraversalService(g.copy()).bindServiceWithEncodedNodes(),
+                        new ResponseTrailers()))
+                .build().start();
         channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
         client = TraversalServiceGrpc.newBlockingStub(channel);
     }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.Metadata;
+import io.grpc.stub.MetadataUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TraversalStatsTest extends TraversalServiceTest {
+    private final AtomicReference<Metadata> trailers = new AtomicReference<>();
+
+    private TraversalServiceGrpc.TraversalServiceBlockingStub capturingClient() {
+        return client.withInterceptors(MetadataUtils.newCaptureMetadataInterceptor(new AtomicReference<>(), trailers));
+    }
+
+    private TraversalStats getStats() throws InvalidProtocolBufferException {
+        byte[] stats = trailers.get().get(ResponseTrailers.STATS);
+        assertNotNull(stats);
+        return TraversalStats.parseFrom(stats);
+    }
+
+    @Test
+    public void traverseStats() throws InvalidProtocolBufferException {
+        ArrayList<Node> nodes = new ArrayList<>();
+        capturingClient().traverse(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build())
+                .forEachRemaining(nodes::add);
+        assertEquals(12, nodes.size());
+
+        TraversalStats stats = getStats();
+        assertEquals(13, stats.getEdgesAccessed());
+        assertEquals(12, stats.getNodesVisited());
+        assertEquals(12, stats.getNodesReturned());
+        assertEquals(5, stats.getMaxDepthReached());
+        assertEquals(4, stats.getFrontierPeak());
+        assertFalse(stats.hasLimitReached());
+        assertTrue(stats.getVisitedSetBytes() > 0);
+        assertTrue(stats.getWallTimeUs() >= 0);
+        assertTrue(stats.getCpuTimeUs() >= 0);
+    }
+
+    @Test
+    public void traverseReturnedNodes() throws InvalidProtocolBufferException {
+        ArrayList<Node> nodes = new ArrayList<>();
+        capturingClient().traverse(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID)
+                .setReturnNodes(NodeFilter.newBuilder().setTypes("cnt")).build()).forEachRemaining(nodes::add);
+        assertEquals(4, nodes.size());
+
+        TraversalStats stats = getStats();
+        assertEquals(12, stats.getNodesVisited());
+        assertEquals(4, stats.getNodesReturned());
+    }
+
+    @Test
+    public void limitReached() throws InvalidProtocolBufferException {
+        ArrayList<Node> nodes = new ArrayList<>();
+        capturingClient().traverse(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setMaxDepth(1).build())
+                .forEachRemaining(nodes::add);
+        TraversalStats stats = getStats();
+        assertEquals(2, stats.getNodesVisited());
+        assertEquals(1, stats.getMaxDepthReached());
+        assertEquals("max_depth", stats.getLimitReached());
+
+        capturingClient().countNodes(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setMaxEdges(3).build());
+        assertEquals("max_edges", getStats().getLimitReached());
+
+        capturingClient().countNodes(TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).setMaxDurationMs(0).build());
+        assertEquals("max_duration", getStats().getLimitReached());
+    }
+
+    @Test
+    public void pathStats() throws InvalidProtocolBufferException {
+        Path path = capturingClient().findPathTo(FindPathToRequest.newBuilder().addSrc(TEST_ORIGIN_ID)
+                .setTarget(NodeFilter.newBuilder().setTypes("cnt")).build());
+        TraversalStats stats = getStats();
+        assertEquals(path.getNodeCount(), stats.getNodesReturned());
+        assertEquals(path.getNodeCount() - 1, stats.getMaxDepthReached());
+        assertFalse(stats.hasLimitReached());
+
+        path = capturingClient().findPathBetween(FindPathBetweenRequest.newBuilder().addSrc(TEST_ORIGIN_ID)
+                .addDst(fakeSWHID("cnt", 4).toString()).build());
+        stats = getStats();
+        assertEquals(path.getNodeCount(), stats.getNodesReturned());
+        assertTrue(stats.getNodesVisited() > 0);
+        assertTrue(stats.getEdgesAccessed() > 0);
+    }
+}
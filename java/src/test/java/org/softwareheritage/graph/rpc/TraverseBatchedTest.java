@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TraverseBatchedTest extends TraversalServiceTest {
+    private static class BatchCollector implements StreamObserver<NodeBatch> {
+        ArrayList<NodeBatch> batches = new ArrayList<>();
+
+        @Override
+        public void onNext(NodeBatch value) {
+            batches.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            fail(t.toString());
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    private static ArrayList<Node> flatten(Iterator<NodeBatch> it) {
+        ArrayList<Node> res = new ArrayList<>();
+        it.forEachRemaining(batch -> res.addAll(batch.getNodesList()));
+        return res;
+    }
+
+    @Test
+    public void sameNodesAsTraverse() {
+        TraversalRequest request = TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build();
+        ArrayList<Node> expected = new ArrayList<>();
+        client.traverse(request).forEachRemaining(expected::add);
+        assertEquals(expected, flatten(client.traverseBatched(request)));
+    }
+
+    @Test
+    public void srcError() {
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> client.traverseBatched(
+                        TraversalRequest.newBuilder().addSrc(fakeSWHID("cnt", 404).toString()).build())
+                        .forEachRemaining((n) -> {
+                        }));
+        assertEquals(Status.INVALID_ARGUMENT.getCode(), thrown.getStatus().getCode());
+    }
+
+    @Test
+    public void flushByCount() {
+        BatchCollector collector = new BatchCollector();
+        NodeBatcher batcher = new NodeBatcher(collector, 5, Integer.MAX_VALUE, Long.MAX_VALUE);
+        Traversal.SimpleTraversal t = new Traversal.SimpleTraversal(g,
+                TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build(), batcher);
+        t.visit();
+        t.close();
+        assertEquals(2, collector.batches.size());
+        batcher.flush();
+        assertEquals(3, collector.batches.size());
+        assertEquals(5, collector.batches.get(0).getNodesCount());
+        assertEquals(5, collector.batches.get(1).getNodesCount());
+        assertEquals(2, collector.batches.get(2).getNodesCount());
+        batcher.flush();
+        assertEquals(3, collector.batches.size());
+    }
+
+    @Test
+    public void flushBySize() {
+        BatchCollector collector = new BatchCollector();
+        NodeBatcher batcher = new NodeBatcher(collector, Integer.MAX_VALUE, 1, Long.MAX_VALUE);
+        Traversal.SimpleTraversal t = new Traversal.SimpleTraversal(g,
+                TraversalRequest.newBuilder().addSrc(TEST_ORIGIN_ID).build(), batcher);
+        t.visit();
+        t.close();
+        assertEquals(12, collector.batches.size());
+    }
+
+    @Test
+    public void flushByDelay() {
+        BatchCollector collector = new BatchCollector();
+        NodeBatcher batcher = new NodeBatcher(collector, Integer.MAX_VALUE, Integer.MAX_VALUE, 0);
+        batcher.onNext(Node.newBuilder().setSwhid(TEST_ORIGIN_ID).build());
+        assertEquals(1, collector.batches.size());
+        batcher.flushIfExpired();
+        assertEquals(1, collector.batches.size());
+    }
+}
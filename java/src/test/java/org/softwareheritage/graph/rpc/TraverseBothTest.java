@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.GraphTest;
+import org.softwareheritage.graph.SWHID;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TraverseBothTest extends TraversalServiceTest {
+    private TraversalRequest.Builder getTraversalRequestBuilder(SWHID src) {
+        return TraversalRequest.newBuilder().addSrc(src.toString()).setDirection(GraphDirection.BOTH);
+    }
+
+    @Test
+    public void neighbors() {
+        ArrayList<SWHID> actual = getSWHIDs(
+                client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 6)).setMaxDepth(1).build()));
+        List<SWHID> expected = List.of(fakeSWHID("dir", 6), fakeSWHID("cnt", 4), fakeSWHID("cnt", 5),
+                fakeSWHID("dir", 8));
+        GraphTest.assertEqualsAnyOrder(expected, actual);
+    }
+
+    @Test
+    public void twoHops() {
+        ArrayList<SWHID> actual = getSWHIDs(
+                client.traverse(getTraversalRequestBuilder(fakeSWHID("cnt", 1)).setMaxDepth(2).build()));
+        List<SWHID> expected = List.of(fakeSWHID("cnt", 1), fakeSWHID("dir", 2), fakeSWHID("dir", 8),
+                fakeSWHID("rev", 3), fakeSWHID("cnt", 7), fakeSWHID("dir", 6), fakeSWHID("rev", 9),
+                fakeSWHID("dir", 12));
+        GraphTest.assertEqualsAnyOrder(expected, actual);
+    }
+
+    @Test
+    public void wholeGraph() {
+        // The example graph is connected
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("cnt", 1)).build()));
+        assertEquals(g.numNodes(), actual.size());
+        assertEquals(g.numNodes(), new HashSet<>(actual).size());
+    }
+
+    @Test
+    public void parallel() {
+        for (String edges : new String[]{"*", "dir:dir,dir:cnt"}) {
+            ArrayList<SWHID> expected = getSWHIDs(
+                    client.traverse(getTraversalRequestBuilder(fakeSWHID("cnt", 1)).setEdges(edges).build()));
+            ArrayList<SWHID> actual = getSWHIDs(client.traverse(
+                    getTraversalRequestBuilder(fakeSWHID("cnt", 1)).setEdges(edges).setParallel(true).build()));
+            GraphTest.assertEqualsAnyOrder(expected, actual);
+        }
+    }
+
+    @Test
+    public void edgeRestrictionsFollowForwardEdges() {
+        // rev:dir edges can be followed from the directory to the revision
+        ArrayList<SWHID> actual = getSWHIDs(
+                client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 8)).setEdges("rev:dir").build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("dir", 8), fakeSWHID("rev", 9)), actual);
+
+        // but there is no dir:rev edge from dir 8
+        actual = getSWHIDs(
+                client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 8)).setEdges("dir:rev").build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("dir", 8)), actual);
+
+        actual = getSWHIDs(
+                client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 8)).setEdges("dir:dir").build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("dir", 8), fakeSWHID("dir", 6), fakeSWHID("dir", 12)),
+                actual);
+    }
+
+    @Test
+    public void countNodesAndEdges() {
+        TraversalRequest request = getTraversalRequestBuilder(fakeSWHID("cnt", 1)).build();
+        assertEquals(g.numNodes(), client.countNodes(request).getCount());
+        // Each edge is traversed once in each direction
+        assertEquals(2 * g.numArcs(), client.countEdges(request).getCount());
+    }
+
+    @Test
+    public void findPathBetween() {
+        Path path = client.findPathBetween(FindPathBetweenRequest.newBuilder().addSrc(fakeSWHID("cnt", 4).toString())
+                .addDst(fakeSWHID("cnt", 15).toString()).setDirection(GraphDirection.BOTH).build());
+        ArrayList<SWHID> actual = getSWHIDs(path);
+        assertEquals(fakeSWHID("cnt", 4), actual.get(0));
+        assertEquals(fakeSWHID("cnt", 15), actual.get(actual.size() - 1));
+        // Consecutive nodes are connected by an edge, in either direction
+        for (int i = 1; i < actual.size(); i++) {
+            long prev = g.getNodeId(actual.get(i - 1));
+            long curr = g.getNodeId(actual.get(i));
+            assertTrue(GraphTest.lazyLongIteratorToList(g.getForwardGraph().successors(prev)).contains(curr)
+                    || GraphTest.lazyLongIteratorToList(g.getBackwardGraph().successors(prev)).contains(curr));
+        }
+    }
+}
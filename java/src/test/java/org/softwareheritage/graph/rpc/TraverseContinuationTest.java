@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.softwareheritage.graph.GraphTest;
+import org.softwareheritage.graph.SWHID;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TraverseContinuationTest extends TraversalServiceTest {
+    private TraversalRequest.Builder getTraversalRequestBuilder(SWHID src) {
+        return TraversalRequest.newBuilder().addSrc(src.toString());
+    }
+
+    private static ArrayList<Node> getNodes(TraversalRequest request) {
+        ArrayList<Node> nodes = new ArrayList<>();
+        client.traverse(request).forEachRemaining(nodes::add);
+        return nodes;
+    }
+
+    private ArrayList<SWHID> getSWHIDs(List<Node> nodes) {
+        ArrayList<SWHID> swhids = new ArrayList<>();
+        nodes.forEach(node -> swhids.add(new SWHID(node.getSwhid())));
+        return swhids;
+    }
+
+    private static TraversalRequest resume(String token) {
+        return TraversalRequest.newBuilder().setContinuationToken(token).build();
+    }
+
+    @Test
+    public void tokensEveryInterval() {
+        ArrayList<Node> nodes = getNodes(
+                getTraversalRequestBuilder(new SWHID(TEST_ORIGIN_ID)).setContinuationInterval(5).build());
+        assertEquals(12, nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            assertEquals((i + 1) % 5 == 0, nodes.get(i).hasContinuationToken(), "node " + i);
+        }
+    }
+
+    @Test
+    public void resumeFromEachToken() {
+        ArrayList<Node> nodes = getNodes(
+                getTraversalRequestBuilder(new SWHID(TEST_ORIGIN_ID)).setContinuationInterval(4).build());
+        ArrayList<SWHID> swhids = getSWHIDs(nodes);
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodes.get(i).hasContinuationToken()) {
+                ArrayList<Node> resumed = getNodes(resume(nodes.get(i).getContinuationToken()));
+                GraphTest.assertEqualsAnyOrder(swhids.subList(i + 1, swhids.size()), getSWHIDs(resumed));
+            }
+        }
+    }
+
+    @Test
+    public void resumeChained() {
+        TraversalRequest request = getTraversalRequestBuilder(fakeSWHID("rev", 18)).setContinuationInterval(3)
+                .build();
+        ArrayList<SWHID> expected = getSWHIDs(getNodes(request));
+        // Only keep the nodes up to the first token of each traversal, and resume from it
+        ArrayList<SWHID> actual = new ArrayList<>();
+        while (request != null) {
+            ArrayList<Node> nodes = getNodes(request);
+            request = null;
+            for (Node node : nodes) {
+                actual.add(new SWHID(node.getSwhid()));
+                if (node.hasContinuationToken()) {
+                    request = resume(node.getContinuationToken());
+                    break;
+                }
+            }
+        }
+        GraphTest.assertEqualsAnyOrder(expected, actual);
+    }
+
+    @Test
+    public void resumeKeepsRequest() {
+        TraversalRequest request = getTraversalRequestBuilder(fakeSWHID("rev", 18)).setMaxDepth(2)
+                .setReturnNodes(NodeFilter.newBuilder().setTypes("rev,dir")).setContinuationInterval(2).build();
+        ArrayList<Node> nodes = getNodes(request);
+        ArrayList<SWHID> swhids = getSWHIDs(nodes);
+        assertTrue(nodes.get(1).hasContinuationToken());
+        ArrayList<Node> resumed = getNodes(resume(nodes.get(1).getContinuationToken()));
+        GraphTest.assertEqualsAnyOrder(swhids.subList(2, swhids.size()), getSWHIDs(resumed));
+    }
+
+    @Test
+    public void invalidTokens() {
+        for (String token : new String[]{"not a token", "0123456789abcdef0123456789abcdef"}) {
+            StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                    () -> client.traverse(resume(token)).hasNext());
+            assertEquals(Status.INVALID_ARGUMENT.getCode(), thrown.getStatus().getCode());
+        }
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class, () -> client
+                .traverse(getTraversalRequestBuilder(fakeSWHID("rev", 18)).setContinuationInterval(0).build())
+                .hasNext());
+        assertEquals(Status.INVALID_ARGUMENT.getCode(), thrown.getStatus().getCode());
+    }
+
+    @Test
+    public void expiredCheckpoints(@TempDir java.nio.file.Path dir) throws IOException {
+        CheckpointStore store = new CheckpointStore(dir, 0);
+        TraversalCheckpoint checkpoint = new TraversalCheckpoint(TraversalRequest.getDefaultInstance(), 10, 0, 0,
+                TraversalCheckpoint.NodeSet.of(0, action -> {
+                }, 10), TraversalCheckpoint.NodeSet.of(0, action -> {
+                }, 10), TraversalCheckpoint.NodeSet.of(0, action -> {
+                }, 10));
+        String token = store.save(checkpoint);
+        assertThrows(IllegalArgumentException.class, () -> store.load(token));
+    }
+
+    @Test
+    public void checkpointRoundTrip() throws IOException {
+        long numNodes = 1000;
+        // A sparse set is stored as an Elias-Fano list, a dense one as a bitmap
+        long[] sparse = {999, 3, 42};
+        LongArrayList dense = new LongArrayList();
+        for (long node = 0; node < numNodes; node += 2) {
+            dense.add(node);
+        }
+        TraversalRequest request = getTraversalRequestBuilder(fakeSWHID("rev", 18)).setMaxDepth(3).build();
+        TraversalCheckpoint checkpoint = new TraversalCheckpoint(request, numNodes, 2, 17,
+                TraversalCheckpoint.NodeSet.of(dense.size(), dense::forEach, numNodes),
+                TraversalCheckpoint.NodeSet.of(sparse.length, action -> {
+                    for (long node : sparse) {
+                        action.accept(node);
+                    }
+                }, numNodes), TraversalCheckpoint.NodeSet.of(0, action -> {
+                }, numNodes));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        checkpoint.write(out);
+        TraversalCheckpoint read = TraversalCheckpoint.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(request, read.request);
+        assertEquals(numNodes, read.numNodes);
+        assertEquals(2, read.depth);
+        assertEquals(17, read.edgesAccessed);
+        LongArrayList visited = new LongArrayList();
+        read.visited.forEach(visited::add);
+        assertEquals(dense, visited);
+        LongArrayList level = new LongArrayList();
+        read.level.forEach(level::add);
+        assertEquals(LongArrayList.wrap(new long[]{3, 42, 999}), level);
+        assertEquals(0, read.nextLevel.size());
+    }
+
+    @Test
+    public void unsupportedCheckpointVersion(@TempDir java.nio.file.Path dir) throws IOException {
+        CheckpointStore store = new CheckpointStore(dir, CheckpointStore.DEFAULT_TTL_MS);
+        TraversalCheckpoint checkpoint = new TraversalCheckpoint(TraversalRequest.getDefaultInstance(), 10, 0, 0,
+                TraversalCheckpoint.NodeSet.of(0, action -> {
+                }, 10), TraversalCheckpoint.NodeSet.of(0, action -> {
+                }, 10), TraversalCheckpoint.NodeSet.of(0, action -> {
+                }, 10));
+        String token = store.save(checkpoint);
+        java.nio.file.Path file = dir.resolve(token + ".checkpoint");
+        byte[] bytes = Files.readAllBytes(file);
+        // Overwrite the last byte of the version, which follows the magic string
+        bytes[TraversalCheckpoint.MAGIC.length + 3]++;
+        Files.write(file, bytes);
+        assertThrows(IllegalArgumentException.class, () -> store.load(token));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> TraversalCheckpoint.read(new ByteArrayInputStream(new byte[16])));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.GraphTest;
+import org.softwareheritage.graph.SWHID;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TraverseEdgeLabelsTest extends TraversalServiceTest {
+    private TraversalRequest.Builder getTraversalRequestBuilder(SWHID src) {
+        return TraversalRequest.newBuilder().addSrc(src.toString());
+    }
+
+    private static ByteString bytes(String s) {
+        return ByteString.copyFromUtf8(s);
+    }
+
+    @Test
+    public void branchPrefix() {
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("snp", 20))
+                .setMaxDepth(1).setEdgeLabelFilter(EdgeLabelFilter.newBuilder().addPrefixes(bytes("refs/heads/")))
+                .build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("snp", 20), fakeSWHID("rev", 9)), actual);
+    }
+
+    @Test
+    public void exactNames() {
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("snp", 20))
+                .setMaxDepth(1).setEdgeLabelFilter(EdgeLabelFilter.newBuilder().addNames(bytes("refs/tags/v1.0")))
+                .build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("snp", 20), fakeSWHID("rel", 10)), actual);
+
+        // Names that are not in the graph match no edge
+        actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("snp", 20)).setMaxDepth(1)
+                .setEdgeLabelFilter(EdgeLabelFilter.newBuilder().addNames(bytes("refs/heads/unknown"))).build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("snp", 20)), actual);
+    }
+
+    @Test
+    public void exclusions() {
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 8))
+                .setEdgeLabelFilter(EdgeLabelFilter.newBuilder().addExcludeNames(bytes("tests"))).build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("dir", 8), fakeSWHID("cnt", 1), fakeSWHID("cnt", 7)),
+                actual);
+
+        actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 17))
+                .setEdgeLabelFilter(EdgeLabelFilter.newBuilder().addExcludeGlobs(bytes("*.txt"))).build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("dir", 17), fakeSWHID("dir", 16)), actual);
+    }
+
+    @Test
+    public void permissions() {
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 8))
+                .setEdgeLabelFilter(EdgeLabelFilter.newBuilder().setPermissions("content")).build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("dir", 8), fakeSWHID("cnt", 1), fakeSWHID("cnt", 7)),
+                actual);
+    }
+
+    @Test
+    public void unlabelledEdgesAreFollowed() {
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("rev", 9))
+                .setEdgeLabelFilter(EdgeLabelFilter.newBuilder().addNames(bytes("README.md"))).build()));
+        List<SWHID> expected = List.of(fakeSWHID("rev", 9), fakeSWHID("dir", 8), fakeSWHID("cnt", 1),
+                fakeSWHID("rev", 3), fakeSWHID("dir", 2));
+        GraphTest.assertEqualsAnyOrder(expected, actual);
+    }
+
+    @Test
+    public void parallel() {
+        TraversalRequest request = getTraversalRequestBuilder(new SWHID(TEST_ORIGIN_ID))
+                .setEdgeLabelFilter(EdgeLabelFilter.newBuilder().addGlobs(bytes("refs/*/master"))
+                        .addPrefixes(bytes("README")).addNames(bytes("oldproject")))
+                .build();
+        ArrayList<SWHID> expected = getSWHIDs(client.traverse(request));
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(request.toBuilder().setParallel(true).build()));
+        GraphTest.assertEqualsAnyOrder(expected, actual);
+        assertEquals(expected.size(), client.countNodes(request.toBuilder().setApproximate(true).build()).getCount());
+    }
+
+    @Test
+    public void findPathTo() {
+        Path path = client.findPathTo(FindPathToRequest.newBuilder().addSrc(fakeSWHID("dir", 12).toString())
+                .setTarget(NodeFilter.newBuilder().setTypes("cnt"))
+                .setEdgeLabelFilter(
+                        EdgeLabelFilter.newBuilder().addNames(bytes("oldproject")).addNames(bytes("parser.c")))
+                .build());
+        List<SWHID> expected = List.of(fakeSWHID("dir", 12), fakeSWHID("dir", 8), fakeSWHID("cnt", 7));
+        assertEquals(expected, getSWHIDs(path));
+    }
+
+    @Test
+    public void invalidPermission() {
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 8))
+                        .setEdgeLabelFilter(EdgeLabelFilter.newBuilder().setPermissions("sticky")).build()).hasNext());
+        assertEquals(Status.INVALID_ARGUMENT.getCode(), thrown.getStatus().getCode());
+    }
+
+    @Test
+    public void globs() {
+        String[][] matching = {{"*", ""}, {"*", "abc"}, {"a*c", "abbbc"}, {"a?c", "abc"}, {"*.txt", "TODO.txt"},
+                {"refs/*/v*", "refs/tags/v1.0"}, {"a**b", "ab"}};
+        String[][] notMatching = {{"", "a"}, {"a?c", "ac"}, {"*.txt", "TODO.md"}, {"abc", "ab"}, {"a*b", "abc"}};
+        for (String[] m : matching) {
+            assertTrue(Traversal.EdgeLabelFilterChecker.globMatches(m[0].getBytes(), m[1].getBytes()), m[0]);
+        }
+        for (String[] m : notMatching) {
+            assertFalse(Traversal.EdgeLabelFilterChecker.globMatches(m[0].getBytes(), m[1].getBytes()), m[0]);
+        }
+    }
+}
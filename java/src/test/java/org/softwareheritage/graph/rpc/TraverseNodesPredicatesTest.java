@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.Test;
+import org.softwareheritage.graph.GraphTest;
+import org.softwareheritage.graph.SWHID;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TraverseNodesPredicatesTest extends TraversalServiceTest {
+    private TraversalRequest.Builder getTraversalRequestBuilder(SWHID src) {
+        return TraversalRequest.newBuilder().addSrc(src.toString());
+    }
+
+    private static Int64Range range(long min, long max) {
+        return Int64Range.newBuilder().setMin(min).setMax(max).build();
+    }
+
+    @Test
+    public void contentLength() {
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 8))
+                .setReturnNodes(NodeFilter.newBuilder().setTypes("cnt").setCntLength(range(100, 700)).build())
+                .build()));
+        List<SWHID> expected = List.of(fakeSWHID("cnt", 4), fakeSWHID("cnt", 7));
+        GraphTest.assertEqualsAnyOrder(expected, actual);
+    }
+
+    @Test
+    public void predicatesOnlyApplyToTheirNodeTypes() {
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 8))
+                .setReturnNodes(NodeFilter.newBuilder().setCntLength(Int64Range.newBuilder().setMax(100))).build()));
+        List<SWHID> expected = List.of(fakeSWHID("dir", 8), fakeSWHID("dir", 6), fakeSWHID("cnt", 1));
+        GraphTest.assertEqualsAnyOrder(expected, actual);
+    }
+
+    @Test
+    public void contentIsSkipped() {
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 17))
+                .setReturnNodes(NodeFilter.newBuilder().setTypes("cnt").setCntIsSkipped(true)).build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("cnt", 15)), actual);
+
+        actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 17))
+                .setReturnNodes(NodeFilter.newBuilder().setTypes("cnt").setCntIsSkipped(false)).build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("cnt", 14)), actual);
+    }
+
+    @Test
+    public void authorDate() {
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("snp", 20))
+                .setReturnNodes(NodeFilter.newBuilder().setTypes("rev,rel")
+                        .setAuthorDate(Int64Range.newBuilder().setMax(1111150000L)))
+                .build()));
+        List<SWHID> expected = List.of(fakeSWHID("rev", 9), fakeSWHID("rev", 3));
+        GraphTest.assertEqualsAnyOrder(expected, actual);
+    }
+
+    @Test
+    public void unknownPropertyDoesNotMatch() {
+        // rel 19 has no date
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("rev", 18))
+                .setDirection(GraphDirection.BACKWARD).setReturnNodes(NodeFilter.newBuilder().setTypes("rel")
+                        .setAuthorDate(Int64Range.newBuilder().setMin(0)))
+                .build()));
+        GraphTest.assertEqualsAnyOrder(List.of(), actual);
+    }
+
+    @Test
+    public void authorAndCommitterIds() {
+        long author = g.getAuthorId(g.getNodeId(fakeSWHID("rev", 13)));
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("rev", 18))
+                .setEdges("rev:rev").setReturnNodes(NodeFilter.newBuilder().addAuthor(author)).build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("rev", 13), fakeSWHID("rev", 3)), actual);
+
+        long committer = g.getCommitterId(g.getNodeId(fakeSWHID("rev", 9)));
+        actual = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("rev", 18)).setEdges("rev:rev")
+                .setReturnNodes(NodeFilter.newBuilder().addCommitter(committer)).build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("rev", 13), fakeSWHID("rev", 9)), actual);
+    }
+
+    @Test
+    public void pruneHistory() {
+        NodeFilter prune = NodeFilter.newBuilder().setCommitterDate(Int64Range.newBuilder().setMin(1111150000L))
+                .build();
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(
+                getTraversalRequestBuilder(fakeSWHID("rev", 18)).setEdges("rev:rev").setPrune(prune).build()));
+        List<SWHID> expected = List.of(fakeSWHID("rev", 18), fakeSWHID("rev", 13), fakeSWHID("rev", 9));
+        GraphTest.assertEqualsAnyOrder(expected, actual);
+    }
+
+    @Test
+    public void pruneDoesNotApplyToSources() {
+        NodeFilter prune = NodeFilter.newBuilder().setCommitterDate(Int64Range.newBuilder().setMin(2000000000L))
+                .build();
+        ArrayList<SWHID> actual = getSWHIDs(client.traverse(
+                getTraversalRequestBuilder(fakeSWHID("rev", 18)).setEdges("rev:rev").setPrune(prune).build()));
+        GraphTest.assertEqualsAnyOrder(List.of(fakeSWHID("rev", 18)), actual);
+    }
+
+    @Test
+    public void pruneStopsExpansion() {
+        // rev 9 is pruned: rev 3 and dir 2 are only reachable through it, dir 8 is also reachable from dir 12
+        NodeFilter prune = NodeFilter.newBuilder().setCommitterDate(Int64Range.newBuilder().setMin(1111160000L))
+                .build();
+        ArrayList<SWHID> expected = getSWHIDs(client.traverse(getTraversalRequestBuilder(fakeSWHID("rev", 18))
+                .build()));
+        expected.removeAll(List.of(fakeSWHID("rev", 9), fakeSWHID("rev", 3), fakeSWHID("dir", 2)));
+        TraversalRequest request = getTraversalRequestBuilder(fakeSWHID("rev", 18)).setPrune(prune).build();
+
+        GraphTest.assertEqualsAnyOrder(expected, getSWHIDs(client.traverse(request)));
+        GraphTest.assertEqualsAnyOrder(expected,
+                getSWHIDs(client.traverse(request.toBuilder().setParallel(true).build())));
+        assertEquals(expected.size(), client.countNodes(request).getCount());
+        assertEquals(expected.size(), client.countNodes(request.toBuilder().setApproximate(true).build()).getCount());
+    }
+
+    @Test
+    public void invalidFilters() {
+        StatusRuntimeException thrown;
+        thrown = assertThrows(StatusRuntimeException.class,
+                () -> client.traverse(getTraversalRequestBuilder(fakeSWHID("rev", 18))
+                        .setPrune(NodeFilter.newBuilder().setMinTraversalSuccessors(1)).build()).hasNext());
+        assertEquals(Status.INVALID_ARGUMENT.getCode(), thrown.getStatus().getCode());
+        thrown = assertThrows(StatusRuntimeException.class,
+                () -> client.traverse(getTraversalRequestBuilder(fakeSWHID("dir", 8))
+                        .setReturnNodes(NodeFilter.newBuilder().setCntLength(range(10, 1))).build()).hasNext());
+        assertEquals(Status.INVALID_ARGUMENT.getCode(), thrown.getStatus().getCode());
+    }
+}
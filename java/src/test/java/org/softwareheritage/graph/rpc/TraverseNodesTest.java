@@ -7,6 +7,7 @@
 
 package org.softwareheritage.graph.rpc;
 
+import com.google.protobuf.FieldMask;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import org.junit.jupiter.api.Test;
@@ -227,6 +228,23 @@ public class TraverseNodesTest extends TraversalServiceTest {
         GraphTest.assertEqualsAnyOrder(expected, actual);
     }
 
+    @Test
+    public void forwardFromRootNodeIds() {
+        TraversalRequest request = getTraversalRequestBuilder(new SWHID(TEST_ORIGIN_ID))
+                .setMask(FieldMask.newBuilder().addPaths("node_id").addPaths("successor.node_id").build()).build();
+        ArrayList<SWHID> actual = new ArrayList<>();
+        client.traverse(request).forEachRemaining(node -> {
+            assertEquals("", node.getSwhid());
+            actual.add(g.getSWHID(node.getNodeId()));
+            ArrayList<Long> successors = new ArrayList<>();
+            node.getSuccessorList().forEach(successor -> successors.add(successor.getNodeId()));
+            assertEquals(GraphTest.lazyLongIteratorToList(g.successors(node.getNodeId())), successors);
+        });
+        ArrayList<SWHID> expected = getSWHIDs(
+                client.traverse(getTraversalRequestBuilder(new SWHID(TEST_ORIGIN_ID)).build()));
+        GraphTest.assertEqualsAnyOrder(expected, actual);
+    }
+
     // Go from rel 19 with various max edges
     @Test
     public void maxEdges() {
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2022 The Software Heritage developers
+ * See the AUTHORS file at the top-level directory of this distribution
+ * License: GNU General Public License version 3, or any later version
+ * See top-level LICENSE file for more information
+ */
+
+package org.softwareheritage.graph.rpc;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VisitedNodesTest {
+    @Test
+    public void sparseAddContains() {
+        VisitedNodes v = new VisitedNodes(1_000_000, true);
+        assertTrue(v.add(42, -1));
+        assertTrue(v.add(1337, 42));
+        assertFalse(v.add(1337, 0));
+        assertTrue(v.contains(42));
+        assertTrue(v.contains(1337));
+        assertFalse(v.contains(43));
+        assertEquals(-1, v.getParent(42));
+        assertEquals(42, v.getParent(1337));
+        assertEquals(2, v.size());
+        assertFalse(v.isDense());
+        assertThrows(IllegalArgumentException.class, () -> v.getParent(43));
+    }
+
+    @Test
+    public void switchesToDense() {
+        int numNodes = 10_000;
+        VisitedNodes v = new VisitedNodes(numNodes, true);
+        for (int i = 0; i < numNodes; i += 2) {
+            assertTrue(v.add(i, i + 1));
+        }
+        assertTrue(v.isDense());
+        assertEquals(numNodes / 2, v.size());
+        for (int i = 0; i < numNodes; i++) {
+            assertEquals(i % 2 == 0, v.contains(i));
+            if (i % 2 == 0) {
+                assertEquals(i + 1, v.getParent(i));
+            }
+        }
+    }
+
+    @Test
+    public void switchesToDenseAtMaxCapacity() {
+        // With a large graph the dense representation is bigger, but the hash table cannot grow anymore
+        VisitedNodes v = new VisitedNodes(1_000_000, true, 2048);
+        for (int i = 0; i < 1023; i++) {
+            assertTrue(v.add(i * 7L, i));
+        }
+        assertFalse(v.isDense());
+        assertTrue(v.add(1023 * 7L, 1023));
+        assertTrue(v.isDense());
+        assertEquals(1024, v.size());
+        for (int i = 0; i < 1024; i++) {
+            assertTrue(v.contains(i * 7L));
+            assertEquals(i, v.getParent(i * 7L));
+        }
+        assertFalse(v.contains(1));
+    }
+
+    @Test
+    public void resetForgetsPreviousEpoch() {
+        int numNodes = 10_000;
+        VisitedNodes v = new VisitedNodes(numNodes, false);
+        Random random = new Random(0);
+        for (int epoch = 0; epoch < 5; epoch++) {
+            v.reset();
+            int offset = random.nextInt(numNodes);
+            // Alternate between small (sparse) and large (dense) visits
+            int count = epoch % 2 == 0 ? 10 : numNodes / 2;
+            for (int i = 0; i < count; i++) {
+                v.add((offset + i) % numNodes, -1);
+            }
+            assertEquals(count, v.size());
+            for (int i = 0; i < numNodes; i++) {
+                long node = (offset + i) % numNodes;
+                assertEquals(i < count, v.contains(node));
+            }
+        }
+    }
+
+    @Test
+    public void forEachVisitsAllNodes() {
+        int numNodes = 10_000;
+        VisitedNodes v = new VisitedNodes(numNodes, false);
+        for (int count : new int[]{10, numNodes / 2}) {
+            v.reset();
+            for (int i = 0; i < count; i++) {
+                v.add(3L * i % numNodes, -1);
+            }
+            LongOpenHashSet seen = new LongOpenHashSet();
+            v.forEach(node -> assertTrue(seen.add(node)));
+            assertEquals(count, seen.size());
+            seen.forEach((long node) -> assertTrue(v.contains(node)));
+        }
+    }
+
+    @Test
+    public void parentsNotTracked() {
+        VisitedNodes v = new VisitedNodes(100, false);
+        v.add(1, -1);
+        assertThrows(IllegalStateException.class, () -> v.getParent(1));
+    }
+
+    @Test
+    public void threadCacheReuse() {
+        VisitedNodes v = VisitedNodes.acquire(100, true);
+        v.add(1, -1);
+        v.release();
+        VisitedNodes w = VisitedNodes.acquire(100, true);
+        assertSame(v, w);
+        assertFalse(w.contains(1));
+        assertNotSame(w, VisitedNodes.acquire(100, false));
+        w.release();
+    }
+
+    @Test
+    public void denseArraysFreedOnRelease() {
+        VisitedNodes v = VisitedNodes.acquire(1000, true);
+        for (long node = 0; node < 1000; node++) {
+            v.add(node, node - 1);
+        }
+        assertTrue(v.isDense());
+        v.release();
+        assertFalse(v.hasDenseArrays());
+        VisitedNodes w = VisitedNodes.acquire(1000, true);
+        assertSame(v, w);
+        assertFalse(w.isDense());
+        assertFalse(w.contains(1));
+        for (long node = 0; node < 1000; node++) {
+            assertTrue(w.add(node, -1));
+        }
+        assertTrue(w.isDense());
+        assertEquals(-1, w.getParent(999));
+        w.release();
+    }
+}
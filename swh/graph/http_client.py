@@ -6,6 +6,7 @@
 import json
 
 from swh.core.api import RPCClient
+from swh.graph.traversal_stats import get_http_traversal_stats
 
 
 class GraphAPIError(Exception):
@@ -137,20 +138,38 @@ class RemoteGraphClient(RPCClient):
             },
         )
 
-    def count_leaves(self, src, edges="*", direction="forward"):
-        return self.get(
+    def get_count(self, endpoint, return_stats=False, **kwargs):
+        """Returns the count of a counting endpoint, along with the
+        :class:`TraversalStats` of its traversal (or :const:`None`) if
+        ``return_stats`` is set."""
+        if not return_stats:
+            return self.get(endpoint, **kwargs)
+        response = self.raw_verb("get", endpoint, **kwargs)
+        self.raise_for_status(response)
+        return (
+            json.loads(response.content),
+            get_http_traversal_stats(response.headers),
+        )
+
+    def count_leaves(self, src, edges="*", direction="forward", return_stats=False):
+        return self.get_count(
             "leaves/count/{}".format(src),
+            return_stats=return_stats,
             params={"edges": edges, "direction": direction},
         )
 
-    def count_neighbors(self, src, edges="*", direction="forward"):
-        return self.get(
+    def count_neighbors(self, src, edges="*", direction="forward", return_stats=False):
+        return self.get_count(
             "neighbors/count/{}".format(src),
+            return_stats=return_stats,
             params={"edges": edges, "direction": direction},
         )
 
-    def count_visit_nodes(self, src, edges="*", direction="forward"):
-        return self.get(
+    def count_visit_nodes(
+        self, src, edges="*", direction="forward", return_stats=False
+    ):
+        return self.get_count(
             "visit/nodes/count/{}".format(src),
+            return_stats=return_stats,
             params={"edges": edges, "direction": direction},
         )
@@ -28,6 +28,7 @@ from swh.graph.rpc.swhgraph_pb2 import (
 )
 from swh.graph.rpc.swhgraph_pb2_grpc import TraversalServiceStub
 from swh.graph.rpc_server import spawn_java_rpc_server
+from swh.graph.traversal_stats import get_http_headers
 from swh.model.swhids import EXTENDED_SWHID_TYPES
 
 try:
@@ -245,8 +246,9 @@ class SimpleTraversalView(StreamingGraphView):
         pass
 
     async def stream_response(self):
-        async for node in self.rpc_client.Traverse(self.traversal_request):
-            await self.stream_line(node.swhid)
+        async for batch in self.rpc_client.TraverseBatched(self.traversal_request):
+            for node in batch.nodes:
+                await self.stream_line(node.swhid)
 
 
 class LeavesView(SimpleTraversalView):
@@ -270,9 +272,10 @@ class VisitEdgesView(SimpleTraversalView):
         # self.traversal_request.return_fields.successor = True
 
     async def stream_response(self):
-        async for node in self.rpc_client.Traverse(self.traversal_request):
-            for succ in node.successor:
-                await self.stream_line(node.swhid + " " + succ.swhid)
+        async for batch in self.rpc_client.TraverseBatched(self.traversal_request):
+            for node in batch.nodes:
+                for succ in node.successor:
+                    await self.stream_line(node.swhid + " " + succ.swhid)
 
 
 class CountView(GraphView):
@@ -292,9 +295,12 @@ class CountView(GraphView):
         if self.get_max_edges():
             self.traversal_request.max_edges = self.get_max_edges()
         self.configure_request()
-        res = await self.rpc_client.CountNodes(self.traversal_request)
+        call = self.rpc_client.CountNodes(self.traversal_request)
+        res = await call
         return aiohttp.web.Response(
-            body=str(res.count), content_type="application/json"
+            body=str(res.count),
+            content_type="application/json",
+            headers=get_http_headers(await call.trailing_metadata()),
         )
 
     def configure_request(self):
@@ -16,20 +16,25 @@ _sym_db = _symbol_database.Default()
 from google.protobuf import field_mask_pb2 as google_dot_protobuf_dot_field__mask__pb2
 
 
-DESCRIPTOR = _descriptor_pool.Default().AddSerializedFile(b'\n\x1cswh/graph/rpc/swhgraph.proto\x12\tswh.graph\x1a google/protobuf/field_mask.proto\"W\n\x0eGetNodeRequest\x12\r\n\x05swhid\x18\x01 \x01(\t\x12-\n\x04mask\x18\x08 \x01(\x0b\x32\x1a.google.protobuf.FieldMaskH\x00\x88\x01\x01\x42\x07\n\x05_mask\"\xd8\x02\n\x10TraversalRequest\x12\x0b\n\x03src\x18\x01 \x03(\t\x12,\n\tdirection\x18\x02 \x01(\x0e\x32\x19.swh.graph.GraphDirection\x12\x12\n\x05\x65\x64ges\x18\x03 \x01(\tH\x00\x88\x01\x01\x12\x16\n\tmax_edges\x18\x04 \x01(\x03H\x01\x88\x01\x01\x12\x16\n\tmin_depth\x18\x05 \x01(\x03H\x02\x88\x01\x01\x12\x16\n\tmax_depth\x18\x06 \x01(\x03H\x03\x88\x01\x01\x12\x30\n\x0creturn_nodes\x18\x07 \x01(\x0b\x32\x15.swh.graph.NodeFilterH\x04\x88\x01\x01\x12-\n\x04mask\x18\x08 \x01(\x0b\x32\x1a.google.protobuf.FieldMaskH\x05\x88\x01\x01\x42\x08\n\x06_edgesB\x0c\n\n_max_edgesB\x0c\n\n_min_depthB\x0c\n\n_max_depthB\x0f\n\r_return_nodesB\x07\n\x05_mask\"\x97\x02\n\x11\x46indPathToRequest\x12\x0b\n\x03src\x18\x01 \x03(\t\x12%\n\x06target\x18\x02 \x01(\x0b\x32\x15.swh.graph.NodeFilter\x12,\n\tdirection\x18\x03 \x01(\x0e\x32\x19.swh.graph.GraphDirection\x12\x12\n\x05\x65\x64ges\x18\x04 \x01(\tH\x00\x88\x01\x01\x12\x16\n\tmax_edges\x18\x05 \x01(\x03H\x01\x88\x01\x01\x12\x16\n\tmax_depth\x18\x06 \x01(\x03H\x02\x88\x01\x01\x12-\n\x04mask\x18\x07 \x01(\x0b\x32\x1a.google.protobuf.FieldMaskH\x03\x88\x01\x01\x42\x08\n\x06_edgesB\x0c\n\n_max_edgesB\x0c\n\n_max_depthB\x07\n\x05_mask\"\x81\x03\n\x16\x46indPathBetweenRequest\x12\x0b\n\x03src\x18\x01 \x03(\t\x12\x0b\n\x03\x64st\x18\x02 \x03(\t\x12,\n\tdirection\x18\x03 \x01(\x0e\x32\x19.swh.graph.GraphDirection\x12\x39\n\x11\x64irection_reverse\x18\x04 \x01(\x0e\x32\x19.swh.graph.GraphDirectionH\x00\x88\x01\x01\x12\x12\n\x05\x65\x64ges\x18\x05 \x01(\tH\x01\x88\x01\x01\x12\x1a\n\redges_reverse\x18\x06 \x01(\tH\x02\x88\x01\x01\x12\x16\n\tmax_edges\x18\x07 \x01(\x03H\x03\x88\x01\x01\x12\x16\n\tmax_depth\x18\x08 \x01(\x03H\x04\x88\x01\x01\x12-\n\x04mask\x18\t \x01(\x0b\x32\x1a.google.protobuf.FieldMaskH\x05\x88\x01\x01\x42\x14\n\x12_direction_reverseB\x08\n\x06_edgesB\x10\n\x0e_edges_reverseB\x0c\n\n_max_edgesB\x0c\n\n_max_depthB\x07\n\x05_mask\"\xb2\x01\n\nNodeFilter\x12\x12\n\x05types\x18\x01 \x01(\tH\x00\x88\x01\x01\x12%\n\x18min_traversal_successors\x18\x02 \x01(\x03H\x01\x88\x01\x01\x12%\n\x18max_traversal_successors\x18\x03 \x01(\x03H\x02\x88\x01\x01\x42\x08\n\x06_typesB\x1b\n\x19_min_traversal_successorsB\x1b\n\x19_max_traversal_successors\"\x92\x02\n\x04Node\x12\r\n\x05swhid\x18\x01 \x01(\t\x12\'\n\tsuccessor\x18\x02 \x03(\x0b\x32\x14.swh.graph.Successor\x12\x1b\n\x0enum_successors\x18\t \x01(\x03H\x01\x88\x01\x01\x12%\n\x03\x63nt\x18\x03 \x01(\x0b\x32\x16.swh.graph.ContentDataH\x00\x12&\n\x03rev\x18\x05 \x01(\x0b\x32\x17.swh.graph.RevisionDataH\x00\x12%\n\x03rel\x18\x06 \x01(\x0b\x32\x16.swh.graph.ReleaseDataH\x00\x12$\n\x03ori\x18\x08 \x01(\x0b\x32\x15.swh.graph.OriginDataH\x00\x42\x06\n\x04\x64\x61taB\x11\n\x0f_num_successors\"U\n\x04Path\x12\x1d\n\x04node\x18\x01 \x03(\x0b\x32\x0f.swh.graph.Node\x12\x1b\n\x0emidpoint_index\x18\x02 \x01(\x05H\x00\x88\x01\x01\x42\x11\n\x0f_midpoint_index\"N\n\tSuccessor\x12\x12\n\x05swhid\x18\x01 \x01(\tH\x00\x88\x01\x01\x12#\n\x05label\x18\x02 \x03(\x0b\x32\x14.swh.graph.EdgeLabelB\x08\n\x06_swhid\"U\n\x0b\x43ontentData\x12\x13\n\x06length\x18\x01 \x01(\x03H\x00\x88\x01\x01\x12\x17\n\nis_skipped\x18\x02 \x01(\x08H\x01\x88\x01\x01\x42\t\n\x07_lengthB\r\n\x0b_is_skipped\"\xc6\x02\n\x0cRevisionData\x12\x13\n\x06\x61uthor\x18\x01 \x01(\x03H\x00\x88\x01\x01\x12\x18\n\x0b\x61uthor_date\x18\x02 \x01(\x03H\x01\x88\x01\x01\x12\x1f\n\x12\x61uthor_date_offset\x18\x03 \x01(\x05H\x02\x88\x01\x01\x12\x16\n\tcommitter\x18\x04 \x01(\x03H\x03\x88\x01\x01\x12\x1b\n\x0e\x63ommitter_date\x18\x05 \x01(\x03H\x04\x88\x01\x01\x12\"\n\x15\x63ommitter_date_offset\x18\x06 \x01(\x05H\x05\x88\x01\x01\x12\x14\n\x07message\x18\x07 \x01(\x0cH\x06\x88\x01\x01\x42\t\n\x07_authorB\x0e\n\x0c_author_dateB\x15\n\x13_author_date_offsetB\x0c\n\n_committerB\x11\n\x0f_committer_dateB\x18\n\x16_committer_date_offsetB\n\n\x08_message\"\xcd\x01\n\x0bReleaseData\x12\x13\n\x06\x61uthor\x18\x01 \x01(\x03H\x00\x88\x01\x01\x12\x18\n\x0b\x61uthor_date\x18\x02 \x01(\x03H\x01\x88\x01\x01\x12\x1f\n\x12\x61uthor_date_offset\x18\x03 \x01(\x05H\x02\x88\x01\x01\x12\x11\n\x04name\x18\x04 \x01(\x0cH\x03\x88\x01\x01\x12\x14\n\x07message\x18\x05 \x01(\x0cH\x04\x88\x01\x01\x42\t\n\x07_authorB\x0e\n\x0c_author_dateB\x15\n\x13_author_date_offsetB\x07\n\x05_nameB\n\n\x08_message\"&\n\nOriginData\x12\x10\n\x03url\x18\x01 \x01(\tH\x00\x88\x01\x01\x42\x06\n\x04_url\"-\n\tEdgeLabel\x12\x0c\n\x04name\x18\x01 \x01(\x0c\x12\x12\n\npermission\x18\x02 \x01(\x05\"\x1e\n\rCountResponse\x12\r\n\x05\x63ount\x18\x01 \x01(\x03\"\x0e\n\x0cStatsRequest\"\x9b\x02\n\rStatsResponse\x12\x11\n\tnum_nodes\x18\x01 \x01(\x03\x12\x11\n\tnum_edges\x18\x02 \x01(\x03\x12\x19\n\x11\x63ompression_ratio\x18\x03 \x01(\x01\x12\x15\n\rbits_per_node\x18\x04 \x01(\x01\x12\x15\n\rbits_per_edge\x18\x05 \x01(\x01\x12\x14\n\x0c\x61vg_locality\x18\x06 \x01(\x01\x12\x14\n\x0cindegree_min\x18\x07 \x01(\x03\x12\x14\n\x0cindegree_max\x18\x08 \x01(\x03\x12\x14\n\x0cindegree_avg\x18\t \x01(\x01\x12\x15\n\routdegree_min\x18\n \x01(\x03\x12\x15\n\routdegree_max\x18\x0b \x01(\x03\x12\x15\n\routdegree_avg\x18\x0c \x01(\x01*+\n\x0eGraphDirection\x12\x0b\n\x07\x46ORWARD\x10\x00\x12\x0c\n\x08\x42\x41\x43KWARD\x10\x01\x32\xcf\x03\n\x10TraversalService\x12\x35\n\x07GetNode\x12\x19.swh.graph.GetNodeRequest\x1a\x0f.swh.graph.Node\x12:\n\x08Traverse\x12\x1b.swh.graph.TraversalRequest\x1a\x0f.swh.graph.Node0\x01\x12;\n\nFindPathTo\x12\x1c.swh.graph.FindPathToRequest\x1a\x0f.swh.graph.Path\x12\x45\n\x0f\x46indPathBetween\x12!.swh.graph.FindPathBetweenRequest\x1a\x0f.swh.graph.Path\x12\x43\n\nCountNodes\x12\x1b.swh.graph.TraversalRequest\x1a\x18.swh.graph.CountResponse\x12\x43\n\nCountEdges\x12\x1b.swh.graph.TraversalRequest\x1a\x18.swh.graph.CountResponse\x12:\n\x05Stats\x12\x17.swh.graph.StatsRequest\x1a\x18.swh.graph.StatsResponseB0\n\x1eorg.softwareheritage.graph.rpcB\x0cGraphServiceP\x01\x62\x06proto3')
+DESCRIPTOR = _descriptor_pool.Default().AddSerializedFile(b'\n\x1cswh/graph/rpc/swhgraph.proto\x12\tswh.graph\x1a google/protobuf/field_mask.proto\"W\n\x0eGetNodeRequest\x12\r\n\x05swhid\x18\x01 \x01(\t\x12-\n\x04mask\x18\x08 \x01(\x0b\x32\x1a.google.protobuf.FieldMaskH\x00\x88\x01\x01\x42\x07\n\x05_mask\"Y\n\x0fGetNodesRequest\x12\x0e\n\x06swhids\x18\x01 \x03(\t\x12-\n\x04mask\x18\x08 \x01(\x0b\x32\x1a.google.protobuf.FieldMaskH\x00\x88\x01\x01\x42\x07\n\x05_mask\"\x8b\x06\n\x10TraversalRequest\x12\x0b\n\x03src\x18\x01 \x03(\t\x12,\n\tdirection\x18\x02 \x01(\x0e\x32\x19.swh.graph.GraphDirection\x12\x12\n\x05\x65\x64ges\x18\x03 \x01(\tH\x00\x88\x01\x01\x12\x16\n\tmax_edges\x18\x04 \x01(\x03H\x01\x88\x01\x01\x12\x16\n\tmin_depth\x18\x05 \x01(\x03H\x02\x88\x01\x01\x12\x16\n\tmax_depth\x18\x06 \x01(\x03H\x03\x88\x01\x01\x12\x30\n\x0creturn_nodes\x18\x07 \x01(\x0b\x32\x15.swh.graph.NodeFilterH\x04\x88\x01\x01\x12-\n\x04mask\x18\x08 \x01(\x0b\x32\x1a.google.protobuf.FieldMaskH\x05\x88\x01\x01\x12\x1c\n\x0fmax_duration_ms\x18\t \x01(\x03H\x06\x88\x01\x01\x12\x15\n\x08parallel\x18\n \x01(\x08H\x07\x88\x01\x01\x12\x18\n\x0b\x61pproximate\x18\x0b \x01(\x08H\x08\x88\x01\x01\x12\x1e\n\x11\x61pproximate_error\x18\x0c \x01(\x01H\t\x88\x01\x01\x12)\n\x05prune\x18\r \x01(\x0b\x32\x15.swh.graph.NodeFilterH\n\x88\x01\x01\x12:\n\x11\x65\x64ge_label_filter\x18\x0e \x01(\x0b\x32\x1a.swh.graph.EdgeLabelFilterH\x0b\x88\x01\x01\x12\"\n\x15\x63ontinuation_interval\x18\x0f \x01(\x03H\x0c\x88\x01\x01\x12\x1f\n\x12\x63ontinuation_token\x18\x10 \x01(\tH\r\x88\x01\x01\x42\x08\n\x06_edgesB\x0c\n\n_max_edgesB\x0c\n\n_min_depthB\x0c\n\n_max_depthB\x0f\n\r_return_nodesB\x07\n\x05_maskB\x12\n\x10_max_duration_msB\x0b\n\t_parallelB\x0e\n\x0c_approximateB\x14\n\x12_approximate_errorB\x08\n\x06_pruneB\x14\n\x12_edge_label_filterB\x18\n\x16_continuation_intervalB\x15\n\x13_continuation_token\"\x9b\x03\n\x11\x46indPathToRequest\x12\x0b\n\x03src\x18\x01 \x03(\t\x12%\n\x06target\x18\x02 \x01(\x0b\x32\x15.swh.graph.NodeFilter\x12,\n\tdirection\x18\x03 \x01(\x0e\x32\x19.swh.graph.GraphDirection\x12\x12\n\x05\x65\x64ges\x18\x04 \x01(\tH\x00\x88\x01\x01\x12\x16\n\tmax_edges\x18\x05 \x01(\x03H\x01\x88\x01\x01\x12\x16\n\tmax_depth\x18\x06 \x01(\x03H\x02\x88\x01\x01\x12-\n\x04mask\x18\x07 \x01(\x0b\x32\x1a.google.protobuf.FieldMaskH\x03\x88\x01\x01\x12\x1c\n\x0fmax_duration_ms\x18\x08 \x01(\x03H\x04\x88\x01\x01\x12:\n\x11\x65\x64ge_label_filter\x18\t \x01(\x0b\x32\x1a.swh.graph.EdgeLabelFilterH\x05\x88\x01\x01\x42\x08\n\x06_edgesB\x0c\n\n_max_edgesB\x0c\n\n_max_depthB\x07\n\x05_maskB\x12\n\x10_max_duration_msB\x14\n\x12_edge_label_filter\"\xb3\x03\n\x16\x46indPathBetweenRequest\x12\x0b\n\x03src\x18\x01 \x03(\t\x12\x0b\n\x03\x64st\x18\x02 \x03(\t\x12,\n\tdirection\x18\x03 \x01(\x0e\x32\x19.swh.graph.GraphDirection\x12\x39\n\x11\x64irection_reverse\x18\x04 \x01(\x0e\x32\x19.swh.graph.GraphDirectionH\x00\x88\x01\x01\x12\x12\n\x05\x65\x64ges\x18\x05 \x01(\tH\x01\x88\x01\x01\x12\x1a\n\redges_reverse\x18\x06 \x01(\tH\x02\x88\x01\x01\x12\x16\n\tmax_edges\x18\x07 \x01(\x03H\x03\x88\x01\x01\x12\x16\n\tmax_depth\x18\x08 \x01(\x03H\x04\x88\x01\x01\x12-\n\x04mask\x18\t \x01(\x0b\x32\x1a.google.protobuf.FieldMaskH\x05\x88\x01\x01\x12\x1c\n\x0fmax_duration_ms\x18\n \x01(\x03H\x06\x88\x01\x01\x42\x14\n\x12_direction_reverseB\x08\n\x06_edgesB\x10\n\x0e_edges_reverseB\x0c\n\n_max_edgesB\x0c\n\n_max_depthB\x07\n\x05_maskB\x12\n\x10_max_duration_ms\"\xcc\x03\n\nNodeFilter\x12\x12\n\x05types\x18\x01 \x01(\tH\x00\x88\x01\x01\x12%\n\x18min_traversal_successors\x18\x02 \x01(\x03H\x01\x88\x01\x01\x12%\n\x18max_traversal_successors\x18\x03 \x01(\x03H\x02\x88\x01\x01\x12.\n\ncnt_length\x18\x04 \x01(\x0b\x32\x15.swh.graph.Int64RangeH\x03\x88\x01\x01\x12\x1b\n\x0e\x63nt_is_skipped\x18\x05 \x01(\x08H\x04\x88\x01\x01\x12/\n\x0b\x61uthor_date\x18\x06 \x01(\x0b\x32\x15.swh.graph.Int64RangeH\x05\x88\x01\x01\x12\x32\n\x0e\x63ommitter_date\x18\x07 \x01(\x0b\x32\x15.swh.graph.Int64RangeH\x06\x88\x01\x01\x12\x0e\n\x06\x61uthor\x18\x08 \x03(\x03\x12\x11\n\tcommitter\x18\t \x03(\x03\x42\x08\n\x06_typesB\x1b\n\x19_min_traversal_successorsB\x1b\n\x19_max_traversal_successorsB\r\n\x0b_cnt_lengthB\x11\n\x0f_cnt_is_skippedB\x0e\n\x0c_author_dateB\x11\n\x0f_committer_date\"@\n\nInt64Range\x12\x10\n\x03min\x18\x01 \x01(\x03H\x00\x88\x01\x01\x12\x10\n\x03max\x18\x02 \x01(\x03H\x01\x88\x01\x01\x42\x06\n\x04_minB\x06\n\x04_max\"\xb3\x01\n\x0f\x45\x64geLabelFilter\x12\r\n\x05names\x18\x01 \x03(\x0c\x12\x10\n\x08prefixes\x18\x02 \x03(\x0c\x12\r\n\x05globs\x18\x03 \x03(\x0c\x12\x15\n\rexclude_names\x18\x04 \x03(\x0c\x12\x18\n\x10\x65xclude_prefixes\x18\x05 \x03(\x0c\x12\x15\n\rexclude_globs\x18\x06 \x03(\x0c\x12\x18\n\x0bpermissions\x18\x07 \x01(\tH\x00\x88\x01\x01\x42\x0e\n\x0c_permissions\"\xec\x02\n\x04Node\x12\r\n\x05swhid\x18\x01 \x01(\t\x12\'\n\tsuccessor\x18\x02 \x03(\x0b\x32\x14.swh.graph.Successor\x12\x1b\n\x0enum_successors\x18\t \x01(\x03H\x01\x88\x01\x01\x12%\n\x03\x63nt\x18\x03 \x01(\x0b\x32\x16.swh.graph.ContentDataH\x00\x12&\n\x03rev\x18\x05 \x01(\x0b\x32\x17.swh.graph.RevisionDataH\x00\x12%\n\x03rel\x18\x06 \x01(\x0b\x32\x16.swh.graph.ReleaseDataH\x00\x12$\n\x03ori\x18\x08 \x01(\x0b\x32\x15.swh.graph.OriginDataH\x00\x12\x1f\n\x12\x63ontinuation_token\x18\n \x01(\tH\x02\x88\x01\x01\x12\x14\n\x07node_id\x18\x0b \x01(\x03H\x03\x88\x01\x01\x42\x06\n\x04\x64\x61taB\x11\n\x0f_num_successorsB\x15\n\x13_continuation_tokenB\n\n\x08_node_id\"+\n\tNodeBatch\x12\x1e\n\x05nodes\x18\x01 \x03(\x0b\x32\x0f.swh.graph.Node\"U\n\x04Path\x12\x1d\n\x04node\x18\x01 \x03(\x0b\x32\x0f.swh.graph.Node\x12\x1b\n\x0emidpoint_index\x18\x02 \x01(\x05H\x00\x88\x01\x01\x42\x11\n\x0f_midpoint_index\"p\n\tSuccessor\x12\x12\n\x05swhid\x18\x01 \x01(\tH\x00\x88\x01\x01\x12#\n\x05label\x18\x02 \x03(\x0b\x32\x14.swh.graph.EdgeLabel\x12\x14\n\x07node_id\x18\x03 \x01(\x03H\x01\x88\x01\x01\x42\x08\n\x06_swhidB\n\n\x08_node_id\"U\n\x0b\x43ontentData\x12\x13\n\x06length\x18\x01 \x01(\x03H\x00\x88\x01\x01\x12\x17\n\nis_skipped\x18\x02 \x01(\x08H\x01\x88\x01\x01\x42\t\n\x07_lengthB\r\n\x0b_is_skipped\"\xc6\x02\n\x0cRevisionData\x12\x13\n\x06\x61uthor\x18\x01 \x01(\x03H\x00\x88\x01\x01\x12\x18\n\x0b\x61uthor_date\x18\x02 \x01(\x03H\x01\x88\x01\x01\x12\x1f\n\x12\x61uthor_date_offset\x18\x03 \x01(\x05H\x02\x88\x01\x01\x12\x16\n\tcommitter\x18\x04 \x01(\x03H\x03\x88\x01\x01\x12\x1b\n\x0e\x63ommitter_date\x18\x05 \x01(\x03H\x04\x88\x01\x01\x12\"\n\x15\x63ommitter_date_offset\x18\x06 \x01(\x05H\x05\x88\x01\x01\x12\x14\n\x07message\x18\x07 \x01(\x0cH\x06\x88\x01\x01\x42\t\n\x07_authorB\x0e\n\x0c_author_dateB\x15\n\x13_author_date_offsetB\x0c\n\n_committerB\x11\n\x0f_committer_dateB\x18\n\x16_committer_date_offsetB\n\n\x08_message\"\xcd\x01\n\x0bReleaseData\x12\x13\n\x06\x61uthor\x18\x01 \x01(\x03H\x00\x88\x01\x01\x12\x18\n\x0b\x61uthor_date\x18\x02 \x01(\x03H\x01\x88\x01\x01\x12\x1f\n\x12\x61uthor_date_offset\x18\x03 \x01(\x05H\x02\x88\x01\x01\x12\x11\n\x04name\x18\x04 \x01(\x0cH\x03\x88\x01\x01\x12\x14\n\x07message\x18\x05 \x01(\x0cH\x04\x88\x01\x01\x42\t\n\x07_authorB\x0e\n\x0c_author_dateB\x15\n\x13_author_date_offsetB\x07\n\x05_nameB\n\n\x08_message\"&\n\nOriginData\x12\x10\n\x03url\x18\x01 \x01(\tH\x00\x88\x01\x01\x42\x06\n\x04_url\"-\n\tEdgeLabel\x12\x0c\n\x04name\x18\x01 \x01(\x0c\x12\x12\n\npermission\x18\x02 \x01(\x05\"W\n\rCountResponse\x12\r\n\x05\x63ount\x18\x01 \x01(\x03\x12\x18\n\x0b\x65rror_bound\x18\x02 \x01(\x03H\x00\x88\x01\x01\x12\r\n\x05\x65xact\x18\x03 \x01(\x08\x42\x0e\n\x0c_error_bound\"\xfd\x01\n\x0eTraversalStats\x12\x16\n\x0e\x65\x64ges_accessed\x18\x01 \x01(\x03\x12\x15\n\rnodes_visited\x18\x02 \x01(\x03\x12\x16\n\x0enodes_returned\x18\x03 \x01(\x03\x12\x19\n\x11max_depth_reached\x18\x04 \x01(\x03\x12\x15\n\rfrontier_peak\x18\x05 \x01(\x03\x12\x14\n\x0cwall_time_us\x18\x06 \x01(\x03\x12\x13\n\x0b\x63pu_time_us\x18\x07 \x01(\x03\x12\x1a\n\rlimit_reached\x18\x08 \x01(\tH\x00\x88\x01\x01\x12\x19\n\x11visited_set_bytes\x18\t \x01(\x03\x42\x10\n\x0e_limit_reached\"G\n\x18\x45stimateReachableRequest\x12\r\n\x05swhid\x18\x01 \x01(\t\x12\x12\n\x05types\x18\x02 \x01(\tH\x00\x88\x01\x01\x42\x08\n\x06_types\"B\n\x19\x45stimateReachableResponse\x12\r\n\x05\x63ount\x18\x01 \x01(\x03\x12\x16\n\x0erelative_error\x18\x02 \x01(\x01\"\x0e\n\x0cStatsRequest\"\xb6\x02\n\rStatsResponse\x12\x11\n\tnum_nodes\x18\x01 \x01(\x03\x12\x11\n\tnum_edges\x18\x02 \x01(\x03\x12\x19\n\x11\x63ompression_ratio\x18\x03 \x01(\x01\x12\x15\n\rbits_per_node\x18\x04 \x01(\x01\x12\x15\n\rbits_per_edge\x18\x05 \x01(\x01\x12\x14\n\x0c\x61vg_locality\x18\x06 \x01(\x01\x12\x14\n\x0cindegree_min\x18\x07 \x01(\x03\x12\x14\n\x0cindegree_max\x18\x08 \x01(\x03\x12\x14\n\x0cindegree_avg\x18\t \x01(\x01\x12\x15\n\routdegree_min\x18\n \x01(\x03\x12\x15\n\routdegree_max\x18\x0b \x01(\x03\x12\x15\n\routdegree_avg\x18\x0c \x01(\x01\x12\x19\n\x11graph_fingerprint\x18\r \x01(\t*5\n\x0eGraphDirection\x12\x0b\n\x07\x46ORWARD\x10\x00\x12\x0c\n\x08\x42\x41\x43KWARD\x10\x01\x12\x08\n\x04\x42OTH\x10\x02\x32\xb2\x05\n\x10TraversalService\x12\x35\n\x07GetNode\x12\x19.swh.graph.GetNodeRequest\x1a\x0f.swh.graph.Node\x12\x39\n\x08GetNodes\x12\x1a.swh.graph.GetNodesRequest\x1a\x0f.swh.graph.Node0\x01\x12:\n\x08Traverse\x12\x1b.swh.graph.TraversalRequest\x1a\x0f.swh.graph.Node0\x01\x12\x46\n\x0fTraverseBatched\x12\x1b.swh.graph.TraversalRequest\x1a\x14.swh.graph.NodeBatch0\x01\x12;\n\nFindPathTo\x12\x1c.swh.graph.FindPathToRequest\x1a\x0f.swh.graph.Path\x12\x45\n\x0f\x46indPathBetween\x12!.swh.graph.FindPathBetweenRequest\x1a\x0f.swh.graph.Path\x12\x43\n\nCountNodes\x12\x1b.swh.graph.TraversalRequest\x1a\x18.swh.graph.CountResponse\x12\x43\n\nCountEdges\x12\x1b.swh.graph.TraversalRequest\x1a\x18.swh.graph.CountResponse\x12^\n\x11\x45stimateReachable\x12#.swh.graph.EstimateReachableRequest\x1a$.swh.graph.EstimateReachableResponse\x12:\n\x05Stats\x12\x17.swh.graph.StatsRequest\x1a\x18.swh.graph.StatsResponseB0\n\x1eorg.softwareheritage.graph.rpcB\x0cGraphServiceP\x01\x62\x06proto3')
 
 _GRAPHDIRECTION = DESCRIPTOR.enum_types_by_name['GraphDirection']
 GraphDirection = enum_type_wrapper.EnumTypeWrapper(_GRAPHDIRECTION)
 FORWARD = 0
 BACKWARD = 1
+BOTH = 2
 
 
 _GETNODEREQUEST = DESCRIPTOR.message_types_by_name['GetNodeRequest']
+_GETNODESREQUEST = DESCRIPTOR.message_types_by_name['GetNodesRequest']
 _TRAVERSALREQUEST = DESCRIPTOR.message_types_by_name['TraversalRequest']
 _FINDPATHTOREQUEST = DESCRIPTOR.message_types_by_name['FindPathToRequest']
 _FINDPATHBETWEENREQUEST = DESCRIPTOR.message_types_by_name['FindPathBetweenRequest']
 _NODEFILTER = DESCRIPTOR.message_types_by_name['NodeFilter']
+_INT64RANGE = DESCRIPTOR.message_types_by_name['Int64Range']
+_EDGELABELFILTER = DESCRIPTOR.message_types_by_name['EdgeLabelFilter']
 _NODE = DESCRIPTOR.message_types_by_name['Node']
+_NODEBATCH = DESCRIPTOR.message_types_by_name['NodeBatch']
 _PATH = DESCRIPTOR.message_types_by_name['Path']
 _SUCCESSOR = DESCRIPTOR.message_types_by_name['Successor']
 _CONTENTDATA = DESCRIPTOR.message_types_by_name['ContentData']
@@ -38,6 +43,9 @@ _RELEASEDATA = DESCRIPTOR.message_types_by_name['ReleaseData']
 _ORIGINDATA = DESCRIPTOR.message_types_by_name['OriginData']
 _EDGELABEL = DESCRIPTOR.message_types_by_name['EdgeLabel']
 _COUNTRESPONSE = DESCRIPTOR.message_types_by_name['CountResponse']
+_TRAVERSALSTATS = DESCRIPTOR.message_types_by_name['TraversalStats']
+_ESTIMATEREACHABLEREQUEST = DESCRIPTOR.message_types_by_name['EstimateReachableRequest']
+_ESTIMATEREACHABLERESPONSE = DESCRIPTOR.message_types_by_name['EstimateReachableResponse']
 _STATSREQUEST = DESCRIPTOR.message_types_by_name['StatsRequest']
 _STATSRESPONSE = DESCRIPTOR.message_types_by_name['StatsResponse']
 GetNodeRequest = _reflection.GeneratedProtocolMessageType('GetNodeRequest', (_message.Message,), {
@@ -47,6 +55,13 @@ GetNodeRequest = _reflection.GeneratedProtocolMessageType('GetNodeRequest', (_me
   })
 _sym_db.RegisterMessage(GetNodeRequest)
 
+GetNodesRequest = _reflection.GeneratedProtocolMessageType('GetNodesRequest', (_message.Message,), {
+  'DESCRIPTOR' : _GETNODESREQUEST,
+  '__module__' : 'swh.graph.rpc.swhgraph_pb2'
+  # @@protoc_insertion_point(class_scope:swh.graph.GetNodesRequest)
+  })
+_sym_db.RegisterMessage(GetNodesRequest)
+
 TraversalRequest = _reflection.GeneratedProtocolMessageType('TraversalRequest', (_message.Message,), {
   'DESCRIPTOR' : _TRAVERSALREQUEST,
   '__module__' : 'swh.graph.rpc.swhgraph_pb2'
@@ -75,6 +90,20 @@ NodeFilter = _reflection.GeneratedProtocolMessageType('NodeFilter', (_message.Me
   })
 _sym_db.RegisterMessage(NodeFilter)
 
+Int64Range = _reflection.GeneratedProtocolMessageType('Int64Range', (_message.Message,), {
+  'DESCRIPTOR' : _INT64RANGE,
+  '__module__' : 'swh.graph.rpc.swhgraph_pb2'
+  # @@protoc_insertion_point(class_scope:swh.graph.Int64Range)
+  })
+_sym_db.RegisterMessage(Int64Range)
+
+EdgeLabelFilter = _reflection.GeneratedProtocolMessageType('EdgeLabelFilter', (_message.Message,), {
+  'DESCRIPTOR' : _EDGELABELFILTER,
+  '__module__' : 'swh.graph.rpc.swhgraph_pb2'
+  # @@protoc_insertion_point(class_scope:swh.graph.EdgeLabelFilter)
+  })
+_sym_db.RegisterMessage(EdgeLabelFilter)
+
 Node = _reflection.GeneratedProtocolMessageType('Node', (_message.Message,), {
   'DESCRIPTOR' : _NODE,
   '__module__' : 'swh.graph.rpc.swhgraph_pb2'
@@ -82,6 +111,13 @@ Node = _reflection.GeneratedProtocolMessageType('Node', (_message.Message,), {
   })
 _sym_db.RegisterMessage(Node)
 
+NodeBatch = _reflection.GeneratedProtocolMessageType('NodeBatch', (_message.Message,), {
+  'DESCRIPTOR' : _NODEBATCH,
+  '__module__' : 'swh.graph.rpc.swhgraph_pb2'
+  # @@protoc_insertion_point(class_scope:swh.graph.NodeBatch)
+  })
+_sym_db.RegisterMessage(NodeBatch)
+
 Path = _reflection.GeneratedProtocolMessageType('Path', (_message.Message,), {
   'DESCRIPTOR' : _PATH,
   '__module__' : 'swh.graph.rpc.swhgraph_pb2'
@@ -138,6 +174,27 @@ CountResponse = _reflection.GeneratedProtocolMessageType('CountResponse', (_mess
   })
 _sym_db.RegisterMessage(CountResponse)
 
+TraversalStats = _reflection.GeneratedProtocolMessageType('TraversalStats', (_message.Message,), {
+  'DESCRIPTOR' : _TRAVERSALSTATS,
+  '__module__' : 'swh.graph.rpc.swhgraph_pb2'
+  # @@protoc_insertion_point(class_scope:swh.graph.TraversalStats)
+  })
+_sym_db.RegisterMessage(TraversalStats)
+
+EstimateReachableRequest = _reflection.GeneratedProtocolMessageType('EstimateReachableRequest', (_message.Message,), {
+  'DESCRIPTOR' : _ESTIMATEREACHABLEREQUEST,
+  '__module__' : 'swh.graph.rpc.swhgraph_pb2'
+  # @@protoc_insertion_point(class_scope:swh.graph.EstimateReachableRequest)
+  })
+_sym_db.RegisterMessage(EstimateReachableRequest)
+
+EstimateReachableResponse = _reflection.GeneratedProtocolMessageType('EstimateReachableResponse', (_message.Message,), {
+  'DESCRIPTOR' : _ESTIMATEREACHABLERESPONSE,
+  '__module__' : 'swh.graph.rpc.swhgraph_pb2'
+  # @@protoc_insertion_point(class_scope:swh.graph.EstimateReachableResponse)
+  })
+_sym_db.RegisterMessage(EstimateReachableResponse)
+
 StatsRequest = _reflection.GeneratedProtocolMessageType('StatsRequest', (_message.Message,), {
   'DESCRIPTOR' : _STATSREQUEST,
   '__module__' : 'swh.graph.rpc.swhgraph_pb2'
@@ -157,40 +214,54 @@ if _descriptor._USE_C_DESCRIPTORS == False:
 
   DESCRIPTOR._options = None
   DESCRIPTOR._serialized_options = b'\n\036org.softwareheritage.graph.rpcB\014GraphServiceP\001'
-  _GRAPHDIRECTION._serialized_start=2853
-  _GRAPHDIRECTION._serialized_end=2896
+  _GRAPHDIRECTION._serialized_start=4741
+  _GRAPHDIRECTION._serialized_end=4794
   _GETNODEREQUEST._serialized_start=77
   _GETNODEREQUEST._serialized_end=164
-  _TRAVERSALREQUEST._serialized_start=167
-  _TRAVERSALREQUEST._serialized_end=511
-  _FINDPATHTOREQUEST._serialized_start=514
-  _FINDPATHTOREQUEST._serialized_end=793
-  _FINDPATHBETWEENREQUEST._serialized_start=796
-  _FINDPATHBETWEENREQUEST._serialized_end=1181
-  _NODEFILTER._serialized_start=1184
-  _NODEFILTER._serialized_end=1362
-  _NODE._serialized_start=1365
-  _NODE._serialized_end=1639
-  _PATH._serialized_start=1641
-  _PATH._serialized_end=1726
-  _SUCCESSOR._serialized_start=1728
-  _SUCCESSOR._serialized_end=1806
-  _CONTENTDATA._serialized_start=1808
-  _CONTENTDATA._serialized_end=1893
-  _REVISIONDATA._serialized_start=1896
-  _REVISIONDATA._serialized_end=2222
-  _RELEASEDATA._serialized_start=2225
-  _RELEASEDATA._serialized_end=2430
-  _ORIGINDATA._serialized_start=2432
-  _ORIGINDATA._serialized_end=2470
-  _EDGELABEL._serialized_start=2472
-  _EDGELABEL._serialized_end=2517
-  _COUNTRESPONSE._serialized_start=2519
-  _COUNTRESPONSE._serialized_end=2549
-  _STATSREQUEST._serialized_start=2551
-  _STATSREQUEST._serialized_end=2565
-  _STATSRESPONSE._serialized_start=2568
-  _STATSRESPONSE._serialized_end=2851
-  _TRAVERSALSERVICE._serialized_start=2899
-  _TRAVERSALSERVICE._serialized_end=3362
+  _GETNODESREQUEST._serialized_start=166
+  _GETNODESREQUEST._serialized_end=255
+  _TRAVERSALREQUEST._serialized_start=258
+  _TRAVERSALREQUEST._serialized_end=1037
+  _FINDPATHTOREQUEST._serialized_start=1040
+  _FINDPATHTOREQUEST._serialized_end=1451
+  _FINDPATHBETWEENREQUEST._serialized_start=1454
+  _FINDPATHBETWEENREQUEST._serialized_end=1889
+  _NODEFILTER._serialized_start=1892
+  _NODEFILTER._serialized_end=2352
+  _INT64RANGE._serialized_start=2354
+  _INT64RANGE._serialized_end=2418
+  _EDGELABELFILTER._serialized_start=2421
+  _EDGELABELFILTER._serialized_end=2600
+  _NODE._serialized_start=2603
+  _NODE._serialized_end=2967
+  _NODEBATCH._serialized_start=2969
+  _NODEBATCH._serialized_end=3012
+  _PATH._serialized_start=3014
+  _PATH._serialized_end=3099
+  _SUCCESSOR._serialized_start=3101
+  _SUCCESSOR._serialized_end=3213
+  _CONTENTDATA._serialized_start=3215
+  _CONTENTDATA._serialized_end=3300
+  _REVISIONDATA._serialized_start=3303
+  _REVISIONDATA._serialized_end=3629
+  _RELEASEDATA._serialized_start=3632
+  _RELEASEDATA._serialized_end=3837
+  _ORIGINDATA._serialized_start=3839
+  _ORIGINDATA._serialized_end=3877
+  _EDGELABEL._serialized_start=3879
+  _EDGELABEL._serialized_end=3924
+  _COUNTRESPONSE._serialized_start=3926
+  _COUNTRESPONSE._serialized_end=4013
+  _TRAVERSALSTATS._serialized_start=4016
+  _TRAVERSALSTATS._serialized_end=4269
+  _ESTIMATEREACHABLEREQUEST._serialized_start=4271
+  _ESTIMATEREACHABLEREQUEST._serialized_end=4342
+  _ESTIMATEREACHABLERESPONSE._serialized_start=4344
+  _ESTIMATEREACHABLERESPONSE._serialized_end=4410
+  _STATSREQUEST._serialized_start=4412
+  _STATSREQUEST._serialized_end=4426
+  _STATSRESPONSE._serialized_start=4429
+  _STATSRESPONSE._serialized_end=4739
+  _TRAVERSALSERVICE._serialized_start=4797
+  _TRAVERSALSERVICE._serialized_end=5487
 # @@protoc_insertion_point(module_scope)
@@ -24,6 +24,13 @@ class _GraphDirectionEnumTypeWrapper(google.protobuf.internal.enum_type_wrapper.
     BACKWARD: _GraphDirection.ValueType  # 1
     """Transposed DAG: cnt -> dir -> rev -> rel -> snp -> ori"""
 
+    BOTH: _GraphDirection.ValueType  # 2
+    """Undirected graph: the edges of the forward DAG are followed in both
+    directions. Edge restrictions apply to the edges of the forward DAG
+    (e.g., "rev:dir" allows to go from a revision to its root directory and
+    back).
+    """
+
 class GraphDirection(_GraphDirection, metaclass=_GraphDirectionEnumTypeWrapper):
     """Direction of the graph"""
     pass
@@ -34,6 +41,13 @@ FORWARD: GraphDirection.ValueType  # 0
 BACKWARD: GraphDirection.ValueType  # 1
 """Transposed DAG: cnt -> dir -> rev -> rel -> snp -> ori"""
 
+BOTH: GraphDirection.ValueType  # 2
+"""Undirected graph: the edges of the forward DAG are followed in both
+directions. Edge restrictions apply to the edges of the forward DAG
+(e.g., "rev:dir" allows to go from a revision to its root directory and
+back).
+"""
+
 global___GraphDirection = GraphDirection
 
 
@@ -61,6 +75,33 @@ class GetNodeRequest(google.protobuf.message.Message):
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_mask",b"_mask"]) -> typing.Optional[typing_extensions.Literal["mask"]]: ...
 global___GetNodeRequest = GetNodeRequest
 
+class GetNodesRequest(google.protobuf.message.Message):
+    """GetNodesRequest describes a set of nodes and which properties should be
+    returned for each of them.
+    """
+    DESCRIPTOR: google.protobuf.descriptor.Descriptor
+    SWHIDS_FIELD_NUMBER: builtins.int
+    MASK_FIELD_NUMBER: builtins.int
+    @property
+    def swhids(self) -> google.protobuf.internal.containers.RepeatedScalarFieldContainer[typing.Text]:
+        """SWHIDs of the nodes to return (possibly with duplicates)"""
+        pass
+    @property
+    def mask(self) -> google.protobuf.field_mask_pb2.FieldMask:
+        """FieldMask of which fields are to be returned (e.g., "swhid,cnt.length").
+        By default, all fields are returned.
+        """
+        pass
+    def __init__(self,
+        *,
+        swhids: typing.Optional[typing.Iterable[typing.Text]] = ...,
+        mask: typing.Optional[google.protobuf.field_mask_pb2.FieldMask] = ...,
+        ) -> None: ...
+    def HasField(self, field_name: typing_extensions.Literal["_mask",b"_mask","mask",b"mask"]) -> builtins.bool: ...
+    def ClearField(self, field_name: typing_extensions.Literal["_mask",b"_mask","mask",b"mask","swhids",b"swhids"]) -> None: ...
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_mask",b"_mask"]) -> typing.Optional[typing_extensions.Literal["mask"]]: ...
+global___GetNodesRequest = GetNodesRequest
+
 class TraversalRequest(google.protobuf.message.Message):
     """TraversalRequest describes how a breadth-first traversal should be
     performed, and what should be returned to the client.
@@ -74,6 +115,14 @@ class TraversalRequest(google.protobuf.message.Message):
     MAX_DEPTH_FIELD_NUMBER: builtins.int
     RETURN_NODES_FIELD_NUMBER: builtins.int
     MASK_FIELD_NUMBER: builtins.int
+    MAX_DURATION_MS_FIELD_NUMBER: builtins.int
+    PARALLEL_FIELD_NUMBER: builtins.int
+    APPROXIMATE_FIELD_NUMBER: builtins.int
+    APPROXIMATE_ERROR_FIELD_NUMBER: builtins.int
+    PRUNE_FIELD_NUMBER: builtins.int
+    EDGE_LABEL_FILTER_FIELD_NUMBER: builtins.int
+    CONTINUATION_INTERVAL_FIELD_NUMBER: builtins.int
+    CONTINUATION_TOKEN_FIELD_NUMBER: builtins.int
     @property
     def src(self) -> google.protobuf.internal.containers.RepeatedScalarFieldContainer[typing.Text]:
         """Set of source nodes (SWHIDs)"""
@@ -113,6 +162,66 @@ class TraversalRequest(google.protobuf.message.Message):
         By default, all fields are returned.
         """
         pass
+    max_duration_ms: builtins.int
+    """Maximum wall-clock duration of the traversal in milliseconds, after
+    which it stops. Defaults to infinite.
+    """
+
+    parallel: builtins.bool
+    """Whether the frontier of the traversal should be expanded in parallel,
+    using multiple threads. If true, the traversal is parallel from the
+    start; if false, it is never parallel. By default, the traversal
+    becomes parallel once its frontier is large enough.
+    The nodes of a same depth may be returned in any order by a parallel
+    traversal.
+    """
+
+    approximate: builtins.bool
+    """Only used by CountNodes and CountEdges. If true, the count is estimated
+    by sampling when the traversal is too large to be performed quickly
+    (see CountResponse). Ignored if min_depth, max_depth, max_edges, prune,
+    edge_label_filter or a filter on the number of traversal successors is
+    set.
+    """
+
+    approximate_error: builtins.float
+    """Target relative error of approximate counts, i.e., the half-width of
+    their 95% confidence interval divided by the estimate. Sampling stops
+    as soon as it is reached: lower values are more accurate but slower.
+    Defaults to 0.05.
+    """
+
+    @property
+    def prune(self) -> global___NodeFilter:
+        """Filter which nodes are traversed. Nodes that do not match it are
+        neither returned nor expanded, so the traversal does not go past them.
+        Source nodes are always traversed. By default, all nodes are traversed.
+        The number of traversal successors cannot be used in this filter.
+        """
+        pass
+    @property
+    def edge_label_filter(self) -> global___EdgeLabelFilter:
+        """Filter which edges are followed based on their labels (directory entry
+        names and permissions, snapshot branch names). By default, all edges
+        are followed.
+        """
+        pass
+    continuation_interval: builtins.int
+    """Only used by Traverse and TraverseBatched. If set, a continuation token
+    is attached to every continuation_interval-th returned node (see
+    Node.continuation_token), or less often on large traversals, whose
+    checkpoints are more expensive. Traversals returning continuation
+    tokens are never parallel. By default, no continuation token is returned.
+    """
+
+    continuation_token: typing.Text
+    """Continuation token returned by a previous traversal. If set, the
+    traversal resumes where the previous one was when the token was issued,
+    with the parameters of the original request: all the other fields of
+    this request are ignored. Tokens expire after some time (one hour by
+    default).
+    """
+
     def __init__(self,
         *,
         src: typing.Optional[typing.Iterable[typing.Text]] = ...,
@@ -123,9 +232,27 @@ class TraversalRequest(google.protobuf.message.Message):
         max_depth: typing.Optional[builtins.int] = ...,
         return_nodes: typing.Optional[global___NodeFilter] = ...,
         mask: typing.Optional[google.protobuf.field_mask_pb2.FieldMask] = ...,
+        max_duration_ms: typing.Optional[builtins.int] = ...,
+        parallel: typing.Optional[builtins.bool] = ...,
+        approximate: typing.Optional[builtins.bool] = ...,
+        approximate_error: typing.Optional[builtins.float] = ...,
+        prune: typing.Optional[global___NodeFilter] = ...,
+        edge_label_filter: typing.Optional[global___EdgeLabelFilter] = ...,
+        continuation_interval: typing.Optional[builtins.int] = ...,
+        continuation_token: typing.Optional[typing.Text] = ...,
         ) -> None: ...
-    def HasField(self, field_name: typing_extensions.Literal["_edges",b"_edges","_mask",b"_mask","_max_depth",b"_max_depth","_max_edges",b"_max_edges","_min_depth",b"_min_depth","_return_nodes",b"_return_nodes","edges",b"edges","mask",b"mask","max_depth",b"max_depth","max_edges",b"max_edges","min_depth",b"min_depth","return_nodes",b"return_nodes"]) -> builtins.bool: ...
-    def ClearField(self, field_name: typing_extensions.Literal["_edges",b"_edges","_mask",b"_mask","_max_depth",b"_max_depth","_max_edges",b"_max_edges","_min_depth",b"_min_depth","_return_nodes",b"_return_nodes","direction",b"direction","edges",b"edges","mask",b"mask","max_depth",b"max_depth","max_edges",b"max_edges","min_depth",b"min_depth","return_nodes",b"return_nodes","src",b"src"]) -> None: ...
+    def HasField(self, field_name: typing_extensions.Literal["_approximate",b"_approximate","_approximate_error",b"_approximate_error","_continuation_interval",b"_continuation_interval","_continuation_token",b"_continuation_token","_edge_label_filter",b"_edge_label_filter","_edges",b"_edges","_mask",b"_mask","_max_depth",b"_max_depth","_max_duration_ms",b"_max_duration_ms","_max_edges",b"_max_edges","_min_depth",b"_min_depth","_parallel",b"_parallel","_prune",b"_prune","_return_nodes",b"_return_nodes","approximate",b"approximate","approximate_error",b"approximate_error","continuation_interval",b"continuation_interval","continuation_token",b"continuation_token","edge_label_filter",b"edge_label_filter","edges",b"edges","mask",b"mask","max_depth",b"max_depth","max_duration_ms",b"max_duration_ms","max_edges",b"max_edges","min_depth",b"min_depth","parallel",b"parallel","prune",b"prune","return_nodes",b"return_nodes"]) -> builtins.bool: ...
+    def ClearField(self, field_name: typing_extensions.Literal["_approximate",b"_approximate","_approximate_error",b"_approximate_error","_continuation_interval",b"_continuation_interval","_continuation_token",b"_continuation_token","_edge_label_filter",b"_edge_label_filter","_edges",b"_edges","_mask",b"_mask","_max_depth",b"_max_depth","_max_duration_ms",b"_max_duration_ms","_max_edges",b"_max_edges","_min_depth",b"_min_depth","_parallel",b"_parallel","_prune",b"_prune","_return_nodes",b"_return_nodes","approximate",b"approximate","approximate_error",b"approximate_error","continuation_interval",b"continuation_interval","continuation_token",b"continuation_token","direction",b"direction","edge_label_filter",b"edge_label_filter","edges",b"edges","mask",b"mask","max_depth",b"max_depth","max_duration_ms",b"max_duration_ms","max_edges",b"max_edges","min_depth",b"min_depth","parallel",b"parallel","prune",b"prune","return_nodes",b"return_nodes","src",b"src"]) -> None: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_approximate",b"_approximate"]) -> typing.Optional[typing_extensions.Literal["approximate"]]: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_approximate_error",b"_approximate_error"]) -> typing.Optional[typing_extensions.Literal["approximate_error"]]: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_continuation_interval",b"_continuation_interval"]) -> typing.Optional[typing_extensions.Literal["continuation_interval"]]: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_continuation_token",b"_continuation_token"]) -> typing.Optional[typing_extensions.Literal["continuation_token"]]: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_edge_label_filter",b"_edge_label_filter"]) -> typing.Optional[typing_extensions.Literal["edge_label_filter"]]: ...
     @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_edges",b"_edges"]) -> typing.Optional[typing_extensions.Literal["edges"]]: ...
     @typing.overload
@@ -133,10 +260,16 @@ class TraversalRequest(google.protobuf.message.Message):
     @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_max_depth",b"_max_depth"]) -> typing.Optional[typing_extensions.Literal["max_depth"]]: ...
     @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_max_duration_ms",b"_max_duration_ms"]) -> typing.Optional[typing_extensions.Literal["max_duration_ms"]]: ...
+    @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_max_edges",b"_max_edges"]) -> typing.Optional[typing_extensions.Literal["max_edges"]]: ...
     @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_min_depth",b"_min_depth"]) -> typing.Optional[typing_extensions.Literal["min_depth"]]: ...
     @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_parallel",b"_parallel"]) -> typing.Optional[typing_extensions.Literal["parallel"]]: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_prune",b"_prune"]) -> typing.Optional[typing_extensions.Literal["prune"]]: ...
+    @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_return_nodes",b"_return_nodes"]) -> typing.Optional[typing_extensions.Literal["return_nodes"]]: ...
 global___TraversalRequest = TraversalRequest
 
@@ -153,6 +286,8 @@ class FindPathToRequest(google.protobuf.message.Message):
     MAX_EDGES_FIELD_NUMBER: builtins.int
     MAX_DEPTH_FIELD_NUMBER: builtins.int
     MASK_FIELD_NUMBER: builtins.int
+    MAX_DURATION_MS_FIELD_NUMBER: builtins.int
+    EDGE_LABEL_FILTER_FIELD_NUMBER: builtins.int
     @property
     def src(self) -> google.protobuf.internal.containers.RepeatedScalarFieldContainer[typing.Text]:
         """Set of source nodes (SWHIDs)"""
@@ -185,6 +320,18 @@ class FindPathToRequest(google.protobuf.message.Message):
         By default, all fields are returned.
         """
         pass
+    max_duration_ms: builtins.int
+    """Maximum wall-clock duration of the traversal in milliseconds, after
+    which it stops. Defaults to infinite.
+    """
+
+    @property
+    def edge_label_filter(self) -> global___EdgeLabelFilter:
+        """Filter which edges are followed based on their labels (directory entry
+        names and permissions, snapshot branch names). By default, all edges
+        are followed.
+        """
+        pass
     def __init__(self,
         *,
         src: typing.Optional[typing.Iterable[typing.Text]] = ...,
@@ -194,9 +341,13 @@ class FindPathToRequest(google.protobuf.message.Message):
         max_edges: typing.Optional[builtins.int] = ...,
         max_depth: typing.Optional[builtins.int] = ...,
         mask: typing.Optional[google.protobuf.field_mask_pb2.FieldMask] = ...,
+        max_duration_ms: typing.Optional[builtins.int] = ...,
+        edge_label_filter: typing.Optional[global___EdgeLabelFilter] = ...,
         ) -> None: ...
-    def HasField(self, field_name: typing_extensions.Literal["_edges",b"_edges","_mask",b"_mask","_max_depth",b"_max_depth","_max_edges",b"_max_edges","edges",b"edges","mask",b"mask","max_depth",b"max_depth","max_edges",b"max_edges","target",b"target"]) -> builtins.bool: ...
-    def ClearField(self, field_name: typing_extensions.Literal["_edges",b"_edges","_mask",b"_mask","_max_depth",b"_max_depth","_max_edges",b"_max_edges","direction",b"direction","edges",b"edges","mask",b"mask","max_depth",b"max_depth","max_edges",b"max_edges","src",b"src","target",b"target"]) -> None: ...
+    def HasField(self, field_name: typing_extensions.Literal["_edge_label_filter",b"_edge_label_filter","_edges",b"_edges","_mask",b"_mask","_max_depth",b"_max_depth","_max_duration_ms",b"_max_duration_ms","_max_edges",b"_max_edges","edge_label_filter",b"edge_label_filter","edges",b"edges","mask",b"mask","max_depth",b"max_depth","max_duration_ms",b"max_duration_ms","max_edges",b"max_edges","target",b"target"]) -> builtins.bool: ...
+    def ClearField(self, field_name: typing_extensions.Literal["_edge_label_filter",b"_edge_label_filter","_edges",b"_edges","_mask",b"_mask","_max_depth",b"_max_depth","_max_duration_ms",b"_max_duration_ms","_max_edges",b"_max_edges","direction",b"direction","edge_label_filter",b"edge_label_filter","edges",b"edges","mask",b"mask","max_depth",b"max_depth","max_duration_ms",b"max_duration_ms","max_edges",b"max_edges","src",b"src","target",b"target"]) -> None: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_edge_label_filter",b"_edge_label_filter"]) -> typing.Optional[typing_extensions.Literal["edge_label_filter"]]: ...
     @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_edges",b"_edges"]) -> typing.Optional[typing_extensions.Literal["edges"]]: ...
     @typing.overload
@@ -204,6 +355,8 @@ class FindPathToRequest(google.protobuf.message.Message):
     @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_max_depth",b"_max_depth"]) -> typing.Optional[typing_extensions.Literal["max_depth"]]: ...
     @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_max_duration_ms",b"_max_duration_ms"]) -> typing.Optional[typing_extensions.Literal["max_duration_ms"]]: ...
+    @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_max_edges",b"_max_edges"]) -> typing.Optional[typing_extensions.Literal["max_edges"]]: ...
 global___FindPathToRequest = FindPathToRequest
 
@@ -222,6 +375,7 @@ class FindPathBetweenRequest(google.protobuf.message.Message):
     MAX_EDGES_FIELD_NUMBER: builtins.int
     MAX_DEPTH_FIELD_NUMBER: builtins.int
     MASK_FIELD_NUMBER: builtins.int
+    MAX_DURATION_MS_FIELD_NUMBER: builtins.int
     @property
     def src(self) -> google.protobuf.internal.containers.RepeatedScalarFieldContainer[typing.Text]:
         """Set of source nodes (SWHIDs)"""
@@ -273,6 +427,11 @@ class FindPathBetweenRequest(google.protobuf.message.Message):
         By default, all fields are returned.
         """
         pass
+    max_duration_ms: builtins.int
+    """Maximum wall-clock duration of the traversal in milliseconds, after
+    which it stops. Defaults to infinite.
+    """
+
     def __init__(self,
         *,
         src: typing.Optional[typing.Iterable[typing.Text]] = ...,
@@ -284,9 +443,10 @@ class FindPathBetweenRequest(google.protobuf.message.Message):
         max_edges: typing.Optional[builtins.int] = ...,
         max_depth: typing.Optional[builtins.int] = ...,
         mask: typing.Optional[google.protobuf.field_mask_pb2.FieldMask] = ...,
+        max_duration_ms: typing.Optional[builtins.int] = ...,
         ) -> None: ...
-    def HasField(self, field_name: typing_extensions.Literal["_direction_reverse",b"_direction_reverse","_edges",b"_edges","_edges_reverse",b"_edges_reverse","_mask",b"_mask","_max_depth",b"_max_depth","_max_edges",b"_max_edges","direction_reverse",b"direction_reverse","edges",b"edges","edges_reverse",b"edges_reverse","mask",b"mask","max_depth",b"max_depth","max_edges",b"max_edges"]) -> builtins.bool: ...
-    def ClearField(self, field_name: typing_extensions.Literal["_direction_reverse",b"_direction_reverse","_edges",b"_edges","_edges_reverse",b"_edges_reverse","_mask",b"_mask","_max_depth",b"_max_depth","_max_edges",b"_max_edges","direction",b"direction","direction_reverse",b"direction_reverse","dst",b"dst","edges",b"edges","edges_reverse",b"edges_reverse","mask",b"mask","max_depth",b"max_depth","max_edges",b"max_edges","src",b"src"]) -> None: ...
+    def HasField(self, field_name: typing_extensions.Literal["_direction_reverse",b"_direction_reverse","_edges",b"_edges","_edges_reverse",b"_edges_reverse","_mask",b"_mask","_max_depth",b"_max_depth","_max_duration_ms",b"_max_duration_ms","_max_edges",b"_max_edges","direction_reverse",b"direction_reverse","edges",b"edges","edges_reverse",b"edges_reverse","mask",b"mask","max_depth",b"max_depth","max_duration_ms",b"max_duration_ms","max_edges",b"max_edges"]) -> builtins.bool: ...
+    def ClearField(self, field_name: typing_extensions.Literal["_direction_reverse",b"_direction_reverse","_edges",b"_edges","_edges_reverse",b"_edges_reverse","_mask",b"_mask","_max_depth",b"_max_depth","_max_duration_ms",b"_max_duration_ms","_max_edges",b"_max_edges","direction",b"direction","direction_reverse",b"direction_reverse","dst",b"dst","edges",b"edges","edges_reverse",b"edges_reverse","mask",b"mask","max_depth",b"max_depth","max_duration_ms",b"max_duration_ms","max_edges",b"max_edges","src",b"src"]) -> None: ...
     @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_direction_reverse",b"_direction_reverse"]) -> typing.Optional[typing_extensions.Literal["direction_reverse"]]: ...
     @typing.overload
@@ -298,6 +458,8 @@ class FindPathBetweenRequest(google.protobuf.message.Message):
     @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_max_depth",b"_max_depth"]) -> typing.Optional[typing_extensions.Literal["max_depth"]]: ...
     @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_max_duration_ms",b"_max_duration_ms"]) -> typing.Optional[typing_extensions.Literal["max_duration_ms"]]: ...
+    @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_max_edges",b"_max_edges"]) -> typing.Optional[typing_extensions.Literal["max_edges"]]: ...
 global___FindPathBetweenRequest = FindPathBetweenRequest
 
@@ -309,6 +471,12 @@ class NodeFilter(google.protobuf.message.Message):
     TYPES_FIELD_NUMBER: builtins.int
     MIN_TRAVERSAL_SUCCESSORS_FIELD_NUMBER: builtins.int
     MAX_TRAVERSAL_SUCCESSORS_FIELD_NUMBER: builtins.int
+    CNT_LENGTH_FIELD_NUMBER: builtins.int
+    CNT_IS_SKIPPED_FIELD_NUMBER: builtins.int
+    AUTHOR_DATE_FIELD_NUMBER: builtins.int
+    COMMITTER_DATE_FIELD_NUMBER: builtins.int
+    AUTHOR_FIELD_NUMBER: builtins.int
+    COMMITTER_FIELD_NUMBER: builtins.int
     types: typing.Text
     """Node restriction string. (e.g. "dir,cnt,rev"). Defaults to "*" (all)."""
 
@@ -322,14 +490,63 @@ class NodeFilter(google.protobuf.message.Message):
     Default: no constraint
     """
 
+    @property
+    def cnt_length(self) -> global___Int64Range:
+        """Range of content lengths, in bytes (contents only).
+        Default: no constraint
+        """
+        pass
+    cnt_is_skipped: builtins.bool
+    """Whether contents were skipped during archival (contents only).
+    Default: no constraint
+    """
+
+    @property
+    def author_date(self) -> global___Int64Range:
+        """Range of author timestamps, in seconds since the UNIX epoch
+        (revisions and releases). Default: no constraint
+        """
+        pass
+    @property
+    def committer_date(self) -> global___Int64Range:
+        """Range of committer timestamps, in seconds since the UNIX epoch
+        (revisions only). Default: no constraint
+        """
+        pass
+    @property
+    def author(self) -> google.protobuf.internal.containers.RepeatedScalarFieldContainer[builtins.int]:
+        """Set of allowed author ids (revisions and releases).
+        Default: no constraint
+        """
+        pass
+    @property
+    def committer(self) -> google.protobuf.internal.containers.RepeatedScalarFieldContainer[builtins.int]:
+        """Set of allowed committer ids (revisions only).
+        Default: no constraint
+        """
+        pass
     def __init__(self,
         *,
         types: typing.Optional[typing.Text] = ...,
         min_traversal_successors: typing.Optional[builtins.int] = ...,
         max_traversal_successors: typing.Optional[builtins.int] = ...,
+        cnt_length: typing.Optional[global___Int64Range] = ...,
+        cnt_is_skipped: typing.Optional[builtins.bool] = ...,
+        author_date: typing.Optional[global___Int64Range] = ...,
+        committer_date: typing.Optional[global___Int64Range] = ...,
+        author: typing.Optional[typing.Iterable[builtins.int]] = ...,
+        committer: typing.Optional[typing.Iterable[builtins.int]] = ...,
         ) -> None: ...
-    def HasField(self, field_name: typing_extensions.Literal["_max_traversal_successors",b"_max_traversal_successors","_min_traversal_successors",b"_min_traversal_successors","_types",b"_types","max_traversal_successors",b"max_traversal_successors","min_traversal_successors",b"min_traversal_successors","types",b"types"]) -> builtins.bool: ...
-    def ClearField(self, field_name: typing_extensions.Literal["_max_traversal_successors",b"_max_traversal_successors","_min_traversal_successors",b"_min_traversal_successors","_types",b"_types","max_traversal_successors",b"max_traversal_successors","min_traversal_successors",b"min_traversal_successors","types",b"types"]) -> None: ...
+    def HasField(self, field_name: typing_extensions.Literal["_author_date",b"_author_date","_cnt_is_skipped",b"_cnt_is_skipped","_cnt_length",b"_cnt_length","_committer_date",b"_committer_date","_max_traversal_successors",b"_max_traversal_successors","_min_traversal_successors",b"_min_traversal_successors","_types",b"_types","author_date",b"author_date","cnt_is_skipped",b"cnt_is_skipped","cnt_length",b"cnt_length","committer_date",b"committer_date","max_traversal_successors",b"max_traversal_successors","min_traversal_successors",b"min_traversal_successors","types",b"types"]) -> builtins.bool: ...
+    def ClearField(self, field_name: typing_extensions.Literal["_author_date",b"_author_date","_cnt_is_skipped",b"_cnt_is_skipped","_cnt_length",b"_cnt_length","_committer_date",b"_committer_date","_max_traversal_successors",b"_max_traversal_successors","_min_traversal_successors",b"_min_traversal_successors","_types",b"_types","author",b"author","author_date",b"author_date","cnt_is_skipped",b"cnt_is_skipped","cnt_length",b"cnt_length","committer",b"committer","committer_date",b"committer_date","max_traversal_successors",b"max_traversal_successors","min_traversal_successors",b"min_traversal_successors","types",b"types"]) -> None: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_author_date",b"_author_date"]) -> typing.Optional[typing_extensions.Literal["author_date"]]: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_cnt_is_skipped",b"_cnt_is_skipped"]) -> typing.Optional[typing_extensions.Literal["cnt_is_skipped"]]: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_cnt_length",b"_cnt_length"]) -> typing.Optional[typing_extensions.Literal["cnt_length"]]: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_committer_date",b"_committer_date"]) -> typing.Optional[typing_extensions.Literal["committer_date"]]: ...
     @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_max_traversal_successors",b"_max_traversal_successors"]) -> typing.Optional[typing_extensions.Literal["max_traversal_successors"]]: ...
     @typing.overload
@@ -338,6 +555,106 @@ class NodeFilter(google.protobuf.message.Message):
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_types",b"_types"]) -> typing.Optional[typing_extensions.Literal["types"]]: ...
 global___NodeFilter = NodeFilter
 
+class Int64Range(google.protobuf.message.Message):
+    """Inclusive range of integers."""
+    DESCRIPTOR: google.protobuf.descriptor.Descriptor
+    MIN_FIELD_NUMBER: builtins.int
+    MAX_FIELD_NUMBER: builtins.int
+    min: builtins.int
+    """Lower bound. Default: no constraint"""
+
+    max: builtins.int
+    """Upper bound. Default: no constraint"""
+
+    def __init__(self,
+        *,
+        min: typing.Optional[builtins.int] = ...,
+        max: typing.Optional[builtins.int] = ...,
+        ) -> None: ...
+    def HasField(self, field_name: typing_extensions.Literal["_max",b"_max","_min",b"_min","max",b"max","min",b"min"]) -> builtins.bool: ...
+    def ClearField(self, field_name: typing_extensions.Literal["_max",b"_max","_min",b"_min","max",b"max","min",b"min"]) -> None: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_max",b"_max"]) -> typing.Optional[typing_extensions.Literal["max"]]: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_min",b"_min"]) -> typing.Optional[typing_extensions.Literal["min"]]: ...
+global___Int64Range = Int64Range
+
+class EdgeLabelFilter(google.protobuf.message.Message):
+    """Represents criteria on the labels of the edges. A label is valid if all
+    the subcriteria present in this message are fulfilled, and an edge is
+    followed if at least one of its labels is valid. Edges without labels
+    (e.g., revision to directory) are always followed.
+    """
+    DESCRIPTOR: google.protobuf.descriptor.Descriptor
+    NAMES_FIELD_NUMBER: builtins.int
+    PREFIXES_FIELD_NUMBER: builtins.int
+    GLOBS_FIELD_NUMBER: builtins.int
+    EXCLUDE_NAMES_FIELD_NUMBER: builtins.int
+    EXCLUDE_PREFIXES_FIELD_NUMBER: builtins.int
+    EXCLUDE_GLOBS_FIELD_NUMBER: builtins.int
+    PERMISSIONS_FIELD_NUMBER: builtins.int
+    @property
+    def names(self) -> google.protobuf.internal.containers.RepeatedScalarFieldContainer[builtins.bytes]:
+        """Label names (e.g., "README.md" or "refs/heads/master"). If names,
+        prefixes or globs are set, a label is only valid if its name is one of
+        the names, starts with one of the prefixes or matches one of the globs.
+        Default: no constraint
+        """
+        pass
+    @property
+    def prefixes(self) -> google.protobuf.internal.containers.RepeatedScalarFieldContainer[builtins.bytes]:
+        """Prefixes of label names (e.g., "refs/heads/").
+        Default: no constraint
+        """
+        pass
+    @property
+    def globs(self) -> google.protobuf.internal.containers.RepeatedScalarFieldContainer[builtins.bytes]:
+        """Glob patterns of label names, where "*" matches any sequence of bytes
+        and "?" matches any single byte (e.g., "refs/tags/v*").
+        Default: no constraint
+        """
+        pass
+    @property
+    def exclude_names(self) -> google.protobuf.internal.containers.RepeatedScalarFieldContainer[builtins.bytes]:
+        """Labels whose name is one of these names are not valid.
+        Default: no constraint
+        """
+        pass
+    @property
+    def exclude_prefixes(self) -> google.protobuf.internal.containers.RepeatedScalarFieldContainer[builtins.bytes]:
+        """Labels whose name starts with one of these prefixes are not valid.
+        Default: no constraint
+        """
+        pass
+    @property
+    def exclude_globs(self) -> google.protobuf.internal.containers.RepeatedScalarFieldContainer[builtins.bytes]:
+        """Labels whose name matches one of these glob patterns are not valid.
+        Default: no constraint
+        """
+        pass
+    permissions: typing.Text
+    """Permission restriction string of directory entries, among "content",
+    "executable_content", "symlink", "directory" and "revision"
+    (e.g., "content,executable_content,directory" to skip symbolic links
+    and submodules). Labels without permissions (snapshot branches) are
+    not affected. Defaults to "*" (all).
+    """
+
+    def __init__(self,
+        *,
+        names: typing.Optional[typing.Iterable[builtins.bytes]] = ...,
+        prefixes: typing.Optional[typing.Iterable[builtins.bytes]] = ...,
+        globs: typing.Optional[typing.Iterable[builtins.bytes]] = ...,
+        exclude_names: typing.Optional[typing.Iterable[builtins.bytes]] = ...,
+        exclude_prefixes: typing.Optional[typing.Iterable[builtins.bytes]] = ...,
+        exclude_globs: typing.Optional[typing.Iterable[builtins.bytes]] = ...,
+        permissions: typing.Optional[typing.Text] = ...,
+        ) -> None: ...
+    def HasField(self, field_name: typing_extensions.Literal["_permissions",b"_permissions","permissions",b"permissions"]) -> builtins.bool: ...
+    def ClearField(self, field_name: typing_extensions.Literal["_permissions",b"_permissions","exclude_globs",b"exclude_globs","exclude_names",b"exclude_names","exclude_prefixes",b"exclude_prefixes","globs",b"globs","names",b"names","permissions",b"permissions","prefixes",b"prefixes"]) -> None: ...
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_permissions",b"_permissions"]) -> typing.Optional[typing_extensions.Literal["permissions"]]: ...
+global___EdgeLabelFilter = EdgeLabelFilter
+
 class Node(google.protobuf.message.Message):
     """Represents a node in the graph."""
     DESCRIPTOR: google.protobuf.descriptor.Descriptor
@@ -348,6 +665,8 @@ class Node(google.protobuf.message.Message):
     REV_FIELD_NUMBER: builtins.int
     REL_FIELD_NUMBER: builtins.int
     ORI_FIELD_NUMBER: builtins.int
+    CONTINUATION_TOKEN_FIELD_NUMBER: builtins.int
+    NODE_ID_FIELD_NUMBER: builtins.int
     swhid: typing.Text
     """The SWHID of the graph node."""
 
@@ -366,6 +685,19 @@ class Node(google.protobuf.message.Message):
     def rel(self) -> global___ReleaseData: ...
     @property
     def ori(self) -> global___OriginData: ...
+    continuation_token: typing.Text
+    """Token from which the traversal can be resumed right after this node,
+    if the request asked for continuation tokens (see
+    TraversalRequest.continuation_interval).
+    """
+
+    node_id: builtins.int
+    """Internal id of the node in the compressed graph. Unlike the other
+    fields, it is only returned if the mask explicitly requests it
+    ("node_id"). Node ids are much cheaper to return than SWHIDs, but are
+    only valid for the graph identified by StatsResponse.graph_fingerprint.
+    """
+
     def __init__(self,
         *,
         swhid: typing.Text = ...,
@@ -375,15 +707,36 @@ class Node(google.protobuf.message.Message):
         rev: typing.Optional[global___RevisionData] = ...,
         rel: typing.Optional[global___ReleaseData] = ...,
         ori: typing.Optional[global___OriginData] = ...,
+        continuation_token: typing.Optional[typing.Text] = ...,
+        node_id: typing.Optional[builtins.int] = ...,
         ) -> None: ...
-    def HasField(self, field_name: typing_extensions.Literal["_num_successors",b"_num_successors","cnt",b"cnt","data",b"data","num_successors",b"num_successors","ori",b"ori","rel",b"rel","rev",b"rev"]) -> builtins.bool: ...
-    def ClearField(self, field_name: typing_extensions.Literal["_num_successors",b"_num_successors","cnt",b"cnt","data",b"data","num_successors",b"num_successors","ori",b"ori","rel",b"rel","rev",b"rev","successor",b"successor","swhid",b"swhid"]) -> None: ...
+    def HasField(self, field_name: typing_extensions.Literal["_continuation_token",b"_continuation_token","_node_id",b"_node_id","_num_successors",b"_num_successors","cnt",b"cnt","continuation_token",b"continuation_token","data",b"data","node_id",b"node_id","num_successors",b"num_successors","ori",b"ori","rel",b"rel","rev",b"rev"]) -> builtins.bool: ...
+    def ClearField(self, field_name: typing_extensions.Literal["_continuation_token",b"_continuation_token","_node_id",b"_node_id","_num_successors",b"_num_successors","cnt",b"cnt","continuation_token",b"continuation_token","data",b"data","node_id",b"node_id","num_successors",b"num_successors","ori",b"ori","rel",b"rel","rev",b"rev","successor",b"successor","swhid",b"swhid"]) -> None: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_continuation_token",b"_continuation_token"]) -> typing.Optional[typing_extensions.Literal["continuation_token"]]: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_node_id",b"_node_id"]) -> typing.Optional[typing_extensions.Literal["node_id"]]: ...
     @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_num_successors",b"_num_successors"]) -> typing.Optional[typing_extensions.Literal["num_successors"]]: ...
     @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["data",b"data"]) -> typing.Optional[typing_extensions.Literal["cnt","rev","rel","ori"]]: ...
 global___Node = Node
 
+class NodeBatch(google.protobuf.message.Message):
+    """Represents a batch of nodes streamed by TraverseBatched."""
+    DESCRIPTOR: google.protobuf.descriptor.Descriptor
+    NODES_FIELD_NUMBER: builtins.int
+    @property
+    def nodes(self) -> google.protobuf.internal.containers.RepeatedCompositeFieldContainer[global___Node]:
+        """Nodes of the batch, in traversal order."""
+        pass
+    def __init__(self,
+        *,
+        nodes: typing.Optional[typing.Iterable[global___Node]] = ...,
+        ) -> None: ...
+    def ClearField(self, field_name: typing_extensions.Literal["nodes",b"nodes"]) -> None: ...
+global___NodeBatch = NodeBatch
+
 class Path(google.protobuf.message.Message):
     """Represents a path in the graph."""
     DESCRIPTOR: google.protobuf.descriptor.Descriptor
@@ -416,6 +769,7 @@ class Successor(google.protobuf.message.Message):
     DESCRIPTOR: google.protobuf.descriptor.Descriptor
     SWHID_FIELD_NUMBER: builtins.int
     LABEL_FIELD_NUMBER: builtins.int
+    NODE_ID_FIELD_NUMBER: builtins.int
     swhid: typing.Text
     """The SWHID of the successor"""
 
@@ -423,13 +777,22 @@ class Successor(google.protobuf.message.Message):
     def label(self) -> google.protobuf.internal.containers.RepeatedCompositeFieldContainer[global___EdgeLabel]:
         """A list of edge labels for the given edge"""
         pass
+    node_id: builtins.int
+    """Internal id of the successor, only returned if the mask explicitly
+    requests it ("successor.node_id"), see Node.node_id
+    """
+
     def __init__(self,
         *,
         swhid: typing.Optional[typing.Text] = ...,
         label: typing.Optional[typing.Iterable[global___EdgeLabel]] = ...,
+        node_id: typing.Optional[builtins.int] = ...,
         ) -> None: ...
-    def HasField(self, field_name: typing_extensions.Literal["_swhid",b"_swhid","swhid",b"swhid"]) -> builtins.bool: ...
-    def ClearField(self, field_name: typing_extensions.Literal["_swhid",b"_swhid","label",b"label","swhid",b"swhid"]) -> None: ...
+    def HasField(self, field_name: typing_extensions.Literal["_node_id",b"_node_id","_swhid",b"_swhid","node_id",b"node_id","swhid",b"swhid"]) -> builtins.bool: ...
+    def ClearField(self, field_name: typing_extensions.Literal["_node_id",b"_node_id","_swhid",b"_swhid","label",b"label","node_id",b"node_id","swhid",b"swhid"]) -> None: ...
+    @typing.overload
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_node_id",b"_node_id"]) -> typing.Optional[typing_extensions.Literal["node_id"]]: ...
+    @typing.overload
     def WhichOneof(self, oneof_group: typing_extensions.Literal["_swhid",b"_swhid"]) -> typing.Optional[typing_extensions.Literal["swhid"]]: ...
 global___Successor = Successor
 
@@ -598,14 +961,145 @@ global___EdgeLabel = EdgeLabel
 class CountResponse(google.protobuf.message.Message):
     DESCRIPTOR: google.protobuf.descriptor.Descriptor
     COUNT_FIELD_NUMBER: builtins.int
+    ERROR_BOUND_FIELD_NUMBER: builtins.int
+    EXACT_FIELD_NUMBER: builtins.int
     count: builtins.int
+    """Number of nodes or edges. If the count is not exact, this is an
+    estimate.
+    """
+
+    error_bound: builtins.int
+    """Half-width of the 95% confidence interval of the count. Only set for
+    approximate counts.
+    """
+
+    exact: builtins.bool
+    """Whether the count is exact, i.e., whether the whole traversal was
+    performed.
+    """
+
     def __init__(self,
         *,
         count: builtins.int = ...,
+        error_bound: typing.Optional[builtins.int] = ...,
+        exact: builtins.bool = ...,
         ) -> None: ...
-    def ClearField(self, field_name: typing_extensions.Literal["count",b"count"]) -> None: ...
+    def HasField(self, field_name: typing_extensions.Literal["_error_bound",b"_error_bound","error_bound",b"error_bound"]) -> builtins.bool: ...
+    def ClearField(self, field_name: typing_extensions.Literal["_error_bound",b"_error_bound","count",b"count","error_bound",b"error_bound","exact",b"exact"]) -> None: ...
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_error_bound",b"_error_bound"]) -> typing.Optional[typing_extensions.Literal["error_bound"]]: ...
 global___CountResponse = CountResponse
 
+class TraversalStats(google.protobuf.message.Message):
+    """Statistics on the cost of a traversal, sent by the server in the
+    swh-graph-stats-bin trailer of the traversal calls (Traverse,
+    TraverseBatched, FindPathTo, FindPathBetween, CountNodes, CountEdges).
+    """
+    DESCRIPTOR: google.protobuf.descriptor.Descriptor
+    EDGES_ACCESSED_FIELD_NUMBER: builtins.int
+    NODES_VISITED_FIELD_NUMBER: builtins.int
+    NODES_RETURNED_FIELD_NUMBER: builtins.int
+    MAX_DEPTH_REACHED_FIELD_NUMBER: builtins.int
+    FRONTIER_PEAK_FIELD_NUMBER: builtins.int
+    WALL_TIME_US_FIELD_NUMBER: builtins.int
+    CPU_TIME_US_FIELD_NUMBER: builtins.int
+    LIMIT_REACHED_FIELD_NUMBER: builtins.int
+    VISITED_SET_BYTES_FIELD_NUMBER: builtins.int
+    edges_accessed: builtins.int
+    """Number of edges accessed by the traversal, i.e., the sum of the
+    outdegrees of the visited nodes (the quantity bounded by max_edges).
+    """
+
+    nodes_visited: builtins.int
+    """Number of nodes visited by the traversal."""
+
+    nodes_returned: builtins.int
+    """Number of nodes returned to the client."""
+
+    max_depth_reached: builtins.int
+    """Largest depth at which a node was visited."""
+
+    frontier_peak: builtins.int
+    """Largest number of nodes in the frontier of a level of the traversal."""
+
+    wall_time_us: builtins.int
+    """Wall-clock time of the traversal, in microseconds."""
+
+    cpu_time_us: builtins.int
+    """CPU time of the thread running the traversal, in microseconds. This
+    excludes the helper threads of the parallel traversals.
+    """
+
+    limit_reached: typing.Text
+    """If set, the limit that stopped the traversal before its end:
+    "max_depth", "max_edges", "max_duration", "deadline" or "cancelled".
+    """
+
+    visited_set_bytes: builtins.int
+    """Estimated memory used by the set of visited nodes, in bytes."""
+
+    def __init__(self,
+        *,
+        edges_accessed: builtins.int = ...,
+        nodes_visited: builtins.int = ...,
+        nodes_returned: builtins.int = ...,
+        max_depth_reached: builtins.int = ...,
+        frontier_peak: builtins.int = ...,
+        wall_time_us: builtins.int = ...,
+        cpu_time_us: builtins.int = ...,
+        limit_reached: typing.Optional[typing.Text] = ...,
+        visited_set_bytes: builtins.int = ...,
+        ) -> None: ...
+    def HasField(self, field_name: typing_extensions.Literal["_limit_reached",b"_limit_reached","limit_reached",b"limit_reached"]) -> builtins.bool: ...
+    def ClearField(self, field_name: typing_extensions.Literal["_limit_reached",b"_limit_reached","cpu_time_us",b"cpu_time_us","edges_accessed",b"edges_accessed","frontier_peak",b"frontier_peak","limit_reached",b"limit_reached","max_depth_reached",b"max_depth_reached","nodes_returned",b"nodes_returned","nodes_visited",b"nodes_visited","visited_set_bytes",b"visited_set_bytes","wall_time_us",b"wall_time_us"]) -> None: ...
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_limit_reached",b"_limit_reached"]) -> typing.Optional[typing_extensions.Literal["limit_reached"]]: ...
+global___TraversalStats = TraversalStats
+
+class EstimateReachableRequest(google.protobuf.message.Message):
+    """EstimateReachableRequest describes the nodes whose number is estimated
+    by EstimateReachable.
+    """
+    DESCRIPTOR: google.protobuf.descriptor.Descriptor
+    SWHID_FIELD_NUMBER: builtins.int
+    TYPES_FIELD_NUMBER: builtins.int
+    swhid: typing.Text
+    """SWHID of the node from which the reachable nodes are counted (the node
+    itself is included if its type matches)
+    """
+
+    types: typing.Text
+    """Node type restriction string of the nodes to count (e.g. "cnt,dir").
+    Each type must have been sketched. By default, all the sketched types
+    are counted.
+    """
+
+    def __init__(self,
+        *,
+        swhid: typing.Text = ...,
+        types: typing.Optional[typing.Text] = ...,
+        ) -> None: ...
+    def HasField(self, field_name: typing_extensions.Literal["_types",b"_types","types",b"types"]) -> builtins.bool: ...
+    def ClearField(self, field_name: typing_extensions.Literal["_types",b"_types","swhid",b"swhid","types",b"types"]) -> None: ...
+    def WhichOneof(self, oneof_group: typing_extensions.Literal["_types",b"_types"]) -> typing.Optional[typing_extensions.Literal["types"]]: ...
+global___EstimateReachableRequest = EstimateReachableRequest
+
+class EstimateReachableResponse(google.protobuf.message.Message):
+    DESCRIPTOR: google.protobuf.descriptor.Descriptor
+    COUNT_FIELD_NUMBER: builtins.int
+    RELATIVE_ERROR_FIELD_NUMBER: builtins.int
+    count: builtins.int
+    """Estimated number of reachable nodes"""
+
+    relative_error: builtins.float
+    """Relative standard error of the estimate"""
+
+    def __init__(self,
+        *,
+        count: builtins.int = ...,
+        relative_error: builtins.float = ...,
+        ) -> None: ...
+    def ClearField(self, field_name: typing_extensions.Literal["count",b"count","relative_error",b"relative_error"]) -> None: ...
+global___EstimateReachableResponse = EstimateReachableResponse
+
 class StatsRequest(google.protobuf.message.Message):
     DESCRIPTOR: google.protobuf.descriptor.Descriptor
     def __init__(self,
@@ -626,6 +1120,7 @@ class StatsResponse(google.protobuf.message.Message):
     OUTDEGREE_MIN_FIELD_NUMBER: builtins.int
     OUTDEGREE_MAX_FIELD_NUMBER: builtins.int
     OUTDEGREE_AVG_FIELD_NUMBER: builtins.int
+    GRAPH_FINGERPRINT_FIELD_NUMBER: builtins.int
     num_nodes: builtins.int
     """Number of nodes in the graph"""
 
@@ -666,6 +1161,15 @@ class StatsResponse(google.protobuf.message.Message):
     outdegree_avg: builtins.float
     """Average outdegree"""
 
+    graph_fingerprint: typing.Text
+    """Fingerprint of the compressed graph, computed from its statistics and
+    from the SWHIDs of a sample of its node ids. It changes when the graph
+    is recompressed or its node ids are reassigned, unless the sampled ids
+    are all left in place. Clients storing node ids (see Node.node_id) can
+    compare it with the fingerprint of the graph they were returned by, to
+    detect when the ids are no longer valid.
+    """
+
     def __init__(self,
         *,
         num_nodes: builtins.int = ...,
@@ -680,6 +1184,7 @@ class StatsResponse(google.protobuf.message.Message):
         outdegree_min: builtins.int = ...,
         outdegree_max: builtins.int = ...,
         outdegree_avg: builtins.float = ...,
+        graph_fingerprint: typing.Text = ...,
         ) -> None: ...
-    def ClearField(self, field_name: typing_extensions.Literal["avg_locality",b"avg_locality","bits_per_edge",b"bits_per_edge","bits_per_node",b"bits_per_node","compression_ratio",b"compression_ratio","indegree_avg",b"indegree_avg","indegree_max",b"indegree_max","indegree_min",b"indegree_min","num_edges",b"num_edges","num_nodes",b"num_nodes","outdegree_avg",b"outdegree_avg","outdegree_max",b"outdegree_max","outdegree_min",b"outdegree_min"]) -> None: ...
+    def ClearField(self, field_name: typing_extensions.Literal["avg_locality",b"avg_locality","bits_per_edge",b"bits_per_edge","bits_per_node",b"bits_per_node","compression_ratio",b"compression_ratio","graph_fingerprint",b"graph_fingerprint","indegree_avg",b"indegree_avg","indegree_max",b"indegree_max","indegree_min",b"indegree_min","num_edges",b"num_edges","num_nodes",b"num_nodes","outdegree_avg",b"outdegree_avg","outdegree_max",b"outdegree_max","outdegree_min",b"outdegree_min"]) -> None: ...
 global___StatsResponse = StatsResponse
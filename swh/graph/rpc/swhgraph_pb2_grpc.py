@@ -20,11 +20,21 @@ class TraversalServiceStub(object):
                 request_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.GetNodeRequest.SerializeToString,
                 response_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.Node.FromString,
                 )
+        self.GetNodes = channel.unary_stream(
+                '/swh.graph.TraversalService/GetNodes',
+                request_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.GetNodesRequest.SerializeToString,
+                response_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.Node.FromString,
+                )
         self.Traverse = channel.unary_stream(
                 '/swh.graph.TraversalService/Traverse',
                 request_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.TraversalRequest.SerializeToString,
                 response_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.Node.FromString,
                 )
+        self.TraverseBatched = channel.unary_stream(
+                '/swh.graph.TraversalService/TraverseBatched',
+                request_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.TraversalRequest.SerializeToString,
+                response_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.NodeBatch.FromString,
+                )
         self.FindPathTo = channel.unary_unary(
                 '/swh.graph.TraversalService/FindPathTo',
                 request_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.FindPathToRequest.SerializeToString,
@@ -45,6 +55,11 @@ class TraversalServiceStub(object):
                 request_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.TraversalRequest.SerializeToString,
                 response_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.CountResponse.FromString,
                 )
+        self.EstimateReachable = channel.unary_unary(
+                '/swh.graph.TraversalService/EstimateReachable',
+                request_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.EstimateReachableRequest.SerializeToString,
+                response_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.EstimateReachableResponse.FromString,
+                )
         self.Stats = channel.unary_unary(
                 '/swh.graph.TraversalService/Stats',
                 request_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.StatsRequest.SerializeToString,
@@ -63,6 +78,17 @@ class TraversalServiceServicer(object):
         context.set_details('Method not implemented!')
         raise NotImplementedError('Method not implemented!')
 
+    def GetNodes(self, request, context):
+        """GetNodes returns multiple nodes and their properties, in the same
+        order as the requested SWHIDs. This is much faster than multiple GetNode
+        calls, as the properties of all the nodes are read in node id order,
+        which mostly turns random reads of the property files into sequential
+        ones. 
+        """
+        context.set_code(grpc.StatusCode.UNIMPLEMENTED)
+        context.set_details('Method not implemented!')
+        raise NotImplementedError('Method not implemented!')
+
     def Traverse(self, request, context):
         """Traverse performs a breadth-first graph traversal from a set of source
         nodes, then streams the nodes it encounters (if they match a given
@@ -72,6 +98,21 @@ class TraversalServiceServicer(object):
         context.set_details('Method not implemented!')
         raise NotImplementedError('Method not implemented!')
 
+    def TraverseBatched(self, request, context):
+        """TraverseBatched does the same as Traverse, but streams the nodes in
+        batches of multiple nodes. This avoids paying the per-message overhead
+        of the stream for each returned node, which is significantly faster
+        for traversals that return a large number of small nodes.
+
+        A batch is sent as soon as it contains a given number of nodes, reaches
+        a given size in bytes, or when its first node has been waiting for a
+        given amount of time. The order of the nodes is the same as with
+        Traverse.
+        """
+        context.set_code(grpc.StatusCode.UNIMPLEMENTED)
+        context.set_details('Method not implemented!')
+        raise NotImplementedError('Method not implemented!')
+
     def FindPathTo(self, request, context):
         """FindPathTo searches for a shortest path between a set of source nodes
         and a node that matches a specific *criteria*.
@@ -127,6 +168,16 @@ class TraversalServiceServicer(object):
         context.set_details('Method not implemented!')
         raise NotImplementedError('Method not implemented!')
 
+    def EstimateReachable(self, request, context):
+        """EstimateReachable returns an estimate of the number of nodes reachable
+        from a given node in the forward graph, without any traversal. It uses
+        sketches of the reachable sets precomputed for each node, and fails
+        with FAILED_PRECONDITION if they were not computed for this graph. 
+        """
+        context.set_code(grpc.StatusCode.UNIMPLEMENTED)
+        context.set_details('Method not implemented!')
+        raise NotImplementedError('Method not implemented!')
+
     def Stats(self, request, context):
         """Stats returns various statistics on the overall graph. 
         """
@@ -142,11 +193,21 @@ def add_TraversalServiceServicer_to_server(servicer, server):
                     request_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.GetNodeRequest.FromString,
                     response_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.Node.SerializeToString,
             ),
+            'GetNodes': grpc.unary_stream_rpc_method_handler(
+                    servicer.GetNodes,
+                    request_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.GetNodesRequest.FromString,
+                    response_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.Node.SerializeToString,
+            ),
             'Traverse': grpc.unary_stream_rpc_method_handler(
                     servicer.Traverse,
                     request_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.TraversalRequest.FromString,
                     response_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.Node.SerializeToString,
             ),
+            'TraverseBatched': grpc.unary_stream_rpc_method_handler(
+                    servicer.TraverseBatched,
+                    request_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.TraversalRequest.FromString,
+                    response_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.NodeBatch.SerializeToString,
+            ),
             'FindPathTo': grpc.unary_unary_rpc_method_handler(
                     servicer.FindPathTo,
                     request_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.FindPathToRequest.FromString,
@@ -167,6 +228,11 @@ def add_TraversalServiceServicer_to_server(servicer, server):
                     request_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.TraversalRequest.FromString,
                     response_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.CountResponse.SerializeToString,
             ),
+            'EstimateReachable': grpc.unary_unary_rpc_method_handler(
+                    servicer.EstimateReachable,
+                    request_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.EstimateReachableRequest.FromString,
+                    response_serializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.EstimateReachableResponse.SerializeToString,
+            ),
             'Stats': grpc.unary_unary_rpc_method_handler(
                     servicer.Stats,
                     request_deserializer=swh_dot_graph_dot_rpc_dot_swhgraph__pb2.StatsRequest.FromString,
@@ -200,6 +266,23 @@ class TraversalService(object):
             options, channel_credentials,
             insecure, call_credentials, compression, wait_for_ready, timeout, metadata)
 
+    @staticmethod
+    def GetNodes(request,
+            target,
+            options=(),
+            channel_credentials=None,
+            call_credentials=None,
+            insecure=False,
+            compression=None,
+            wait_for_ready=None,
+            timeout=None,
+            metadata=None):
+        return grpc.experimental.unary_stream(request, target, '/swh.graph.TraversalService/GetNodes',
+            swh_dot_graph_dot_rpc_dot_swhgraph__pb2.GetNodesRequest.SerializeToString,
+            swh_dot_graph_dot_rpc_dot_swhgraph__pb2.Node.FromString,
+            options, channel_credentials,
+            insecure, call_credentials, compression, wait_for_ready, timeout, metadata)
+
     @staticmethod
     def Traverse(request,
             target,
@@ -217,6 +300,23 @@ class TraversalService(object):
             options, channel_credentials,
             insecure, call_credentials, compression, wait_for_ready, timeout, metadata)
 
+    @staticmethod
+    def TraverseBatched(request,
+            target,
+            options=(),
+            channel_credentials=None,
+            call_credentials=None,
+            insecure=False,
+            compression=None,
+            wait_for_ready=None,
+            timeout=None,
+            metadata=None):
+        return grpc.experimental.unary_stream(request, target, '/swh.graph.TraversalService/TraverseBatched',
+            swh_dot_graph_dot_rpc_dot_swhgraph__pb2.TraversalRequest.SerializeToString,
+            swh_dot_graph_dot_rpc_dot_swhgraph__pb2.NodeBatch.FromString,
+            options, channel_credentials,
+            insecure, call_credentials, compression, wait_for_ready, timeout, metadata)
+
     @staticmethod
     def FindPathTo(request,
             target,
@@ -285,6 +385,23 @@ class TraversalService(object):
             options, channel_credentials,
             insecure, call_credentials, compression, wait_for_ready, timeout, metadata)
 
+    @staticmethod
+    def EstimateReachable(request,
+            target,
+            options=(),
+            channel_credentials=None,
+            call_credentials=None,
+            insecure=False,
+            compression=None,
+            wait_for_ready=None,
+            timeout=None,
+            metadata=None):
+        return grpc.experimental.unary_unary(request, target, '/swh.graph.TraversalService/EstimateReachable',
+            swh_dot_graph_dot_rpc_dot_swhgraph__pb2.EstimateReachableRequest.SerializeToString,
+            swh_dot_graph_dot_rpc_dot_swhgraph__pb2.EstimateReachableResponse.FromString,
+            options, channel_credentials,
+            insecure, call_credentials, compression, wait_for_ready, timeout, metadata)
+
     @staticmethod
     def Stats(request,
             target,
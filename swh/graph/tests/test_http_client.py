@@ -326,6 +326,14 @@ def test_count(graph_client):
     assert actual == 3
 
 
+def test_count_stats(graph_client):
+    count, stats = graph_client.count_leaves(TEST_ORIGIN_ID, return_stats=True)
+    assert count == 4
+    assert stats.nodes_visited > 0
+    assert stats.edges_accessed > 0
+    assert stats.limit_reached == ""
+
+
 def test_param_validation(graph_client):
     with raises(GraphArgumentException) as exc_info:  # SWHID not found
         list(graph_client.leaves("swh:1:rel:00ffffffff000000000000000000000000000010"))
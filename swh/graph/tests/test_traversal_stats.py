@@ -0,0 +1,52 @@
+# Copyright (c) 2022 The Software Heritage developers
+# See the AUTHORS file at the top-level directory of this distribution
+# License: GNU General Public License version 3, or any later version
+# See top-level LICENSE file for more information
+
+from swh.graph.rpc.swhgraph_pb2 import TraversalStats
+from swh.graph.traversal_stats import (
+    get_http_headers,
+    get_http_interruption,
+    get_http_traversal_stats,
+    get_interruption,
+    get_traversal_stats,
+)
+
+
+def test_get_traversal_stats():
+    stats = TraversalStats(
+        edges_accessed=13,
+        nodes_visited=12,
+        nodes_returned=4,
+        max_depth_reached=5,
+        limit_reached="max_edges",
+    )
+    metadata = (
+        ("swh-graph-interrupted", "max_edges"),
+        ("swh-graph-stats-bin", stats.SerializeToString()),
+    )
+    assert get_traversal_stats(metadata) == stats
+    assert get_traversal_stats(metadata).limit_reached == "max_edges"
+    assert get_interruption(metadata) == "max_edges"
+
+
+def test_no_traversal_stats():
+    assert get_traversal_stats(None) is None
+    assert get_traversal_stats((("other", "value"),)) is None
+    assert get_interruption(()) is None
+
+
+def test_http_headers():
+    stats = TraversalStats(
+        edges_accessed=13, nodes_visited=12, limit_reached="max_edges"
+    )
+    headers = get_http_headers(
+        (
+            ("swh-graph-interrupted", "max_edges"),
+            ("swh-graph-stats-bin", stats.SerializeToString()),
+        )
+    )
+    assert get_http_traversal_stats(headers) == stats
+    assert get_http_interruption(headers) == "max_edges"
+    assert get_http_headers(None) == {}
+    assert get_http_traversal_stats({}) is None
@@ -0,0 +1,105 @@
+# Copyright (C) 2022  The Software Heritage developers
+# See the AUTHORS file at the top-level directory of this distribution
+# License: GNU General Public License version 3, or any later version
+# See top-level LICENSE file for more information
+
+"""
+Helpers to read the statistics that the swh-graph GRPC server attaches to the
+trailers of the traversal calls.
+
+Example, with the blocking stub::
+
+    nodes = stub.Traverse(request)
+    for node in nodes:
+        ...
+    stats = get_traversal_stats(nodes.trailing_metadata())
+    print(stats.edges_accessed, stats.nodes_visited, stats.limit_reached)
+
+Unary calls return their trailers with ``with_call()``, e.g.,
+``response, call = stub.CountNodes.with_call(request)``, and the calls of the
+asyncio stubs with ``await call.trailing_metadata()``.
+
+The HTTP proxy forwards them as the headers of the responses of its counting
+endpoints (see :func:`get_http_headers`).
+"""
+
+import json
+from typing import Dict, Iterable, Mapping, Optional, Tuple, Union
+
+from google.protobuf import json_format
+
+from swh.graph.rpc.swhgraph_pb2 import TraversalStats
+
+STATS_TRAILER = "swh-graph-stats-bin"
+"""Trailer holding the serialized :class:`TraversalStats` of a traversal"""
+
+INTERRUPTED_TRAILER = "swh-graph-interrupted"
+"""Trailer holding the reason why a traversal was interrupted, if it was"""
+
+STATS_HEADER = "X-Swh-Graph-Stats"
+"""HTTP header holding the :class:`TraversalStats` of a traversal, as JSON"""
+
+INTERRUPTED_HEADER = "X-Swh-Graph-Interrupted"
+"""HTTP header holding the reason why a traversal was interrupted, if it was"""
+
+Metadata = Optional[Iterable[Tuple[str, Union[str, bytes]]]]
+
+
+def _get(metadata: Metadata, key: str) -> Optional[Union[str, bytes]]:
+    for (k, v) in metadata or ():
+        if k == key:
+            return v
+    return None
+
+
+def get_traversal_stats(metadata: Metadata) -> Optional[TraversalStats]:
+    """Returns the statistics of a traversal from the trailing metadata of its
+    call, or :const:`None` if the server did not send any (e.g., for calls
+    rejected before the traversal started)."""
+    value = _get(metadata, STATS_TRAILER)
+    if value is None:
+        return None
+    if isinstance(value, str):
+        value = value.encode()
+    return TraversalStats.FromString(value)
+
+
+def get_interruption(metadata: Metadata) -> Optional[str]:
+    """Returns the reason why a traversal was interrupted before its end
+    (``max_duration``, ``deadline``, ``cancelled`` or ``max_edges``) from the
+    trailing metadata of its call, or :const:`None` if it was not."""
+    value = _get(metadata, INTERRUPTED_TRAILER)
+    if isinstance(value, bytes):
+        value = value.decode()
+    return value
+
+
+def get_http_headers(metadata: Metadata) -> Dict[str, str]:
+    """Returns the HTTP headers forwarding the statistics and the interruption
+    of a traversal, from the trailing metadata of its call."""
+    headers = {}
+    stats = get_traversal_stats(metadata)
+    if stats is not None:
+        headers[STATS_HEADER] = json.dumps(
+            json_format.MessageToDict(stats, preserving_proto_field_name=True)
+        )
+    interruption = get_interruption(metadata)
+    if interruption is not None:
+        headers[INTERRUPTED_HEADER] = interruption
+    return headers
+
+
+def get_http_traversal_stats(headers: Mapping[str, str]) -> Optional[TraversalStats]:
+    """Returns the statistics of a traversal from the headers of an HTTP
+    response of the proxy, or :const:`None` if there are none."""
+    value = headers.get(STATS_HEADER)
+    if value is None:
+        return None
+    return json_format.ParseDict(json.loads(value), TraversalStats())
+
+
+def get_http_interruption(headers: Mapping[str, str]) -> Optional[str]:
+    """Returns the reason why a traversal was interrupted before its end from
+    the headers of an HTTP response of the proxy, or :const:`None` if it was
+    not."""
+    return headers.get(INTERRUPTED_HEADER)